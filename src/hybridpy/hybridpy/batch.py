@@ -0,0 +1,528 @@
+'''
+Batch runner for hypy. Runs a manifest of (model, passes, printer, params) jobs on a bounded pool of
+worker processes, with a timeout and memory limit for each job, and writes timing tables.
+
+Results are cached on disk, keyed on a hash of the model files, passes, printer, params and the
+versions of Hyst and the tool, so jobs which haven't changed since the last run are skipped.
+
+Usage: python batch.py manifest.json [--jobs N] [--output_dir DIR] [--cache_dir DIR] ...
+
+The manifest is a json file with a list of jobs, or an object {"defaults": {...}, "jobs": [...]}
+where the defaults apply to every job. Each job is an object with the keys:
+
+name - (optional) job name, used for log and model file names. Default: <model>_<printer>
+model - the input .xml model file, relative paths are relative to the manifest
+cfg - (optional) the .cfg file for the model
+gen - (instead of model) a model generator as [name, param]
+passes - (optional) list of passes, each [name, param]
+printer - the tool name (see hypy.TOOLS), or a list of tool names to make one job for each
+params - (optional) the printer param
+hyst_params - (optional) list of additional hyst params
+timeout - (optional) seconds for the job (conversion and tool run), None for no timeout
+memory_mb - (optional) address-space limit for the job's processes, in megabytes
+'''
+from __future__ import print_function
+from builtins import zip
+from builtins import object
+
+import os
+import sys
+import json
+import csv
+import time
+import hashlib
+import inspect
+import argparse
+import threading
+import subprocess
+import multiprocessing
+
+import hybridpy.hybrid_tool as hybrid_tool
+from hybridpy.hybrid_tool import get_tool_path
+import hybridpy.hypy as hypy
+from hybridpy.hypy import Engine
+
+# codes for jobs that did not finish, in addition to the Engine.* codes
+TIMEOUT_JOB = 'Timeout (Job)'
+ERROR_JOB = 'Error (Job)'
+
+# extra seconds after a job's timeout before the job process is killed, so that the tool's own
+# timeout (in hybrid_tool.run_tool) has a chance to end the tool first
+KILL_GRACE_SECS = 10
+
+# columns in the results csv file
+RESULT_COLUMNS = ['name', 'model', 'printer', 'params', 'passes', 'code', 'hyst_time', 'tool_time',
+                  'time', 'cached']
+
+JOB_KEYS = ['name', 'model', 'cfg', 'gen', 'passes', 'printer', 'params', 'hyst_params', 'timeout',
+            'memory_mb']
+
+def load_manifest(path):
+    '''load the list of jobs from a manifest file (see the module description)'''
+
+    with open(path, 'r') as f:
+        manifest = json.load(f)
+
+    base_dir = os.path.dirname(os.path.realpath(path))
+
+    return make_jobs(manifest, base_dir)
+
+def make_jobs(manifest, base_dir='.'):
+    '''
+    make the list of jobs from a loaded manifest (a list of jobs, or a dict with 'defaults' and 'jobs')
+
+    Each returned job is a dict with all the keys in JOB_KEYS, with paths made absolute, and
+    a unique name.
+    '''
+
+    if isinstance(manifest, dict):
+        defaults = manifest.get('defaults', {})
+        job_list = manifest['jobs']
+    else:
+        defaults = {}
+        job_list = manifest
+
+    rv = []
+    names = set()
+
+    for entry in job_list:
+        job = {'name': None, 'model': None, 'cfg': None, 'gen': None, 'passes': [], 'printer': None,
+               'params': '', 'hyst_params': [], 'timeout': None, 'memory_mb': None}
+        job.update(defaults)
+        job.update(entry)
+
+        for key in job:
+            if key not in JOB_KEYS:
+                raise RuntimeError("Unknown key in batch job: '{}'".format(key))
+
+        if (job['model'] is None) == (job['gen'] is None):
+            raise RuntimeError("Batch job needs exactly one of 'model' or 'gen': {}".format(entry))
+
+        for key in ['model', 'cfg']:
+            if job[key] is not None:
+                job[key] = os.path.realpath(os.path.join(base_dir, job[key]))
+
+        printers = job['printer'] if isinstance(job['printer'], list) else [job['printer']]
+
+        for printer in printers:
+            if printer not in hypy.TOOLS:
+                raise RuntimeError("Unknown printer in batch job: '{}'".format(printer))
+
+            printer_job = dict(job)
+            printer_job['printer'] = printer
+
+            if job['name'] is None or len(printers) > 1:
+                model_name = job['name']
+
+                if model_name is None:
+                    model_name = _model_name(printer_job)
+
+                printer_job['name'] = model_name + '_' + printer
+
+            # make names unique, since they are used for file names
+            name = printer_job['name']
+            index = 2
+
+            while printer_job['name'] in names:
+                printer_job['name'] = '{}_{}'.format(name, index)
+                index += 1
+
+            names.add(printer_job['name'])
+            rv.append(printer_job)
+
+    return rv
+
+def _model_name(job):
+    '''get the name of a job's model (the model file name or generator name)'''
+
+    if job['model'] is not None:
+        rv = os.path.splitext(os.path.basename(job['model']))[0]
+    else:
+        rv = job['gen'][0]
+
+    return rv
+
+class CacheKeys(object):
+    '''Computes the cache keys of jobs. File hashes are remembered, so each file is read once.'''
+
+    def __init__(self):
+        self._file_hashes = {}
+
+    def file_hash(self, path):
+        '''get the sha256 of a file's contents, or None if path is None or doesn't exist'''
+
+        if path is None or not os.path.isfile(path):
+            return None
+
+        stat = os.stat(path)
+        memo_key = (os.path.realpath(path), stat.st_size, stat.st_mtime)
+        rv = self._file_hashes.get(memo_key)
+
+        if rv is None:
+            h = hashlib.sha256()
+
+            with open(path, 'rb') as f:
+                for block in iter(lambda: f.read(1024 * 1024), b''):
+                    h.update(block)
+
+            rv = h.hexdigest()
+            self._file_hashes[memo_key] = rv
+
+        return rv
+
+    def tool_version(self, printer):
+        '''get the version of Hyst and a tool, as the hashes of the jar, tool script, and tool executable'''
+
+        tool = hypy.TOOLS[printer]
+
+        return [self.file_hash(get_tool_path('Hyst.jar', print_errors=False)),
+                self.file_hash(inspect.getsourcefile(tool.__class__)),
+                self.file_hash(tool.tool_path)]
+
+    def key(self, job):
+        '''get the cache key for a job'''
+
+        parts = {'model': self.file_hash(job['model']),
+                 'cfg': self.file_hash(job['cfg']),
+                 'tool': self.tool_version(job['printer'])}
+
+        for name in ['gen', 'passes', 'printer', 'params', 'hyst_params', 'timeout', 'memory_mb']:
+            parts[name] = job[name]
+
+        text = json.dumps(parts, sort_keys=True)
+
+        return hashlib.sha256(text.encode('utf-8')).hexdigest()
+
+def _cache_path(cache_dir, key):
+    '''get the path of the cached result for a key'''
+
+    return os.path.join(cache_dir, key + '.json')
+
+def _load_cached(cache_dir, key):
+    '''load a cached result, or None if it doesn't exist'''
+
+    rv = None
+    path = _cache_path(cache_dir, key)
+
+    if os.path.exists(path):
+        with open(path, 'r') as f:
+            rv = json.load(f)
+
+    return rv
+
+def _save_cached(cache_dir, key, result):
+    '''save a result in the cache'''
+
+    path = _cache_path(cache_dir, key)
+    temp_path = path + '.tmp'
+
+    with open(temp_path, 'w') as f:
+        json.dump(result, f)
+
+    # rename, so an interrupted batch never leaves a partial cache file
+    os.rename(temp_path, path)
+
+def run_batch(jobs, output_dir, cache_dir=None, num_workers=None, run_func=None, print_progress=True):
+    '''
+    run a list of jobs (from load_manifest / make_jobs) on a pool of worker processes
+
+    output_dir - where to write logs, converted models, and result tables
+    cache_dir - where cached results are kept, None to disable the cache
+    num_workers - the number of jobs to run at once, default: number of cpus
+    run_func - function to run a job: run_func((job, output_dir)) returns the result dict. Default:
+               run each job in a subprocess with the job's timeout and memory limit
+
+    returns the list of result dicts, in the order of the jobs
+    '''
+
+    if num_workers is None:
+        num_workers = multiprocessing.cpu_count()
+
+    if run_func is None:
+        run_func = run_job_subprocess
+
+    for d in [output_dir, cache_dir]:
+        if d is not None and not os.path.exists(d):
+            os.makedirs(d)
+
+    keys = CacheKeys()
+    results = [None] * len(jobs)
+    todo = [] # indices of jobs to run
+
+    for index, job in enumerate(jobs):
+        job['key'] = keys.key(job)
+        cached = _load_cached(cache_dir, job['key']) if cache_dir is not None else None
+
+        if cached is not None:
+            cached['name'] = job['name']
+            cached['cached'] = True
+            results[index] = cached
+        else:
+            todo.append(index)
+
+    if print_progress:
+        print("Running {} jobs ({} cached) with {} workers.".format(len(todo), len(jobs) - len(todo),
+                                                                   num_workers))
+        sys.stdout.flush()
+
+    tasks = [(jobs[i], output_dir) for i in todo]
+
+    if num_workers > 1 and len(tasks) > 1:
+        pool = multiprocessing.Pool(processes=min(num_workers, len(tasks)))
+
+        try:
+            # imap returns results in job order; each worker waits on one job subprocess at a time
+            job_results = pool.imap(run_func, tasks, chunksize=1)
+
+            for count, (index, result) in enumerate(zip(todo, job_results)):
+                _finish_job(jobs[index], result, results, index, cache_dir)
+
+                if print_progress:
+                    _print_finished(count, len(todo), result)
+
+            pool.close()
+        finally:
+            pool.terminate()
+            pool.join()
+    else:
+        for count, index in enumerate(todo):
+            result = run_func(tasks[count])
+            _finish_job(jobs[index], result, results, index, cache_dir)
+
+            if print_progress:
+                _print_finished(count, len(todo), result)
+
+    return results
+
+def _finish_job(job, result, results, index, cache_dir):
+    '''store the result of a job which was run, and cache it'''
+
+    result['cached'] = False
+    results[index] = result
+
+    # jobs which were killed or crashed are not cached, so they're retried next time
+    if cache_dir is not None and result['code'] not in [TIMEOUT_JOB, ERROR_JOB]:
+        _save_cached(cache_dir, job['key'], result)
+
+def _print_finished(count, total, result):
+    '''print progress after a job finished'''
+
+    print("{}/{} Finished {}: {} ({:.1f} sec)".format(count + 1, total, result['name'], result['code'],
+                                                      result['time']))
+    sys.stdout.flush()
+
+def _make_result(job, code, elapsed):
+    '''make the result dict of a job'''
+
+    return {'name': job['name'],
+            'model': job['model'] if job['model'] is not None else 'gen:' + ' '.join(job['gen']),
+            'printer': job['printer'],
+            'params': job['params'],
+            'passes': ' '.join([name + ' ' + param for name, param in job['passes']]),
+            'code': code,
+            'hyst_time': None,
+            'tool_time': None,
+            'time': elapsed}
+
+def _job_limits(memory_mb):
+    '''get the function that sets up a job process: its own process group and memory limit'''
+
+    def setup():
+        'run in the job process before it starts'
+        os.setsid()
+
+        if memory_mb is not None:
+            import resource
+
+            limit = int(memory_mb) * 1024 * 1024
+            resource.setrlimit(resource.RLIMIT_AS, (limit, limit))
+
+    return setup
+
+def run_job_subprocess(task):
+    '''
+    run a job in a new python process (this script with --run_job), with the job's timeout and memory
+    limit. This is run in the pool's worker processes.
+
+    task is a tuple (job, output_dir)
+    returns the result dict
+    '''
+
+    job, output_dir = task
+    start_time = time.time()
+
+    job_dir = os.path.join(output_dir, 'jobs')
+    log_dir = os.path.join(output_dir, 'logs')
+
+    for d in [job_dir, log_dir]:
+        if not os.path.exists(d):
+            try:
+                os.makedirs(d)
+            except OSError:
+                pass # created by another worker
+
+    job_path = os.path.join(job_dir, job['name'] + '.json')
+    result_path = os.path.join(job_dir, job['name'] + '_result.json')
+
+    if os.path.exists(result_path):
+        os.remove(result_path)
+
+    with open(job_path, 'w') as f:
+        json.dump(job, f)
+
+    params = [sys.executable, "-u", os.path.realpath(__file__), "--run_job", job_path, result_path, output_dir]
+    env = dict(os.environ)
+    preexec = None
+    timeout = job['timeout']
+
+    if hybrid_tool.is_windows():
+        if timeout is not None or job['memory_mb'] is not None:
+            print("Job timeouts and memory limits not supported on windows... skipping")
+
+        timeout = None
+    else:
+        preexec = _job_limits(job['memory_mb'])
+
+        if job['memory_mb'] is not None:
+            # the jvm reserves its maximum heap up front, so keep it within the address-space limit
+            env['JAVA_TOOL_OPTIONS'] = (env.get('JAVA_TOOL_OPTIONS', '') + ' -Xmx{}m'.format(
+                int(job['memory_mb']) // 2)).strip()
+
+    with open(os.path.join(log_dir, job['name'] + '.log'), 'w') as log:
+        proc = subprocess.Popen(params, stdout=log, stderr=subprocess.STDOUT, env=env, preexec_fn=preexec)
+        timer = None
+
+        if timeout is not None:
+            timer = threading.Timer(timeout + KILL_GRACE_SECS, hybrid_tool._kill_pg, [proc])
+            timer.daemon = True
+            timer.start()
+
+        code = proc.wait()
+
+        if timer is not None:
+            timer.cancel()
+
+    if os.path.exists(result_path):
+        with open(result_path, 'r') as f:
+            rv = json.load(f)
+    else:
+        rv = _make_result(job, TIMEOUT_JOB if code < 0 and timeout is not None else ERROR_JOB,
+                          time.time() - start_time)
+
+    return rv
+
+def _run_job_main(job_path, result_path, output_dir):
+    '''run a single job with hypy's Engine, in the job process, and write the result dict as json'''
+
+    with open(job_path, 'r') as f:
+        job = json.load(f)
+
+    model_dir = os.path.join(output_dir, 'models')
+
+    if not os.path.exists(model_dir):
+        try:
+            os.makedirs(model_dir)
+        except OSError:
+            pass # created by another job
+
+    e = Engine(job['printer'], job['params'])
+
+    if job['model'] is not None:
+        e.set_input(job['model'], job['cfg'])
+    else:
+        e.set_generator(job['gen'][0], job['gen'][1])
+
+    for pass_name, pass_param in job['passes']:
+        e.add_pass(pass_name, pass_param)
+
+    e.set_additional_hyst_params(job['hyst_params'])
+    e.set_output(os.path.join(model_dir, job['name'] + hypy.TOOLS[job['printer']].default_ext()))
+
+    res = e.run(timeout=job['timeout'], print_stdout=True)
+
+    rv = _make_result(job, res['code'], res['time'])
+    rv['hyst_time'] = res.get('hyst_time')
+    rv['tool_time'] = res.get('tool_time')
+
+    with open(result_path, 'w') as f:
+        json.dump(rv, f)
+
+def write_results(results, output_dir):
+    '''
+    write the result tables to output_dir:
+
+    results.json and results.csv - one row per job
+    times.csv - total time of each model (row) with each printer (column), or the code if the job
+                didn't succeed
+    '''
+
+    with open(os.path.join(output_dir, 'results.json'), 'w') as f:
+        json.dump(results, f, indent=2)
+
+    with open(os.path.join(output_dir, 'results.csv'), 'w') as f:
+        writer = csv.writer(f)
+        writer.writerow(RESULT_COLUMNS)
+
+        for r in results:
+            writer.writerow([r.get(col) for col in RESULT_COLUMNS])
+
+    models = []
+    printers = []
+    table = {}
+
+    for r in results:
+        row = (r['model'], r['passes'], r['params'])
+
+        if row not in table:
+            models.append(row)
+            table[row] = {}
+
+        if r['printer'] not in printers:
+            printers.append(r['printer'])
+
+        table[row][r['printer']] = r['time'] if r['code'] == Engine.SUCCESS else r['code']
+
+    with open(os.path.join(output_dir, 'times.csv'), 'w') as f:
+        writer = csv.writer(f)
+        writer.writerow(['model', 'passes', 'params'] + printers)
+
+        for row in models:
+            writer.writerow(list(row) + [table[row].get(p) for p in printers])
+
+def main():
+    '''if batch is run directly'''
+
+    if len(sys.argv) > 1 and sys.argv[1] == '--run_job':
+        _run_job_main(sys.argv[2], sys.argv[3], sys.argv[4])
+        return 0
+
+    parser = argparse.ArgumentParser(description='Run a batch of hypy jobs from a manifest.')
+    parser.add_argument('manifest', help='the manifest .json file of jobs')
+    parser.add_argument('--jobs', '-j', type=int, metavar='N', help='number of jobs to run at once (default: cpus)')
+    parser.add_argument('--output_dir', '-o', metavar='PATH', default='batch_result',
+                        help='where to write logs, models and result tables')
+    parser.add_argument('--cache_dir', '-c', metavar='PATH', help='result cache directory (default: output_dir/cache)')
+    parser.add_argument('--no_cache', action='store_true', help='run every job, and do not cache results')
+
+    args = parser.parse_args()
+
+    cache_dir = None
+
+    if not args.no_cache:
+        cache_dir = args.cache_dir if args.cache_dir is not None else os.path.join(args.output_dir, 'cache')
+
+    jobs = load_manifest(args.manifest)
+    start_time = time.time()
+
+    results = run_batch(jobs, args.output_dir, cache_dir, args.jobs)
+    write_results(results, args.output_dir)
+
+    failed = len([r for r in results if r['code'] != Engine.SUCCESS])
+
+    print("Batch finished in {:.1f} sec: {} jobs, {} not successful. Results in {}".format(
+        time.time() - start_time, len(results), failed, args.output_dir))
+
+    return 0 if failed == 0 else 1
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -13,8 +13,12 @@ import matplotlib.pyplot as plt
 from matplotlib import colors
 import random
 from scipy.integrate import ode # pylint false positive
+import scipy.integrate
 import numpy as np
 
+# solver names which use dense output (scipy.integrate OdeSolver classes), rather than scipy's ode
+DENSE_SOLVERS = ['RK45', 'RK23', 'DOP853', 'Radau', 'BDF', 'LSODA']
+
 class PySimSettings(object):
     'A pysim settings containts'
 
@@ -24,6 +28,7 @@ class PySimSettings(object):
         self.dim_x = 0
         self.dim_y = 1
         self.filename = "plot.png"
+        self.solver = 'vode' # an ode integrator name like 'vode', or a dense solver in DENSE_SOLVERS
 
 class SimulationException(Exception):
     'An error which stops the simulation from progressing'
@@ -64,6 +69,87 @@ class ModeSim(object):
     def __repr__(self):
         return str(self)
 
+class DenseOutputSolver(object):
+    '''
+    Wraps one of scipy's OdeSolver classes (like RK45) with the parts of the interface of scipy's ode
+    object used by the simulation: t, y, set_initial_value, integrate(max_time, step=True) and
+    successful().
+
+    After each step, sol is the step's dense output, an interpolant that gives the state at any
+    time between the start and end of the step. This is used to find event times without
+    integrating again (see find_event_dense).
+    '''
+
+    def __init__(self, der, solver_name, max_step):
+        self.der = der
+        self.solver_class = getattr(scipy.integrate, solver_name)
+        self.max_step = max_step
+
+        self.t = None
+        self.y = None
+        self.sol = None # dense output of the last step
+
+        self._stepper = None # created on the first step, as it needs the final time
+        self._t_bound = None
+        self._failed = False
+        self.message = None # error message if a step failed
+
+    def set_initial_value(self, y, t=0.0):
+        'set the current state and time'
+
+        self.y = np.array(y, dtype=float)
+        self.t = t
+        self._stepper = None
+        self._failed = False
+
+        return self
+
+    def integrate(self, max_time, step=True):
+        '''
+        take a single step towards max_time (only step=True is supported). Unlike scipy's ode, the
+        step never goes past max_time.
+        '''
+
+        assert step, "DenseOutputSolver only supports taking single steps"
+
+        if self._stepper is None or self._t_bound != max_time:
+            self._stepper = self.solver_class(self.der, self.t, self.y, max_time, max_step=self.max_step)
+            self._t_bound = max_time
+
+        message = self._stepper.step()
+
+        if self._stepper.status == 'failed':
+            self._failed = True
+            self.message = message
+        else:
+            self.sol = self._stepper.dense_output()
+            self.t = self._stepper.t
+            self.y = self._stepper.y.copy()
+
+        return self.y
+
+    def successful(self):
+        'was the last step successful?'
+
+        return not self._failed
+
+def make_solver(der, solver_name, max_step, state, time):
+    '''
+    create an ode solver at the given state and time. solver_name is either an integrator name of
+    scipy's ode (like 'vode'), or one of the DENSE_SOLVERS (like 'RK45'), in which case events are found
+    by using the dense output of each step.
+    '''
+
+    if solver_name in DENSE_SOLVERS:
+        rv = DenseOutputSolver(der, solver_name, max_step)
+    else:
+        rv = ode(der)
+        rv.set_integrator(solver_name, max_step=max_step)
+
+    rv.set_initial_value(state, time)
+
+    return rv
+
 def get_active_transitions(mode, state):
     '''
     get the transitions that are active in the given state
@@ -110,6 +196,34 @@ def find_event_bisection(solver, event_func, init_value, init_time, cross_delta,
         else:
             return find_event_bisection(solver, event_func, mid_value, mid_time, mid_delta, cross_value, tol)
 
+def find_event_dense(solver, event_func, init_time, tol=1e-9):
+    '''
+    find a discrete event's time / value within the last step of a DenseOutputSolver, by bisection
+    on the step's interpolant. This gives the same result as find_event_bisection, without
+    integrating again at each bisection step.
+
+    event_func is a function which takes in the state, and returns True if the event occurred. It
+    should be False at init_time and True at solver.t. This modifies the solver object so that upon
+    returning, solver.t and solver.y are the first state found where event_func is True.
+    '''
+
+    sol = solver.sol
+    low = init_time
+    high = solver.t
+    high_value = solver.y
+
+    while high - low >= tol:
+        mid = (low + high) / 2.0
+        mid_value = sol(mid)
+
+        if event_func(mid_value):
+            high = mid
+            high_value = mid_value
+        else:
+            low = mid
+
+    solver.set_initial_value(high_value, high)
+
 def solver_over_max_time(solver, max_time, init_time, init_state):
     '''
     The solver went over the maximum solving time, interpolate between the last two pointer to be
@@ -194,8 +308,11 @@ def simulate_step(mode, solver, max_time, events, jump_error_tol=1e-9):
             if event_func(solver.y):
                 step_size = solver.t - init_time
 
-                find_event_bisection(solver, event_func, init_state, init_time, 
-                                     step_size, solver.y, tol=jump_error_tol)
+                if isinstance(solver, DenseOutputSolver):
+                    find_event_dense(solver, event_func, init_time, tol=jump_error_tol)
+                else:
+                    find_event_bisection(solver, event_func, init_state, init_time, 
+                                         step_size, solver.y, tol=jump_error_tol)
 
         # check for unbounded state
         bounds = 1e15
@@ -403,7 +520,8 @@ def simulate_one(q, end_time, max_jumps=500, solver_name='vode', jump_error_tol=
     q - a symbolic state: (AutomatonMode, point), where point is [x_0, ..., x_n]
     end_time - the total desired simulation time (discrete events may reduce the actual time)
     max_jumps - the maximum number of discrete sub-steps, if None, a default 1e-10 is used
-    solver_name - the ode solver to use (parameter of scipy's set_integrator)
+    solver_name - the ode solver to use (parameter of scipy's set_integrator), or one of DENSE_SOLVERS
+                  (like 'RK45') to find events using the dense output of each step
     jump_error_tol - the time-error allowed on jumps
     reraise_errors - should fatal simulation errors be raised as SimulationExceptions? if False they're printed out
     max_step - the maximum step time. If None, (end_time / 100) is used.
@@ -426,9 +544,7 @@ def simulate_one(q, end_time, max_jumps=500, solver_name='vode', jump_error_tol=
         raise RuntimeError("max_time should be greater than zero: {!s}".format(end_time))
 
     mode = q[0]
-    solver = ode(mode.der)
-    solver.set_integrator(solver_name, max_step=max_step)
-    solver.set_initial_value(q[1], 0)
+    solver = make_solver(mode.der, solver_name, max_step, q[1], 0)
 
     jumps_left = max_jumps
     traces = []
@@ -466,9 +582,7 @@ def simulate_one(q, end_time, max_jumps=500, solver_name='vode', jump_error_tol=
                 if jumps_left < 0:
                     raise SimulationException('Max jumps ({}) reached'.format(max_jumps))
 
-                solver = ode(mode.der)
-                solver.set_integrator(solver_name, max_step=max_step)
-                solver.set_initial_value(state, jump_time)
+                solver = make_solver(mode.der, solver_name, max_step, state, jump_time)
 
             else: # continuous post
                 points.append(solver.y)
@@ -1,9 +1,29 @@
 '''Unit tests for the pysim module'''
 from builtins import str
 
+import math
 import unittest
-from hybridpy.pysim.hybrid_automaton import HyperRectangle
-from hybridpy.pysim.simulate import init_list_to_q_list
+from hybridpy.pysim.hybrid_automaton import HyperRectangle, HybridAutomaton
+from hybridpy.pysim.simulate import init_list_to_q_list, simulate_one
+
+GRAVITY = 9.81
+
+def make_bouncing_ball():
+    'a ball dropped from x = 10, which bounces (guard x <= 0 and v < 0) and loses some speed'
+
+    ha = HybridAutomaton()
+    ha.modes = {} # the class attributes are shared between automata
+    ha.transitions = []
+
+    fall = ha.new_mode('fall')
+    fall.der = lambda _, state: [state[1], -GRAVITY]
+    fall.inv = lambda state: True
+
+    t = ha.new_transition(fall, fall, 'bounce')
+    t.guard = lambda state: state[0] <= 0 and state[1] < 0
+    t.reset = lambda state: [None, -0.75 * state[1]]
+
+    return ha
 
 class TestPySim(unittest.TestCase):
     'Unit tests for pysim'
@@ -38,5 +58,44 @@ class TestPySim(unittest.TestCase):
 
         self.assertTrue(len(s) == 8, 'unique_corners() did not give unique points')
 
+    def test_dense_solver_matches_vode(self):
+        'the event times and simulation with a dense-output solver should match vode'
+
+        ha = make_bouncing_ball()
+        q = (ha.modes['fall'], [10.0, 0.0])
+        end_time = 5.0
+
+        vode = simulate_one(q, end_time, solver_name='vode', reraise_errors=True)
+        dense = simulate_one(q, end_time, solver_name='RK45', reraise_errors=True)
+
+        # the bounces are at t1 = sqrt(2 * 10 / g) and t1 + 1.5 * t1
+        first = math.sqrt(2 * 10.0 / GRAVITY)
+        expected_times = [first, 2.5 * first]
+
+        for res in [vode, dense]:
+            self.assertEqual([ms.mode_name for ms in res['traces']], ['fall', 'fall', 'fall'])
+            self.assertEqual([e.text for e in res['events']], ['Init', 'bounce', 'bounce', 'End'])
+
+            jump_times = [ms.times[0] for ms in res['traces'][1:]]
+
+            for time, expected in zip(jump_times, expected_times):
+                self.assertAlmostEqual(time, expected, delta=1e-3)
+
+            self.assertAlmostEqual(res['traces'][-1].times[-1], end_time, delta=1e-9)
+
+        # same sequence of mode simulations and events, at nearby points
+        for vode_ms, dense_ms in zip(vode['traces'], dense['traces']):
+            self.assertEqual(vode_ms.mode_name, dense_ms.mode_name)
+            self.assertAlmostEqual(vode_ms.times[0], dense_ms.times[0], delta=1e-3)
+
+            for a, b in zip(vode_ms.points[-1], dense_ms.points[-1]):
+                self.assertAlmostEqual(a, b, delta=1e-2)
+
+        for vode_event, dense_event in zip(vode['events'], dense['events']):
+            self.assertEqual(vode_event.text, dense_event.text)
+
+            for a, b in zip(vode_event.point, dense_event.point):
+                self.assertAlmostEqual(a, b, delta=1e-2)
+
 if __name__ == '__main__':
     unittest.main()
@@ -0,0 +1,109 @@
+'''
+Unit tests for the hypy batch runner.
+'''
+
+import unittest
+import os
+import json
+import shutil
+import tempfile
+
+# assumes hybridpy is on your PYTHONPATH
+import hybridpy.batch as batch
+from hybridpy.hypy import Engine
+
+class TestBatch(unittest.TestCase):
+    'Unit tests for the batch runner'
+
+    def setUp(self):
+        self.temp_dir = tempfile.mkdtemp()
+        self.model = os.path.join(self.temp_dir, 'model.xml')
+
+        with open(self.model, 'w') as f:
+            f.write('<sspaceex/>')
+
+    def tearDown(self):
+        shutil.rmtree(self.temp_dir)
+
+    def test_make_jobs(self):
+        'test manifest defaults, printer lists and unique job names'
+
+        manifest = {'defaults': {'timeout': 60},
+                    'jobs': [{'model': 'model.xml', 'printer': ['pysim', 'flowstar']},
+                             {'model': 'model.xml', 'printer': 'pysim', 'passes': [['pi', '-times 1']]},
+                             {'gen': ['drivetrain', '-theta 2'], 'printer': 'spaceex', 'timeout': 5}]}
+
+        jobs = batch.make_jobs(manifest, self.temp_dir)
+
+        self.assertEqual([j['name'] for j in jobs], ['model_pysim', 'model_flowstar', 'model_pysim_2',
+                                                     'drivetrain_spaceex'])
+        self.assertEqual(jobs[0]['model'], os.path.realpath(self.model))
+        self.assertEqual(jobs[1]['timeout'], 60)
+        self.assertEqual(jobs[3]['timeout'], 5)
+
+        self.assertRaises(RuntimeError, batch.make_jobs, [{'printer': 'pysim'}])
+        self.assertRaises(RuntimeError, batch.make_jobs, [{'model': 'a.xml', 'printer': 'nosuchtool'}])
+
+    def test_cache_key(self):
+        'test that the cache key changes with the model file and passes'
+
+        job = batch.make_jobs([{'model': 'model.xml', 'printer': 'pysim'}], self.temp_dir)[0]
+        key = batch.CacheKeys().key(job)
+
+        self.assertEqual(key, batch.CacheKeys().key(job))
+
+        job['passes'] = [['simplify', '']]
+        self.assertNotEqual(key, batch.CacheKeys().key(job))
+        job['passes'] = []
+
+        with open(self.model, 'w') as f:
+            f.write('<sspaceex>changed</sspaceex>')
+
+        self.assertNotEqual(key, batch.CacheKeys().key(job))
+
+    def test_run_batch_cached(self):
+        'test that unchanged jobs are skipped using the cache, and the result tables'
+
+        runs = []
+
+        def fake_run(task):
+            'record the job instead of running it'
+            job = task[0]
+            runs.append(job['name'])
+
+            rv = batch._make_result(job, Engine.SUCCESS if job['printer'] == 'pysim' else batch.TIMEOUT_JOB, 1.5)
+            rv['tool_time'] = 1.0
+
+            return rv
+
+        manifest = [{'model': 'model.xml', 'printer': ['pysim', 'flowstar']}]
+        out_dir = os.path.join(self.temp_dir, 'out')
+        cache_dir = os.path.join(self.temp_dir, 'cache')
+
+        jobs = batch.make_jobs(manifest, self.temp_dir)
+        results = batch.run_batch(jobs, out_dir, cache_dir, 1, fake_run, print_progress=False)
+
+        self.assertEqual(runs, ['model_pysim', 'model_flowstar'])
+        self.assertEqual([r['cached'] for r in results], [False, False])
+
+        # the successful job is cached, the job which timed out is run again
+        jobs = batch.make_jobs(manifest, self.temp_dir)
+        results = batch.run_batch(jobs, out_dir, cache_dir, 1, fake_run, print_progress=False)
+
+        self.assertEqual(runs, ['model_pysim', 'model_flowstar', 'model_flowstar'])
+        self.assertEqual([r['cached'] for r in results], [True, False])
+        self.assertEqual(results[0]['code'], Engine.SUCCESS)
+
+        batch.write_results(results, out_dir)
+
+        with open(os.path.join(out_dir, 'results.json')) as f:
+            self.assertEqual(len(json.load(f)), 2)
+
+        with open(os.path.join(out_dir, 'times.csv')) as f:
+            lines = f.read().splitlines()
+
+        self.assertEqual(lines[0], 'model,passes,params,pysim,flowstar')
+        self.assertTrue(lines[1].endswith(',1.5,' + batch.TIMEOUT_JOB))
+
+if __name__ == '__main__':
+    unittest.main()
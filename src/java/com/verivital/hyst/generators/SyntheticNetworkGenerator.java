@@ -0,0 +1,368 @@
+package com.verivital.hyst.generators;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.kohsuke.args4j.Option;
+
+import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.FormulaParser;
+import com.verivital.hyst.grammar.formula.Operation;
+import com.verivital.hyst.grammar.formula.Operator;
+import com.verivital.hyst.grammar.formula.Variable;
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.Component;
+import com.verivital.hyst.ir.Configuration;
+import com.verivital.hyst.ir.base.AutomatonMode;
+import com.verivital.hyst.ir.base.AutomatonTransition;
+import com.verivital.hyst.ir.base.BaseComponent;
+import com.verivital.hyst.ir.base.ExpressionInterval;
+import com.verivital.hyst.ir.network.ComponentInstance;
+import com.verivital.hyst.ir.network.ComponentMapping;
+import com.verivital.hyst.ir.network.NetworkComponent;
+
+/**
+ * Generates random (but reproducible, given the seed) networks of hybrid automata, for scaling and
+ * stress tests of flattening, validation and printing.
+ *
+ * Base component ci has variables xi_0 ... xi_(v-1), modes m0 ... m(k-1) connected in a ring (plus
+ * some random extra transitions), and a constant ki, which is used in guards and given a value at
+ * the root. Each component also reads the first variable of the next component, so the
+ * components are coupled. A fraction of the transitions are labeled with one of the shared labels
+ * sync0, sync1, ..., which makes them synchronize when the network is flattened.
+ *
+ * The base components are grouped into a tree of network components of the given depth, where
+ * each network component maps its children's variables, labels and constants to ones with the same
+ * name.
+ */
+public class SyntheticNetworkGenerator extends ModelGenerator
+{
+	@Option(name = "-seed", usage = "random seed", metaVar = "NUM")
+	private long seed = 0;
+
+	@Option(name = "-components", usage = "number of base components", metaVar = "NUM")
+	private int numComponents = 4;
+
+	@Option(name = "-modes", usage = "number of modes in each base component", metaVar = "NUM")
+	private int numModes = 3;
+
+	@Option(name = "-vars", usage = "number of variables in each base component", metaVar = "NUM")
+	private int numVars = 2;
+
+	@Option(name = "-labels", usage = "number of shared labels", metaVar = "NUM")
+	private int numLabels = 2;
+
+	@Option(name = "-label_density", usage = "fraction of transitions with a shared label (0-1)", metaVar = "FRAC")
+	private double labelDensity = 0.3;
+
+	@Option(name = "-nonlinear", usage = "fraction of flows with nonlinear terms (0-1)", metaVar = "FRAC")
+	private double nonlinear = 0;
+
+	@Option(name = "-depth", usage = "number of levels of network components above the base components", metaVar = "NUM")
+	private int depth = 1;
+
+	@Option(name = "-branching", usage = "number of children of each network component, except the lowest level", metaVar = "NUM")
+	private int branching = 2;
+
+	private Random rand;
+	private int networkCount;
+
+	@Override
+	public String getCommandLineFlag()
+	{
+		return "synthetic_network";
+	}
+
+	@Override
+	public String getName()
+	{
+		return "Synthetic Network";
+	}
+
+	@Override
+	public String getLongHelp()
+	{
+		return "A random network of coupled base components with shared labels, for scaling tests. "
+				+ "The same parameters (including the seed) always produce the same model.";
+	}
+
+	@Override
+	protected Configuration generateModel()
+	{
+		checkParams();
+
+		rand = new Random(seed);
+		networkCount = 0;
+
+		ArrayList<BaseComponent> leaves = new ArrayList<BaseComponent>();
+
+		for (int i = 0; i < numComponents; ++i)
+			leaves.add(makeComponent(i));
+
+		NetworkComponent root = makeNetwork(leaves, 1);
+		Configuration c = new Configuration(root);
+
+		// constant values are only assigned at the root
+		for (String name : root.constants.keySet())
+			root.constants.put(name, new Interval(round(0.5 + rand.nextDouble())));
+
+		// each base component starts in its first mode, the modes are in preorder (same as leaves)
+		StringBuilder initMode = new StringBuilder();
+		ArrayList<Expression> initTerms = new ArrayList<Expression>();
+
+		for (int i = 0; i < numComponents; ++i)
+		{
+			if (i > 0)
+				initMode.append(".");
+
+			initMode.append(leaves.get(i).modes.keySet().iterator().next());
+
+			for (int v = 0; v < numVars; ++v)
+			{
+				Variable var = new Variable(varName(i, v));
+
+				initTerms.add(new Operation(Operator.GREATEREQUAL, var, new Constant(0)));
+				initTerms.add(new Operation(Operator.LESSEQUAL, var.copy(), new Constant(0.1)));
+			}
+		}
+
+		c.init.put(initMode.toString(), new Operation(Operator.AND, initTerms));
+
+		c.settings.plotVariableNames[0] = varName(0, 0);
+		c.settings.plotVariableNames[1] = varName(numComponents > 1 ? 1 : 0,
+				numComponents > 1 || numVars == 1 ? 0 : 1);
+
+		c.settings.spaceExConfig.timeHorizon = 10;
+		c.settings.spaceExConfig.samplingTime = 0.1;
+
+		return c;
+	}
+
+	private void checkParams()
+	{
+		if (numComponents < 1)
+			throw new AutomatonExportException("Number of components must be positive: "
+					+ numComponents);
+
+		if (numModes < 1)
+			throw new AutomatonExportException("Number of modes must be positive: " + numModes);
+
+		if (numVars < 1)
+			throw new AutomatonExportException("Number of variables must be positive: " + numVars);
+
+		if (numLabels < 0)
+			throw new AutomatonExportException("Number of labels must be nonnegative: "
+					+ numLabels);
+
+		if (labelDensity < 0 || labelDensity > 1)
+			throw new AutomatonExportException("Label density must be between 0 and 1: "
+					+ labelDensity);
+
+		if (nonlinear < 0 || nonlinear > 1)
+			throw new AutomatonExportException("Nonlinear fraction must be between 0 and 1: "
+					+ nonlinear);
+
+		if (depth < 1)
+			throw new AutomatonExportException("Depth must be positive: " + depth);
+
+		if (branching < 2)
+			throw new AutomatonExportException("Branching must be at least 2: " + branching);
+	}
+
+	private static String varName(int component, int var)
+	{
+		return "x" + component + "_" + var;
+	}
+
+	private static double round(double d)
+	{
+		return Math.round(d * 100) / 100.0;
+	}
+
+	private String randomCoefficient()
+	{
+		return String.format(Locale.ENGLISH, "%.2f", 0.1 + 0.9 * rand.nextDouble());
+	}
+
+	/**
+	 * Create base component i
+	 */
+	private BaseComponent makeComponent(int i)
+	{
+		BaseComponent ha = new BaseComponent();
+		String constName = "k" + i;
+
+		ha.instanceName = "c" + i;
+		ha.constants.put(constName, null); // mapped from the root
+
+		for (int v = 0; v < numVars; ++v)
+			ha.variables.add(varName(i, v));
+
+		String input = null;
+
+		if (numComponents > 1)
+		{
+			input = varName((i + 1) % numComponents, 0);
+			ha.variables.add(input);
+		}
+
+		String x = varName(i, 0);
+		String y = varName(i, numVars > 1 ? 1 : 0);
+		ArrayList<AutomatonMode> modes = new ArrayList<AutomatonMode>();
+
+		for (int m = 0; m < numModes; ++m)
+		{
+			AutomatonMode am = ha.createMode("m" + m);
+			am.invariant = FormulaParser.parseInvariant(x + " <= 10 & " + x + " >= -10");
+
+			// the input is only read, its dynamics are defined by the component that owns it
+			if (input != null)
+				am.flowDynamics.remove(input);
+
+			for (int v = 0; v < numVars; ++v)
+				am.flowDynamics.put(varName(i, v),
+						new ExpressionInterval(makeFlow(i, v, input, m % 2 == 0)));
+
+			modes.add(am);
+		}
+
+		LinkedHashSet<String> usedLabels = new LinkedHashSet<String>();
+
+		for (int m = 0; m < numModes; ++m)
+		{
+			AutomatonMode from = modes.get(m);
+			AutomatonMode to = modes.get((m + 1) % numModes);
+
+			// ring transition, which resets the first variable
+			AutomatonTransition t = ha.createTransition(from, to);
+			t.guard = FormulaParser.parseGuard(x + " >= " + constName);
+			t.reset.put(x, new ExpressionInterval(0));
+			addLabel(t, usedLabels);
+
+			// random extra transition
+			if (rand.nextBoolean())
+			{
+				t = ha.createTransition(from, modes.get(rand.nextInt(numModes)));
+				t.guard = FormulaParser.parseGuard(y + " <= -" + constName);
+				addLabel(t, usedLabels);
+			}
+		}
+
+		// only declare the labels which are used, like a hand-written component would
+		ha.labels.addAll(usedLabels);
+
+		return ha;
+	}
+
+	private void addLabel(AutomatonTransition t, LinkedHashSet<String> usedLabels)
+	{
+		if (numLabels > 0 && rand.nextDouble() < labelDensity)
+		{
+			t.label = "sync" + rand.nextInt(numLabels);
+			usedLabels.add(t.label);
+		}
+	}
+
+	/**
+	 * Make the flow for variable v of component i. Each variable decays, is driven by the next
+	 * variable of its component (or the input, for the last one), and has a mode-dependent offset.
+	 */
+	private String makeFlow(int i, int v, String input, boolean positiveOffset)
+	{
+		String var = varName(i, v);
+		String driver = (v + 1 < numVars) ? varName(i, v + 1) : input;
+		StringBuilder rv = new StringBuilder();
+
+		rv.append("-" + randomCoefficient() + " * " + var);
+
+		if (driver != null)
+			rv.append(" + " + randomCoefficient() + " * " + driver);
+
+		rv.append((positiveOffset ? " + " : " - ") + randomCoefficient());
+
+		if (rand.nextDouble() < nonlinear)
+		{
+			String other = (driver != null) ? driver : var;
+
+			if (rand.nextBoolean())
+				rv.append(" - " + randomCoefficient() + " * " + var + " * " + other);
+			else
+				rv.append(" + " + randomCoefficient() + " * sin(" + other + ")");
+		}
+
+		return rv.toString();
+	}
+
+	/**
+	 * Create a network component containing the given base components. If level is less than the
+	 * depth, the base components are split into groups, each in its own sub-network.
+	 *
+	 * @param leaves
+	 *            the base components, in order
+	 * @param level
+	 *            the level of the network being created (1 is the root)
+	 * @return the network component (without an instance name)
+	 */
+	private NetworkComponent makeNetwork(List<BaseComponent> leaves, int level)
+	{
+		NetworkComponent rv = new NetworkComponent();
+		ArrayList<Component> children = new ArrayList<Component>();
+
+		if (level >= depth)
+			children.addAll(leaves);
+		else
+		{
+			int numGroups = Math.min(branching, leaves.size());
+
+			for (int g = 0; g < numGroups; ++g)
+			{
+				int from = g * leaves.size() / numGroups;
+				int to = (g + 1) * leaves.size() / numGroups;
+
+				NetworkComponent child = makeNetwork(leaves.subList(from, to), level + 1);
+				child.instanceName = "n" + networkCount++;
+				children.add(child);
+			}
+		}
+
+		// the network has the union of its children's names
+		LinkedHashSet<String> vars = new LinkedHashSet<String>();
+		LinkedHashSet<String> labels = new LinkedHashSet<String>();
+
+		for (Component child : children)
+		{
+			vars.addAll(child.variables);
+			labels.addAll(child.labels);
+
+			for (String name : child.constants.keySet())
+				rv.constants.put(name, null);
+		}
+
+		rv.variables.addAll(vars);
+		rv.labels.addAll(labels);
+
+		for (Component child : children)
+		{
+			ComponentInstance ci = new ComponentInstance(rv, child);
+			child.parent = rv;
+
+			for (String name : child.variables)
+				ci.varMapping.add(new ComponentMapping(name, name));
+
+			for (String name : child.labels)
+				ci.labelMapping.add(new ComponentMapping(name, name));
+
+			for (String name : child.constants.keySet())
+				ci.constMapping.add(new ComponentMapping(name, name));
+
+			rv.children.put(child.instanceName, ci);
+		}
+
+		return rv;
+	}
+}
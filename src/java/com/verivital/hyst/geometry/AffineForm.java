@@ -0,0 +1,579 @@
+package com.verivital.hyst.geometry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.LutExpression;
+import com.verivital.hyst.grammar.formula.Operation;
+import com.verivital.hyst.grammar.formula.Operator;
+import com.verivital.hyst.grammar.formula.Variable;
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.util.LutInterpolator;
+
+/**
+ * An affine form x0 + x1 * e1 + ... + xn * en, where x0 is the center and each noise symbol ei is
+ * an unknown in [-1, 1]. Noise symbols are shared between forms, so correlations are kept: with
+ * x = 0.5 + 0.5 * e1 on [0, 1], x - x is exactly 0 and x * (1 - x) is bounded by [0, 0.5], where
+ * plain interval arithmetic gives [-1, 1] and [0, 1].
+ *
+ * Linear operations are exact (up to rounding). Nonlinear operations (multiplication, exp, ln,
+ * sqrt, 1/x) use a linear approximation, whose error is put on a new noise symbol. Operations
+ * without a good linear approximation (sin, cos, pow, lookup tables) fall back to interval
+ * arithmetic on the argument. Floating-point rounding is accounted for by adding the ulp of every
+ * computed coefficient to the new symbol.
+ *
+ * Affine forms are immutable.
+ */
+public class AffineForm
+{
+	private static final AtomicLong nextSymbol = new AtomicLong(0);
+	private static final long[] NO_SYMBOLS = new long[0];
+	private static final double[] NO_COEFFS = new double[0];
+
+	private final double center;
+	private final long[] symbols; // sorted, distinct
+	private final double[] coeffs; // parallel to symbols, nonzero
+
+	private AffineForm(double center, long[] symbols, double[] coeffs)
+	{
+		this.center = center;
+		this.symbols = symbols;
+		this.coeffs = coeffs;
+	}
+
+	/**
+	 * Get a noise symbol which hasn't been used before
+	 */
+	public static long newSymbol()
+	{
+		return nextSymbol.getAndIncrement();
+	}
+
+	/**
+	 * Create a constant affine form
+	 */
+	public static AffineForm constant(double val)
+	{
+		return new AffineForm(val, NO_SYMBOLS, NO_COEFFS);
+	}
+
+	/**
+	 * Create an affine form for an interval, using a new noise symbol
+	 */
+	public static AffineForm fromInterval(Interval i)
+	{
+		return fromInterval(i, newSymbol());
+	}
+
+	/**
+	 * Create an affine form for an interval. Forms created with the same symbol are correlated (they
+	 * are the same unknown value).
+	 *
+	 * @param i
+	 *            the range of the value
+	 * @param symbol
+	 *            the noise symbol to use, from newSymbol()
+	 */
+	public static AffineForm fromInterval(Interval i, long symbol)
+	{
+		double mid = i.min / 2 + i.max / 2;
+		double rad = Math.max(i.max - mid, mid - i.min);
+		AffineForm rv;
+
+		if (rad == 0)
+			rv = constant(mid);
+		else
+			rv = new AffineForm(mid, new long[] { symbol }, new double[] { rad });
+
+		return rv;
+	}
+
+	public double getCenter()
+	{
+		return center;
+	}
+
+	/**
+	 * Get the coefficient of a noise symbol (0 if the symbol isn't used)
+	 */
+	public double getCoefficient(long symbol)
+	{
+		int index = Arrays.binarySearch(symbols, symbol);
+
+		return index >= 0 ? coeffs[index] : 0;
+	}
+
+	/**
+	 * Get the number of noise symbols in this form
+	 */
+	public int numSymbols()
+	{
+		return symbols.length;
+	}
+
+	/**
+	 * Get the total deviation from the center, the sum of the absolute coefficients
+	 */
+	public double radius()
+	{
+		double rv = 0;
+
+		for (double c : coeffs)
+			rv += Math.abs(c);
+
+		// round up
+		return rv + Math.ulp(rv) * coeffs.length;
+	}
+
+	/**
+	 * Get the range of values this form can take
+	 */
+	public Interval toInterval()
+	{
+		double rad = radius();
+
+		return new Interval(center - rad - Math.ulp(center), center + rad + Math.ulp(center));
+	}
+
+	public boolean isConstant()
+	{
+		return symbols.length == 0;
+	}
+
+	public AffineForm add(AffineForm other)
+	{
+		return combine(1, other, 1, 0, 0);
+	}
+
+	public AffineForm subtract(AffineForm other)
+	{
+		return combine(1, other, -1, 0, 0);
+	}
+
+	public AffineForm negate()
+	{
+		double[] c = new double[coeffs.length];
+
+		for (int i = 0; i < c.length; ++i)
+			c[i] = -coeffs[i];
+
+		return new AffineForm(-center, symbols, c);
+	}
+
+	public AffineForm add(double val)
+	{
+		return scale(1, val, 0);
+	}
+
+	public AffineForm multiply(double val)
+	{
+		return scale(val, 0, 0);
+	}
+
+	/**
+	 * Multiply two forms. The linear part is kept, and the product of the deviations is bounded by
+	 * the product of the radii.
+	 */
+	public AffineForm multiply(AffineForm other)
+	{
+		AffineForm rv;
+
+		if (other.isConstant())
+			rv = multiply(other.center);
+		else if (isConstant())
+			rv = other.multiply(center);
+		else
+			rv = combine(other.center, other, center, -center * other.center,
+					radius() * other.radius());
+
+		return rv;
+	}
+
+	/**
+	 * Get 1 / this. The range may not contain zero.
+	 */
+	public AffineForm reciprocal()
+	{
+		Interval i = toInterval();
+		AffineForm rv;
+
+		if (i.min <= 0 && i.max >= 0)
+			throw new AutomatonExportException("Affine division contains zero in denominator.");
+
+		if (i.max < 0)
+			rv = negate().reciprocal().negate();
+		else
+		{
+			// convex and decreasing: use the (smaller magnitude) slope at the max
+			double a = i.min, b = i.max;
+			rv = minRange(i, -1 / (b * b), 1 / a, 1 / b);
+		}
+
+		return rv;
+	}
+
+	public AffineForm divide(AffineForm other)
+	{
+		AffineForm rv;
+
+		if (other.isConstant())
+		{
+			if (other.center == 0)
+				throw new AutomatonExportException(
+						"Affine division contains zero in denominator.");
+
+			rv = multiply(1 / other.center);
+		}
+		else
+			rv = multiply(other.reciprocal());
+
+		return rv;
+	}
+
+	public AffineForm exp()
+	{
+		Interval i = toInterval();
+		double ea = Math.exp(i.min), eb = Math.exp(i.max);
+
+		// convex and increasing: use the slope at the min
+		return minRange(i, ea, ea, eb);
+	}
+
+	public AffineForm ln()
+	{
+		Interval i = toInterval();
+
+		if (i.min <= 0)
+			throw new AutomatonExportException("Affine evaluate of ln with min <= 0: " + i.min);
+
+		// concave and increasing: use the slope at the max
+		return minRange(i, 1 / i.max, Math.log(i.min), Math.log(i.max));
+	}
+
+	public AffineForm sqrt()
+	{
+		Interval i = toInterval();
+
+		if (i.min < 0)
+			throw new AutomatonExportException("Affine evaluate of sqrt with min < 0: " + i.min);
+
+		double sb = Math.sqrt(i.max);
+
+		// concave and increasing: use the slope at the max
+		return minRange(i, sb == 0 ? 0 : 0.5 / sb, Math.sqrt(i.min), sb);
+	}
+
+	/**
+	 * Raise this to a nonnegative integer power
+	 */
+	public AffineForm pow(int n)
+	{
+		if (n < 0)
+			throw new AutomatonExportException("Only nonnegative integer exponents are supported: "
+					+ n);
+
+		// binary exponentiation
+		AffineForm rv = constant(1);
+		AffineForm base = this;
+
+		for (int e = n; e > 0; e >>= 1)
+		{
+			if ((e & 1) == 1)
+				rv = rv.multiply(base);
+
+			if (e > 1)
+				base = base.multiply(base);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get a form for f(this), where f is monotonic on this form's range, and f(x) - alpha * x is
+	 * monotonic too (alpha is the slope of f at the endpoint where its magnitude is smaller). The
+	 * result is alpha * this + zeta + delta * e_new.
+	 *
+	 * @param i
+	 *            the range of this form
+	 * @param alpha
+	 *            the slope of the approximation
+	 * @param fa
+	 *            f(i.min)
+	 * @param fb
+	 *            f(i.max)
+	 */
+	private AffineForm minRange(Interval i, double alpha, double fa, double fb)
+	{
+		AffineForm rv;
+
+		if (i.min == i.max)
+			rv = constant(fa);
+		else
+		{
+			double ga = fa - alpha * i.min;
+			double gb = fb - alpha * i.max;
+			double lo = Math.min(ga, gb), hi = Math.max(ga, gb);
+			double zeta = lo / 2 + hi / 2;
+			double delta = Math.max(hi - zeta, zeta - lo);
+
+			rv = scale(alpha, zeta, delta + Math.ulp(ga) + Math.ulp(gb));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get a form from an interval, with a new noise symbol. This is used for operations without an
+	 * affine approximation.
+	 */
+	private static AffineForm fallback(Interval i)
+	{
+		return fromInterval(i);
+	}
+
+	/**
+	 * Get a * this + b, with extra error err on a new noise symbol
+	 */
+	private AffineForm scale(double a, double b, double err)
+	{
+		int n = symbols.length;
+		double c0 = a * center + b;
+		double[] c = new double[n];
+
+		err += Math.ulp(c0);
+
+		for (int i = 0; i < n; ++i)
+		{
+			c[i] = a * coeffs[i];
+			err += Math.ulp(c[i]);
+		}
+
+		return withError(c0, symbols, c, n, err);
+	}
+
+	/**
+	 * Get a * this + b * other + c0, with extra error err on a new noise symbol
+	 */
+	private AffineForm combine(double a, AffineForm other, double b, double c0, double err)
+	{
+		long[] rs = new long[symbols.length + other.symbols.length];
+		double[] rc = new double[rs.length];
+		int count = 0;
+		int i = 0, j = 0;
+
+		double rvCenter = a * center + b * other.center + c0;
+		err += Math.ulp(rvCenter) * 2;
+
+		while (i < symbols.length || j < other.symbols.length)
+		{
+			long s;
+			double val;
+
+			if (j == other.symbols.length
+					|| (i < symbols.length && symbols[i] < other.symbols[j]))
+			{
+				s = symbols[i];
+				val = a * coeffs[i++];
+			}
+			else if (i == symbols.length || other.symbols[j] < symbols[i])
+			{
+				s = other.symbols[j];
+				val = b * other.coeffs[j++];
+			}
+			else
+			{
+				s = symbols[i];
+				val = a * coeffs[i++] + b * other.coeffs[j++];
+				err += Math.ulp(val);
+			}
+
+			err += Math.ulp(val);
+
+			if (val != 0)
+			{
+				rs[count] = s;
+				rc[count++] = val;
+			}
+		}
+
+		return withError(rvCenter, rs, rc, count, err);
+	}
+
+	/**
+	 * Create a form from the first count symbols and coefficients, adding err on a new symbol (which
+	 * is larger than all existing ones, so the symbols stay sorted)
+	 */
+	private static AffineForm withError(double center, long[] s, double[] c, int count,
+			double err)
+	{
+		int size = count + (err > 0 ? 1 : 0);
+		long[] rs = (s.length == size) ? s : Arrays.copyOf(s, size);
+		double[] rc = (c.length == size) ? c : Arrays.copyOf(c, size);
+
+		if (err > 0)
+		{
+			rs[count] = newSymbol();
+			rc[count] = err;
+		}
+
+		return new AffineForm(center, rs, rc);
+	}
+
+	/**
+	 * Evaluate an expression in affine arithmetic. Each variable gets its own noise symbol, so
+	 * repeated occurrences of a variable are correlated.
+	 *
+	 * @param e
+	 *            the expression to evaluate
+	 * @param ranges
+	 *            the ranges for any variables in e
+	 * @return the resultant affine form
+	 */
+	public static AffineForm evaluate(Expression e, Map<String, Interval> ranges)
+	{
+		AffineForm rv = null;
+
+		try
+		{
+			rv = evaluateRec(e, ranges, new HashMap<String, AffineForm>());
+		}
+		catch (AutomatonExportException ex)
+		{
+			throw new AutomatonExportException("Error performing affine evaluation on expression: "
+					+ e.toDefaultString(), ex);
+		}
+
+		return rv;
+	}
+
+	private static AffineForm evaluateRec(Expression e, Map<String, Interval> ranges,
+			Map<String, AffineForm> vars)
+	{
+		AffineForm rv = null;
+
+		if (e instanceof Variable)
+		{
+			String varName = ((Variable) e).name;
+			rv = vars.get(varName);
+
+			if (rv == null)
+			{
+				Interval i = ranges.get(varName);
+
+				if (i == null)
+					throw new AutomatonExportException(
+							"Range of variable " + varName + " is needed, but wasn't provided.");
+
+				rv = fromInterval(i);
+				vars.put(varName, rv);
+			}
+		}
+		else if (e instanceof Constant)
+			rv = constant(((Constant) e).getVal());
+		else if (e instanceof Operation)
+		{
+			Operation o = e.asOperation();
+			int numChildren = o.children.size();
+
+			switch (o.op)
+			{
+			case ADD:
+			case MULTIPLY:
+			{
+				rv = evaluateRec(o.children.get(0), ranges, vars);
+
+				for (int i = 1; i < numChildren; ++i)
+				{
+					AffineForm next = evaluateRec(o.children.get(i), ranges, vars);
+					rv = (o.op == Operator.ADD) ? rv.add(next) : rv.multiply(next);
+				}
+				break;
+			}
+			case SUBTRACT:
+				rv = evaluateRec(o.getLeft(), ranges, vars)
+						.subtract(evaluateRec(o.getRight(), ranges, vars));
+				break;
+			case NEGATIVE:
+				rv = evaluateRec(o.children.get(0), ranges, vars).negate();
+				break;
+			case DIVIDE:
+			case LN:
+			case SQRT:
+			{
+				AffineForm left = evaluateRec(o.children.get(0), ranges, vars);
+
+				try
+				{
+					if (o.op == Operator.DIVIDE)
+						rv = left.divide(evaluateRec(o.getRight(), ranges, vars));
+					else if (o.op == Operator.LN)
+						rv = left.ln();
+					else
+						rv = left.sqrt();
+				}
+				catch (AutomatonExportException ex)
+				{
+					// the linear approximation error (or rounding) can put the argument's range
+					// slightly outside the domain, where the interval range is fine
+					rv = fallback(Interval.intervalEvaluate(e, ranges));
+				}
+				break;
+			}
+			case EXP:
+				rv = evaluateRec(o.children.get(0), ranges, vars).exp();
+				break;
+			case POW:
+			{
+				AffineForm base = evaluateRec(o.getLeft(), ranges, vars);
+				AffineForm exponent = evaluateRec(o.getRight(), ranges, vars);
+				double n = exponent.center;
+
+				if (exponent.isConstant() && n == Math.floor(n) && n >= 0 && n <= 64)
+					rv = base.pow((int) n);
+				else
+					rv = fallback(Interval.intervalPow(base.toInterval(), exponent.toInterval()));
+				break;
+			}
+			case SIN:
+				rv = fallback(Interval
+						.intervalSin(evaluateRec(o.children.get(0), ranges, vars).toInterval()));
+				break;
+			case COS:
+				rv = fallback(Interval
+						.intervalCos(evaluateRec(o.children.get(0), ranges, vars).toInterval()));
+				break;
+			default:
+				throw new AutomatonExportException("Operator is not supported: " + o.op.name());
+			}
+		}
+		else if (e instanceof LutExpression)
+		{
+			LutExpression lut = (LutExpression) e;
+			Interval[] inputs = new Interval[lut.inputs.length];
+
+			for (int i = 0; i < inputs.length; ++i)
+				inputs[i] = evaluateRec(lut.inputs[i], ranges, vars).toInterval();
+
+			rv = fallback(LutInterpolator.get(lut).evaluate(inputs));
+		}
+		else
+			throw new AutomatonExportException("Unsupported Expression Type: " + e);
+
+		return rv;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder rv = new StringBuilder("" + center);
+
+		for (int i = 0; i < symbols.length; ++i)
+			rv.append(" + " + coeffs[i] + "*e" + symbols[i]);
+
+		return rv.toString();
+	}
+}
@@ -0,0 +1,322 @@
+package com.verivital.hyst.geometry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A static R-tree over HyperRectangles, for finding which of many boxes intersect a query box
+ * without testing every one.
+ *
+ * The tree is bulk-loaded once with Sort-Tile-Recursive packing (Leutenegger et al.), and can't be
+ * modified afterwards. Boxes are closed, so boxes which only touch on a face intersect, which
+ * matches HyperRectangle.intersection().
+ *
+ * @param <T>
+ *            the type of the value stored with each box
+ */
+public class BoxIndex<T>
+{
+	private static final int DEFAULT_NODE_SIZE = 16;
+
+	private final int numDims;
+	private final int nodeSize;
+	private final ArrayList<T> values = new ArrayList<T>();
+	private final Node[] entryNodes; // the bounds of each box, by index
+	private Node root = null;
+
+	// a node of the tree; leaves have entries (indices into values), others have children
+	private static class Node
+	{
+		final double[] min;
+		final double[] max;
+		Node[] children = null;
+		int[] entries = null;
+
+		Node(int numDims)
+		{
+			min = new double[numDims];
+			max = new double[numDims];
+
+			Arrays.fill(min, Double.POSITIVE_INFINITY);
+			Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		}
+
+		void include(double[] otherMin, double[] otherMax)
+		{
+			for (int d = 0; d < min.length; ++d)
+			{
+				min[d] = Math.min(min[d], otherMin[d]);
+				max[d] = Math.max(max[d], otherMax[d]);
+			}
+		}
+	}
+
+	/**
+	 * Build an index over a list of boxes
+	 *
+	 * @param boxes
+	 *            the boxes, all with the same number of dimensions
+	 * @param values
+	 *            the value to store with each box (parallel to boxes)
+	 */
+	public BoxIndex(List<HyperRectangle> boxes, List<T> values)
+	{
+		this(boxes, values, DEFAULT_NODE_SIZE);
+	}
+
+	/**
+	 * Build an index over a list of boxes
+	 *
+	 * @param boxes
+	 *            the boxes, all with the same number of dimensions
+	 * @param values
+	 *            the value to store with each box (parallel to boxes)
+	 * @param nodeSize
+	 *            the maximum number of children of each node, at least 2
+	 */
+	public BoxIndex(List<HyperRectangle> boxes, List<T> values, int nodeSize)
+	{
+		if (boxes.size() != values.size())
+			throw new RuntimeException("BoxIndex got " + boxes.size() + " boxes but "
+					+ values.size() + " values");
+
+		if (nodeSize < 2)
+			throw new RuntimeException("BoxIndex node size must be at least 2: " + nodeSize);
+
+		this.nodeSize = nodeSize;
+		this.values.addAll(values);
+		numDims = boxes.isEmpty() ? 0 : boxes.get(0).dims.length;
+
+		// one node per box, which are packed into the leaves
+		entryNodes = new Node[boxes.size()];
+
+		for (int i = 0; i < boxes.size(); ++i)
+		{
+			HyperRectangle box = boxes.get(i);
+
+			if (box.dims.length != numDims)
+				throw new RuntimeException("BoxIndex requires all boxes to have the same number "
+						+ "of dimensions; box " + i + " had " + box.dims.length + ", expected "
+						+ numDims);
+
+			Node n = new Node(numDims);
+
+			for (int d = 0; d < numDims; ++d)
+			{
+				n.min[d] = box.dims[d].min;
+				n.max[d] = box.dims[d].max;
+			}
+
+			n.entries = new int[] { i };
+			entryNodes[i] = n;
+		}
+
+		ArrayList<Node> level = new ArrayList<Node>(Arrays.asList(entryNodes));
+
+		if (!level.isEmpty())
+		{
+			boolean leaves = true;
+
+			do
+			{
+				level = pack(level, leaves);
+				leaves = false;
+			} while (level.size() > 1);
+
+			root = level.get(0);
+		}
+	}
+
+	/**
+	 * Group a level of nodes into parent nodes of at most nodeSize each, using sort-tile-recursive
+	 */
+	private ArrayList<Node> pack(ArrayList<Node> level, boolean leaves)
+	{
+		ArrayList<Node> rv = new ArrayList<Node>();
+		ArrayList<List<Node>> groups = new ArrayList<List<Node>>();
+
+		tile(level, 0, groups);
+
+		for (List<Node> group : groups)
+		{
+			Node parent = new Node(numDims);
+
+			if (leaves)
+			{
+				parent.entries = new int[group.size()];
+
+				for (int i = 0; i < group.size(); ++i)
+					parent.entries[i] = group.get(i).entries[0];
+			}
+			else
+				parent.children = group.toArray(new Node[group.size()]);
+
+			for (Node n : group)
+				parent.include(n.min, n.max);
+
+			rv.add(parent);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Sort nodes along dimension dim and split them into slabs, recursing on the next dimension
+	 * within each slab; in the last dimension, the slabs are cut into groups of nodeSize
+	 */
+	private void tile(List<Node> nodes, final int dim, ArrayList<List<Node>> groups)
+	{
+		if (numDims > 0)
+		{
+			Collections.sort(nodes, new Comparator<Node>()
+			{
+				@Override
+				public int compare(Node a, Node b)
+				{
+					return Double.compare(center(a, dim), center(b, dim));
+				}
+			});
+		}
+
+		int size = nodes.size();
+
+		if (dim >= numDims - 1)
+		{
+			for (int start = 0; start < size; start += nodeSize)
+				groups.add(nodes.subList(start, Math.min(size, start + nodeSize)));
+		}
+		else
+		{
+			int numGroups = (size + nodeSize - 1) / nodeSize;
+			int numSlabs = (int) Math.ceil(Math.pow(numGroups, 1.0 / (numDims - dim)));
+			int slabSize = nodeSize * ((numGroups + numSlabs - 1) / numSlabs);
+
+			for (int start = 0; start < size; start += slabSize)
+				tile(nodes.subList(start, Math.min(size, start + slabSize)), dim + 1, groups);
+		}
+	}
+
+	private static double center(Node n, int dim)
+	{
+		// avoid overflow with unbounded (+/- Double.MAX_VALUE) dimensions
+		return n.min[dim] / 2 + n.max[dim] / 2;
+	}
+
+	/**
+	 * Get the number of boxes in the index
+	 */
+	public int size()
+	{
+		return values.size();
+	}
+
+	/**
+	 * Get the values of all the boxes which intersect a query box
+	 *
+	 * @param box
+	 *            the query box
+	 * @return the values of the intersecting boxes, in the order they were given to the constructor
+	 */
+	public List<T> query(HyperRectangle box)
+	{
+		ArrayList<T> rv = new ArrayList<T>();
+
+		for (int i : queryIndices(box))
+			rv.add(values.get(i));
+
+		return rv;
+	}
+
+	/**
+	 * Get the indices of all the boxes which intersect a query box
+	 *
+	 * @param box
+	 *            the query box
+	 * @return the indices (into the lists given to the constructor) of the intersecting boxes, in
+	 *         increasing order
+	 */
+	public int[] queryIndices(HyperRectangle box)
+	{
+		if (root != null && box.dims.length != numDims)
+			throw new RuntimeException("BoxIndex query had " + box.dims.length
+					+ " dimensions, expected " + numDims);
+
+		int[] rv = new int[8];
+		int count = 0;
+		ArrayDeque<Node> stack = new ArrayDeque<Node>();
+
+		if (root != null)
+			stack.push(root);
+
+		while (!stack.isEmpty())
+		{
+			Node n = stack.pop();
+
+			if (!intersects(n, box))
+				continue;
+
+			if (n.children != null)
+			{
+				for (Node c : n.children)
+					stack.push(c);
+			}
+			else
+			{
+				// if the query contains the whole leaf, it contains every entry
+				boolean all = contains(box, n);
+
+				for (int e : n.entries)
+				{
+					if (all || intersects(entryNodes[e], box))
+					{
+						if (count == rv.length)
+							rv = Arrays.copyOf(rv, rv.length * 2);
+
+						rv[count++] = e;
+					}
+				}
+			}
+		}
+
+		rv = Arrays.copyOf(rv, count);
+		Arrays.sort(rv);
+
+		return rv;
+	}
+
+	private static boolean intersects(Node n, HyperRectangle box)
+	{
+		boolean rv = true;
+
+		for (int d = 0; d < n.min.length; ++d)
+		{
+			if (box.dims[d].max < n.min[d] || box.dims[d].min > n.max[d])
+			{
+				rv = false;
+				break;
+			}
+		}
+
+		return rv;
+	}
+
+	private static boolean contains(HyperRectangle box, Node n)
+	{
+		boolean rv = true;
+
+		for (int d = 0; d < n.min.length; ++d)
+		{
+			if (n.min[d] < box.dims[d].min || n.max[d] > box.dims[d].max)
+			{
+				rv = false;
+				break;
+			}
+		}
+
+		return rv;
+	}
+}
@@ -4,9 +4,12 @@ import java.util.Map;
 
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.LutExpression;
 import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.SymbolTable;
+import com.verivital.hyst.util.LutInterpolator;
 
 /**
  * 
@@ -273,26 +276,98 @@ public class Interval
 
 		try
 		{
-			rv = intervalEvaluateRec(e, ranges);
+			rv = intervalEvaluateRec(e, ranges, null, null);
 		}
 		catch (AutomatonExportException ex)
 		{
-			throw new AutomatonExportException(
-					"Error performing interval evaluation on expression: " + e, ex);
+			throw new AutomatonExportException("Error performing interval evaluation on expression: "
+					+ e.toDefaultString(), ex);
 		}
 
 		return rv;
 	}
 
-	private static Interval intervalEvaluateRec(Expression e, Map<String, Interval> ranges)
+	/**
+	 * Perform an interval evaluation of the passed-in expression, with the variable ranges given by
+	 * symbol id. This avoids looking up each variable by name.
+	 * 
+	 * @param e
+	 *            the expression to evaluate
+	 * @param symbols
+	 *            the symbol table the ids are from
+	 * @param rangesById
+	 *            the range of each variable, indexed by id (entries may be null if the variable is
+	 *            not used)
+	 * @return the resultant range
+	 */
+	public static Interval intervalEvaluate(Expression e, SymbolTable symbols,
+			Interval[] rangesById)
+	{
+		Interval rv = null;
+
+		try
+		{
+			rv = intervalEvaluateRec(e, null, symbols, rangesById);
+		}
+		catch (AutomatonExportException ex)
+		{
+			throw new AutomatonExportException("Error performing interval evaluation on expression: "
+					+ e.toDefaultString(), ex);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Bound the passed-in expression using affine arithmetic (see AffineForm), which keeps track of
+	 * correlations between repeated variables, so terms like x - x or x * (1 - x) are bounded much
+	 * more tightly than with intervalEvaluate(). The result is intersected with the interval
+	 * evaluation, so it's never worse.
+	 * 
+	 * @param e
+	 *            the expression to evaluate
+	 * @param ranges
+	 *            the ranges for any variables in e
+	 * @return the resultant range
+	 */
+	public static Interval affineEvaluate(Expression e, Map<String, Interval> ranges)
+	{
+		Interval rv = intervalEvaluate(e, ranges);
+		Interval affine = AffineForm.evaluate(e, ranges).toInterval();
+
+		// affine forms of unbounded ranges can be NaN
+		if (!Double.isNaN(affine.min) && !Double.isNaN(affine.max))
+		{
+			Interval both = intersection(rv, affine);
+
+			if (both != null)
+				rv = both;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Recursive interval evaluation. Variable ranges are looked up by name in ranges, or if
+	 * symbols is not null, by id in rangesById.
+	 */
+	private static Interval intervalEvaluateRec(Expression e, Map<String, Interval> ranges,
+			SymbolTable symbols, Interval[] rangesById)
 	{
 		Interval rv = null;
 
 		if (e instanceof Variable)
 		{
 			String varName = ((Variable) e).name;
+			Interval i;
 
-			Interval i = ranges.get(varName);
+			if (symbols == null)
+				i = ranges.get(varName);
+			else
+			{
+				int id = symbols.getId((Variable) e);
+				i = (id >= 0 && id < rangesById.length) ? rangesById[id] : null;
+			}
 
 			if (i == null)
 				throw new AutomatonExportException(
@@ -315,8 +390,8 @@ public class Interval
 
 			if (o.children.size() == 2)
 			{
-				left = intervalEvaluateRec(o.getLeft(), ranges);
-				right = intervalEvaluateRec(o.getRight(), ranges);
+				left = intervalEvaluateRec(o.getLeft(), ranges, symbols, rangesById);
+				right = intervalEvaluateRec(o.getRight(), ranges, symbols, rangesById);
 			}
 
 			switch (o.op)
@@ -329,7 +404,7 @@ public class Interval
 				break;
 			case NEGATIVE:
 			{
-				rv = intervalEvaluateRec(o.children.get(0), ranges);
+				rv = intervalEvaluateRec(o.children.get(0), ranges, symbols, rangesById);
 
 				double oldMin = rv.min;
 
@@ -370,7 +445,7 @@ public class Interval
 			}
 			case LN:
 			{
-				Interval i = intervalEvaluateRec(o.children.get(0), ranges);
+				Interval i = intervalEvaluateRec(o.children.get(0), ranges, symbols, rangesById);
 
 				if (i.min <= 0)
 					throw new AutomatonExportException(
@@ -381,27 +456,34 @@ public class Interval
 			}
 			case SQRT:
 			{
-				Interval i = intervalEvaluateRec(o.children.get(0), ranges);
+				Interval i = intervalEvaluateRec(o.children.get(0), ranges, symbols, rangesById);
 
 				if (i.min < 0)
 					throw new AutomatonExportException(
 							"Interval evaluate of sqrt with min < 0: " + i.min);
 
-				rv = new Interval(Math.sqrt(i.max), Math.sqrt(i.min));
+				rv = new Interval(Math.sqrt(i.min), Math.sqrt(i.max));
 				break;
 			}
 			case POW:
 				rv = intervalPow(left, right);
 				break;
 			case EXP:
-				Interval i = intervalEvaluateRec(o.children.get(0), ranges);
-				rv = intervalPow(new Interval(Math.E), i);
+			{
+				// exp is monotonic
+				Interval i = intervalEvaluateRec(o.children.get(0), ranges, symbols, rangesById);
+				rv = new Interval(Math.exp(i.min), Math.exp(i.max));
 				break;
+			}
 			case SIN:
+				rv = intervalSin(
+						intervalEvaluateRec(o.children.get(0), ranges, symbols, rangesById));
+				break;
 			case COS:
+				rv = intervalCos(
+						intervalEvaluateRec(o.children.get(0), ranges, symbols, rangesById));
+				break;
 			case TAN:
-				// these could be done using Algorithm 2 on page 29 of Xin
-				// Chen's dissertation
 				// tan would need division tan(x) = sin(x) / cos(x)
 				throw new AutomatonExportException(
 						"Operator is not yet supported (submit a feature request if you need it): "
@@ -422,12 +504,73 @@ public class Interval
 
 			}
 		}
+		else if (e instanceof LutExpression)
+		{
+			LutExpression lut = (LutExpression) e;
+			Interval[] inputs = new Interval[lut.inputs.length];
+
+			for (int i = 0; i < inputs.length; ++i)
+				inputs[i] = intervalEvaluateRec(lut.inputs[i], ranges, symbols, rangesById);
+
+			rv = LutInterpolator.get(lut).evaluate(inputs);
+		}
 		else
 			throw new AutomatonExportException("Unsupported Expression Type: " + e);
 
 		return rv;
 	}
 
+	/**
+	 * Compute the sine function for intervals. The bounds are the endpoint values, widened to -1 or
+	 * 1 if the interval contains a minimum or maximum of the sine wave.
+	 * 
+	 * @param i
+	 *            the argument interval
+	 * @return the range of sin over i
+	 */
+	public static Interval intervalSin(Interval i)
+	{
+		Interval rv;
+
+		if (i.max - i.min >= 2 * Math.PI)
+			rv = new Interval(-1, 1);
+		else
+		{
+			double a = Math.sin(i.min);
+			double b = Math.sin(i.max);
+
+			rv = new Interval(Math.min(a, b), Math.max(a, b));
+
+			// first maximum (pi/2 + 2*k*pi) at or after i.min
+			double peak = Math.PI / 2
+					+ 2 * Math.PI * Math.ceil((i.min - Math.PI / 2) / (2 * Math.PI));
+
+			if (peak <= i.max)
+				rv.max = 1;
+
+			// first minimum (-pi/2 + 2*k*pi) at or after i.min
+			double trough = -Math.PI / 2
+					+ 2 * Math.PI * Math.ceil((i.min + Math.PI / 2) / (2 * Math.PI));
+
+			if (trough <= i.max)
+				rv.min = -1;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Compute the cosine function for intervals, using cos(x) = sin(x + pi/2)
+	 * 
+	 * @param i
+	 *            the argument interval
+	 * @return the range of cos over i
+	 */
+	public static Interval intervalCos(Interval i)
+	{
+		return intervalSin(new Interval(i.min + Math.PI / 2, i.max + Math.PI / 2));
+	}
+
 	/**
 	 * Compute the power function for intervals. Based on Algorithm 1 from Xin Chen's dissertation
 	 * (Page 28)
@@ -438,7 +581,7 @@ public class Interval
 	 *            the right interval (must be a nonnegative constant);
 	 * @return the interval evaluation of the interval
 	 */
-	private static Interval intervalPow(Interval left, Interval right)
+	static Interval intervalPow(Interval left, Interval right)
 	{
 		if (right.min != right.max)
 			throw new AutomatonExportException("Interval value in exponent not supported.");
@@ -0,0 +1,412 @@
+package com.verivital.hyst.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import com.verivital.hyst.ir.AutomatonExportException;
+
+/**
+ * A simulation trajectory: a sequence of samples, each with a time, a mode, and a point.
+ *
+ * The points are stored in a single double array in row-major order (all the dimensions of the
+ * first sample, then the second, ...), modes are stored as int ids into a table of mode names, and
+ * times in another double array. This is much smaller than a list of SymbolicStatePoint objects for
+ * long trajectories.
+ *
+ * Trajectories are immutable. slice() and downsample() return views which share the arrays of the
+ * original trajectory, so they don't copy any samples.
+ */
+public class Trajectory
+{
+	private final int numDims;
+	private final String[] modeNames; // mode id -> name
+	private final int[] modes; // per row
+	private final double[] times; // per row
+	private final double[] data; // row-major, numDims values per row
+
+	// the samples of this trajectory are the rows start, start + stride, ... (size of them)
+	private final int start;
+	private final int size;
+	private final int stride;
+
+	/**
+	 * Create a trajectory. The arrays are not copied, and should not be modified afterwards.
+	 *
+	 * @param modeNames
+	 *            the names of the modes, indexed by mode id
+	 * @param modes
+	 *            the mode id of each sample
+	 * @param times
+	 *            the time of each sample
+	 * @param data
+	 *            the points of each sample, in row-major order
+	 */
+	public Trajectory(String[] modeNames, int[] modes, double[] times, double[] data)
+	{
+		this(numDims(modes.length, data.length), modeNames, modes, times, data, 0, modes.length,
+				1);
+
+		if (times.length != modes.length)
+			throw new AutomatonExportException("Trajectory had " + modes.length + " modes but "
+					+ times.length + " times.");
+
+		for (int m : modes)
+		{
+			if (m < 0 || m >= modeNames.length)
+				throw new AutomatonExportException("Trajectory mode id out of range: " + m);
+		}
+	}
+
+	private Trajectory(int numDims, String[] modeNames, int[] modes, double[] times,
+			double[] data, int start, int size, int stride)
+	{
+		this.numDims = numDims;
+		this.modeNames = modeNames;
+		this.modes = modes;
+		this.times = times;
+		this.data = data;
+		this.start = start;
+		this.size = size;
+		this.stride = stride;
+	}
+
+	private static int numDims(int numSamples, int dataLength)
+	{
+		int rv = numSamples == 0 ? 0 : dataLength / numSamples;
+
+		if (rv * numSamples != dataLength)
+			throw new AutomatonExportException("Trajectory data length (" + dataLength
+					+ ") is not a multiple of the number of samples (" + numSamples + ").");
+
+		return rv;
+	}
+
+	/**
+	 * Parse trajectories printed by pysim_utils (with_times=True). Trajectories are separated by
+	 * '|', samples by ';', and each sample is mode_name,time,dim_0,...,dim_n
+	 *
+	 * @param text
+	 *            the text to parse
+	 * @return the trajectories, in order
+	 */
+	public static ArrayList<Trajectory> parseAll(String text)
+	{
+		ArrayList<Trajectory> rv = new ArrayList<Trajectory>();
+		int len = text.length();
+
+		for (int pos = 0; pos <= len;)
+		{
+			int end = text.indexOf('|', pos);
+
+			if (end == -1)
+				end = len;
+
+			rv.add(parse(text, pos, end));
+			pos = end + 1;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Parse one trajectory printed by pysim_utils (with_times=True). Samples are separated by ';',
+	 * and each sample is mode_name,time,dim_0,...,dim_n
+	 *
+	 * @param text
+	 *            the text to parse
+	 * @param from
+	 *            the start index in text
+	 * @param to
+	 *            the end index in text (exclusive)
+	 * @return the parsed trajectory
+	 */
+	public static Trajectory parse(String text, int from, int to)
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		int numDims = -1;
+		int numSamples = 0;
+		int[] modes = new int[16];
+		double[] times = new double[16];
+		double[] data = new double[64];
+		int lastMode = -1;
+
+		for (int pos = from; pos < to;)
+		{
+			int end = text.indexOf(';', pos);
+
+			if (end == -1 || end > to)
+				end = to;
+
+			if (numSamples == modes.length)
+			{
+				modes = Arrays.copyOf(modes, modes.length * 2);
+				times = Arrays.copyOf(times, times.length * 2);
+			}
+
+			// mode name, which is usually the same as the previous sample's
+			int comma = text.indexOf(',', pos);
+
+			if (comma == -1 || comma > end)
+				throw new AutomatonExportException(
+						"Malformed trajectory sample: " + text.substring(pos, end));
+
+			if (lastMode == -1 || comma - pos != names.get(lastMode).length()
+					|| !text.regionMatches(pos, names.get(lastMode), 0, comma - pos))
+			{
+				String name = text.substring(pos, comma);
+				Integer id = ids.get(name);
+
+				if (id == null)
+				{
+					id = names.size();
+					names.add(name);
+					ids.put(name, id);
+				}
+
+				lastMode = id;
+			}
+
+			modes[numSamples] = lastMode;
+
+			// time, then the dimensions
+			int dims = -1;
+
+			for (int valStart = comma + 1; valStart <= end; ++dims)
+			{
+				int valEnd = text.indexOf(',', valStart);
+
+				if (valEnd == -1 || valEnd > end)
+					valEnd = end;
+
+				double val = Double.parseDouble(text.substring(valStart, valEnd));
+
+				if (dims == -1)
+					times[numSamples] = val;
+				else
+				{
+					int index = (numDims == -1 ? dims : numSamples * numDims + dims);
+
+					if (index >= data.length)
+						data = Arrays.copyOf(data, Math.max(data.length * 2, index + 1));
+
+					data[index] = val;
+				}
+
+				valStart = valEnd + 1;
+			}
+
+			if (numDims == -1)
+				numDims = dims;
+			else if (dims != numDims)
+				throw new AutomatonExportException("Trajectory sample had " + dims
+						+ " dimensions; expected " + numDims + ": " + text.substring(pos, end));
+
+			++numSamples;
+			pos = end + 1;
+		}
+
+		return new Trajectory(names.toArray(new String[names.size()]),
+				Arrays.copyOf(modes, numSamples), Arrays.copyOf(times, numSamples),
+				Arrays.copyOf(data, numSamples * Math.max(0, numDims)));
+	}
+
+	/**
+	 * Get the number of samples
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the number of dimensions of each point
+	 */
+	public int numDims()
+	{
+		return numDims;
+	}
+
+	private int row(int sample)
+	{
+		if (sample < 0 || sample >= size)
+			throw new IndexOutOfBoundsException(
+					"Trajectory sample " + sample + " out of range; size = " + size);
+
+		return start + sample * stride;
+	}
+
+	/**
+	 * Get one dimension of the point of a sample
+	 */
+	public double get(int sample, int dim)
+	{
+		return data[row(sample) * numDims + dim];
+	}
+
+	/**
+	 * Get the time of a sample
+	 */
+	public double getTime(int sample)
+	{
+		return times[row(sample)];
+	}
+
+	/**
+	 * Get the mode id of a sample, an index into getModeNames()
+	 */
+	public int getModeId(int sample)
+	{
+		return modes[row(sample)];
+	}
+
+	/**
+	 * Get the mode name of a sample
+	 */
+	public String getModeName(int sample)
+	{
+		return modeNames[modes[row(sample)]];
+	}
+
+	/**
+	 * Get the table of mode names, indexed by mode id
+	 */
+	public List<String> getModeNames()
+	{
+		return Collections.unmodifiableList(Arrays.asList(modeNames));
+	}
+
+	/**
+	 * Get (a copy of) the point of a sample
+	 */
+	public HyperPoint getPoint(int sample)
+	{
+		HyperPoint rv = new HyperPoint(numDims);
+		System.arraycopy(data, row(sample) * numDims, rv.dims, 0, numDims);
+
+		return rv;
+	}
+
+	/**
+	 * Get (a copy of) the mode and point of a sample
+	 */
+	public SymbolicStatePoint getState(int sample)
+	{
+		return new SymbolicStatePoint(getModeName(sample), getPoint(sample));
+	}
+
+	/**
+	 * Get the dot product of the point of a sample and a vector, without copying the point
+	 */
+	public double dot(int sample, double[] vec)
+	{
+		if (vec.length != numDims)
+			throw new AutomatonExportException("dot product vector had " + vec.length
+					+ " dimensions; expected " + numDims);
+
+		int offset = row(sample) * numDims;
+		double rv = 0;
+
+		for (int d = 0; d < numDims; ++d)
+			rv += vec[d] * data[offset + d];
+
+		return rv;
+	}
+
+	/**
+	 * Get a view of a range of the samples, which shares this trajectory's storage
+	 *
+	 * @param from
+	 *            the first sample
+	 * @param to
+	 *            the end sample (exclusive)
+	 */
+	public Trajectory slice(int from, int to)
+	{
+		if (from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException(
+					"Invalid trajectory slice [" + from + ", " + to + ") of size " + size);
+
+		return new Trajectory(numDims, modeNames, modes, times, data, start + from * stride,
+				to - from, stride);
+	}
+
+	/**
+	 * Get a view of every factor-th sample (starting with the first), which shares this trajectory's
+	 * storage
+	 *
+	 * @param factor
+	 *            the downsampling factor, 1 or more
+	 */
+	public Trajectory downsample(int factor)
+	{
+		if (factor < 1)
+			throw new AutomatonExportException("Downsampling factor must be positive: " + factor);
+
+		return new Trajectory(numDims, modeNames, modes, times, data, start,
+				(size + factor - 1) / factor, stride * factor);
+	}
+
+	/**
+	 * Get the bounding box of the points of all the samples
+	 *
+	 * @return the box, or null if the trajectory is empty
+	 */
+	public HyperRectangle boundingBox()
+	{
+		HyperRectangle rv = null;
+
+		if (size > 0)
+		{
+			double[] min = new double[numDims];
+			double[] max = new double[numDims];
+			int first = start * numDims;
+
+			System.arraycopy(data, first, min, 0, numDims);
+			System.arraycopy(data, first, max, 0, numDims);
+
+			for (int s = 1; s < size; ++s)
+			{
+				int offset = (start + s * stride) * numDims;
+
+				for (int d = 0; d < numDims; ++d)
+				{
+					double val = data[offset + d];
+
+					if (val < min[d])
+						min[d] = val;
+					else if (val > max[d])
+						max[d] = val;
+				}
+			}
+
+			rv = new HyperRectangle(numDims);
+
+			for (int d = 0; d < numDims; ++d)
+				rv.dims[d] = new Interval(min[d], max[d]);
+		}
+
+		return rv;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder rv = new StringBuilder("[Trajectory: ");
+
+		for (int s = 0; s < size; ++s)
+		{
+			if (s > 0)
+				rv.append(", ");
+
+			rv.append(getModeName(s) + " @ " + getTime(s) + " " + getPoint(s));
+		}
+
+		rv.append("]");
+
+		return rv.toString();
+	}
+}
@@ -35,6 +35,7 @@ GREATEREQUAL : '>=';
 NOTEQUAL : '!=';
 EQUAL : '=='|'=';
 EQUAL_RESET : ':=';
+STRING : '"' ~["\r\n]* '"';
 
 matrixRow
 	: addSub (COMMA addSub)*  # MatrixRowExp
@@ -51,6 +52,7 @@ matrixExpression
 
 functionExpression
 	: VAR LPAR (addSub (COMMA addSub)*)? RPAR # Function
+	| VAR LPAR STRING (COMMA addSub)* RPAR # FileFunction
 	;
 
 // transition resets (guards)
@@ -1,4 +1,4 @@
-// Generated from HystExpression.g4 by ANTLR 4.5
+// Generated from HystExpression.g4 by ANTLR 4.5.1
 package com.verivital.hyst.grammar.antlr;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.CharStream;
@@ -11,7 +11,7 @@ import org.antlr.v4.runtime.misc.*;
 
 @SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast"})
 public class HystExpressionLexer extends Lexer {
-	static { RuntimeMetaData.checkVersion("4.5", RuntimeMetaData.VERSION); }
+	static { RuntimeMetaData.checkVersion("4.5.1", RuntimeMetaData.VERSION); }
 
 	protected static final DFA[] _decisionToDFA;
 	protected static final PredictionContextCache _sharedContextCache =
@@ -20,7 +20,7 @@ public class HystExpressionLexer extends Lexer {
 		WS=1, TICK=2, TRUE=3, FALSE=4, NUM=5, VAR=6, LPAR=7, RPAR=8, LBRAC=9, 
 		RBRAC=10, COMMA=11, SEMICOLON=12, COLON=13, PLUS=14, MINUS=15, TIMES=16, 
 		DIV=17, POW=18, DOT=19, AND=20, OR=21, NOT=22, LESS=23, GREATER=24, LESSEQUAL=25, 
-		GREATEREQUAL=26, NOTEQUAL=27, EQUAL=28, EQUAL_RESET=29;
+		GREATEREQUAL=26, NOTEQUAL=27, EQUAL=28, EQUAL_RESET=29, STRING=30;
 	public static String[] modeNames = {
 		"DEFAULT_MODE"
 	};
@@ -29,7 +29,7 @@ public class HystExpressionLexer extends Lexer {
 		"WS", "TICK", "TRUE", "FALSE", "NUM", "VAR", "LPAR", "RPAR", "LBRAC", 
 		"RBRAC", "COMMA", "SEMICOLON", "COLON", "PLUS", "MINUS", "TIMES", "DIV", 
 		"POW", "DOT", "AND", "OR", "NOT", "LESS", "GREATER", "LESSEQUAL", "GREATEREQUAL", 
-		"NOTEQUAL", "EQUAL", "EQUAL_RESET"
+		"NOTEQUAL", "EQUAL", "EQUAL_RESET", "STRING"
 	};
 
 	private static final String[] _LITERAL_NAMES = {
@@ -41,7 +41,7 @@ public class HystExpressionLexer extends Lexer {
 		null, "WS", "TICK", "TRUE", "FALSE", "NUM", "VAR", "LPAR", "RPAR", "LBRAC", 
 		"RBRAC", "COMMA", "SEMICOLON", "COLON", "PLUS", "MINUS", "TIMES", "DIV", 
 		"POW", "DOT", "AND", "OR", "NOT", "LESS", "GREATER", "LESSEQUAL", "GREATEREQUAL", 
-		"NOTEQUAL", "EQUAL", "EQUAL_RESET"
+		"NOTEQUAL", "EQUAL", "EQUAL_RESET", "STRING"
 	};
 	public static final Vocabulary VOCABULARY = new VocabularyImpl(_LITERAL_NAMES, _SYMBOLIC_NAMES);
 
@@ -98,59 +98,63 @@ public class HystExpressionLexer extends Lexer {
 	public ATN getATN() { return _ATN; }
 
 	public static final String _serializedATN =
-		"\3\u0430\ud6d1\u8206\uad2d\u4417\uaef1\u8d80\uaadd\2\37\u00b1\b\1\4\2"+
-		"\t\2\4\3\t\3\4\4\t\4\4\5\t\5\4\6\t\6\4\7\t\7\4\b\t\b\4\t\t\t\4\n\t\n\4"+
-		"\13\t\13\4\f\t\f\4\r\t\r\4\16\t\16\4\17\t\17\4\20\t\20\4\21\t\21\4\22"+
-		"\t\22\4\23\t\23\4\24\t\24\4\25\t\25\4\26\t\26\4\27\t\27\4\30\t\30\4\31"+
-		"\t\31\4\32\t\32\4\33\t\33\4\34\t\34\4\35\t\35\4\36\t\36\3\2\6\2?\n\2\r"+
-		"\2\16\2@\3\2\3\2\3\3\3\3\3\4\3\4\3\4\3\4\3\4\3\5\3\5\3\5\3\5\3\5\3\5\3"+
-		"\6\6\6S\n\6\r\6\16\6T\3\6\3\6\6\6Y\n\6\r\6\16\6Z\5\6]\n\6\3\6\3\6\6\6"+
-		"a\n\6\r\6\16\6b\5\6e\n\6\3\6\3\6\5\6i\n\6\3\6\6\6l\n\6\r\6\16\6m\5\6p"+
-		"\n\6\3\7\3\7\7\7t\n\7\f\7\16\7w\13\7\3\b\3\b\3\t\3\t\3\n\3\n\3\13\3\13"+
-		"\3\f\3\f\3\r\3\r\3\16\3\16\3\17\3\17\3\20\3\20\3\21\3\21\3\22\3\22\3\23"+
-		"\3\23\3\24\3\24\3\25\3\25\5\25\u0095\n\25\3\26\3\26\5\26\u0099\n\26\3"+
-		"\27\3\27\3\30\3\30\3\31\3\31\3\32\3\32\3\32\3\33\3\33\3\33\3\34\3\34\3"+
-		"\34\3\35\3\35\3\35\5\35\u00ad\n\35\3\36\3\36\3\36\2\2\37\3\3\5\4\7\5\t"+
-		"\6\13\7\r\b\17\t\21\n\23\13\25\f\27\r\31\16\33\17\35\20\37\21!\22#\23"+
-		"%\24\'\25)\26+\27-\30/\31\61\32\63\33\65\34\67\359\36;\37\3\2\n\5\2\13"+
-		"\f\17\17\"\"\3\2\62;\4\2GGgg\5\2--//~~\5\2C\\aac|\6\2\62;C\\aac|\3\2("+
-		")\4\2))~~\u00bd\2\3\3\2\2\2\2\5\3\2\2\2\2\7\3\2\2\2\2\t\3\2\2\2\2\13\3"+
-		"\2\2\2\2\r\3\2\2\2\2\17\3\2\2\2\2\21\3\2\2\2\2\23\3\2\2\2\2\25\3\2\2\2"+
-		"\2\27\3\2\2\2\2\31\3\2\2\2\2\33\3\2\2\2\2\35\3\2\2\2\2\37\3\2\2\2\2!\3"+
-		"\2\2\2\2#\3\2\2\2\2%\3\2\2\2\2\'\3\2\2\2\2)\3\2\2\2\2+\3\2\2\2\2-\3\2"+
-		"\2\2\2/\3\2\2\2\2\61\3\2\2\2\2\63\3\2\2\2\2\65\3\2\2\2\2\67\3\2\2\2\2"+
-		"9\3\2\2\2\2;\3\2\2\2\3>\3\2\2\2\5D\3\2\2\2\7F\3\2\2\2\tK\3\2\2\2\13d\3"+
-		"\2\2\2\rq\3\2\2\2\17x\3\2\2\2\21z\3\2\2\2\23|\3\2\2\2\25~\3\2\2\2\27\u0080"+
-		"\3\2\2\2\31\u0082\3\2\2\2\33\u0084\3\2\2\2\35\u0086\3\2\2\2\37\u0088\3"+
-		"\2\2\2!\u008a\3\2\2\2#\u008c\3\2\2\2%\u008e\3\2\2\2\'\u0090\3\2\2\2)\u0092"+
-		"\3\2\2\2+\u0096\3\2\2\2-\u009a\3\2\2\2/\u009c\3\2\2\2\61\u009e\3\2\2\2"+
-		"\63\u00a0\3\2\2\2\65\u00a3\3\2\2\2\67\u00a6\3\2\2\29\u00ac\3\2\2\2;\u00ae"+
-		"\3\2\2\2=?\t\2\2\2>=\3\2\2\2?@\3\2\2\2@>\3\2\2\2@A\3\2\2\2AB\3\2\2\2B"+
-		"C\b\2\2\2C\4\3\2\2\2DE\7)\2\2E\6\3\2\2\2FG\7v\2\2GH\7t\2\2HI\7w\2\2IJ"+
-		"\7g\2\2J\b\3\2\2\2KL\7h\2\2LM\7c\2\2MN\7n\2\2NO\7u\2\2OP\7g\2\2P\n\3\2"+
-		"\2\2QS\t\3\2\2RQ\3\2\2\2ST\3\2\2\2TR\3\2\2\2TU\3\2\2\2U\\\3\2\2\2VX\7"+
-		"\60\2\2WY\t\3\2\2XW\3\2\2\2YZ\3\2\2\2ZX\3\2\2\2Z[\3\2\2\2[]\3\2\2\2\\"+
-		"V\3\2\2\2\\]\3\2\2\2]e\3\2\2\2^`\7\60\2\2_a\t\3\2\2`_\3\2\2\2ab\3\2\2"+
-		"\2b`\3\2\2\2bc\3\2\2\2ce\3\2\2\2dR\3\2\2\2d^\3\2\2\2eo\3\2\2\2fh\t\4\2"+
-		"\2gi\t\5\2\2hg\3\2\2\2hi\3\2\2\2ik\3\2\2\2jl\t\3\2\2kj\3\2\2\2lm\3\2\2"+
-		"\2mk\3\2\2\2mn\3\2\2\2np\3\2\2\2of\3\2\2\2op\3\2\2\2p\f\3\2\2\2qu\t\6"+
-		"\2\2rt\t\7\2\2sr\3\2\2\2tw\3\2\2\2us\3\2\2\2uv\3\2\2\2v\16\3\2\2\2wu\3"+
-		"\2\2\2xy\7*\2\2y\20\3\2\2\2z{\7+\2\2{\22\3\2\2\2|}\7]\2\2}\24\3\2\2\2"+
-		"~\177\7_\2\2\177\26\3\2\2\2\u0080\u0081\7.\2\2\u0081\30\3\2\2\2\u0082"+
-		"\u0083\7=\2\2\u0083\32\3\2\2\2\u0084\u0085\7<\2\2\u0085\34\3\2\2\2\u0086"+
-		"\u0087\7-\2\2\u0087\36\3\2\2\2\u0088\u0089\7/\2\2\u0089 \3\2\2\2\u008a"+
-		"\u008b\7,\2\2\u008b\"\3\2\2\2\u008c\u008d\7\61\2\2\u008d$\3\2\2\2\u008e"+
-		"\u008f\7`\2\2\u008f&\3\2\2\2\u0090\u0091\7\60\2\2\u0091(\3\2\2\2\u0092"+
-		"\u0094\7(\2\2\u0093\u0095\t\b\2\2\u0094\u0093\3\2\2\2\u0094\u0095\3\2"+
-		"\2\2\u0095*\3\2\2\2\u0096\u0098\7~\2\2\u0097\u0099\t\t\2\2\u0098\u0097"+
-		"\3\2\2\2\u0098\u0099\3\2\2\2\u0099,\3\2\2\2\u009a\u009b\7#\2\2\u009b."+
-		"\3\2\2\2\u009c\u009d\7>\2\2\u009d\60\3\2\2\2\u009e\u009f\7@\2\2\u009f"+
-		"\62\3\2\2\2\u00a0\u00a1\7>\2\2\u00a1\u00a2\7?\2\2\u00a2\64\3\2\2\2\u00a3"+
-		"\u00a4\7@\2\2\u00a4\u00a5\7?\2\2\u00a5\66\3\2\2\2\u00a6\u00a7\7#\2\2\u00a7"+
-		"\u00a8\7?\2\2\u00a88\3\2\2\2\u00a9\u00aa\7?\2\2\u00aa\u00ad\7?\2\2\u00ab"+
-		"\u00ad\7?\2\2\u00ac\u00a9\3\2\2\2\u00ac\u00ab\3\2\2\2\u00ad:\3\2\2\2\u00ae"+
-		"\u00af\7<\2\2\u00af\u00b0\7?\2\2\u00b0<\3\2\2\2\20\2@TZ\\bdhmou\u0094"+
-		"\u0098\u00ac\3\b\2\2";
+		"\3\u0430\ud6d1\u8206\uad2d\u4417\uaef1\u8d80\uaadd\2 \u00bc\b\1\4\2\t"+
+		"\2\4\3\t\3\4\4\t\4\4\5\t\5\4\6\t\6\4\7\t\7\4\b\t\b\4\t\t\t\4\n\t\n\4\13"+
+		"\t\13\4\f\t\f\4\r\t\r\4\16\t\16\4\17\t\17\4\20\t\20\4\21\t\21\4\22\t\22"+
+		"\4\23\t\23\4\24\t\24\4\25\t\25\4\26\t\26\4\27\t\27\4\30\t\30\4\31\t\31"+
+		"\4\32\t\32\4\33\t\33\4\34\t\34\4\35\t\35\4\36\t\36\4\37\t\37\3\2\6\2A"+
+		"\n\2\r\2\16\2B\3\2\3\2\3\3\3\3\3\4\3\4\3\4\3\4\3\4\3\5\3\5\3\5\3\5\3\5"+
+		"\3\5\3\6\6\6U\n\6\r\6\16\6V\3\6\3\6\6\6[\n\6\r\6\16\6\\\5\6_\n\6\3\6\3"+
+		"\6\6\6c\n\6\r\6\16\6d\5\6g\n\6\3\6\3\6\5\6k\n\6\3\6\6\6n\n\6\r\6\16\6"+
+		"o\5\6r\n\6\3\7\3\7\7\7v\n\7\f\7\16\7y\13\7\3\b\3\b\3\t\3\t\3\n\3\n\3\13"+
+		"\3\13\3\f\3\f\3\r\3\r\3\16\3\16\3\17\3\17\3\20\3\20\3\21\3\21\3\22\3\22"+
+		"\3\23\3\23\3\24\3\24\3\25\3\25\5\25\u0097\n\25\3\26\3\26\5\26\u009b\n"+
+		"\26\3\27\3\27\3\30\3\30\3\31\3\31\3\32\3\32\3\32\3\33\3\33\3\33\3\34\3"+
+		"\34\3\34\3\35\3\35\3\35\5\35\u00af\n\35\3\36\3\36\3\36\3\37\3\37\7\37"+
+		"\u00b6\n\37\f\37\16\37\u00b9\13\37\3\37\3\37\2\2 \3\3\5\4\7\5\t\6\13\7"+
+		"\r\b\17\t\21\n\23\13\25\f\27\r\31\16\33\17\35\20\37\21!\22#\23%\24\'\25"+
+		")\26+\27-\30/\31\61\32\63\33\65\34\67\359\36;\37= \3\2\13\5\2\13\f\17"+
+		"\17\"\"\3\2\62;\4\2GGgg\5\2--//~~\5\2C\\aac|\6\2\62;C\\aac|\3\2()\4\2"+
+		"))~~\5\2\f\f\17\17$$\u00c9\2\3\3\2\2\2\2\5\3\2\2\2\2\7\3\2\2\2\2\t\3\2"+
+		"\2\2\2\13\3\2\2\2\2\r\3\2\2\2\2\17\3\2\2\2\2\21\3\2\2\2\2\23\3\2\2\2\2"+
+		"\25\3\2\2\2\2\27\3\2\2\2\2\31\3\2\2\2\2\33\3\2\2\2\2\35\3\2\2\2\2\37\3"+
+		"\2\2\2\2!\3\2\2\2\2#\3\2\2\2\2%\3\2\2\2\2\'\3\2\2\2\2)\3\2\2\2\2+\3\2"+
+		"\2\2\2-\3\2\2\2\2/\3\2\2\2\2\61\3\2\2\2\2\63\3\2\2\2\2\65\3\2\2\2\2\67"+
+		"\3\2\2\2\29\3\2\2\2\2;\3\2\2\2\2=\3\2\2\2\3@\3\2\2\2\5F\3\2\2\2\7H\3\2"+
+		"\2\2\tM\3\2\2\2\13f\3\2\2\2\rs\3\2\2\2\17z\3\2\2\2\21|\3\2\2\2\23~\3\2"+
+		"\2\2\25\u0080\3\2\2\2\27\u0082\3\2\2\2\31\u0084\3\2\2\2\33\u0086\3\2\2"+
+		"\2\35\u0088\3\2\2\2\37\u008a\3\2\2\2!\u008c\3\2\2\2#\u008e\3\2\2\2%\u0090"+
+		"\3\2\2\2\'\u0092\3\2\2\2)\u0094\3\2\2\2+\u0098\3\2\2\2-\u009c\3\2\2\2"+
+		"/\u009e\3\2\2\2\61\u00a0\3\2\2\2\63\u00a2\3\2\2\2\65\u00a5\3\2\2\2\67"+
+		"\u00a8\3\2\2\29\u00ae\3\2\2\2;\u00b0\3\2\2\2=\u00b3\3\2\2\2?A\t\2\2\2"+
+		"@?\3\2\2\2AB\3\2\2\2B@\3\2\2\2BC\3\2\2\2CD\3\2\2\2DE\b\2\2\2E\4\3\2\2"+
+		"\2FG\7)\2\2G\6\3\2\2\2HI\7v\2\2IJ\7t\2\2JK\7w\2\2KL\7g\2\2L\b\3\2\2\2"+
+		"MN\7h\2\2NO\7c\2\2OP\7n\2\2PQ\7u\2\2QR\7g\2\2R\n\3\2\2\2SU\t\3\2\2TS\3"+
+		"\2\2\2UV\3\2\2\2VT\3\2\2\2VW\3\2\2\2W^\3\2\2\2XZ\7\60\2\2Y[\t\3\2\2ZY"+
+		"\3\2\2\2[\\\3\2\2\2\\Z\3\2\2\2\\]\3\2\2\2]_\3\2\2\2^X\3\2\2\2^_\3\2\2"+
+		"\2_g\3\2\2\2`b\7\60\2\2ac\t\3\2\2ba\3\2\2\2cd\3\2\2\2db\3\2\2\2de\3\2"+
+		"\2\2eg\3\2\2\2fT\3\2\2\2f`\3\2\2\2gq\3\2\2\2hj\t\4\2\2ik\t\5\2\2ji\3\2"+
+		"\2\2jk\3\2\2\2km\3\2\2\2ln\t\3\2\2ml\3\2\2\2no\3\2\2\2om\3\2\2\2op\3\2"+
+		"\2\2pr\3\2\2\2qh\3\2\2\2qr\3\2\2\2r\f\3\2\2\2sw\t\6\2\2tv\t\7\2\2ut\3"+
+		"\2\2\2vy\3\2\2\2wu\3\2\2\2wx\3\2\2\2x\16\3\2\2\2yw\3\2\2\2z{\7*\2\2{\20"+
+		"\3\2\2\2|}\7+\2\2}\22\3\2\2\2~\177\7]\2\2\177\24\3\2\2\2\u0080\u0081\7"+
+		"_\2\2\u0081\26\3\2\2\2\u0082\u0083\7.\2\2\u0083\30\3\2\2\2\u0084\u0085"+
+		"\7=\2\2\u0085\32\3\2\2\2\u0086\u0087\7<\2\2\u0087\34\3\2\2\2\u0088\u0089"+
+		"\7-\2\2\u0089\36\3\2\2\2\u008a\u008b\7/\2\2\u008b \3\2\2\2\u008c\u008d"+
+		"\7,\2\2\u008d\"\3\2\2\2\u008e\u008f\7\61\2\2\u008f$\3\2\2\2\u0090\u0091"+
+		"\7`\2\2\u0091&\3\2\2\2\u0092\u0093\7\60\2\2\u0093(\3\2\2\2\u0094\u0096"+
+		"\7(\2\2\u0095\u0097\t\b\2\2\u0096\u0095\3\2\2\2\u0096\u0097\3\2\2\2\u0097"+
+		"*\3\2\2\2\u0098\u009a\7~\2\2\u0099\u009b\t\t\2\2\u009a\u0099\3\2\2\2\u009a"+
+		"\u009b\3\2\2\2\u009b,\3\2\2\2\u009c\u009d\7#\2\2\u009d.\3\2\2\2\u009e"+
+		"\u009f\7>\2\2\u009f\60\3\2\2\2\u00a0\u00a1\7@\2\2\u00a1\62\3\2\2\2\u00a2"+
+		"\u00a3\7>\2\2\u00a3\u00a4\7?\2\2\u00a4\64\3\2\2\2\u00a5\u00a6\7@\2\2\u00a6"+
+		"\u00a7\7?\2\2\u00a7\66\3\2\2\2\u00a8\u00a9\7#\2\2\u00a9\u00aa\7?\2\2\u00aa"+
+		"8\3\2\2\2\u00ab\u00ac\7?\2\2\u00ac\u00af\7?\2\2\u00ad\u00af\7?\2\2\u00ae"+
+		"\u00ab\3\2\2\2\u00ae\u00ad\3\2\2\2\u00af:\3\2\2\2\u00b0\u00b1\7<\2\2\u00b1"+
+		"\u00b2\7?\2\2\u00b2<\3\2\2\2\u00b3\u00b7\7$\2\2\u00b4\u00b6\n\n\2\2\u00b5"+
+		"\u00b4\3\2\2\2\u00b6\u00b9\3\2\2\2\u00b7\u00b5\3\2\2\2\u00b7\u00b8\3\2"+
+		"\2\2\u00b8\u00ba\3\2\2\2\u00b9\u00b7\3\2\2\2\u00ba\u00bb\7$\2\2\u00bb"+
+		">\3\2\2\2\21\2BV\\^dfjoqw\u0096\u009a\u00ae\u00b7\3\b\2\2";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
@@ -1,4 +1,4 @@
-// Generated from HystExpression.g4 by ANTLR 4.5
+// Generated from HystExpression.g4 by ANTLR 4.5.1
 package com.verivital.hyst.grammar.antlr;
 import org.antlr.v4.runtime.atn.*;
 import org.antlr.v4.runtime.dfa.DFA;
@@ -11,7 +11,7 @@ import java.util.ArrayList;
 
 @SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast"})
 public class HystExpressionParser extends Parser {
-	static { RuntimeMetaData.checkVersion("4.5", RuntimeMetaData.VERSION); }
+	static { RuntimeMetaData.checkVersion("4.5.1", RuntimeMetaData.VERSION); }
 
 	protected static final DFA[] _decisionToDFA;
 	protected static final PredictionContextCache _sharedContextCache =
@@ -20,7 +20,7 @@ public class HystExpressionParser extends Parser {
 		WS=1, TICK=2, TRUE=3, FALSE=4, NUM=5, VAR=6, LPAR=7, RPAR=8, LBRAC=9, 
 		RBRAC=10, COMMA=11, SEMICOLON=12, COLON=13, PLUS=14, MINUS=15, TIMES=16, 
 		DIV=17, POW=18, DOT=19, AND=20, OR=21, NOT=22, LESS=23, GREATER=24, LESSEQUAL=25, 
-		GREATEREQUAL=26, NOTEQUAL=27, EQUAL=28, EQUAL_RESET=29;
+		GREATEREQUAL=26, NOTEQUAL=27, EQUAL=28, EQUAL_RESET=29, STRING=30;
 	public static final int
 		RULE_matrixRow = 0, RULE_matrixRange = 1, RULE_matrixExpression = 2, RULE_functionExpression = 3, 
 		RULE_resetSubExpression = 4, RULE_resetExpression = 5, RULE_guardExpression = 6, 
@@ -44,7 +44,7 @@ public class HystExpressionParser extends Parser {
 		null, "WS", "TICK", "TRUE", "FALSE", "NUM", "VAR", "LPAR", "RPAR", "LBRAC", 
 		"RBRAC", "COMMA", "SEMICOLON", "COLON", "PLUS", "MINUS", "TIMES", "DIV", 
 		"POW", "DOT", "AND", "OR", "NOT", "LESS", "GREATER", "LESSEQUAL", "GREATEREQUAL", 
-		"NOTEQUAL", "EQUAL", "EQUAL_RESET"
+		"NOTEQUAL", "EQUAL", "EQUAL_RESET", "STRING"
 	};
 	public static final Vocabulary VOCABULARY = new VocabularyImpl(_LITERAL_NAMES, _SYMBOLIC_NAMES);
 
@@ -361,46 +361,103 @@ public class HystExpressionParser extends Parser {
 			else return visitor.visitChildren(this);
 		}
 	}
+	public static class FileFunctionContext extends FunctionExpressionContext {
+		public TerminalNode VAR() { return getToken(HystExpressionParser.VAR, 0); }
+		public TerminalNode LPAR() { return getToken(HystExpressionParser.LPAR, 0); }
+		public TerminalNode STRING() { return getToken(HystExpressionParser.STRING, 0); }
+		public TerminalNode RPAR() { return getToken(HystExpressionParser.RPAR, 0); }
+		public List<TerminalNode> COMMA() { return getTokens(HystExpressionParser.COMMA); }
+		public TerminalNode COMMA(int i) {
+			return getToken(HystExpressionParser.COMMA, i);
+		}
+		public List<AddSubContext> addSub() {
+			return getRuleContexts(AddSubContext.class);
+		}
+		public AddSubContext addSub(int i) {
+			return getRuleContext(AddSubContext.class,i);
+		}
+		public FileFunctionContext(FunctionExpressionContext ctx) { copyFrom(ctx); }
+		@Override
+		public <T> T accept(ParseTreeVisitor<? extends T> visitor) {
+			if ( visitor instanceof HystExpressionVisitor ) return ((HystExpressionVisitor<? extends T>)visitor).visitFileFunction(this);
+			else return visitor.visitChildren(this);
+		}
+	}
 
 	public final FunctionExpressionContext functionExpression() throws RecognitionException {
 		FunctionExpressionContext _localctx = new FunctionExpressionContext(_ctx, getState());
 		enterRule(_localctx, 6, RULE_functionExpression);
 		int _la;
 		try {
-			_localctx = new FunctionContext(_localctx);
-			enterOuterAlt(_localctx, 1);
-			{
-			setState(73);
-			match(VAR);
-			setState(74);
-			match(LPAR);
-			setState(83);
-			_la = _input.LA(1);
-			if ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << NUM) | (1L << VAR) | (1L << LPAR) | (1L << LBRAC) | (1L << MINUS))) != 0)) {
+			setState(97);
+			switch ( getInterpreter().adaptivePredict(_input,6,_ctx) ) {
+			case 1:
+				_localctx = new FunctionContext(_localctx);
+				enterOuterAlt(_localctx, 1);
 				{
-				setState(75);
-				addSub(0);
-				setState(80);
+				setState(73);
+				match(VAR);
+				setState(74);
+				match(LPAR);
+				setState(83);
+				_la = _input.LA(1);
+				if ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << NUM) | (1L << VAR) | (1L << LPAR) | (1L << LBRAC) | (1L << MINUS))) != 0)) {
+					{
+					setState(75);
+					addSub(0);
+					setState(80);
+					_errHandler.sync(this);
+					_la = _input.LA(1);
+					while (_la==COMMA) {
+						{
+						{
+						setState(76);
+						match(COMMA);
+						setState(77);
+						addSub(0);
+						}
+						}
+						setState(82);
+						_errHandler.sync(this);
+						_la = _input.LA(1);
+					}
+					}
+				}
+
+				setState(85);
+				match(RPAR);
+				}
+				break;
+			case 2:
+				_localctx = new FileFunctionContext(_localctx);
+				enterOuterAlt(_localctx, 2);
+				{
+				setState(86);
+				match(VAR);
+				setState(87);
+				match(LPAR);
+				setState(88);
+				match(STRING);
+				setState(93);
 				_errHandler.sync(this);
 				_la = _input.LA(1);
 				while (_la==COMMA) {
 					{
 					{
-					setState(76);
+					setState(89);
 					match(COMMA);
-					setState(77);
+					setState(90);
 					addSub(0);
 					}
 					}
-					setState(82);
+					setState(95);
 					_errHandler.sync(this);
 					_la = _input.LA(1);
 				}
+				setState(96);
+				match(RPAR);
 				}
-			}
-
-			setState(85);
-			match(RPAR);
+				break;
 			}
 		}
 		catch (RecognitionException re) {
@@ -464,17 +521,17 @@ public class HystExpressionParser extends Parser {
 		enterRule(_localctx, 8, RULE_resetSubExpression);
 		int _la;
 		try {
-			setState(101);
-			switch ( getInterpreter().adaptivePredict(_input,6,_ctx) ) {
+			setState(113);
+			switch ( getInterpreter().adaptivePredict(_input,8,_ctx) ) {
 			case 1:
 				_localctx = new ResetSubEqContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(87);
+				setState(99);
 				match(VAR);
-				setState(88);
+				setState(100);
 				match(EQUAL_RESET);
-				setState(89);
+				setState(101);
 				addSub(0);
 				}
 				break;
@@ -482,25 +539,25 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ResetSubOpContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(90);
+				setState(102);
 				addSub(0);
-				setState(91);
+				setState(103);
 				op();
-				setState(92);
+				setState(104);
 				addSub(0);
-				setState(98);
+				setState(110);
 				_errHandler.sync(this);
 				_la = _input.LA(1);
 				while ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << LESS) | (1L << GREATER) | (1L << LESSEQUAL) | (1L << GREATEREQUAL) | (1L << NOTEQUAL) | (1L << EQUAL))) != 0)) {
 					{
 					{
-					setState(93);
+					setState(105);
 					op();
-					setState(94);
+					setState(106);
 					addSub(0);
 					}
 					}
-					setState(100);
+					setState(112);
 					_errHandler.sync(this);
 					_la = _input.LA(1);
 				}
@@ -564,13 +621,13 @@ public class HystExpressionParser extends Parser {
 		enterRule(_localctx, 10, RULE_resetExpression);
 		int _la;
 		try {
-			setState(114);
+			setState(126);
 			switch (_input.LA(1)) {
 			case EOF:
 				_localctx = new ResetBlankContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(103);
+				setState(115);
 				match(EOF);
 				}
 				break;
@@ -582,25 +639,25 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ResetContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(104);
+				setState(116);
 				resetSubExpression();
-				setState(109);
+				setState(121);
 				_errHandler.sync(this);
 				_la = _input.LA(1);
 				while (_la==AND) {
 					{
 					{
-					setState(105);
+					setState(117);
 					match(AND);
-					setState(106);
+					setState(118);
 					resetSubExpression();
 					}
 					}
-					setState(111);
+					setState(123);
 					_errHandler.sync(this);
 					_la = _input.LA(1);
 				}
-				setState(112);
+				setState(124);
 				match(EOF);
 				}
 				break;
@@ -656,13 +713,13 @@ public class HystExpressionParser extends Parser {
 		GuardExpressionContext _localctx = new GuardExpressionContext(_ctx, getState());
 		enterRule(_localctx, 12, RULE_guardExpression);
 		try {
-			setState(120);
+			setState(132);
 			switch (_input.LA(1)) {
 			case EOF:
 				_localctx = new GuardBlankContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(116);
+				setState(128);
 				match(EOF);
 				}
 				break;
@@ -677,9 +734,9 @@ public class HystExpressionParser extends Parser {
 				_localctx = new GuardContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(117);
+				setState(129);
 				or();
-				setState(118);
+				setState(130);
 				match(EOF);
 				}
 				break;
@@ -735,13 +792,13 @@ public class HystExpressionParser extends Parser {
 		InvariantExpressionContext _localctx = new InvariantExpressionContext(_ctx, getState());
 		enterRule(_localctx, 14, RULE_invariantExpression);
 		try {
-			setState(126);
+			setState(138);
 			switch (_input.LA(1)) {
 			case EOF:
 				_localctx = new InvariantBlankContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(122);
+				setState(134);
 				match(EOF);
 				}
 				break;
@@ -756,9 +813,9 @@ public class HystExpressionParser extends Parser {
 				_localctx = new InvariantContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(123);
+				setState(135);
 				or();
-				setState(124);
+				setState(136);
 				match(EOF);
 				}
 				break;
@@ -843,13 +900,13 @@ public class HystExpressionParser extends Parser {
 		enterRule(_localctx, 16, RULE_flowExpression);
 		int _la;
 		try {
-			setState(150);
+			setState(162);
 			switch (_input.LA(1)) {
 			case EOF:
 				_localctx = new FlowBlankContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(128);
+				setState(140);
 				match(EOF);
 				}
 				break;
@@ -857,51 +914,51 @@ public class HystExpressionParser extends Parser {
 				_localctx = new FlowContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(129);
+				setState(141);
 				match(VAR);
-				setState(131);
+				setState(143);
 				_la = _input.LA(1);
 				if (_la==TICK) {
 					{
-					setState(130);
+					setState(142);
 					match(TICK);
 					}
 				}
 
-				setState(133);
+				setState(145);
 				match(EQUAL);
-				setState(134);
+				setState(146);
 				addSub(0);
-				setState(144);
+				setState(156);
 				_errHandler.sync(this);
 				_la = _input.LA(1);
 				while (_la==AND) {
 					{
 					{
-					setState(135);
+					setState(147);
 					match(AND);
-					setState(136);
+					setState(148);
 					match(VAR);
-					setState(138);
+					setState(150);
 					_la = _input.LA(1);
 					if (_la==TICK) {
 						{
-						setState(137);
+						setState(149);
 						match(TICK);
 						}
 					}
 
-					setState(140);
+					setState(152);
 					match(EQUAL);
-					setState(141);
+					setState(153);
 					addSub(0);
 					}
 					}
-					setState(146);
+					setState(158);
 					_errHandler.sync(this);
 					_la = _input.LA(1);
 				}
-				setState(147);
+				setState(159);
 				match(EOF);
 				}
 				break;
@@ -909,7 +966,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new FlowFalseContext(_localctx);
 				enterOuterAlt(_localctx, 3);
 				{
-				setState(149);
+				setState(161);
 				match(FALSE);
 				}
 				break;
@@ -965,31 +1022,31 @@ public class HystExpressionParser extends Parser {
 			_localctx = new DotVarContext(_localctx);
 			enterOuterAlt(_localctx, 1);
 			{
-			setState(152);
+			setState(164);
 			match(VAR);
-			setState(157);
+			setState(169);
 			_errHandler.sync(this);
-			_alt = getInterpreter().adaptivePredict(_input,15,_ctx);
+			_alt = getInterpreter().adaptivePredict(_input,17,_ctx);
 			while ( _alt!=2 && _alt!=org.antlr.v4.runtime.atn.ATN.INVALID_ALT_NUMBER ) {
 				if ( _alt==1 ) {
 					{
 					{
-					setState(153);
+					setState(165);
 					match(DOT);
-					setState(154);
+					setState(166);
 					match(VAR);
 					}
 					} 
 				}
-				setState(159);
+				setState(171);
 				_errHandler.sync(this);
-				_alt = getInterpreter().adaptivePredict(_input,15,_ctx);
+				_alt = getInterpreter().adaptivePredict(_input,17,_ctx);
 			}
-			setState(161);
-			switch ( getInterpreter().adaptivePredict(_input,16,_ctx) ) {
+			setState(173);
+			switch ( getInterpreter().adaptivePredict(_input,18,_ctx) ) {
 			case 1:
 				{
-				setState(160);
+				setState(172);
 				match(TICK);
 				}
 				break;
@@ -1044,7 +1101,7 @@ public class HystExpressionParser extends Parser {
 		LocExpressionContext _localctx = new LocExpressionContext(_ctx, getState());
 		enterRule(_localctx, 20, RULE_locExpression);
 		try {
-			setState(167);
+			setState(179);
 			switch (_input.LA(1)) {
 			case TRUE:
 			case FALSE:
@@ -1057,9 +1114,9 @@ public class HystExpressionParser extends Parser {
 				_localctx = new LocExpContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(163);
+				setState(175);
 				or();
-				setState(164);
+				setState(176);
 				match(EOF);
 				}
 				break;
@@ -1067,7 +1124,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new LocFalseContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(166);
+				setState(178);
 				match(EOF);
 				}
 				break;
@@ -1128,17 +1185,17 @@ public class HystExpressionParser extends Parser {
 		OrContext _localctx = new OrContext(_ctx, getState());
 		enterRule(_localctx, 22, RULE_or);
 		try {
-			setState(174);
-			switch ( getInterpreter().adaptivePredict(_input,18,_ctx) ) {
+			setState(186);
+			switch ( getInterpreter().adaptivePredict(_input,20,_ctx) ) {
 			case 1:
 				_localctx = new OrExpressionContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(169);
+				setState(181);
 				and();
-				setState(170);
+				setState(182);
 				match(OR);
-				setState(171);
+				setState(183);
 				or();
 				}
 				break;
@@ -1146,7 +1203,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ToAndContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(173);
+				setState(185);
 				and();
 				}
 				break;
@@ -1201,25 +1258,25 @@ public class HystExpressionParser extends Parser {
 			_localctx = new AndExpressionContext(_localctx);
 			enterOuterAlt(_localctx, 1);
 			{
-			setState(181);
+			setState(193);
 			_errHandler.sync(this);
-			_alt = getInterpreter().adaptivePredict(_input,19,_ctx);
+			_alt = getInterpreter().adaptivePredict(_input,21,_ctx);
 			while ( _alt!=2 && _alt!=org.antlr.v4.runtime.atn.ATN.INVALID_ALT_NUMBER ) {
 				if ( _alt==1 ) {
 					{
 					{
-					setState(176);
+					setState(188);
 					not();
-					setState(177);
+					setState(189);
 					match(AND);
 					}
 					} 
 				}
-				setState(183);
+				setState(195);
 				_errHandler.sync(this);
-				_alt = getInterpreter().adaptivePredict(_input,19,_ctx);
+				_alt = getInterpreter().adaptivePredict(_input,21,_ctx);
 			}
-			setState(184);
+			setState(196);
 			not();
 			}
 		}
@@ -1288,19 +1345,19 @@ public class HystExpressionParser extends Parser {
 		NotContext _localctx = new NotContext(_ctx, getState());
 		enterRule(_localctx, 26, RULE_not);
 		try {
-			setState(196);
-			switch ( getInterpreter().adaptivePredict(_input,20,_ctx) ) {
+			setState(208);
+			switch ( getInterpreter().adaptivePredict(_input,22,_ctx) ) {
 			case 1:
 				_localctx = new NotExpressionContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(186);
+				setState(198);
 				match(NOT);
-				setState(187);
+				setState(199);
 				match(LPAR);
-				setState(188);
+				setState(200);
 				or();
-				setState(189);
+				setState(201);
 				match(RPAR);
 				}
 				break;
@@ -1308,11 +1365,11 @@ public class HystExpressionParser extends Parser {
 				_localctx = new BoolParenthesesContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(191);
+				setState(203);
 				match(LPAR);
-				setState(192);
+				setState(204);
 				or();
-				setState(193);
+				setState(205);
 				match(RPAR);
 				}
 				break;
@@ -1320,7 +1377,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ToCompareContext(_localctx);
 				enterOuterAlt(_localctx, 3);
 				{
-				setState(195);
+				setState(207);
 				compare();
 				}
 				break;
@@ -1407,13 +1464,13 @@ public class HystExpressionParser extends Parser {
 		OpContext _localctx = new OpContext(_ctx, getState());
 		enterRule(_localctx, 28, RULE_op);
 		try {
-			setState(204);
+			setState(216);
 			switch (_input.LA(1)) {
 			case EQUAL:
 				_localctx = new EqualOpContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(198);
+				setState(210);
 				match(EQUAL);
 				}
 				break;
@@ -1421,7 +1478,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new LessOpContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(199);
+				setState(211);
 				match(LESS);
 				}
 				break;
@@ -1429,7 +1486,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new LessEqualOpContext(_localctx);
 				enterOuterAlt(_localctx, 3);
 				{
-				setState(200);
+				setState(212);
 				match(LESSEQUAL);
 				}
 				break;
@@ -1437,7 +1494,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new GreaterOpContext(_localctx);
 				enterOuterAlt(_localctx, 4);
 				{
-				setState(201);
+				setState(213);
 				match(GREATER);
 				}
 				break;
@@ -1445,7 +1502,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new GreaterEqualOpContext(_localctx);
 				enterOuterAlt(_localctx, 5);
 				{
-				setState(202);
+				setState(214);
 				match(GREATEREQUAL);
 				}
 				break;
@@ -1453,7 +1510,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new NotEqualOpContext(_localctx);
 				enterOuterAlt(_localctx, 6);
 				{
-				setState(203);
+				setState(215);
 				match(NOTEQUAL);
 				}
 				break;
@@ -1527,7 +1584,7 @@ public class HystExpressionParser extends Parser {
 		enterRule(_localctx, 30, RULE_compare);
 		int _la;
 		try {
-			setState(216);
+			setState(228);
 			switch (_input.LA(1)) {
 			case NUM:
 			case VAR:
@@ -1537,21 +1594,21 @@ public class HystExpressionParser extends Parser {
 				_localctx = new BoolOpContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(206);
+				setState(218);
 				addSub(0);
-				setState(210); 
+				setState(222); 
 				_errHandler.sync(this);
 				_la = _input.LA(1);
 				do {
 					{
 					{
-					setState(207);
+					setState(219);
 					op();
-					setState(208);
+					setState(220);
 					addSub(0);
 					}
 					}
-					setState(212); 
+					setState(224); 
 					_errHandler.sync(this);
 					_la = _input.LA(1);
 				} while ( (((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << LESS) | (1L << GREATER) | (1L << LESSEQUAL) | (1L << GREATEREQUAL) | (1L << NOTEQUAL) | (1L << EQUAL))) != 0) );
@@ -1561,7 +1618,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ConstTrueContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(214);
+				setState(226);
 				match(TRUE);
 				}
 				break;
@@ -1569,7 +1626,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ConstFalseContext(_localctx);
 				enterOuterAlt(_localctx, 3);
 				{
-				setState(215);
+				setState(227);
 				match(FALSE);
 				}
 				break;
@@ -1661,29 +1718,29 @@ public class HystExpressionParser extends Parser {
 			_ctx = _localctx;
 			_prevctx = _localctx;
 
-			setState(219);
+			setState(231);
 			timesDiv(0);
 			}
 			_ctx.stop = _input.LT(-1);
-			setState(229);
+			setState(241);
 			_errHandler.sync(this);
-			_alt = getInterpreter().adaptivePredict(_input,25,_ctx);
+			_alt = getInterpreter().adaptivePredict(_input,27,_ctx);
 			while ( _alt!=2 && _alt!=org.antlr.v4.runtime.atn.ATN.INVALID_ALT_NUMBER ) {
 				if ( _alt==1 ) {
 					if ( _parseListeners!=null ) triggerExitRuleEvent();
 					_prevctx = _localctx;
 					{
-					setState(227);
-					switch ( getInterpreter().adaptivePredict(_input,24,_ctx) ) {
+					setState(239);
+					switch ( getInterpreter().adaptivePredict(_input,26,_ctx) ) {
 					case 1:
 						{
 						_localctx = new PlusContext(new AddSubContext(_parentctx, _parentState));
 						pushNewRecursionContext(_localctx, _startState, RULE_addSub);
-						setState(221);
+						setState(233);
 						if (!(precpred(_ctx, 3))) throw new FailedPredicateException(this, "precpred(_ctx, 3)");
-						setState(222);
+						setState(234);
 						match(PLUS);
-						setState(223);
+						setState(235);
 						timesDiv(0);
 						}
 						break;
@@ -1691,20 +1748,20 @@ public class HystExpressionParser extends Parser {
 						{
 						_localctx = new MinusContext(new AddSubContext(_parentctx, _parentState));
 						pushNewRecursionContext(_localctx, _startState, RULE_addSub);
-						setState(224);
+						setState(236);
 						if (!(precpred(_ctx, 2))) throw new FailedPredicateException(this, "precpred(_ctx, 2)");
-						setState(225);
+						setState(237);
 						match(MINUS);
-						setState(226);
+						setState(238);
 						timesDiv(0);
 						}
 						break;
 					}
 					} 
 				}
-				setState(231);
+				setState(243);
 				_errHandler.sync(this);
-				_alt = getInterpreter().adaptivePredict(_input,25,_ctx);
+				_alt = getInterpreter().adaptivePredict(_input,27,_ctx);
 			}
 			}
 		}
@@ -1792,29 +1849,29 @@ public class HystExpressionParser extends Parser {
 			_ctx = _localctx;
 			_prevctx = _localctx;
 
-			setState(233);
+			setState(245);
 			pow(0);
 			}
 			_ctx.stop = _input.LT(-1);
-			setState(243);
+			setState(255);
 			_errHandler.sync(this);
-			_alt = getInterpreter().adaptivePredict(_input,27,_ctx);
+			_alt = getInterpreter().adaptivePredict(_input,29,_ctx);
 			while ( _alt!=2 && _alt!=org.antlr.v4.runtime.atn.ATN.INVALID_ALT_NUMBER ) {
 				if ( _alt==1 ) {
 					if ( _parseListeners!=null ) triggerExitRuleEvent();
 					_prevctx = _localctx;
 					{
-					setState(241);
-					switch ( getInterpreter().adaptivePredict(_input,26,_ctx) ) {
+					setState(253);
+					switch ( getInterpreter().adaptivePredict(_input,28,_ctx) ) {
 					case 1:
 						{
 						_localctx = new MultiplicationContext(new TimesDivContext(_parentctx, _parentState));
 						pushNewRecursionContext(_localctx, _startState, RULE_timesDiv);
-						setState(235);
+						setState(247);
 						if (!(precpred(_ctx, 3))) throw new FailedPredicateException(this, "precpred(_ctx, 3)");
-						setState(236);
+						setState(248);
 						match(TIMES);
-						setState(237);
+						setState(249);
 						pow(0);
 						}
 						break;
@@ -1822,20 +1879,20 @@ public class HystExpressionParser extends Parser {
 						{
 						_localctx = new DivisionContext(new TimesDivContext(_parentctx, _parentState));
 						pushNewRecursionContext(_localctx, _startState, RULE_timesDiv);
-						setState(238);
+						setState(250);
 						if (!(precpred(_ctx, 2))) throw new FailedPredicateException(this, "precpred(_ctx, 2)");
-						setState(239);
+						setState(251);
 						match(DIV);
-						setState(240);
+						setState(252);
 						pow(0);
 						}
 						break;
 					}
 					} 
 				}
-				setState(245);
+				setState(257);
 				_errHandler.sync(this);
-				_alt = getInterpreter().adaptivePredict(_input,27,_ctx);
+				_alt = getInterpreter().adaptivePredict(_input,29,_ctx);
 			}
 			}
 		}
@@ -1908,13 +1965,13 @@ public class HystExpressionParser extends Parser {
 			_ctx = _localctx;
 			_prevctx = _localctx;
 
-			setState(247);
+			setState(259);
 			negativeUnary();
 			}
 			_ctx.stop = _input.LT(-1);
-			setState(254);
+			setState(266);
 			_errHandler.sync(this);
-			_alt = getInterpreter().adaptivePredict(_input,28,_ctx);
+			_alt = getInterpreter().adaptivePredict(_input,30,_ctx);
 			while ( _alt!=2 && _alt!=org.antlr.v4.runtime.atn.ATN.INVALID_ALT_NUMBER ) {
 				if ( _alt==1 ) {
 					if ( _parseListeners!=null ) triggerExitRuleEvent();
@@ -1923,18 +1980,18 @@ public class HystExpressionParser extends Parser {
 					{
 					_localctx = new PowExpressionContext(new PowContext(_parentctx, _parentState));
 					pushNewRecursionContext(_localctx, _startState, RULE_pow);
-					setState(249);
+					setState(261);
 					if (!(precpred(_ctx, 2))) throw new FailedPredicateException(this, "precpred(_ctx, 2)");
-					setState(250);
+					setState(262);
 					match(POW);
-					setState(251);
+					setState(263);
 					negativeUnary();
 					}
 					} 
 				}
-				setState(256);
+				setState(268);
 				_errHandler.sync(this);
-				_alt = getInterpreter().adaptivePredict(_input,28,_ctx);
+				_alt = getInterpreter().adaptivePredict(_input,30,_ctx);
 			}
 			}
 		}
@@ -1988,15 +2045,15 @@ public class HystExpressionParser extends Parser {
 		NegativeUnaryContext _localctx = new NegativeUnaryContext(_ctx, getState());
 		enterRule(_localctx, 38, RULE_negativeUnary);
 		try {
-			setState(260);
+			setState(272);
 			switch (_input.LA(1)) {
 			case MINUS:
 				_localctx = new NegativeContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(257);
+				setState(269);
 				match(MINUS);
-				setState(258);
+				setState(270);
 				negativeUnary();
 				}
 				break;
@@ -2007,7 +2064,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ToUnaryContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(259);
+				setState(271);
 				unary();
 				}
 				break;
@@ -2097,13 +2154,13 @@ public class HystExpressionParser extends Parser {
 		UnaryContext _localctx = new UnaryContext(_ctx, getState());
 		enterRule(_localctx, 40, RULE_unary);
 		try {
-			setState(270);
-			switch ( getInterpreter().adaptivePredict(_input,30,_ctx) ) {
+			setState(282);
+			switch ( getInterpreter().adaptivePredict(_input,32,_ctx) ) {
 			case 1:
 				_localctx = new MatrixExpContext(_localctx);
 				enterOuterAlt(_localctx, 1);
 				{
-				setState(262);
+				setState(274);
 				matrixExpression();
 				}
 				break;
@@ -2111,7 +2168,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new FuncExpContext(_localctx);
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(263);
+				setState(275);
 				functionExpression();
 				}
 				break;
@@ -2119,7 +2176,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new NumberContext(_localctx);
 				enterOuterAlt(_localctx, 3);
 				{
-				setState(264);
+				setState(276);
 				match(NUM);
 				}
 				break;
@@ -2127,7 +2184,7 @@ public class HystExpressionParser extends Parser {
 				_localctx = new DottedVariableContext(_localctx);
 				enterOuterAlt(_localctx, 4);
 				{
-				setState(265);
+				setState(277);
 				dottedVar();
 				}
 				break;
@@ -2135,11 +2192,11 @@ public class HystExpressionParser extends Parser {
 				_localctx = new ParenthesesContext(_localctx);
 				enterOuterAlt(_localctx, 5);
 				{
-				setState(266);
+				setState(278);
 				match(LPAR);
-				setState(267);
+				setState(279);
 				addSub(0);
-				setState(268);
+				setState(280);
 				match(RPAR);
 				}
 				break;
@@ -2194,33 +2251,34 @@ public class HystExpressionParser extends Parser {
 	}
 
 	public static final String _serializedATN =
-		"\3\u0430\ud6d1\u8206\uad2d\u4417\uaef1\u8d80\uaadd\3\37\u0113\4\2\t\2"+
-		"\4\3\t\3\4\4\t\4\4\5\t\5\4\6\t\6\4\7\t\7\4\b\t\b\4\t\t\t\4\n\t\n\4\13"+
-		"\t\13\4\f\t\f\4\r\t\r\4\16\t\16\4\17\t\17\4\20\t\20\4\21\t\21\4\22\t\22"+
+		"\3\u0430\ud6d1\u8206\uad2d\u4417\uaef1\u8d80\uaadd\3 \u011f\4\2\t\2\4"+
+		"\3\t\3\4\4\t\4\4\5\t\5\4\6\t\6\4\7\t\7\4\b\t\b\4\t\t\t\4\n\t\n\4\13\t"+
+		"\13\4\f\t\f\4\r\t\r\4\16\t\16\4\17\t\17\4\20\t\20\4\21\t\21\4\22\t\22"+
 		"\4\23\t\23\4\24\t\24\4\25\t\25\4\26\t\26\3\2\3\2\3\2\7\2\60\n\2\f\2\16"+
 		"\2\63\13\2\3\3\3\3\3\3\3\3\3\3\3\3\3\4\3\4\3\4\3\4\7\4?\n\4\f\4\16\4B"+
 		"\13\4\3\4\3\4\3\4\3\4\3\4\3\4\5\4J\n\4\3\5\3\5\3\5\3\5\3\5\7\5Q\n\5\f"+
-		"\5\16\5T\13\5\5\5V\n\5\3\5\3\5\3\6\3\6\3\6\3\6\3\6\3\6\3\6\3\6\3\6\7\6"+
-		"c\n\6\f\6\16\6f\13\6\5\6h\n\6\3\7\3\7\3\7\3\7\7\7n\n\7\f\7\16\7q\13\7"+
-		"\3\7\3\7\5\7u\n\7\3\b\3\b\3\b\3\b\5\b{\n\b\3\t\3\t\3\t\3\t\5\t\u0081\n"+
-		"\t\3\n\3\n\3\n\5\n\u0086\n\n\3\n\3\n\3\n\3\n\3\n\5\n\u008d\n\n\3\n\3\n"+
-		"\7\n\u0091\n\n\f\n\16\n\u0094\13\n\3\n\3\n\3\n\5\n\u0099\n\n\3\13\3\13"+
-		"\3\13\7\13\u009e\n\13\f\13\16\13\u00a1\13\13\3\13\5\13\u00a4\n\13\3\f"+
-		"\3\f\3\f\3\f\5\f\u00aa\n\f\3\r\3\r\3\r\3\r\3\r\5\r\u00b1\n\r\3\16\3\16"+
-		"\3\16\7\16\u00b6\n\16\f\16\16\16\u00b9\13\16\3\16\3\16\3\17\3\17\3\17"+
-		"\3\17\3\17\3\17\3\17\3\17\3\17\3\17\5\17\u00c7\n\17\3\20\3\20\3\20\3\20"+
-		"\3\20\3\20\5\20\u00cf\n\20\3\21\3\21\3\21\3\21\6\21\u00d5\n\21\r\21\16"+
-		"\21\u00d6\3\21\3\21\5\21\u00db\n\21\3\22\3\22\3\22\3\22\3\22\3\22\3\22"+
-		"\3\22\3\22\7\22\u00e6\n\22\f\22\16\22\u00e9\13\22\3\23\3\23\3\23\3\23"+
-		"\3\23\3\23\3\23\3\23\3\23\7\23\u00f4\n\23\f\23\16\23\u00f7\13\23\3\24"+
-		"\3\24\3\24\3\24\3\24\3\24\7\24\u00ff\n\24\f\24\16\24\u0102\13\24\3\25"+
-		"\3\25\3\25\5\25\u0107\n\25\3\26\3\26\3\26\3\26\3\26\3\26\3\26\3\26\5\26"+
-		"\u0111\n\26\3\26\2\5\"$&\27\2\4\6\b\n\f\16\20\22\24\26\30\32\34\36 \""+
-		"$&(*\2\2\u0126\2,\3\2\2\2\4\64\3\2\2\2\6I\3\2\2\2\bK\3\2\2\2\ng\3\2\2"+
-		"\2\ft\3\2\2\2\16z\3\2\2\2\20\u0080\3\2\2\2\22\u0098\3\2\2\2\24\u009a\3"+
-		"\2\2\2\26\u00a9\3\2\2\2\30\u00b0\3\2\2\2\32\u00b7\3\2\2\2\34\u00c6\3\2"+
-		"\2\2\36\u00ce\3\2\2\2 \u00da\3\2\2\2\"\u00dc\3\2\2\2$\u00ea\3\2\2\2&\u00f8"+
-		"\3\2\2\2(\u0106\3\2\2\2*\u0110\3\2\2\2,\61\5\"\22\2-.\7\r\2\2.\60\5\""+
+		"\5\16\5T\13\5\5\5V\n\5\3\5\3\5\3\5\3\5\3\5\3\5\7\5^\n\5\f\5\16\5a\13\5"+
+		"\3\5\5\5d\n\5\3\6\3\6\3\6\3\6\3\6\3\6\3\6\3\6\3\6\7\6o\n\6\f\6\16\6r\13"+
+		"\6\5\6t\n\6\3\7\3\7\3\7\3\7\7\7z\n\7\f\7\16\7}\13\7\3\7\3\7\5\7\u0081"+
+		"\n\7\3\b\3\b\3\b\3\b\5\b\u0087\n\b\3\t\3\t\3\t\3\t\5\t\u008d\n\t\3\n\3"+
+		"\n\3\n\5\n\u0092\n\n\3\n\3\n\3\n\3\n\3\n\5\n\u0099\n\n\3\n\3\n\7\n\u009d"+
+		"\n\n\f\n\16\n\u00a0\13\n\3\n\3\n\3\n\5\n\u00a5\n\n\3\13\3\13\3\13\7\13"+
+		"\u00aa\n\13\f\13\16\13\u00ad\13\13\3\13\5\13\u00b0\n\13\3\f\3\f\3\f\3"+
+		"\f\5\f\u00b6\n\f\3\r\3\r\3\r\3\r\3\r\5\r\u00bd\n\r\3\16\3\16\3\16\7\16"+
+		"\u00c2\n\16\f\16\16\16\u00c5\13\16\3\16\3\16\3\17\3\17\3\17\3\17\3\17"+
+		"\3\17\3\17\3\17\3\17\3\17\5\17\u00d3\n\17\3\20\3\20\3\20\3\20\3\20\3\20"+
+		"\5\20\u00db\n\20\3\21\3\21\3\21\3\21\6\21\u00e1\n\21\r\21\16\21\u00e2"+
+		"\3\21\3\21\5\21\u00e7\n\21\3\22\3\22\3\22\3\22\3\22\3\22\3\22\3\22\3\22"+
+		"\7\22\u00f2\n\22\f\22\16\22\u00f5\13\22\3\23\3\23\3\23\3\23\3\23\3\23"+
+		"\3\23\3\23\3\23\7\23\u0100\n\23\f\23\16\23\u0103\13\23\3\24\3\24\3\24"+
+		"\3\24\3\24\3\24\7\24\u010b\n\24\f\24\16\24\u010e\13\24\3\25\3\25\3\25"+
+		"\5\25\u0113\n\25\3\26\3\26\3\26\3\26\3\26\3\26\3\26\3\26\5\26\u011d\n"+
+		"\26\3\26\2\5\"$&\27\2\4\6\b\n\f\16\20\22\24\26\30\32\34\36 \"$&(*\2\2"+
+		"\u0134\2,\3\2\2\2\4\64\3\2\2\2\6I\3\2\2\2\bc\3\2\2\2\ns\3\2\2\2\f\u0080"+
+		"\3\2\2\2\16\u0086\3\2\2\2\20\u008c\3\2\2\2\22\u00a4\3\2\2\2\24\u00a6\3"+
+		"\2\2\2\26\u00b5\3\2\2\2\30\u00bc\3\2\2\2\32\u00c3\3\2\2\2\34\u00d2\3\2"+
+		"\2\2\36\u00da\3\2\2\2 \u00e6\3\2\2\2\"\u00e8\3\2\2\2$\u00f6\3\2\2\2&\u0104"+
+		"\3\2\2\2(\u0112\3\2\2\2*\u011c\3\2\2\2,\61\5\"\22\2-.\7\r\2\2.\60\5\""+
 		"\22\2/-\3\2\2\2\60\63\3\2\2\2\61/\3\2\2\2\61\62\3\2\2\2\62\3\3\2\2\2\63"+
 		"\61\3\2\2\2\64\65\5\"\22\2\65\66\7\17\2\2\66\67\5\"\22\2\678\7\17\2\2"+
 		"89\5\"\22\29\5\3\2\2\2:;\7\13\2\2;@\5\2\2\2<=\7\16\2\2=?\5\2\2\2><\3\2"+
@@ -2228,65 +2286,69 @@ public class HystExpressionParser extends Parser {
 		"\2\2EF\7\13\2\2FG\5\4\3\2GH\7\f\2\2HJ\3\2\2\2I:\3\2\2\2IE\3\2\2\2J\7\3"+
 		"\2\2\2KL\7\b\2\2LU\7\t\2\2MR\5\"\22\2NO\7\r\2\2OQ\5\"\22\2PN\3\2\2\2Q"+
 		"T\3\2\2\2RP\3\2\2\2RS\3\2\2\2SV\3\2\2\2TR\3\2\2\2UM\3\2\2\2UV\3\2\2\2"+
-		"VW\3\2\2\2WX\7\n\2\2X\t\3\2\2\2YZ\7\b\2\2Z[\7\37\2\2[h\5\"\22\2\\]\5\""+
-		"\22\2]^\5\36\20\2^d\5\"\22\2_`\5\36\20\2`a\5\"\22\2ac\3\2\2\2b_\3\2\2"+
-		"\2cf\3\2\2\2db\3\2\2\2de\3\2\2\2eh\3\2\2\2fd\3\2\2\2gY\3\2\2\2g\\\3\2"+
-		"\2\2h\13\3\2\2\2iu\7\2\2\3jo\5\n\6\2kl\7\26\2\2ln\5\n\6\2mk\3\2\2\2nq"+
-		"\3\2\2\2om\3\2\2\2op\3\2\2\2pr\3\2\2\2qo\3\2\2\2rs\7\2\2\3su\3\2\2\2t"+
-		"i\3\2\2\2tj\3\2\2\2u\r\3\2\2\2v{\7\2\2\3wx\5\30\r\2xy\7\2\2\3y{\3\2\2"+
-		"\2zv\3\2\2\2zw\3\2\2\2{\17\3\2\2\2|\u0081\7\2\2\3}~\5\30\r\2~\177\7\2"+
-		"\2\3\177\u0081\3\2\2\2\u0080|\3\2\2\2\u0080}\3\2\2\2\u0081\21\3\2\2\2"+
-		"\u0082\u0099\7\2\2\3\u0083\u0085\7\b\2\2\u0084\u0086\7\4\2\2\u0085\u0084"+
-		"\3\2\2\2\u0085\u0086\3\2\2\2\u0086\u0087\3\2\2\2\u0087\u0088\7\36\2\2"+
-		"\u0088\u0092\5\"\22\2\u0089\u008a\7\26\2\2\u008a\u008c\7\b\2\2\u008b\u008d"+
-		"\7\4\2\2\u008c\u008b\3\2\2\2\u008c\u008d\3\2\2\2\u008d\u008e\3\2\2\2\u008e"+
-		"\u008f\7\36\2\2\u008f\u0091\5\"\22\2\u0090\u0089\3\2\2\2\u0091\u0094\3"+
-		"\2\2\2\u0092\u0090\3\2\2\2\u0092\u0093\3\2\2\2\u0093\u0095\3\2\2\2\u0094"+
-		"\u0092\3\2\2\2\u0095\u0096\7\2\2\3\u0096\u0099\3\2\2\2\u0097\u0099\7\6"+
-		"\2\2\u0098\u0082\3\2\2\2\u0098\u0083\3\2\2\2\u0098\u0097\3\2\2\2\u0099"+
-		"\23\3\2\2\2\u009a\u009f\7\b\2\2\u009b\u009c\7\25\2\2\u009c\u009e\7\b\2"+
-		"\2\u009d\u009b\3\2\2\2\u009e\u00a1\3\2\2\2\u009f\u009d\3\2\2\2\u009f\u00a0"+
-		"\3\2\2\2\u00a0\u00a3\3\2\2\2\u00a1\u009f\3\2\2\2\u00a2\u00a4\7\4\2\2\u00a3"+
-		"\u00a2\3\2\2\2\u00a3\u00a4\3\2\2\2\u00a4\25\3\2\2\2\u00a5\u00a6\5\30\r"+
-		"\2\u00a6\u00a7\7\2\2\3\u00a7\u00aa\3\2\2\2\u00a8\u00aa\7\2\2\3\u00a9\u00a5"+
-		"\3\2\2\2\u00a9\u00a8\3\2\2\2\u00aa\27\3\2\2\2\u00ab\u00ac\5\32\16\2\u00ac"+
-		"\u00ad\7\27\2\2\u00ad\u00ae\5\30\r\2\u00ae\u00b1\3\2\2\2\u00af\u00b1\5"+
-		"\32\16\2\u00b0\u00ab\3\2\2\2\u00b0\u00af\3\2\2\2\u00b1\31\3\2\2\2\u00b2"+
-		"\u00b3\5\34\17\2\u00b3\u00b4\7\26\2\2\u00b4\u00b6\3\2\2\2\u00b5\u00b2"+
-		"\3\2\2\2\u00b6\u00b9\3\2\2\2\u00b7\u00b5\3\2\2\2\u00b7\u00b8\3\2\2\2\u00b8"+
-		"\u00ba\3\2\2\2\u00b9\u00b7\3\2\2\2\u00ba\u00bb\5\34\17\2\u00bb\33\3\2"+
-		"\2\2\u00bc\u00bd\7\30\2\2\u00bd\u00be\7\t\2\2\u00be\u00bf\5\30\r\2\u00bf"+
-		"\u00c0\7\n\2\2\u00c0\u00c7\3\2\2\2\u00c1\u00c2\7\t\2\2\u00c2\u00c3\5\30"+
-		"\r\2\u00c3\u00c4\7\n\2\2\u00c4\u00c7\3\2\2\2\u00c5\u00c7\5 \21\2\u00c6"+
-		"\u00bc\3\2\2\2\u00c6\u00c1\3\2\2\2\u00c6\u00c5\3\2\2\2\u00c7\35\3\2\2"+
-		"\2\u00c8\u00cf\7\36\2\2\u00c9\u00cf\7\31\2\2\u00ca\u00cf\7\33\2\2\u00cb"+
-		"\u00cf\7\32\2\2\u00cc\u00cf\7\34\2\2\u00cd\u00cf\7\35\2\2\u00ce\u00c8"+
-		"\3\2\2\2\u00ce\u00c9\3\2\2\2\u00ce\u00ca\3\2\2\2\u00ce\u00cb\3\2\2\2\u00ce"+
-		"\u00cc\3\2\2\2\u00ce\u00cd\3\2\2\2\u00cf\37\3\2\2\2\u00d0\u00d4\5\"\22"+
-		"\2\u00d1\u00d2\5\36\20\2\u00d2\u00d3\5\"\22\2\u00d3\u00d5\3\2\2\2\u00d4"+
-		"\u00d1\3\2\2\2\u00d5\u00d6\3\2\2\2\u00d6\u00d4\3\2\2\2\u00d6\u00d7\3\2"+
-		"\2\2\u00d7\u00db\3\2\2\2\u00d8\u00db\7\5\2\2\u00d9\u00db\7\6\2\2\u00da"+
-		"\u00d0\3\2\2\2\u00da\u00d8\3\2\2\2\u00da\u00d9\3\2\2\2\u00db!\3\2\2\2"+
-		"\u00dc\u00dd\b\22\1\2\u00dd\u00de\5$\23\2\u00de\u00e7\3\2\2\2\u00df\u00e0"+
-		"\f\5\2\2\u00e0\u00e1\7\20\2\2\u00e1\u00e6\5$\23\2\u00e2\u00e3\f\4\2\2"+
-		"\u00e3\u00e4\7\21\2\2\u00e4\u00e6\5$\23\2\u00e5\u00df\3\2\2\2\u00e5\u00e2"+
-		"\3\2\2\2\u00e6\u00e9\3\2\2\2\u00e7\u00e5\3\2\2\2\u00e7\u00e8\3\2\2\2\u00e8"+
-		"#\3\2\2\2\u00e9\u00e7\3\2\2\2\u00ea\u00eb\b\23\1\2\u00eb\u00ec\5&\24\2"+
-		"\u00ec\u00f5\3\2\2\2\u00ed\u00ee\f\5\2\2\u00ee\u00ef\7\22\2\2\u00ef\u00f4"+
-		"\5&\24\2\u00f0\u00f1\f\4\2\2\u00f1\u00f2\7\23\2\2\u00f2\u00f4\5&\24\2"+
-		"\u00f3\u00ed\3\2\2\2\u00f3\u00f0\3\2\2\2\u00f4\u00f7\3\2\2\2\u00f5\u00f3"+
-		"\3\2\2\2\u00f5\u00f6\3\2\2\2\u00f6%\3\2\2\2\u00f7\u00f5\3\2\2\2\u00f8"+
-		"\u00f9\b\24\1\2\u00f9\u00fa\5(\25\2\u00fa\u0100\3\2\2\2\u00fb\u00fc\f"+
-		"\4\2\2\u00fc\u00fd\7\24\2\2\u00fd\u00ff\5(\25\2\u00fe\u00fb\3\2\2\2\u00ff"+
-		"\u0102\3\2\2\2\u0100\u00fe\3\2\2\2\u0100\u0101\3\2\2\2\u0101\'\3\2\2\2"+
-		"\u0102\u0100\3\2\2\2\u0103\u0104\7\21\2\2\u0104\u0107\5(\25\2\u0105\u0107"+
-		"\5*\26\2\u0106\u0103\3\2\2\2\u0106\u0105\3\2\2\2\u0107)\3\2\2\2\u0108"+
-		"\u0111\5\6\4\2\u0109\u0111\5\b\5\2\u010a\u0111\7\7\2\2\u010b\u0111\5\24"+
-		"\13\2\u010c\u010d\7\t\2\2\u010d\u010e\5\"\22\2\u010e\u010f\7\n\2\2\u010f"+
-		"\u0111\3\2\2\2\u0110\u0108\3\2\2\2\u0110\u0109\3\2\2\2\u0110\u010a\3\2"+
-		"\2\2\u0110\u010b\3\2\2\2\u0110\u010c\3\2\2\2\u0111+\3\2\2\2!\61@IRUdg"+
-		"otz\u0080\u0085\u008c\u0092\u0098\u009f\u00a3\u00a9\u00b0\u00b7\u00c6"+
-		"\u00ce\u00d6\u00da\u00e5\u00e7\u00f3\u00f5\u0100\u0106\u0110";
+		"VW\3\2\2\2Wd\7\n\2\2XY\7\b\2\2YZ\7\t\2\2Z_\7 \2\2[\\\7\r\2\2\\^\5\"\22"+
+		"\2][\3\2\2\2^a\3\2\2\2_]\3\2\2\2_`\3\2\2\2`b\3\2\2\2a_\3\2\2\2bd\7\n\2"+
+		"\2cK\3\2\2\2cX\3\2\2\2d\t\3\2\2\2ef\7\b\2\2fg\7\37\2\2gt\5\"\22\2hi\5"+
+		"\"\22\2ij\5\36\20\2jp\5\"\22\2kl\5\36\20\2lm\5\"\22\2mo\3\2\2\2nk\3\2"+
+		"\2\2or\3\2\2\2pn\3\2\2\2pq\3\2\2\2qt\3\2\2\2rp\3\2\2\2se\3\2\2\2sh\3\2"+
+		"\2\2t\13\3\2\2\2u\u0081\7\2\2\3v{\5\n\6\2wx\7\26\2\2xz\5\n\6\2yw\3\2\2"+
+		"\2z}\3\2\2\2{y\3\2\2\2{|\3\2\2\2|~\3\2\2\2}{\3\2\2\2~\177\7\2\2\3\177"+
+		"\u0081\3\2\2\2\u0080u\3\2\2\2\u0080v\3\2\2\2\u0081\r\3\2\2\2\u0082\u0087"+
+		"\7\2\2\3\u0083\u0084\5\30\r\2\u0084\u0085\7\2\2\3\u0085\u0087\3\2\2\2"+
+		"\u0086\u0082\3\2\2\2\u0086\u0083\3\2\2\2\u0087\17\3\2\2\2\u0088\u008d"+
+		"\7\2\2\3\u0089\u008a\5\30\r\2\u008a\u008b\7\2\2\3\u008b\u008d\3\2\2\2"+
+		"\u008c\u0088\3\2\2\2\u008c\u0089\3\2\2\2\u008d\21\3\2\2\2\u008e\u00a5"+
+		"\7\2\2\3\u008f\u0091\7\b\2\2\u0090\u0092\7\4\2\2\u0091\u0090\3\2\2\2\u0091"+
+		"\u0092\3\2\2\2\u0092\u0093\3\2\2\2\u0093\u0094\7\36\2\2\u0094\u009e\5"+
+		"\"\22\2\u0095\u0096\7\26\2\2\u0096\u0098\7\b\2\2\u0097\u0099\7\4\2\2\u0098"+
+		"\u0097\3\2\2\2\u0098\u0099\3\2\2\2\u0099\u009a\3\2\2\2\u009a\u009b\7\36"+
+		"\2\2\u009b\u009d\5\"\22\2\u009c\u0095\3\2\2\2\u009d\u00a0\3\2\2\2\u009e"+
+		"\u009c\3\2\2\2\u009e\u009f\3\2\2\2\u009f\u00a1\3\2\2\2\u00a0\u009e\3\2"+
+		"\2\2\u00a1\u00a2\7\2\2\3\u00a2\u00a5\3\2\2\2\u00a3\u00a5\7\6\2\2\u00a4"+
+		"\u008e\3\2\2\2\u00a4\u008f\3\2\2\2\u00a4\u00a3\3\2\2\2\u00a5\23\3\2\2"+
+		"\2\u00a6\u00ab\7\b\2\2\u00a7\u00a8\7\25\2\2\u00a8\u00aa\7\b\2\2\u00a9"+
+		"\u00a7\3\2\2\2\u00aa\u00ad\3\2\2\2\u00ab\u00a9\3\2\2\2\u00ab\u00ac\3\2"+
+		"\2\2\u00ac\u00af\3\2\2\2\u00ad\u00ab\3\2\2\2\u00ae\u00b0\7\4\2\2\u00af"+
+		"\u00ae\3\2\2\2\u00af\u00b0\3\2\2\2\u00b0\25\3\2\2\2\u00b1\u00b2\5\30\r"+
+		"\2\u00b2\u00b3\7\2\2\3\u00b3\u00b6\3\2\2\2\u00b4\u00b6\7\2\2\3\u00b5\u00b1"+
+		"\3\2\2\2\u00b5\u00b4\3\2\2\2\u00b6\27\3\2\2\2\u00b7\u00b8\5\32\16\2\u00b8"+
+		"\u00b9\7\27\2\2\u00b9\u00ba\5\30\r\2\u00ba\u00bd\3\2\2\2\u00bb\u00bd\5"+
+		"\32\16\2\u00bc\u00b7\3\2\2\2\u00bc\u00bb\3\2\2\2\u00bd\31\3\2\2\2\u00be"+
+		"\u00bf\5\34\17\2\u00bf\u00c0\7\26\2\2\u00c0\u00c2\3\2\2\2\u00c1\u00be"+
+		"\3\2\2\2\u00c2\u00c5\3\2\2\2\u00c3\u00c1\3\2\2\2\u00c3\u00c4\3\2\2\2\u00c4"+
+		"\u00c6\3\2\2\2\u00c5\u00c3\3\2\2\2\u00c6\u00c7\5\34\17\2\u00c7\33\3\2"+
+		"\2\2\u00c8\u00c9\7\30\2\2\u00c9\u00ca\7\t\2\2\u00ca\u00cb\5\30\r\2\u00cb"+
+		"\u00cc\7\n\2\2\u00cc\u00d3\3\2\2\2\u00cd\u00ce\7\t\2\2\u00ce\u00cf\5\30"+
+		"\r\2\u00cf\u00d0\7\n\2\2\u00d0\u00d3\3\2\2\2\u00d1\u00d3\5 \21\2\u00d2"+
+		"\u00c8\3\2\2\2\u00d2\u00cd\3\2\2\2\u00d2\u00d1\3\2\2\2\u00d3\35\3\2\2"+
+		"\2\u00d4\u00db\7\36\2\2\u00d5\u00db\7\31\2\2\u00d6\u00db\7\33\2\2\u00d7"+
+		"\u00db\7\32\2\2\u00d8\u00db\7\34\2\2\u00d9\u00db\7\35\2\2\u00da\u00d4"+
+		"\3\2\2\2\u00da\u00d5\3\2\2\2\u00da\u00d6\3\2\2\2\u00da\u00d7\3\2\2\2\u00da"+
+		"\u00d8\3\2\2\2\u00da\u00d9\3\2\2\2\u00db\37\3\2\2\2\u00dc\u00e0\5\"\22"+
+		"\2\u00dd\u00de\5\36\20\2\u00de\u00df\5\"\22\2\u00df\u00e1\3\2\2\2\u00e0"+
+		"\u00dd\3\2\2\2\u00e1\u00e2\3\2\2\2\u00e2\u00e0\3\2\2\2\u00e2\u00e3\3\2"+
+		"\2\2\u00e3\u00e7\3\2\2\2\u00e4\u00e7\7\5\2\2\u00e5\u00e7\7\6\2\2\u00e6"+
+		"\u00dc\3\2\2\2\u00e6\u00e4\3\2\2\2\u00e6\u00e5\3\2\2\2\u00e7!\3\2\2\2"+
+		"\u00e8\u00e9\b\22\1\2\u00e9\u00ea\5$\23\2\u00ea\u00f3\3\2\2\2\u00eb\u00ec"+
+		"\f\5\2\2\u00ec\u00ed\7\20\2\2\u00ed\u00f2\5$\23\2\u00ee\u00ef\f\4\2\2"+
+		"\u00ef\u00f0\7\21\2\2\u00f0\u00f2\5$\23\2\u00f1\u00eb\3\2\2\2\u00f1\u00ee"+
+		"\3\2\2\2\u00f2\u00f5\3\2\2\2\u00f3\u00f1\3\2\2\2\u00f3\u00f4\3\2\2\2\u00f4"+
+		"#\3\2\2\2\u00f5\u00f3\3\2\2\2\u00f6\u00f7\b\23\1\2\u00f7\u00f8\5&\24\2"+
+		"\u00f8\u0101\3\2\2\2\u00f9\u00fa\f\5\2\2\u00fa\u00fb\7\22\2\2\u00fb\u0100"+
+		"\5&\24\2\u00fc\u00fd\f\4\2\2\u00fd\u00fe\7\23\2\2\u00fe\u0100\5&\24\2"+
+		"\u00ff\u00f9\3\2\2\2\u00ff\u00fc\3\2\2\2\u0100\u0103\3\2\2\2\u0101\u00ff"+
+		"\3\2\2\2\u0101\u0102\3\2\2\2\u0102%\3\2\2\2\u0103\u0101\3\2\2\2\u0104"+
+		"\u0105\b\24\1\2\u0105\u0106\5(\25\2\u0106\u010c\3\2\2\2\u0107\u0108\f"+
+		"\4\2\2\u0108\u0109\7\24\2\2\u0109\u010b\5(\25\2\u010a\u0107\3\2\2\2\u010b"+
+		"\u010e\3\2\2\2\u010c\u010a\3\2\2\2\u010c\u010d\3\2\2\2\u010d\'\3\2\2\2"+
+		"\u010e\u010c\3\2\2\2\u010f\u0110\7\21\2\2\u0110\u0113\5(\25\2\u0111\u0113"+
+		"\5*\26\2\u0112\u010f\3\2\2\2\u0112\u0111\3\2\2\2\u0113)\3\2\2\2\u0114"+
+		"\u011d\5\6\4\2\u0115\u011d\5\b\5\2\u0116\u011d\7\7\2\2\u0117\u011d\5\24"+
+		"\13\2\u0118\u0119\7\t\2\2\u0119\u011a\5\"\22\2\u011a\u011b\7\n\2\2\u011b"+
+		"\u011d\3\2\2\2\u011c\u0114\3\2\2\2\u011c\u0115\3\2\2\2\u011c\u0116\3\2"+
+		"\2\2\u011c\u0117\3\2\2\2\u011c\u0118\3\2\2\2\u011d+\3\2\2\2#\61@IRU_c"+
+		"ps{\u0080\u0086\u008c\u0091\u0098\u009e\u00a4\u00ab\u00af\u00b5\u00bc"+
+		"\u00c3\u00d2\u00da\u00e2\u00e6\u00f1\u00f3\u00ff\u0101\u010c\u0112\u011c";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
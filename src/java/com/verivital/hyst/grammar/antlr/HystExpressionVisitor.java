@@ -1,6 +1,5 @@
-// Generated from HystExpression.g4 by ANTLR 4.5
+// Generated from HystExpression.g4 by ANTLR 4.5.1
 package com.verivital.hyst.grammar.antlr;
-import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.tree.ParseTreeVisitor;
 
 /**
@@ -46,6 +45,13 @@ public interface HystExpressionVisitor<T> extends ParseTreeVisitor<T> {
 	 * @return the visitor result
 	 */
 	T visitFunction(HystExpressionParser.FunctionContext ctx);
+	/**
+	 * Visit a parse tree produced by the {@code FileFunction}
+	 * labeled alternative in {@link HystExpressionParser#functionExpression}.
+	 * @param ctx the parse tree
+	 * @return the visitor result
+	 */
+	T visitFileFunction(HystExpressionParser.FileFunctionContext ctx);
 	/**
 	 * Visit a parse tree produced by the {@code ResetSubEq}
 	 * labeled alternative in {@link HystExpressionParser#resetSubExpression}.
@@ -105,7 +105,11 @@ public class DefaultExpressionPrinter extends ExpressionPrinter
 	@Override
 	protected String printConstantValue(double d)
 	{
-		return constFormatter.format(d);
+		// DecimalFormat is not thread-safe, and printers may render modes in parallel
+		synchronized (constFormatter)
+		{
+			return constFormatter.format(d);
+		}
 	}
 
 	@Override
@@ -118,14 +122,13 @@ public class DefaultExpressionPrinter extends ExpressionPrinter
 	 * Usually inline printing
 	 */
 	@Override
-	protected String printOperation(Operation o)
+	protected void layoutOperation(Operation o, Layout layout)
 	{
-		String rv;
 		List<Expression> children = o.children;
 		Operator op = o.op;
 
 		if (children.size() == 0)
-			rv = printOperator(o.op);
+			layout.text(printOperator(o.op));
 		else if (children.size() == 1)
 		{
 			Expression child = children.get(0);
@@ -133,67 +136,45 @@ public class DefaultExpressionPrinter extends ExpressionPrinter
 			if (op.equals(Operator.NEGATIVE) || op.equals(Operator.LOGICAL_NOT))
 			{
 				if (child instanceof Operation && child.asOperation().children.size() > 1)
-					rv = printOperator(o.op) + "(" + print(child) + ")";
+					layout.text(printOperator(o.op) + "(").expression(child).text(")");
 				else
-					rv = printOperator(o.op) + "" + print(child);
+					layout.text(printOperator(o.op)).expression(child);
 			}
 			else
-				rv = printOperator(o.op) + "(" + print(child) + ")";
+				layout.text(printOperator(o.op) + "(").expression(child).text(")");
 		}
-		else if (children.size() == 2)
+		else if (children.size() == 2 || Operator.isAssociative(op))
 		{
-			Expression leftExp = children.get(0);
-			Operation left = leftExp.asOperation();
-
-			Expression rightExp = children.get(1);
-			Operation right = rightExp.asOperation();
-
-			boolean needParenLeft = false;
-			boolean needParenRight = false;
-
+			// infix; associative operators can have more than two children, like a & b & c
 			// use parentheses if they are needed
 			int myP = Operator.getPriority(op);
 
-			if (left != null && left.children.size() > 1)
-			{
-				int leftP = Operator.getPriority(left.op);
-
-				if (leftP < myP)
-					needParenLeft = true;
-			}
-
-			if (right != null && right.children.size() > 1)
+			for (int i = 0; i < children.size(); ++i)
 			{
-				int rightP = Operator.getPriority(right.op);
+				Expression childExp = children.get(i);
+				Operation child = childExp.asOperation();
+				boolean needParen = false;
 
-				if (myP > rightP || (myP == rightP && !Operator.isCommutative(op))) // commutative
-					needParenRight = true;
-			}
-
-			rv = "";
+				if (child != null && child.children.size() > 1)
+				{
+					int childP = Operator.getPriority(child.op);
 
-			if (needParenLeft)
-				rv += "(" + print(leftExp) + ")"; // maybe not strictly
-													// necessary as the
-													// expression.toString is
-													// overriden to call this
-													// print, but was having
-													// problems with this
-			else
-				rv += print(leftExp);
+					if (i == 0)
+						needParen = childP < myP;
+					else
+						needParen = myP > childP || (myP == childP && !Operator.isCommutative(op));
+				}
 
-			rv += " " + printOperator(o.op) + " ";
+				if (i > 0)
+					layout.text(" " + printOperator(o.op) + " ");
 
-			if (needParenRight)
-				rv += "(" + print(rightExp) + ")";
-			else
-				rv += print(rightExp);
+				if (needParen)
+					layout.text("(").expression(childExp).text(")");
+				else
+					layout.expression(childExp);
+			}
 		}
 		else
-		{
-			rv = super.printOperation(o);
-		}
-
-		return rv;
+			layoutPrefix(o, layout);
 	}
-}
\ No newline at end of file
+}
@@ -341,7 +341,20 @@ public class ExpVisitor extends HystExpressionBaseVisitor<Expression>
 	{
 		NegativeUnaryContext child = ctx.negativeUnary();
 
-		Expression rv = new Operation(Operator.NEGATIVE, visit(child));
+		return negate(visit(child));
+	}
+
+	/**
+	 * Create the negation of a parsed expression, eliminating double negatives and folding the sign
+	 * into constants
+	 * 
+	 * @param child
+	 *            the parsed expression (constants are modified)
+	 * @return the negated expression
+	 */
+	static Expression negate(Expression child)
+	{
+		Expression rv = new Operation(Operator.NEGATIVE, child);
 
 		// eliminate double negatives
 		while (true)
@@ -451,25 +464,65 @@ public class ExpVisitor extends HystExpressionBaseVisitor<Expression>
 					"Function 'reshape' expects fist argument to be a 1-d matrix. Instead got "
 							+ data.getNumDims() + "-d data: " + data.toDefaultString());
 
+		int[] vals = parseSizes("reshape", args.subList(1, args.size()));
+
+		if (data.isNumeric())
+			return new MatrixExpression(data.getValues(), vals);
+
 		Expression[] expressions = new Expression[data.getDimWidth(0)];
 
 		for (int i = 0; i < data.getDimWidth(0); ++i)
 			expressions[i] = data.get(i);
 
-		int[] vals = new int[args.size() - 1];
+		return new MatrixExpression(expressions, vals);
+	}
 
-		for (int a = 1; a < args.size(); ++a)
+	/**
+	 * Parse the width arguments of a function
+	 * 
+	 * @param func
+	 *            the function name (for error messages)
+	 * @param args
+	 *            the width arguments
+	 * @return the widths
+	 */
+	private int[] parseSizes(String func, List<AddSubContext> args)
+	{
+		int[] vals = new int[args.size()];
+
+		for (int a = 0; a < args.size(); ++a)
 		{
 			Expression e = visit(args.get(a));
 
 			if (!(e instanceof Constant))
 				throw new AutomatonExportException(
-						"width arguments in function 'reshape' must be integer constants");
+						"width arguments in function '" + func + "' must be integer constants");
 
-			vals[a - 1] = (int) Math.round(Double.parseDouble(e.toDefaultString()));
+			vals[a] = (int) Math.round(Double.parseDouble(e.toDefaultString()));
 		}
 
-		return new MatrixExpression(expressions, vals);
+		return vals;
+	}
+
+	/**
+	 * Functions whose first argument is a quoted string. Currently this is only load(), which
+	 * creates a numeric matrix from an external file: load("file.csv") or load("file.bin", [width]+).
+	 * Relative file names are resolved against the directory of the model being parsed.
+	 */
+	@Override
+	public Expression visitFileFunction(@NotNull HystExpressionParser.FileFunctionContext ctx)
+	{
+		String name = ctx.VAR().getText().toLowerCase();
+
+		if (!name.equals("load"))
+			throw new AutomatonExportException(
+					"Unknown function with string argument '" + ctx.VAR().getText() + "'");
+
+		String quoted = ctx.STRING().getText();
+		String filename = quoted.substring(1, quoted.length() - 1);
+
+		return MatrixExpression.load(FormulaParser.resolveFile(filename).getPath(),
+				parseSizes("load", ctx.addSub()));
 	}
 
 	/**
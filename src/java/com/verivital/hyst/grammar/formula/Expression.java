@@ -1,5 +1,8 @@
 package com.verivital.hyst.grammar.formula;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
 /**
  * General parent class for expressions.
  * 
@@ -74,7 +77,8 @@ public abstract class Expression
 
 	/**
 	 * Create an AND operation with this and the given expression. This is a short-circuited AND
-	 * which will simplify if either expression is TRUE or FALSE.
+	 * which will simplify if either expression is TRUE or FALSE. Nested ANDs are merged into a
+	 * single n-ary operation (see Operation.createAssociative()).
 	 * 
 	 * @param e
 	 *            the other expression
@@ -93,7 +97,7 @@ public abstract class Expression
 		else if (j == Constant.TRUE)
 			rv = i;
 		else
-			rv = new Operation(Operator.AND, i, j);
+			rv = Operation.createAssociative(Operator.AND, i, j);
 
 		return rv;
 	}
@@ -112,7 +116,171 @@ public abstract class Expression
 		else if (j == Constant.FALSE)
 			rv = i;
 		else
-			rv = new Operation(Operator.OR, i, j);
+			rv = Operation.createAssociative(Operator.OR, i, j);
+
+		return rv;
+	}
+
+	/**
+	 * Get the operands of an associative operator. If e is an operation with the given operator, this
+	 * returns its children, with nested operations of the same operator expanded in place (in left
+	 * to right order). Otherwise, this returns a list with only e. An explicit stack is used, so long
+	 * binary chains (like generated invariants) don't overflow the call stack.
+	 * 
+	 * @param e
+	 *            the expression to split
+	 * @param op
+	 *            the operator, for example Operator.AND to get the conjuncts of e
+	 * @return the list of operands, none of which is an operation with the given operator
+	 */
+	public static ArrayList<Expression> getOperands(Expression e, Operator op)
+	{
+		ArrayList<Expression> rv = new ArrayList<Expression>();
+		ArrayDeque<Expression> stack = new ArrayDeque<Expression>();
+
+		stack.push(e);
+
+		while (!stack.isEmpty())
+		{
+			Expression cur = stack.pop();
+			Operation o = cur.asOperation();
+
+			if (o != null && o.op == op)
+			{
+				for (int i = o.children.size() - 1; i >= 0; --i)
+					stack.push(o.children.get(i));
+			}
+			else
+				rv.add(cur);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get a hash of an expression's structure, consistent with structurallyEqual(). Unlike hashing
+	 * toDefaultString(), this doesn't print the expression. Expressions are mutable, so the hash
+	 * changes if the expression is modified.
+	 * 
+	 * @param e
+	 *            the expression (may be null)
+	 * @return the hash code
+	 */
+	public static int structuralHash(Expression e)
+	{
+		int rv = 1;
+		ArrayDeque<Expression> stack = new ArrayDeque<Expression>();
+
+		if (e != null)
+			stack.push(e);
+		else
+			rv = 0;
+
+		while (!stack.isEmpty())
+		{
+			Expression cur = stack.pop();
+			int h;
+
+			if (cur instanceof Operation)
+			{
+				Operation o = (Operation) cur;
+				h = o.op.hashCode() * 31 + o.children.size();
+
+				for (int i = o.children.size() - 1; i >= 0; --i)
+				{
+					Expression child = o.children.get(i);
+
+					if (child != null)
+						stack.push(child);
+				}
+			}
+			else if (cur == Constant.TRUE || cur == Constant.FALSE)
+				h = cur == Constant.TRUE ? 1231 : 1237;
+			else if (cur instanceof Constant)
+				h = Double.valueOf(((Constant) cur).getVal()).hashCode();
+			else if (cur instanceof Variable)
+				h = ((Variable) cur).name.hashCode();
+			else
+				h = cur.toDefaultString().hashCode();
+
+			rv = rv * 31 + h;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Check if two expressions have the same structure: the same operators, variable names, and
+	 * constant values, in the same places. This is what comparing toDefaultString() checks, without
+	 * printing either expression.
+	 * 
+	 * @param a
+	 *            the first expression (may be null)
+	 * @param b
+	 *            the second expression (may be null)
+	 * @return true iff the expressions are structurally equal
+	 */
+	public static boolean structurallyEqual(Expression a, Expression b)
+	{
+		boolean rv = true;
+		ArrayDeque<Expression> stack = new ArrayDeque<Expression>();
+
+		if (a != b)
+		{
+			if (a == null || b == null)
+				rv = false;
+			else
+			{
+				stack.push(a);
+				stack.push(b);
+			}
+		}
+
+		while (rv && !stack.isEmpty())
+		{
+			Expression r = stack.pop();
+			Expression l = stack.pop();
+
+			if (l == r)
+				continue;
+
+			if (l instanceof Operation && r instanceof Operation)
+			{
+				Operation lo = (Operation) l;
+				Operation ro = (Operation) r;
+
+				if (lo.op != ro.op || lo.children.size() != ro.children.size())
+					rv = false;
+				else
+				{
+					for (int i = 0; i < lo.children.size() && rv; ++i)
+					{
+						Expression lc = lo.children.get(i);
+						Expression rc = ro.children.get(i);
+
+						if (lc == null || rc == null)
+							rv = lc == rc;
+						else
+						{
+							stack.push(lc);
+							stack.push(rc);
+						}
+					}
+				}
+			}
+			else if (l == Constant.TRUE || l == Constant.FALSE || r == Constant.TRUE
+					|| r == Constant.FALSE)
+				rv = false; // not the same object (checked above)
+			else if (l instanceof Constant && r instanceof Constant)
+				rv = Double.compare(((Constant) l).getVal(), ((Constant) r).getVal()) == 0;
+			else if (l instanceof Variable && r instanceof Variable)
+				rv = ((Variable) l).name.equals(((Variable) r).name);
+			else if (l instanceof Operation || r instanceof Operation || l instanceof Constant
+					|| r instanceof Constant || l instanceof Variable || r instanceof Variable)
+				rv = false;
+			else
+				rv = l.getClass() == r.getClass() && l.toDefaultString().equals(r.toDefaultString());
+		}
 
 		return rv;
 	}
@@ -1,19 +1,120 @@
 package com.verivital.hyst.grammar.formula;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
 import com.verivital.hyst.ir.AutomatonExportException;
 
+/**
+ * Converts expressions to text. Expressions are printed with an explicit stack rather than
+ * recursion, and the text is appended directly to the output (see print(Expression, Appendable)),
+ * so deeply nested expressions don't overflow the stack and subexpressions aren't copied into
+ * intermediate strings.
+ *
+ * Subclasses customize printing of operations by overriding layoutOperation(), which lists the
+ * text and child expressions that make up an operation, and of leaves by overriding
+ * printVariable(), printConstantValue(), and so on.
+ */
 public abstract class ExpressionPrinter
 {
+	/**
+	 * The parts that make up the printed text of an operation, in order: either text, which is
+	 * written as is, or expressions, which are printed with the same printer
+	 */
+	public static class Layout
+	{
+		private final ArrayList<Object> parts = new ArrayList<Object>();
+
+		/**
+		 * Add text to the layout
+		 */
+		public Layout text(String s)
+		{
+			parts.add(s);
+
+			return this;
+		}
+
+		/**
+		 * Add an expression to the layout, which will be printed in place
+		 */
+		public Layout expression(Expression e)
+		{
+			parts.add(e == null ? "null" : e);
+
+			return this;
+		}
+
+		private void clear()
+		{
+			parts.clear();
+		}
+	}
+
 	public String print(Expression e)
+	{
+		StringBuilder rv = new StringBuilder();
+
+		print(e, rv);
+
+		return rv.toString();
+	}
+
+	/**
+	 * Print an expression, appending the text to an output (such as a StringBuilder or the output
+	 * of a ToolPrinter)
+	 *
+	 * @param e
+	 *            the expression to print
+	 * @param out
+	 *            where to write the text
+	 * @throws AutomatonExportException
+	 *             if writing to out fails
+	 */
+	public void print(Expression e, Appendable out)
+	{
+		// the stack holds text to write and expressions to print, the next one on top
+		ArrayDeque<Object> stack = new ArrayDeque<Object>();
+		Layout layout = new Layout();
+
+		stack.push(e == null ? "null" : e);
+
+		try
+		{
+			while (!stack.isEmpty())
+			{
+				Object top = stack.pop();
+
+				if (top instanceof Operation)
+				{
+					layout.clear();
+					layoutOperation((Operation) top, layout);
+
+					for (int i = layout.parts.size() - 1; i >= 0; --i)
+						stack.push(layout.parts.get(i));
+				}
+				else if (top instanceof Expression)
+					out.append(printLeaf((Expression) top));
+				else
+					out.append((String) top);
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new AutomatonExportException("Error writing expression", ex);
+		}
+	}
+
+	/**
+	 * Print an expression which is not an operation
+	 */
+	private String printLeaf(Expression e)
 	{
 		String rv = null;
 
-		if (e == null)
-			rv = "null";
-		else if (e instanceof Constant)
+		if (e instanceof Constant)
 			rv = printConstant((Constant) e);
-		else if (e instanceof Operation)
-			rv = printOperation((Operation) e);
 		else if (e instanceof Variable)
 			rv = printVariable((Variable) e);
 		else if (e instanceof MatrixExpression)
@@ -85,22 +186,31 @@ public abstract class ExpressionPrinter
 	public abstract String printOperator(Operator op);
 
 	/**
-	 * Prefix printing for everything
-	 * 
+	 * Get the printed form of an operation, as text and child expressions
+	 *
 	 * @param o
-	 * @return
+	 *            the operation
+	 * @param layout
+	 *            where to add the parts of the printed operation
+	 */
+	protected void layoutOperation(Operation o, Layout layout)
+	{
+		layoutPrefix(o, layout);
+	}
+
+	/**
+	 * Prefix printing for everything, like (+ x y)
 	 */
-	protected String printOperation(Operation o)
+	protected void layoutPrefix(Operation o, Layout layout)
 	{
-		StringBuilder sb = new StringBuilder();
-		sb.append(printOperator(o.op));
+		layout.text("(" + printOperator(o.op));
 
 		for (Expression e : o.children)
 		{
-			sb.append(" ");
-			sb.append(print(e));
+			layout.text(" ");
+			layout.expression(e);
 		}
 
-		return "(" + sb.toString() + ")";
+		layout.text(")");
 	}
 }
@@ -1,9 +1,12 @@
 package com.verivital.hyst.grammar.formula;
 
+import java.io.File;
+
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 
@@ -11,23 +14,69 @@ import com.verivital.hyst.grammar.antlr.HystExpressionLexer;
 import com.verivital.hyst.grammar.antlr.HystExpressionParser;
 import com.verivital.hyst.ir.AutomatonExportException;
 
+/**
+ * Parses expression text into Expressions.
+ * 
+ * Most expressions (plain arithmetic and conditions) are parsed by SimpleFormulaParser, which
+ * builds the same expressions as the ANTLR grammar without creating a parse tree. Everything else
+ * goes to the ANTLR parser, which first tries the faster SLL prediction mode, and retries with full
+ * LL prediction only if that fails.
+ */
 public class FormulaParser
 {
+	// use SimpleFormulaParser for the expressions it supports
+	public static boolean useFastPath = true;
+
+	// directory of the model being parsed by this thread, or null
+	private static final ThreadLocal<File> baseDirectory = new ThreadLocal<File>();
+
+	/**
+	 * Set the directory of the model being parsed on this thread, so that relative file names in
+	 * expressions (like load("table.csv")) are found next to the model rather than in the working
+	 * directory
+	 * 
+	 * @param dir
+	 *            the directory, or null to use the working directory
+	 * @return the previous directory, so it can be restored
+	 */
+	public static File setBaseDirectory(File dir)
+	{
+		File rv = baseDirectory.get();
+
+		baseDirectory.set(dir);
+
+		return rv;
+	}
+
+	/**
+	 * Resolve a file name used in an expression (see setBaseDirectory())
+	 * 
+	 * @param filename
+	 *            the file name, as written in the expression
+	 * @return the file
+	 */
+	public static File resolveFile(String filename)
+	{
+		File rv = new File(filename);
+		File dir = baseDirectory.get();
+
+		if (dir != null && !rv.isAbsolute())
+			rv = new File(dir, filename);
+
+		return rv;
+	}
+
 	private static Expression getExpression(String text, String part)
 	{
 		Expression rv = null;
-		HystExpressionParser par = null;
 
 		try
 		{
-			HystExpressionLexer lex = new HystExpressionLexer(new ANTLRInputStream(text));
+			if (useFastPath)
+				rv = SimpleFormulaParser.parse(text, part);
 
-			par = new HystExpressionParser(new CommonTokenStream(lex));
-			par.setErrorHandler(new BailErrorStrategy());
-
-			ParseTree tree = getParseTree(par, part);
-
-			rv = new ExpVisitor().visit(tree);
+			if (rv == null)
+				rv = parseWithAntlr(text, part);
 
 			// dotted variables are only allowed in loc expressions
 			if (!part.equals("initial/forbidden"))
@@ -40,24 +89,64 @@ public class FormulaParser
 		}
 		catch (ParseCancellationException e)
 		{
-			if (par != null)
+			throw new AutomatonExportException("Could not parse " + part + ": '" + text + "'", e);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Parse an expression using the ANTLR grammar. SLL prediction is tried first; it is much faster
+	 * and succeeds for almost all inputs. If it fails, the input is reparsed with full LL
+	 * prediction, which is only an error if that also fails.
+	 * 
+	 * @throws ParseCancellationException
+	 *             if the text doesn't match the grammar (the errors are printed to stderr)
+	 */
+	private static Expression parseWithAntlr(String text, String part)
+	{
+		HystExpressionLexer lex = new HystExpressionLexer(new ANTLRInputStream(text));
+		CommonTokenStream tokens = new CommonTokenStream(lex);
+		HystExpressionParser par = new HystExpressionParser(tokens);
+		ParseTree tree;
+
+		par.setErrorHandler(new BailErrorStrategy());
+		par.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+		try
+		{
+			tree = getParseTree(par, part);
+		}
+		catch (ParseCancellationException e)
+		{
+			tokens.reset();
+			par.reset();
+			par.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+			try
+			{
+				tree = getParseTree(par, part);
+			}
+			catch (ParseCancellationException e2)
 			{
 				// reparse with error reporting
+				tokens.reset();
+				par.reset();
 				par.setErrorHandler(new DefaultErrorStrategy());
 
 				try
 				{
 					getParseTree(par, part);
 				}
-				catch (ParseCancellationException e2)
+				catch (ParseCancellationException e3)
 				{
 				}
-			}
 
-			throw new AutomatonExportException("Could not parse " + part + ": '" + text + "'", e);
+				throw e2;
+			}
 		}
 
-		return rv;
+		return new ExpVisitor().visit(tree);
 	}
 
 	private static void checkNoDottedVariables(Expression e)
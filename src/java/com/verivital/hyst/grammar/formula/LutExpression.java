@@ -6,6 +6,7 @@ package com.verivital.hyst.grammar.formula;
 import java.util.Arrays;
 
 import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.util.LutInterpolator;
 
 /**
  * A lookup table (LUT) as part of an expression. Currently these are only allowed inside flow
@@ -20,6 +21,7 @@ public class LutExpression extends Expression
 	public MatrixExpression table;
 	public double[][] breakpoints; // height = number of variables, width[i] =
 									// length of dimension i of table
+	public LutInterpolator interpolator = null; // set by LutInterpolator.get(), shared with copies
 
 	/**
 	 * Look up table constructor. Shallow copies of the passed-in arrays are stored
@@ -70,42 +72,31 @@ public class LutExpression extends Expression
 						+ ") must be equal to width of data in table for that dimension ("
 						+ data.getDimWidth(d) + ")");
 
-			// breakpoints should be strictly increasing
-			Expression first = bp.get(0);
-
-			if (!(first instanceof Constant))
-				throw new AutomatonExportException(
-						"Breakpoints must be numeric constants: " + first.toDefaultString());
-
-			double last = ((Constant) first).getVal();
+			double[] row = new double[bp.getDimWidth(0)];
 
-			for (int bi = 0; bi < bp.getDimWidth(0); ++bi)
+			if (bp.isNumeric())
+				System.arraycopy(bp.getValues(), 0, row, 0, row.length);
+			else
 			{
-				Expression curExp = bp.get(0);
-
-				if (!(curExp instanceof Constant))
-					throw new AutomatonExportException(
-							"Breakpoints must be numeric constants: " + curExp.toDefaultString());
+				for (int i = 0; i < bp.getDimWidth(0); ++i)
+				{
+					Expression e = bp.get(i);
 
-				double cur = ((Constant) curExp).getVal();
+					if (!(e instanceof Constant))
+						throw new AutomatonExportException(
+								"breakpoint in LUT must be a numeric constant: "
+										+ e.toDefaultString());
 
-				if (cur < last)
-					throw new AutomatonExportException(
-							"Breakpoints must be strictly increasing: " + bp);
-
-				last = cur;
+					row[i] = ((Constant) e).getVal();
+				}
 			}
 
-			double[] row = new double[bp.getDimWidth(0)];
-			for (int i = 0; i < bp.getDimWidth(0); ++i)
+			// breakpoints should be strictly increasing
+			for (int bi = 1; bi < row.length; ++bi)
 			{
-				Expression e = bp.get(i);
-
-				if (!(e instanceof Constant))
+				if (row[bi] <= row[bi - 1])
 					throw new AutomatonExportException(
-							"breakpoint in LUT must be a numeric constant: " + e.toDefaultString());
-
-				row[i] = ((Constant) e).getVal();
+							"Breakpoints must be strictly increasing: " + Arrays.toString(row));
 			}
 
 			this.breakpoints[d] = row;
@@ -130,6 +121,8 @@ public class LutExpression extends Expression
 	public LutExpression(LutExpression l)
 	{
 		this(l.inputs, l.table, convertBreakPoints(l));
+
+		interpolator = l.interpolator;
 	}
 
 	@Override
@@ -3,6 +3,14 @@
  */
 package com.verivital.hyst.grammar.formula;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -20,24 +28,56 @@ import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
  * 
  * They can be used, for example, to specify look up tables. They must be at least one dimensional,
  * and each dimension must be at least width 1
+ * 
+ * If every entry is a constant, the matrix is numeric and is stored as a flat double[] rather than
+ * one Expression per entry (see isNumeric()). Large numeric tables can also be kept in an external
+ * csv or binary file, with load("file.csv") or load("file.bin", 200, 200, 50), in which case the
+ * file is only read when the values are needed.
  */
 public class MatrixExpression extends Expression implements Iterable<Entry<int[], Expression>>
 {
 	private int[] sizes; // the size of each dimension, x y z
 	private Expression[] data; // the data for each cell (should be length
-								// size[0] * size[1] * ...)
+								// size[0] * size[1] * ...), or null if the matrix is numeric
+
+	// numeric matrices (where every entry is a constant) store a flat array instead of data,
+	// indexed with the same strides. This is null for non-numeric matrices, and also for
+	// file-backed matrices until the file is read.
+	private double[] values;
+	private boolean sharedValues = true; // values may be shared with a copy, clone before writing
+	private TableFile source = null; // file where values are loaded from, or null
 
 	// internally, the sizes and data arrays are the same order as the call to
 	// reshape() (matlab's order)
 
 	/**
-	 * Copy constructor
+	 * Copy constructor. Numeric entries are shared with the copy until one of them is modified. An
+	 * array which was already cloned for writing is copied, since its owner may still modify it.
 	 * 
 	 * @param other
 	 */
 	public MatrixExpression(MatrixExpression other)
 	{
-		this(other.data, other.sizes);
+		sizes = Arrays.copyOf(other.sizes, other.sizes.length);
+		source = other.source;
+
+		if (other.data != null)
+		{
+			data = new Expression[other.data.length];
+
+			for (int i = 0; i < data.length; ++i)
+				data[i] = other.data[i].copy();
+		}
+		else if (other.values != null)
+		{
+			if (other.sharedValues)
+				values = other.values;
+			else
+			{
+				values = Arrays.copyOf(other.values, other.values.length);
+				sharedValues = false;
+			}
+		}
 	}
 
 	/**
@@ -47,12 +87,28 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 	 */
 	public MatrixExpression(double... data)
 	{
-		sizes = new int[] { data.length };
+		this(data, new int[] { data.length });
+	}
+
+	/**
+	 * Create a new numeric MatrixExpression from values given in the same order as matlab's
+	 * reshape command
+	 * 
+	 * @param values
+	 *            the matrix values, in the same order as matlab's reshape() command
+	 * @param sizes
+	 *            the sizes for each dimension
+	 */
+	public MatrixExpression(double[] values, int[] sizes)
+	{
+		int total = checkSizes(sizes);
 
-		this.data = new Expression[data.length];
+		if (values.length != total)
+			throw new AutomatonExportException(
+					"Invalid matrix data. Expected " + total + " entries, got " + values.length);
 
-		for (int i = 0; i < data.length; ++i)
-			this.data[i] = new Constant(data[i]);
+		this.sizes = Arrays.copyOf(sizes, sizes.length);
+		this.values = Arrays.copyOf(values, values.length);
 	}
 
 	/**
@@ -64,10 +120,7 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 	{
 		sizes = new int[] { data.length };
 
-		this.data = new Expression[data.length];
-
-		for (int i = 0; i < data.length; ++i)
-			this.data[i] = data[i];
+		setEntries(data, false);
 	}
 
 	/**
@@ -100,7 +153,7 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 			total = sizes[0] * sizes[1];
 		}
 
-		this.data = new Expression[total];
+		Expression[] entries = new Expression[total];
 		int index = 0;
 
 		int numRows = data.length;
@@ -116,9 +169,11 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 									+ " columns in row #" + row + ", but instead got "
 									+ data[row].length);
 
-				this.data[index++] = data[row][col].copy();
+				entries[index++] = data[row][col];
 			}
 		}
+
+		setEntries(entries, true);
 	}
 
 	/**
@@ -131,7 +186,100 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 	 */
 	public MatrixExpression(Expression[] data, int[] sizes)
 	{
-		int total = 1;
+		int total = checkSizes(sizes);
+
+		if (data.length != total)
+			throw new AutomatonExportException(
+					"Invalid matrix data. Expected " + total + " entries, got " + data.length);
+
+		this.sizes = Arrays.copyOf(sizes, sizes.length);
+
+		setEntries(data, true);
+	}
+
+	/**
+	 * Create a numeric matrix whose values are stored in an external file. The file is read the
+	 * first time the values are needed, and copies of the matrix share the loaded values.
+	 * 
+	 * Files ending in .bin contain the values as little-endian 64-bit doubles, in the same order as
+	 * matlab's reshape() command (which is what matlab's fwrite(f, data, 'double') produces). If no
+	 * sizes are given, the matrix is 1-d.
+	 * 
+	 * Other files are read as csv: each line is a row, with values separated by commas or
+	 * whitespace. If sizes are given, the values are taken row by row in the order they appear in
+	 * the file, and used as the data for reshape(). Otherwise, the matrix is 1-d (if the file has a
+	 * single row) or 2-d, like the [1, 2 ; 3, 4] syntax. In this case the file is read immediately,
+	 * since the sizes are needed.
+	 * 
+	 * @param filename
+	 *            the path to the file, relative paths are from the working directory (load() in
+	 *            a model's expressions is resolved against the model's directory, see
+	 *            FormulaParser.setBaseDirectory())
+	 * @param sizes
+	 *            the sizes for each dimension (may be empty)
+	 * @return the matrix
+	 */
+	public static MatrixExpression load(String filename, int... sizes)
+	{
+		TableFile f = new TableFile(new File(filename));
+
+		if (!f.file.isFile())
+			throw new AutomatonExportException("Matrix data file not found: " + filename);
+
+		MatrixExpression rv;
+
+		if (sizes.length == 0 && !f.binary)
+		{
+			int[] csvSizes = new int[2];
+			double[] vals = f.readCsv(csvSizes);
+
+			if (csvSizes[0] == 1)
+				csvSizes = new int[] { csvSizes[1] };
+
+			rv = new MatrixExpression(vals, csvSizes);
+			rv.source = f;
+		}
+		else
+		{
+			if (sizes.length == 0)
+			{
+				long len = f.file.length() / 8;
+
+				if (len > Integer.MAX_VALUE)
+					throw new AutomatonExportException("Matrix data file is too large: " + filename);
+
+				sizes = new int[] { (int) len };
+			}
+			else if (f.binary && f.file.length() != 8L * checkSizes(sizes))
+				throw new AutomatonExportException("Matrix data file " + filename + " has size "
+						+ f.file.length() + " bytes, expected 8-byte doubles for sizes "
+						+ Arrays.toString(sizes));
+
+			rv = new MatrixExpression(f, sizes);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * File-backed constructor, the values are loaded lazily
+	 */
+	private MatrixExpression(TableFile source, int[] sizes)
+	{
+		checkSizes(sizes);
+
+		this.sizes = Arrays.copyOf(sizes, sizes.length);
+		this.source = source;
+	}
+
+	/**
+	 * Check that the sizes of each dimension are valid
+	 * 
+	 * @return the total number of entries
+	 */
+	private static int checkSizes(int[] sizes)
+	{
+		long total = 1;
 
 		for (int s : sizes)
 		{
@@ -139,29 +287,66 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 				throw new AutomatonExportException("Invalid matrix row width: " + s);
 
 			total *= s;
+
+			if (total > Integer.MAX_VALUE)
+				throw new AutomatonExportException(
+						"Matrix is too large: " + Arrays.toString(sizes));
 		}
 
-		if (data.length != total)
-			throw new AutomatonExportException(
-					"Invalid matrix data. Expected " + total + " entries, got " + data.length);
+		return (int) total;
+	}
 
-		this.sizes = new int[sizes.length];
+	/**
+	 * Set the entries of the matrix. If every entry is a number, the numeric representation is
+	 * used.
+	 * 
+	 * @param entries
+	 *            the entries, in reshape() order
+	 * @param copy
+	 *            should the expressions be copied (if they're stored)
+	 */
+	private void setEntries(Expression[] entries, boolean copy)
+	{
+		boolean numeric = true;
 
-		// copy sizes
-		for (int i = 0; i < sizes.length; ++i)
-			this.sizes[i] = sizes[i];
+		for (Expression e : entries)
+		{
+			if (!isNumber(e))
+			{
+				numeric = false;
+				break;
+			}
+		}
+
+		if (numeric)
+		{
+			values = new double[entries.length];
+
+			for (int i = 0; i < entries.length; ++i)
+				values[i] = ((Constant) entries[i]).getVal();
+		}
+		else
+		{
+			data = new Expression[entries.length];
 
-		// copy data
-		this.data = new Expression[data.length];
+			for (int i = 0; i < entries.length; ++i)
+				data[i] = copy ? entries[i].copy() : entries[i];
+		}
+	}
 
-		for (int i = 0; i < data.length; ++i)
-			this.data[i] = data[i].copy();
+	/**
+	 * Can an expression be stored as a value in a numeric matrix? (true and false are kept as
+	 * expressions, since they're compared by reference)
+	 */
+	private static boolean isNumber(Expression e)
+	{
+		return e instanceof Constant && e != Constant.TRUE && e != Constant.FALSE;
 	}
 
 	@Override
 	public Expression copy()
 	{
-		return new MatrixExpression(data, sizes);
+		return new MatrixExpression(this);
 	}
 
 	public int getNumDims()
@@ -175,13 +360,69 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 	}
 
 	/**
-	 * Get an expression from this matrix
+	 * Get the total number of entries in the matrix
+	 */
+	public int getNumEntries()
+	{
+		int rv = 1;
+
+		for (int s : sizes)
+			rv *= s;
+
+		return rv;
+	}
+
+	/**
+	 * Is this a numeric matrix (every entry is a constant)? If so, getValue() and getValues() can
+	 * be used, which avoid creating an expression for every entry.
+	 */
+	public boolean isNumeric()
+	{
+		return data == null;
+	}
+
+	/**
+	 * Get the numeric entries of the matrix as a flat array, in the same order as matlab's
+	 * reshape() command. The first index has stride 1, the second has stride getDimWidth(0), and so
+	 * on. The returned array may be shared, and must not be modified.
+	 * 
+	 * @return the values
+	 * @throws AutomatonExportException
+	 *             if the matrix is not numeric
+	 */
+	public double[] getValues()
+	{
+		if (data != null)
+			throw new AutomatonExportException(
+					"getValues() called on a matrix with non-numeric entries");
+
+		if (values == null)
+		{
+			values = source.load(getNumEntries());
+			sharedValues = true;
+		}
+
+		return values;
+	}
+
+	/**
+	 * Get a value from a numeric matrix
 	 * 
 	 * @param indices
 	 *            the index for each dimension, ordered from largest offset to smallest offset
-	 * @return
+	 * @return the value
+	 * @throws AutomatonExportException
+	 *             if the matrix is not numeric
 	 */
-	public Expression get(int... indices)
+	public double getValue(int... indices)
+	{
+		return getValues()[flatIndex(indices)];
+	}
+
+	/**
+	 * Convert a list of indices to an offset in the flat data array
+	 */
+	private int flatIndex(int[] indices)
 	{
 		if (sizes.length != indices.length)
 			throw new IndexOutOfBoundsException(
@@ -207,36 +448,71 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 			multiplier *= sizes[j];
 		}
 
-		return data[finalIndex];
+		return finalIndex;
+	}
+
+	/**
+	 * Get an expression from this matrix. For numeric matrices, a new Constant is returned.
+	 * 
+	 * @param indices
+	 *            the index for each dimension, ordered from largest offset to smallest offset
+	 * @return
+	 */
+	public Expression get(int... indices)
+	{
+		return getEntry(flatIndex(indices));
+	}
+
+	/**
+	 * Get an expression from this matrix by its offset in reshape() order
+	 */
+	private Expression getEntry(int flatIndex)
+	{
+		Expression rv;
+
+		if (data != null)
+			rv = data[flatIndex];
+		else
+			rv = new Constant(getValues()[flatIndex]);
+
+		return rv;
 	}
 
 	public void setExpressionAtIndex(int[] indices, Expression e)
 	{
-		if (sizes.length != indices.length)
-			throw new IndexOutOfBoundsException(
-					"Expected " + sizes.length + " indicies, got " + indices.length);
+		int finalIndex = flatIndex(indices);
 
-		for (int d = 0; d < sizes.length; ++d)
+		if (data == null && isNumber(e))
 		{
-			if (indices[d] < 0 || indices[d] >= sizes[d])
+			double[] vals = getValues();
+
+			if (sharedValues)
 			{
-				throw new IndexOutOfBoundsException("got " + Arrays.toString(indices)
-						+ " with sizes " + Arrays.toString(sizes));
+				values = vals = Arrays.copyOf(vals, vals.length);
+				sharedValues = false;
 			}
+
+			vals[finalIndex] = ((Constant) e).getVal();
+			source = null;
 		}
+		else
+		{
+			if (data == null)
+			{
+				// no longer numeric
+				double[] vals = getValues();
+				data = new Expression[vals.length];
 
-		int finalIndex = 0;
-		int multiplier = 1;
+				for (int i = 0; i < vals.length; ++i)
+					data[i] = new Constant(vals[i]);
 
-		for (int j = 0; j < indices.length; ++j)
-		{
-			int index = indices[j];
+				values = null;
+				sharedValues = false;
+				source = null;
+			}
 
-			finalIndex += multiplier * index;
-			multiplier *= sizes[j];
+			data[finalIndex] = e;
 		}
-
-		data[finalIndex] = e;
 	}
 
 	public String toString(ExpressionPrinter printer)
@@ -264,16 +540,14 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 	public void makeStringReshape(StringBuilder rv, ExpressionPrinter printer)
 	{
 		rv.append("reshape([");
-		boolean first = true;
+		int total = getNumEntries();
 
-		for (Expression e : data)
+		for (int i = 0; i < total; ++i)
 		{
-			if (first)
-				first = false;
-			else
+			if (i != 0)
 				rv.append(", ");
 
-			rv.append(printer.print(e));
+			rv.append(printEntry(printer, i));
 		}
 
 		rv.append("]");
@@ -297,8 +571,7 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 				if (col != 0)
 					rv.append(", ");
 
-				Expression e = get(row, col);
-				rv.append(printer.print(e));
+				rv.append(printEntry(printer, row + col * numRows));
 			}
 
 			if (row != numRows - 1)
@@ -317,21 +590,35 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 	public void makeString1d(StringBuilder rv, ExpressionPrinter printer)
 	{
 		rv.append("[");
-		boolean first = true;
+		int total = getNumEntries();
 
-		for (Expression e : data)
+		for (int i = 0; i < total; ++i)
 		{
-			if (first)
-				first = false;
-			else
+			if (i != 0)
 				rv.append(", ");
 
-			rv.append(printer.print(e));
+			rv.append(printEntry(printer, i));
 		}
 
 		rv.append("]");
 	}
 
+	/**
+	 * Print a single entry, given by its offset in reshape() order. Numeric entries are printed
+	 * directly from their value.
+	 */
+	private String printEntry(ExpressionPrinter printer, int flatIndex)
+	{
+		String rv;
+
+		if (data != null)
+			rv = printer.print(data[flatIndex]);
+		else
+			rv = printer.printConstantValue(getValues()[flatIndex]);
+
+		return rv;
+	}
+
 	@Override
 	public Iterator<Entry<int[], Expression>> iterator()
 	{
@@ -413,6 +700,177 @@ public class MatrixExpression extends Expression implements Iterable<Entry<int[]
 		}
 	}
 
+	/**
+	 * An external file containing numeric matrix data, which is read at most once
+	 */
+	private static class TableFile
+	{
+		final File file;
+		final boolean binary;
+		private double[] loaded = null;
+
+		TableFile(File file)
+		{
+			this.file = file;
+			this.binary = file.getName().toLowerCase().endsWith(".bin");
+		}
+
+		/**
+		 * Get the values in the file, reading it if it hasn't been read yet
+		 * 
+		 * @param total
+		 *            the expected number of values
+		 */
+		synchronized double[] load(int total)
+		{
+			if (loaded == null)
+			{
+				double[] vals = binary ? readBinary() : readCsv(null);
+
+				if (vals.length != total)
+					throw new AutomatonExportException("Matrix data file " + file.getPath()
+							+ " has " + vals.length + " values, expected " + total);
+
+				loaded = vals;
+			}
+
+			return loaded;
+		}
+
+		private double[] readBinary()
+		{
+			RandomAccessFile raf = null;
+
+			try
+			{
+				raf = new RandomAccessFile(file, "r");
+				FileChannel ch = raf.getChannel();
+
+				if (ch.size() % 8 != 0 || ch.size() / 8 > Integer.MAX_VALUE)
+					throw new AutomatonExportException("Matrix data file " + file.getPath()
+							+ " should contain 8-byte doubles, but its size is " + ch.size());
+
+				double[] rv = new double[(int) (ch.size() / 8)];
+				ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(rv);
+
+				return rv;
+			}
+			catch (IOException e)
+			{
+				throw new AutomatonExportException("Error reading " + file.getPath(), e);
+			}
+			finally
+			{
+				closeQuietly(raf);
+			}
+		}
+
+		/**
+		 * Read a csv file
+		 * 
+		 * @param shape
+		 *            if not null, the number of rows and columns are stored here (the file must be
+		 *            rectangular), and the values are returned in reshape() order. Otherwise, the
+		 *            values are returned in the order they appear in the file.
+		 */
+		double[] readCsv(int[] shape)
+		{
+			BufferedReader in = null;
+			ArrayList<double[]> rows = new ArrayList<double[]>();
+			int total = 0;
+
+			try
+			{
+				in = new BufferedReader(new FileReader(file));
+				String line;
+
+				while ((line = in.readLine()) != null)
+				{
+					line = line.trim();
+
+					if (line.isEmpty() || line.startsWith("#"))
+						continue;
+
+					String[] parts = line.split("[,\\s]+");
+					double[] row = new double[parts.length];
+
+					for (int i = 0; i < parts.length; ++i)
+						row[i] = Double.parseDouble(parts[i]);
+
+					if (shape != null && !rows.isEmpty() && row.length != rows.get(0).length)
+						throw new AutomatonExportException("Matrix data file " + file.getPath()
+								+ " is not rectangular, expected " + rows.get(0).length
+								+ " values in row #" + rows.size() + ", but instead got "
+								+ row.length);
+
+					rows.add(row);
+					total += row.length;
+				}
+			}
+			catch (IOException e)
+			{
+				throw new AutomatonExportException("Error reading " + file.getPath(), e);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new AutomatonExportException(
+						"Non-numeric value in matrix data file " + file.getPath(), e);
+			}
+			finally
+			{
+				closeQuietly(in);
+			}
+
+			if (total == 0)
+				throw new AutomatonExportException("Matrix data file is empty: " + file.getPath());
+
+			double[] rv = new double[total];
+
+			if (shape == null)
+			{
+				int index = 0;
+
+				for (double[] row : rows)
+				{
+					System.arraycopy(row, 0, rv, index, row.length);
+					index += row.length;
+				}
+			}
+			else
+			{
+				int numRows = rows.size();
+				int numCols = rows.get(0).length;
+
+				for (int row = 0; row < numRows; ++row)
+				{
+					for (int col = 0; col < numCols; ++col)
+						rv[row + col * numRows] = rows.get(row)[col];
+				}
+
+				shape[0] = numRows;
+				shape[1] = numCols;
+			}
+
+			return rv;
+		}
+
+		private static void closeQuietly(Closeable c)
+		{
+			if (c != null)
+			{
+				try
+				{
+					c.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+		}
+	}
+
 	public static Expression fromRange(Expression startExp, Expression stepExp, Expression stopExp)
 	{
 		Expression start = SimplifyExpressionsPass.simplifyExpression(startExp);
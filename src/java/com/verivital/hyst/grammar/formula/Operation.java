@@ -133,9 +133,40 @@ public class Operation extends Expression
 		this(op, new Constant(c), new Variable(var));
 	}
 
+	/**
+	 * Create an operation with an associative operator (see Operator.isAssociative()). Operands
+	 * which are themselves operations with the same operator are merged into a single n-ary list of
+	 * children, so (a & b) & c becomes &(a, b, c) rather than a deeper tree. The passed-in
+	 * expressions are not modified (the children are shallow copied).
+	 * 
+	 * @param op
+	 *            the associative operator
+	 * @param exps
+	 *            the operands
+	 * @return the flattened operation
+	 */
+	public static Operation createAssociative(Operator op, Expression... exps)
+	{
+		if (!Operator.isAssociative(op))
+			throw new AutomatonExportException(
+					"operator is not associative: " + op.toDefaultString());
+
+		ArrayList<Expression> children = new ArrayList<Expression>();
+
+		for (Expression e : exps)
+		{
+			if (e == null)
+				throw new AutomatonExportException("subexpressions cannot be null");
+
+			children.addAll(Expression.getOperands(e, op));
+		}
+
+		return new Operation(op, children);
+	}
+
 	public Operation copy()
 	{
-		ArrayList<Expression> c = new ArrayList<Expression>();
+		ArrayList<Expression> c = new ArrayList<Expression>(children.size());
 
 		for (Expression e : children)
 			c.add(e.copy());
@@ -16,7 +16,7 @@ public enum Operator
 {
 	ADD, SUBTRACT, MULTIPLY, DIVIDE, POW, // two children
 	AND, OR, EQUAL, LESS, GREATER, LESSEQUAL, GREATEREQUAL, NOTEQUAL, // two
-																		// children
+																		// children (AND, OR can have more)
 	NEGATIVE, LOGICAL_NOT, // one child
 	SIN, COS, TAN, EXP, SQRT, LN, // one child
 	LOC // loc() function in initial/forbidden modes, these are removed after
@@ -72,6 +72,19 @@ public enum Operator
 		return COMMUTATIVE_OPS.contains(o);
 	}
 
+	static final List<Operator> ASSOCIATIVE_OPS = Arrays.asList(AND, OR);
+
+	/**
+	 * Associative operators may have any number of children (two or more), which are combined from
+	 * left to right. Operation.createAssociative() merges nested operations of the same operator.
+	 * Arithmetic operators are not included, since passes and printers read ADD and MULTIPLY
+	 * operations with getLeft() and getRight().
+	 */
+	public static boolean isAssociative(Operator o)
+	{
+		return ASSOCIATIVE_OPS.contains(o);
+	}
+
 	static final List<Operator> BOOLEAN_OPS = Arrays.asList(AND, OR, LOGICAL_NOT, EQUAL, LESS,
 			GREATER, LESSEQUAL, GREATEREQUAL, NOTEQUAL);
 
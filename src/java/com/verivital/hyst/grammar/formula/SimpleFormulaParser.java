@@ -0,0 +1,715 @@
+package com.verivital.hyst.grammar.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hand-written recursive-descent parser for the common subset of the expression grammar (see
+ * HystExpression.g4): arithmetic over numbers and variables, the single-argument functions (sin,
+ * cos, ...), comparisons, and conjunctions / disjunctions of them. It builds the same expressions
+ * that ExpVisitor builds from the ANTLR parse tree, but without creating tokens, contexts or a
+ * parse tree.
+ *
+ * Anything outside the subset (matrices, luts, loc(), load(), dotted names, blank input) and
+ * anything that is not valid makes parse() return null. The caller should then use the ANTLR
+ * parser, which also produces the error messages.
+ */
+class SimpleFormulaParser
+{
+	// token types
+	private static final int EOF = 0;
+	private static final int NUM = 1;
+	private static final int VAR = 2;
+	private static final int TICK = 3;
+	private static final int LPAR = 4;
+	private static final int RPAR = 5;
+	private static final int COMMA = 6;
+	private static final int PLUS = 7;
+	private static final int MINUS = 8;
+	private static final int TIMES = 9;
+	private static final int DIV = 10;
+	private static final int POW = 11;
+	private static final int AND = 12;
+	private static final int OR = 13;
+	private static final int NOT = 14;
+	private static final int LESS = 15;
+	private static final int GREATER = 16;
+	private static final int LESSEQUAL = 17;
+	private static final int GREATEREQUAL = 18;
+	private static final int NOTEQUAL = 19;
+	private static final int EQUAL = 20;
+	private static final int EQUAL_RESET = 21;
+	private static final int TRUE = 22;
+	private static final int FALSE = 23;
+
+	/**
+	 * Thrown when the input can't be handled by this parser. It's only used for control flow, so
+	 * it has no stack trace.
+	 */
+	private static class DeferException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		DeferException()
+		{
+			super(null, null, false, false);
+		}
+	}
+
+	private static final DeferException DEFER = new DeferException();
+
+	private final String text;
+
+	// tokens: type, and start / end offsets in text
+	private int[] types = new int[16];
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int numTokens = 0;
+	private int pos = 0;
+
+	private SimpleFormulaParser(String text)
+	{
+		this.text = text;
+	}
+
+	/**
+	 * Parse an expression
+	 *
+	 * @param text
+	 *            the text to parse
+	 * @param part
+	 *            the type of expression, as in FormulaParser.getExpression()
+	 * @return the parsed expression, or null if the ANTLR parser should be used instead
+	 */
+	static Expression parse(String text, String part)
+	{
+		Expression rv = null;
+		SimpleFormulaParser p = new SimpleFormulaParser(text);
+
+		try
+		{
+			p.tokenize();
+
+			// blank input is handled differently by each part, leave it to ANTLR
+			if (p.numTokens > 1)
+			{
+				if (part.equals("invariant") || part.equals("guard")
+						|| part.equals("initial/forbidden"))
+					rv = p.parseOr();
+				else if (part.equals("flow"))
+					rv = p.parseFlow();
+				else if (part.equals("reset"))
+					rv = p.parseReset();
+				else if (part.equals("number (addsub)"))
+					rv = p.parseAddSub();
+				else
+					throw DEFER;
+
+				p.expect(EOF);
+			}
+		}
+		catch (DeferException e)
+		{
+			rv = null;
+		}
+		catch (NumberFormatException e)
+		{
+			rv = null;
+		}
+
+		return rv;
+	}
+
+	////////////// lexer //////////////
+
+	private void addToken(int type, int start, int end)
+	{
+		if (numTokens == types.length)
+		{
+			int size = 2 * numTokens;
+			types = Arrays.copyOf(types, size);
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+		}
+
+		types[numTokens] = type;
+		starts[numTokens] = start;
+		ends[numTokens] = end;
+		++numTokens;
+	}
+
+	private char charAt(int i)
+	{
+		return i < text.length() ? text.charAt(i) : '\0';
+	}
+
+	private static boolean isDigit(char c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isVarStart(char c)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	/**
+	 * Split the text into tokens, matching the lexer rules in HystExpression.g4
+	 */
+	private void tokenize()
+	{
+		int len = text.length();
+		int i = 0;
+
+		while (i < len)
+		{
+			char c = text.charAt(i);
+			int start = i;
+
+			if (c == ' ' || c == '\t' || c == '\r' || c == '\n')
+			{
+				++i;
+				continue;
+			}
+
+			if (isDigit(c) || (c == '.' && isDigit(charAt(i + 1))))
+			{
+				i = scanNumber(i);
+				addToken(NUM, start, i);
+			}
+			else if (isVarStart(c))
+			{
+				do
+					++i;
+				while (i < len && (isVarStart(text.charAt(i)) || isDigit(text.charAt(i))));
+
+				int type = VAR;
+
+				if (i - start == 4 && text.startsWith("true", start))
+					type = TRUE;
+				else if (i - start == 5 && text.startsWith("false", start))
+					type = FALSE;
+
+				addToken(type, start, i);
+			}
+			else
+			{
+				char next = charAt(i + 1);
+				int type;
+				int width = 1;
+
+				if (c == '\'')
+					type = TICK;
+				else if (c == '(')
+					type = LPAR;
+				else if (c == ')')
+					type = RPAR;
+				else if (c == ',')
+					type = COMMA;
+				else if (c == '+')
+					type = PLUS;
+				else if (c == '-')
+					type = MINUS;
+				else if (c == '*')
+					type = TIMES;
+				else if (c == '/')
+					type = DIV;
+				else if (c == '^')
+					type = POW;
+				else if (c == '&')
+				{
+					type = AND;
+					width = (next == '&') ? 2 : 1;
+				}
+				else if (c == '|')
+				{
+					type = OR;
+					width = (next == '|') ? 2 : 1;
+				}
+				else if (c == '!')
+				{
+					type = (next == '=') ? NOTEQUAL : NOT;
+					width = (next == '=') ? 2 : 1;
+				}
+				else if (c == '<')
+				{
+					type = (next == '=') ? LESSEQUAL : LESS;
+					width = (next == '=') ? 2 : 1;
+				}
+				else if (c == '>')
+				{
+					type = (next == '=') ? GREATEREQUAL : GREATER;
+					width = (next == '=') ? 2 : 1;
+				}
+				else if (c == '=')
+				{
+					type = EQUAL;
+					width = (next == '=') ? 2 : 1;
+				}
+				else if (c == ':' && next == '=')
+				{
+					type = EQUAL_RESET;
+					width = 2;
+				}
+				else
+					throw DEFER; // matrices, strings, dots, or characters the lexer would skip
+
+				i += width;
+				addToken(type, start, i);
+			}
+		}
+
+		addToken(EOF, len, len);
+	}
+
+	/**
+	 * Scan a NUM token: (([0-9]+ ('.' [0-9]+)?) | ('.' [0-9]+)) (('E' | 'e') [+|-]? [0-9]+)?
+	 *
+	 * Cases where the ANTLR lexer would split the text differently (such as '1.' or '2e') are
+	 * deferred.
+	 *
+	 * @return the offset after the number
+	 */
+	private int scanNumber(int i)
+	{
+		while (isDigit(charAt(i)))
+			++i;
+
+		if (charAt(i) == '.')
+		{
+			if (!isDigit(charAt(i + 1)))
+				throw DEFER;
+
+			++i;
+
+			while (isDigit(charAt(i)))
+				++i;
+		}
+
+		char c = charAt(i);
+
+		if (c == 'e' || c == 'E')
+		{
+			++i;
+
+			if (charAt(i) == '+' || charAt(i) == '-')
+				++i;
+
+			if (!isDigit(charAt(i)))
+				throw DEFER;
+
+			while (isDigit(charAt(i)))
+				++i;
+		}
+
+		// a number directly followed by a name or a dot is lexed differently
+		if (isVarStart(charAt(i)) || charAt(i) == '.')
+			throw DEFER;
+
+		return i;
+	}
+
+	////////////// parser //////////////
+
+	private int peek()
+	{
+		return types[pos];
+	}
+
+	private int peek(int offset)
+	{
+		return pos + offset < numTokens ? types[pos + offset] : EOF;
+	}
+
+	private String tokenText()
+	{
+		return text.substring(starts[pos], ends[pos]);
+	}
+
+	private void expect(int type)
+	{
+		if (types[pos] != type)
+			throw DEFER;
+
+		if (type != EOF)
+			++pos;
+	}
+
+	/**
+	 * or : and OR or | and
+	 */
+	private Expression parseOr()
+	{
+		List<Expression> ands = new ArrayList<Expression>();
+		ands.add(parseAnd());
+
+		while (peek() == OR)
+		{
+			++pos;
+			ands.add(parseAnd());
+		}
+
+		// right-nested, like the grammar rule
+		Expression rv = ands.get(ands.size() - 1);
+
+		for (int i = ands.size() - 2; i >= 0; --i)
+			rv = new Operation(Operator.OR, ands.get(i), rv);
+
+		return rv;
+	}
+
+	/**
+	 * and : (not AND)* not, as a balanced tree (see ExpVisitor.visitAndExpression())
+	 */
+	private Expression parseAnd()
+	{
+		List<Expression> nots = new ArrayList<Expression>();
+		nots.add(parseNot());
+
+		while (peek() == AND)
+		{
+			++pos;
+			nots.add(parseNot());
+		}
+
+		return balancedAnd(nots);
+	}
+
+	private static Expression balancedAnd(List<Expression> children)
+	{
+		Expression rv;
+
+		if (children.size() == 1)
+			rv = children.get(0);
+		else
+		{
+			int middleIndex = children.size() / 2;
+
+			rv = new Operation(Operator.AND, balancedAnd(children.subList(0, middleIndex)),
+					balancedAnd(children.subList(middleIndex, children.size())));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * not : NOT LPAR or RPAR | LPAR or RPAR | compare
+	 */
+	private Expression parseNot()
+	{
+		Expression rv;
+
+		if (peek() == NOT)
+		{
+			++pos;
+			expect(LPAR);
+			rv = new Operation(Operator.NEGATIVE, parseOr());
+			expect(RPAR);
+		}
+		else if (peek() == LPAR)
+		{
+			// either a comparison starting with a parenthesized sum, like (x + 1) <= 2, or a
+			// parenthesized condition; try the comparison first
+			int start = pos;
+
+			try
+			{
+				rv = parseCompare();
+			}
+			catch (DeferException e)
+			{
+				pos = start + 1;
+				rv = parseOr();
+				expect(RPAR);
+			}
+		}
+		else
+			rv = parseCompare();
+
+		return rv;
+	}
+
+	private static Operator getCompareOperator(int type)
+	{
+		Operator rv = null;
+
+		if (type == EQUAL)
+			rv = Operator.EQUAL;
+		else if (type == LESS)
+			rv = Operator.LESS;
+		else if (type == LESSEQUAL)
+			rv = Operator.LESSEQUAL;
+		else if (type == GREATER)
+			rv = Operator.GREATER;
+		else if (type == GREATEREQUAL)
+			rv = Operator.GREATEREQUAL;
+		else if (type == NOTEQUAL)
+			rv = Operator.NOTEQUAL;
+
+		return rv;
+	}
+
+	/**
+	 * compare : addSub (op addSub)+ | TRUE | FALSE (see ExpVisitor.visitBoolOp())
+	 */
+	private Expression parseCompare()
+	{
+		Expression rv = null;
+
+		if (peek() == TRUE)
+		{
+			++pos;
+			rv = Constant.TRUE;
+		}
+		else if (peek() == FALSE)
+		{
+			++pos;
+			rv = Constant.FALSE;
+		}
+		else
+		{
+			Expression left = parseAddSub();
+			Operator op = getCompareOperator(peek());
+
+			if (op == null)
+				throw DEFER;
+
+			// a < b == c < d generates a < b & b == c & c < d
+			while (op != null)
+			{
+				++pos;
+				Expression right = parseAddSub();
+				Operation o = new Operation(op, left, right.copy()); // always copy right
+
+				rv = (rv == null) ? o : new Operation(Operator.AND, rv, o);
+				left = right;
+				op = getCompareOperator(peek());
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * flowExpression : VAR TICK? EQUAL addSub (AND VAR TICK? EQUAL addSub)* EOF, as a balanced tree
+	 */
+	private Expression parseFlow()
+	{
+		List<Expression> terms = new ArrayList<Expression>();
+
+		do
+		{
+			if (!terms.isEmpty())
+				++pos; // AND
+
+			if (peek() != VAR)
+				throw DEFER;
+
+			Variable v = new Variable(tokenText());
+			++pos;
+
+			if (peek() == TICK)
+				++pos;
+
+			expect(EQUAL);
+
+			terms.add(new Operation(Operator.EQUAL, v, parseAddSub()));
+		} while (peek() == AND);
+
+		return balancedAnd(terms);
+	}
+
+	/**
+	 * resetExpression : resetSubExpression (AND resetSubExpression)* EOF, nested to the left
+	 */
+	private Expression parseReset()
+	{
+		Expression rv = null;
+
+		do
+		{
+			if (rv != null)
+				++pos; // AND
+
+			Expression e = parseResetSub();
+			rv = (rv == null) ? e : new Operation(Operator.AND, rv, e);
+		} while (peek() == AND);
+
+		return rv;
+	}
+
+	/**
+	 * resetSubExpression : VAR EQUAL_RESET addSub | addSub op addSub (op addSub)* (see
+	 * ExpVisitor.visitResetSubOp())
+	 */
+	private Expression parseResetSub()
+	{
+		Expression rv = null;
+
+		if (peek() == VAR && peek(1) == EQUAL_RESET)
+		{
+			Variable v = new Variable(tokenText());
+			pos += 2;
+
+			rv = new Operation(Operator.EQUAL, v, parseAddSub());
+		}
+		else
+		{
+			Expression last = parseAddSub().copy();
+			Operator op = getCompareOperator(peek());
+
+			if (op == null)
+				throw DEFER;
+
+			while (op != null)
+			{
+				++pos;
+				Expression e = parseAddSub();
+				Operation o = new Operation(op, last, e);
+
+				rv = (rv == null) ? o : new Operation(Operator.AND, rv, o);
+				last = e.copy();
+				op = getCompareOperator(peek());
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * addSub : addSub PLUS timesDiv | addSub MINUS timesDiv | timesDiv
+	 */
+	private Expression parseAddSub()
+	{
+		Expression rv = parseTimesDiv();
+
+		while (peek() == PLUS || peek() == MINUS)
+		{
+			Operator op = (peek() == PLUS) ? Operator.ADD : Operator.SUBTRACT;
+			++pos;
+
+			rv = new Operation(op, rv, parseTimesDiv());
+		}
+
+		return rv;
+	}
+
+	/**
+	 * timesDiv : timesDiv TIMES pow | timesDiv DIV pow | pow
+	 */
+	private Expression parseTimesDiv()
+	{
+		Expression rv = parsePow();
+
+		while (peek() == TIMES || peek() == DIV)
+		{
+			Operator op = (peek() == TIMES) ? Operator.MULTIPLY : Operator.DIVIDE;
+			++pos;
+
+			rv = new Operation(op, rv, parsePow());
+		}
+
+		return rv;
+	}
+
+	/**
+	 * pow : pow POW negativeUnary | negativeUnary (so exponentiation is left-associative)
+	 */
+	private Expression parsePow()
+	{
+		Expression rv = parseNegativeUnary();
+
+		while (peek() == POW)
+		{
+			++pos;
+			rv = new Operation(Operator.POW, rv, parseNegativeUnary());
+		}
+
+		return rv;
+	}
+
+	/**
+	 * negativeUnary : MINUS negativeUnary | unary
+	 */
+	private Expression parseNegativeUnary()
+	{
+		Expression rv;
+
+		if (peek() == MINUS)
+		{
+			++pos;
+			rv = ExpVisitor.negate(parseNegativeUnary());
+		}
+		else
+			rv = parseUnary();
+
+		return rv;
+	}
+
+	/**
+	 * unary : functionExpression | NUM | dottedVar | LPAR addSub RPAR (without matrices or dotted
+	 * names)
+	 */
+	private Expression parseUnary()
+	{
+		Expression rv;
+		int type = peek();
+
+		if (type == NUM)
+		{
+			rv = new Constant(Double.parseDouble(tokenText()));
+			++pos;
+		}
+		else if (type == VAR && peek(1) == LPAR)
+			rv = parseFunction();
+		else if (type == VAR)
+		{
+			rv = new Variable(tokenText());
+			++pos;
+
+			if (peek() == TICK)
+				++pos;
+		}
+		else if (type == LPAR)
+		{
+			++pos;
+			rv = parseAddSub();
+			expect(RPAR);
+		}
+		else
+			throw DEFER;
+
+		return rv;
+	}
+
+	/**
+	 * Single-argument functions, like sin(x). Other functions (loc, lut, reshape) are deferred.
+	 */
+	private Expression parseFunction()
+	{
+		String name = tokenText().toLowerCase();
+		Operator op;
+
+		if (name.equals("sin"))
+			op = Operator.SIN;
+		else if (name.equals("cos"))
+			op = Operator.COS;
+		else if (name.equals("tan"))
+			op = Operator.TAN;
+		else if (name.equals("sqrt"))
+			op = Operator.SQRT;
+		else if (name.equals("exp"))
+			op = Operator.EXP;
+		else if (name.equals("ln"))
+			op = Operator.LN;
+		else
+			throw DEFER;
+
+		pos += 2; // name and LPAR
+		Expression arg = parseAddSub();
+		expect(RPAR);
+
+		return new Operation(op, arg);
+	}
+}
@@ -3,6 +3,8 @@
  */
 package com.verivital.hyst.grammar.formula;
 
+import com.verivital.hyst.ir.SymbolTable;
+
 /**
  * A variable references a Param of a Component. It should start with a character from a to z or an
  * underscore. Both upper- and lowercase characters can be used. Following characters can include
@@ -15,14 +17,63 @@ public class Variable extends Expression
 {
 	public String name;
 
+	// the last id this variable was resolved to (see getId()). This is a single immutable object,
+	// so it can be read and replaced from several threads without locking.
+	private ResolvedId resolved = null;
+
+	private static class ResolvedId
+	{
+		final SymbolTable table;
+		final String name;
+		final int id;
+
+		ResolvedId(SymbolTable table, String name, int id)
+		{
+			this.table = table;
+			this.name = name;
+			this.id = id;
+		}
+	}
+
 	public Variable(String name)
 	{
 		this.name = name;
 	}
 
+	/**
+	 * Get the id of this variable's name in a symbol table. The result is cached, so resolving
+	 * against the same table again is just a comparison (the cache is checked against the current
+	 * name, so it's safe to rename the variable).
+	 * 
+	 * @param table
+	 *            the symbol table
+	 * @return the id, or -1 if the name is not in the table
+	 */
+	public int getId(SymbolTable table)
+	{
+		ResolvedId r = resolved;
+		int rv;
+
+		if (r != null && r.table == table && r.name == name)
+			rv = r.id;
+		else
+		{
+			rv = table.getId(name);
+
+			// names are never removed from a table, so only found ids can be cached
+			if (rv != -1)
+				resolved = new ResolvedId(table, name, rv);
+		}
+
+		return rv;
+	}
+
 	@Override
 	public Expression copy()
 	{
-		return new Variable(name);
+		Variable rv = new Variable(name);
+		rv.resolved = resolved;
+
+		return rv;
 	}
 }
@@ -11,6 +11,7 @@ import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
 import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.util.DnfIterator;
 
 import de.uni_freiburg.informatik.swt.sxhybridautomaton.Bind;
 import de.uni_freiburg.informatik.swt.sxhybridautomaton.Location;
@@ -383,7 +384,8 @@ public class SymbolicStateExpression
 	}
 
 	/**
-	 * Recursively extract the symbolic (start) states from an expression
+	 * Extract the symbolic (start) states from an expression. The expression is expanded into
+	 * disjunctive normal form lazily (see DnfIterator), and each disjunct becomes one symbolic state.
 	 * 
 	 * @param e
 	 *            the expression to parse
@@ -394,11 +396,21 @@ public class SymbolicStateExpression
 			String description)
 	{
 		List<SymbolicStateExpression> rv = new ArrayList<SymbolicStateExpression>();
-		rv.add(new SymbolicStateExpression(true));
+		SymbolicStateExpression all = new SymbolicStateExpression(true);
 
 		try
 		{
-			extractSymbolicStatesRec(rv, e);
+			DnfIterator it = new DnfIterator(e, false);
+
+			while (it.hasNext())
+			{
+				SymbolicStateExpression ss = all.copy();
+
+				for (Expression atom : it.next())
+					addConstraint(ss, atom);
+
+				rv.add(ss);
+			}
 		}
 		catch (AutomatonExportException ex)
 		{
@@ -411,45 +423,25 @@ public class SymbolicStateExpression
 		return rv;
 	}
 
-	private static void extractSymbolicStatesRec(List<SymbolicStateExpression> rv, Expression e)
+	private static void addConstraint(SymbolicStateExpression ss, Expression e)
 	{
 		Operation o = e.asOperation();
 
-		if (o.op == Operator.OR)
-		{
-			List<SymbolicStateExpression> rvRight = new ArrayList<SymbolicStateExpression>();
-
-			for (SymbolicStateExpression ss : rv)
-				rvRight.add(ss.copy());
-
-			extractSymbolicStatesRec(rv, o.getLeft());
-			extractSymbolicStatesRec(rvRight, o.getRight());
-
-			rv.addAll(rvRight);
-		}
-		else if (o.op == Operator.AND)
-		{
-			extractSymbolicStatesRec(rv, o.getLeft());
-			extractSymbolicStatesRec(rv, o.getRight());
-		}
-		else if (o.op == Operator.EQUAL && o.getLeft() instanceof Operation
+		if (o != null && o.op == Operator.EQUAL && o.getLeft() instanceof Operation
 				&& o.getLeft().asOperation().op == Operator.LOC)
 		{
 			Operation locFunction = o.getLeft().asOperation();
-			// base case: discrete (loc) constraint
+			// discrete (loc) constraint
 			String instance = locFunction.children.size() == 0 ? ""
 					: ((Variable) locFunction.children.get(0)).name;
 			String state = ((Variable) o.getRight()).name;
 
-			for (SymbolicStateExpression ss : rv)
-				ss.addDiscreteConstraint(instance, state);
+			ss.addDiscreteConstraint(instance, state);
 		}
-		else if (Operator.isComparison(o.op))
+		else if (o != null && Operator.isComparison(o.op))
 		{
-			// base case: continuous constraint
-
-			for (SymbolicStateExpression ss : rv)
-				ss.addContinuousConstraint(e);
+			// continuous constraint
+			ss.addContinuousConstraint(e);
 		}
 		else
 			throw new AutomatonExportException(
@@ -11,7 +11,7 @@ import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
-import com.verivital.hyst.util.DynamicsUtil;
+import com.verivital.hyst.util.DnfIterator;
 
 /**
  * Internal passes are similar to transformation passes, but instead are called programmatically.
@@ -116,14 +116,14 @@ public class ConvertToStandardForm
 		for (Entry<String, Expression> e : config.forbidden.entrySet())
 		{
 			Expression forbiddenCondition = e.getValue();
-			ArrayList<Expression> conds = DynamicsUtil.splitDisjunction(forbiddenCondition);
+			DnfIterator it = new DnfIterator(forbiddenCondition, true);
 
-			for (Expression cond : conds)
+			while (it.hasNext())
 			{
 				AutomatonMode m = ha.modes.get(e.getKey());
 				AutomatonTransition at = ha.createTransition(m, error);
 
-				at.guard = cond;
+				at.guard = DnfIterator.toConjunction(it.next());
 			}
 		}
 
@@ -38,14 +38,15 @@ public class RenameParams
 	 * If new name exists, a number will be appended to it (the number starts at 2 and is
 	 * incremented until a fresh variable is found)
 	 *
+	 * If the root is a network, the names are swapped in every component, so the network should
+	 * use fully-qualified names (see FlattenRenameUtils.convertToFullyQualifiedParams()).
+	 *
 	 * @param convertMap
 	 *            the mapping of oldName -> newName
 	 */
 	public static void run(Configuration config, Map<String, String> convertMap)
 	{
-		BaseComponent ha = (BaseComponent) config.root;
-
-		swapNames(ha, convertMap);
+		swapNamesRecursive(config.root, convertMap);
 
 		// modify the configuration
 		SwapExpressionModifier swapper = new SwapExpressionModifier(convertMap);
@@ -70,6 +71,39 @@ public class RenameParams
 			swapBaseNames((BaseComponent) c, convertMap);
 	}
 
+	/**
+	 * Swap the parameter names in a component and all its descendants, as well as both sides of
+	 * the mappings between them
+	 */
+	private static void swapNamesRecursive(Component c, Map<String, String> convertMap)
+	{
+		swapNames(c, convertMap);
+
+		if (c instanceof NetworkComponent)
+		{
+			for (ComponentInstance ci : ((NetworkComponent) c).children.values())
+			{
+				swapNamesRecursive(ci.child, convertMap);
+
+				renameChildMapping(ci.varMapping, convertMap);
+				renameChildMapping(ci.constMapping, convertMap);
+				renameChildMapping(ci.labelMapping, convertMap);
+			}
+		}
+	}
+
+	private static void renameChildMapping(ArrayList<ComponentMapping> mappingList,
+			Map<String, String> convertMap)
+	{
+		for (ComponentMapping mapping : mappingList)
+		{
+			String newName = convertMap.get(mapping.childParam);
+
+			if (newName != null)
+				mapping.childParam = newName;
+		}
+	}
+
 	private static void swapNetworkNames(NetworkComponent nc, Map<String, String> convertMap)
 	{
 		// we need to rename the mappings from
@@ -314,15 +348,18 @@ public class RenameParams
 				for (int i = 0; i < lut.inputs.length; ++i)
 					lut.inputs[i] = modifyExpression(lut.inputs[i]);
 
-				// modify each table entry
-				for (Entry<int[], Expression> entry : lut.table)
+				// modify each table entry (numeric tables have no variables)
+				if (!lut.table.isNumeric())
 				{
-					int[] index = entry.getKey();
+					for (Entry<int[], Expression> entry : lut.table)
+					{
+						int[] index = entry.getKey();
 
-					Expression tableExp = lut.table.get(index);
-					Expression moddedTableExp = modifyExpression(tableExp);
+						Expression tableExp = lut.table.get(index);
+						Expression moddedTableExp = modifyExpression(tableExp);
 
-					lut.table.setExpressionAtIndex(index, moddedTableExp);
+						lut.table.setExpressionAtIndex(index, moddedTableExp);
+					}
 				}
 			}
 
@@ -6,6 +6,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -369,6 +370,63 @@ public abstract class Component
 		return rv;
 	}
 
+	/**
+	 * Get the fully-qualified names of several variables at once (see
+	 * getFullyQualifiedVariableName()). The parent's mappings are indexed once and the instance
+	 * prefix is built once, rather than for each variable.
+	 * 
+	 * @param vars
+	 *            the variable names in this component
+	 * @return the fully-qualified names, in the same order
+	 */
+	public List<String> getFullyQualifiedVariableNames(List<String> vars)
+	{
+		ArrayList<String> rv = new ArrayList<String>(vars);
+
+		if (parent != null)
+		{
+			ComponentInstance ci = parent.children.get(instanceName);
+
+			if (ci == null)
+				throw new AutomatonExportException(
+						"Error getting instance named '" + instanceName + "' in parent automaton.");
+
+			// the first mapping of each child param is used, like in getFullyQualifiedVariableName
+			HashMap<String, String> mappings = new HashMap<String, String>();
+
+			for (ComponentMapping mapping : ci.varMapping)
+			{
+				if (!mappings.containsKey(mapping.childParam))
+					mappings.put(mapping.childParam, mapping.parentParam);
+			}
+
+			String prefix = getFullyQualifiedInstanceName() + ".";
+			ArrayList<Integer> mappedIndices = new ArrayList<Integer>();
+			ArrayList<String> parentParams = new ArrayList<String>();
+
+			for (int i = 0; i < rv.size(); ++i)
+			{
+				String parentParam = mappings.get(rv.get(i));
+
+				if (parentParam == null) // local variable
+					rv.set(i, prefix + rv.get(i));
+				else
+				{
+					mappedIndices.add(i);
+					parentParams.add(parentParam);
+				}
+			}
+
+			// lookup the real names of the parent params the variables were mapped to
+			List<String> parentNames = parent.getFullyQualifiedVariableNames(parentParams);
+
+			for (int i = 0; i < mappedIndices.size(); ++i)
+				rv.set(mappedIndices.get(i), parentNames.get(i));
+		}
+
+		return rv;
+	}
+
 	/**
 	 * Get the instance name, or "<root>" is it's null
 	 * 
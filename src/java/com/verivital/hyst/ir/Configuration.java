@@ -1,13 +1,16 @@
 package com.verivital.hyst.ir;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.util.AutomatonUtil;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 /**
  * A configuration is a hybrid automaton (network or base component) plus the settings (init states
@@ -23,6 +26,12 @@ public class Configuration
 {
 	public static boolean DO_VALIDATION = true;
 
+	// if true, validate() skips the per-mode checks of modes which were not modified since they
+	// were last validated (see BaseComponent.validate()). Expressions changed in place, without
+	// assigning a new object, are not detected, so this is used between passes rather than
+	// before printing.
+	public static boolean INCREMENTAL_VALIDATION = false;
+
 	public AutomatonSettings settings = new AutomatonSettings(this);
 
 	public LinkedHashMap<String, Expression> init = new LinkedHashMap<String, Expression>();
@@ -30,6 +39,15 @@ public class Configuration
 
 	public Component root = null;
 
+	// preconditions which were checked (or established by conversion) and are known to still hold.
+	// Preconditions.check() skips these. TransformationPass clears the ones a pass does not
+	// preserve, and code which modifies the model outside of a pass should clear this.
+	public EnumSet<PreconditionsFlag> establishedPreconditions = EnumSet
+			.noneOf(PreconditionsFlag.class);
+
+	// interned variable and constant names, created on first use (see getSymbolTable())
+	private SymbolTable symbols = null;
+
 	public Configuration(Component root)
 	{
 		this.root = root;
@@ -39,6 +57,7 @@ public class Configuration
 	{
 		Configuration rv = new Configuration(root.copy());
 		rv.settings = settings.copy(rv);
+		rv.establishedPreconditions = EnumSet.copyOf(establishedPreconditions);
 
 		for (Entry<String, Expression> e : init.entrySet())
 			rv.init.put(e.getKey(), e.getValue().copy());
@@ -49,6 +68,28 @@ public class Configuration
 		return rv;
 	}
 
+	/**
+	 * Get the symbol table for this configuration, which gives every variable and constant a dense
+	 * integer id. The table is kept across calls, so ids don't change; names added to the model
+	 * since the last call are given new ids. Since this collects the names from the whole model,
+	 * call it once before evaluating many expressions, rather than for each one.
+	 * 
+	 * @return the symbol table
+	 */
+	public SymbolTable getSymbolTable()
+	{
+		if (symbols == null)
+			symbols = new SymbolTable();
+
+		for (String v : root.getAllVariables())
+			symbols.intern(v);
+
+		for (String c : root.getAllConstants().keySet())
+			symbols.intern(c);
+
+		return symbols;
+	}
+
 	public void validate()
 	{
 		if (!Configuration.DO_VALIDATION)
@@ -59,7 +100,7 @@ public class Configuration
 
 		root.validate();
 
-		Collection<String> validVarNames = root.getAllVariables();
+		Collection<String> validVarNames = new LinkedHashSet<String>(root.getAllVariables());
 		validVarNames.addAll(root.getAllConstants().keySet());
 
 		validateMap(init, "init", validVarNames, false);
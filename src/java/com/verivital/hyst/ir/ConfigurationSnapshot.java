@@ -0,0 +1,70 @@
+package com.verivital.hyst.ir;
+
+/**
+ * A copy-on-write handle to a configuration, for trying several alternatives (such as different
+ * pass parameters or printers) on the same model without copying it up front.
+ *
+ * Taking a snapshot is O(1): snapshots share one configuration, which is only read. The first call
+ * to edit() on a snapshot makes a deep copy (Configuration.copy()) that belongs to that snapshot,
+ * so only branches which are modified pay for a copy. Calling snapshot() on an edited snapshot
+ * freezes its copy, which is then shared by both.
+ *
+ * The IR has public mutable fields, so sharing is only safe if callers follow the accessors: the
+ * configuration given to the constructor and the result of read() must not be modified, and the
+ * result of edit() must not be modified after the next call to snapshot().
+ */
+public class ConfigurationSnapshot
+{
+	// read only, possibly shared with other snapshots
+	private Configuration shared;
+
+	// this snapshot's copy, created by the first edit(), or null
+	private Configuration own = null;
+
+	/**
+	 * Create a snapshot of a configuration, without copying it
+	 *
+	 * @param c
+	 *            the configuration, which must not be modified afterwards
+	 */
+	public ConfigurationSnapshot(Configuration c)
+	{
+		shared = c;
+	}
+
+	/**
+	 * Get the configuration for reading. It may be shared with other snapshots and must not be
+	 * modified.
+	 */
+	public Configuration read()
+	{
+		return own != null ? own : shared;
+	}
+
+	/**
+	 * Get the configuration for modification. It's copied on the first call, and later calls
+	 * return the same copy (until snapshot() is called).
+	 */
+	public Configuration edit()
+	{
+		if (own == null)
+			own = shared.copy();
+
+		return own;
+	}
+
+	/**
+	 * Create another snapshot of the current state, in O(1). Afterwards, both snapshots share the
+	 * state, and each copies it on its next edit().
+	 */
+	public ConfigurationSnapshot snapshot()
+	{
+		if (own != null)
+		{
+			shared = own;
+			own = null;
+		}
+
+		return new ConfigurationSnapshot(shared);
+	}
+}
@@ -0,0 +1,118 @@
+package com.verivital.hyst.ir;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import com.verivital.hyst.grammar.formula.Variable;
+
+/**
+ * Interns variable and constant names to dense integer ids (0, 1, 2, ...), so evaluators can keep
+ * values in arrays indexed by id instead of maps keyed by name. Ids are assigned in the order names
+ * are added and never change, since names are never removed.
+ *
+ * Variable expressions remember the id they were resolved to (see Variable.getId()), so resolving
+ * the same Variable object against the same table again does not hash its name.
+ *
+ * Use Configuration.getSymbolTable() to get the table for a model.
+ */
+public class SymbolTable
+{
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private final ArrayList<String> names = new ArrayList<String>();
+
+	public SymbolTable()
+	{
+	}
+
+	/**
+	 * Create a symbol table where the id of each name is its position in the collection
+	 *
+	 * @param names
+	 *            the names (duplicates keep their first id)
+	 */
+	public SymbolTable(Collection<String> names)
+	{
+		for (String name : names)
+			intern(name);
+	}
+
+	/**
+	 * Get the id of a name, adding the name if it's not in the table yet
+	 *
+	 * @param name
+	 *            the name
+	 * @return the id
+	 */
+	public int intern(String name)
+	{
+		Integer rv = ids.get(name);
+
+		if (rv == null)
+		{
+			rv = names.size();
+			ids.put(name, rv);
+			names.add(name);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the id of a name
+	 *
+	 * @param name
+	 *            the name
+	 * @return the id, or -1 if the name is not in the table
+	 */
+	public int getId(String name)
+	{
+		Integer rv = ids.get(name);
+
+		return rv == null ? -1 : rv;
+	}
+
+	/**
+	 * Get the id of a variable expression. The resolved id is cached in the Variable.
+	 *
+	 * @param v
+	 *            the variable
+	 * @return the id, or -1 if the variable is not in the table
+	 */
+	public int getId(Variable v)
+	{
+		return v.getId(this);
+	}
+
+	/**
+	 * Get the name with the given id
+	 */
+	public String getName(int id)
+	{
+		return names.get(id);
+	}
+
+	/**
+	 * Get the number of names in the table (one more than the largest id)
+	 */
+	public int size()
+	{
+		return names.size();
+	}
+
+	/**
+	 * Get all the names, in id order
+	 */
+	public List<String> getNames()
+	{
+		return Collections.unmodifiableList(names);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[SymbolTable: " + names + "]";
+	}
+}
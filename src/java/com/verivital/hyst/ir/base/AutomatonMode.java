@@ -1,8 +1,11 @@
 package com.verivital.hyst.ir.base;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
@@ -12,6 +15,7 @@ import com.verivital.hyst.ir.AutomatonValidationException;
 import com.verivital.hyst.ir.Component;
 import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.util.AutomatonUtil;
+import com.verivital.hyst.util.Polynomial;
 
 /**
  * A mode of a hybrid automaton.
@@ -35,6 +39,28 @@ public class AutomatonMode
 	public boolean urgent = false;
 	public LinkedHashMap<String, ExpressionInterval> flowDynamics;
 
+	// polynomial forms of flow expressions, by variable. Expressions can be modified in place
+	// anywhere (passes, substitutions, printers), so each entry keeps a copy of the expression it
+	// was computed from, and is only used if the current flow is still structurally equal to it.
+	private HashMap<String, CachedPolynomial> flowPolynomials = null;
+
+	private static class CachedPolynomial
+	{
+		final Expression source; // a copy of the flow expression
+		final int hash; // structural hash of source
+		final Polynomial poly; // null if not a polynomial
+
+		CachedPolynomial(Expression e, int hash)
+		{
+			this.source = e.copy();
+			this.hash = hash;
+			this.poly = Polynomial.fromExpression(e);
+		}
+	}
+
+	// the fields of this mode when it was last validated, for incremental validation
+	private Object[] validatedState = null;
+
 	/**
 	 * The correct way to create a new automaton mode is using HybridAutomaton.createMode(name),
 	 * which will manage the internal state of the automaton
@@ -62,12 +88,25 @@ public class AutomatonMode
 	 * @throws AutomatonValidationException
 	 *             if guarantees are violated
 	 */
-
 	public void validate()
 	{
 		if (!Configuration.DO_VALIDATION)
 			return;
 
+		if (automaton == null)
+			throw new AutomatonValidationException("automaton was null");
+
+		validate(new HashSet<String>(automaton.variables));
+	}
+
+	/**
+	 * Validate the mode, using a hashed set of the automaton's variable names
+	 * 
+	 * @param variableSet
+	 *            the variables in the parent automaton
+	 */
+	void validate(Set<String> variableSet)
+	{
 		if (name == null)
 			throw new AutomatonValidationException("name was null");
 
@@ -95,7 +134,7 @@ public class AutomatonMode
 		{
 			for (String s : flowDynamics.keySet())
 			{
-				if (!automaton.variables.contains(s))
+				if (!variableSet.contains(s))
 				{
 					throw new AutomatonValidationException(
 							"dynamics were defined for variable '" + s + "' in mode '" + name
@@ -121,6 +160,122 @@ public class AutomatonMode
 		}
 	}
 
+	/**
+	 * Get the current state of the fields checked by validation. Objects are compared by identity,
+	 * so expressions modified in place are not detected.
+	 * 
+	 * @param componentEpoch
+	 *            the validation epoch of the parent automaton, which changes when its names change
+	 */
+	private Object[] getValidationState(int componentEpoch)
+	{
+		int numFlows = flowDynamics == null ? 0 : flowDynamics.size();
+		Object[] rv = new Object[5 + 3 * numFlows];
+		int index = 0;
+
+		rv[index++] = componentEpoch;
+		rv[index++] = name;
+		rv[index++] = invariant;
+		rv[index++] = urgent;
+		rv[index++] = flowDynamics;
+
+		if (flowDynamics != null)
+		{
+			for (Entry<String, ExpressionInterval> e : flowDynamics.entrySet())
+			{
+				ExpressionInterval ei = e.getValue();
+
+				rv[index++] = e.getKey();
+				rv[index++] = ei;
+				rv[index++] = ei == null ? null : ei.getExpression();
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Was this mode validated, and not modified since then?
+	 * 
+	 * @param componentEpoch
+	 *            the validation epoch of the parent automaton
+	 */
+	boolean isUnchangedSinceValidation(int componentEpoch)
+	{
+		if (validatedState == null)
+			return false;
+
+		Object[] cur = getValidationState(componentEpoch);
+
+		if (cur.length != validatedState.length)
+			return false;
+
+		for (int i = 0; i < cur.length; ++i)
+		{
+			Object a = cur[i];
+			Object b = validatedState[i];
+
+			// names and flags are compared by value, everything else by identity
+			boolean same = (a == b) || ((a instanceof String || a instanceof Integer
+					|| a instanceof Boolean) && a.equals(b));
+
+			if (!same)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Record that this mode was validated in its current state
+	 * 
+	 * @param componentEpoch
+	 *            the validation epoch of the parent automaton
+	 */
+	void markValidated(int componentEpoch)
+	{
+		validatedState = getValidationState(componentEpoch);
+	}
+
+	/**
+	 * Get the polynomial form of a variable's flow expression. This is cached, so repeated calls
+	 * (from different printers or passes) do not re-derive it as long as the flow is structurally
+	 * unchanged; checking this is much cheaper than the conversion. The interval part of the flow
+	 * (if any) is not included.
+	 * 
+	 * @param var
+	 *            the variable name
+	 * @return the polynomial, or null if the flow is not defined or is not a polynomial
+	 */
+	public synchronized Polynomial getFlowPolynomial(String var)
+	{
+		ExpressionInterval ei = flowDynamics == null ? null : flowDynamics.get(var);
+
+		if (ei == null)
+			return null;
+
+		Expression e = ei.getExpression();
+
+		// constants are cheap to convert, and can be modified by asExpression()
+		if (e instanceof Constant)
+			return Polynomial.fromExpression(e);
+
+		if (flowPolynomials == null)
+			flowPolynomials = new HashMap<String, CachedPolynomial>();
+
+		int hash = Expression.structuralHash(e);
+		CachedPolynomial cached = flowPolynomials.get(var);
+
+		if (cached == null || cached.hash != hash
+				|| !Expression.structurallyEqual(cached.source, e))
+		{
+			cached = new CachedPolynomial(e, hash);
+			flowPolynomials.put(var, cached);
+		}
+
+		return cached.poly;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -66,18 +66,9 @@ public class AutomatonTransition
 	 */
 	public AutomatonTransition copy(BaseComponent parent)
 	{
-		// parent may be different, so search for from.name and to.name in
-		// parent
-		AutomatonMode parentFrom = null, parentTo = null;
-
-		for (AutomatonMode am : parent.modes.values())
-		{
-			if (am.name.equals(from.name))
-				parentFrom = am;
-
-			if (am.name.equals(to.name))
-				parentTo = am;
-		}
+		// parent may be different, so look up from.name and to.name in parent
+		AutomatonMode parentFrom = findMode(parent, from.name);
+		AutomatonMode parentTo = findMode(parent, to.name);
 
 		if (parentFrom == null)
 			throw new AutomatonExportException("Source mode ('" + from.name
@@ -99,6 +90,28 @@ public class AutomatonTransition
 		return rv;
 	}
 
+	/**
+	 * Find a mode by name in an automaton. Modes are keyed by name, so this is normally a map
+	 * lookup; the scan is only needed if a mode was renamed without updating its key.
+	 */
+	private static AutomatonMode findMode(BaseComponent parent, String name)
+	{
+		AutomatonMode rv = parent.modes.get(name);
+
+		if (rv == null || !rv.name.equals(name))
+		{
+			rv = null;
+
+			for (AutomatonMode am : parent.modes.values())
+			{
+				if (am.name.equals(name))
+					rv = am;
+			}
+		}
+
+		return rv;
+	}
+
 	/**
 	 * Check if the guarantees expected of this class are met. This is run prior to any printing
 	 * procedures.
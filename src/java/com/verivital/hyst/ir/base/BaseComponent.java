@@ -2,6 +2,7 @@ package com.verivital.hyst.ir.base;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -37,6 +38,11 @@ public class BaseComponent extends Component
 	public LinkedHashMap<String, AutomatonMode> modes = new LinkedHashMap<String, AutomatonMode>();
 	public ArrayList<AutomatonTransition> transitions = new ArrayList<AutomatonTransition>();
 
+	// for incremental validation: the variable and constant names when last validated, and an
+	// epoch which is incremented when they change (which invalidates every mode)
+	private ArrayList<String> validatedNames = null;
+	private int validationEpoch = 0;
+
 	/**
 	 * Create a new mode in this hybrid automaton. By default the invariant is null (must be
 	 * manually set) and the flows are x'=null for all x (these must be assigned), or flows can be
@@ -164,26 +170,45 @@ public class BaseComponent extends Component
 			}
 		}
 
+		HashSet<String> variableSet = new HashSet<String>(variables);
+		boolean incremental = Configuration.INCREMENTAL_VALIDATION;
+
+		if (incremental)
+		{
+			ArrayList<String> names = new ArrayList<String>(variables.size() + constants.size());
+			names.addAll(variables);
+			names.addAll(constants.keySet());
+
+			if (!names.equals(validatedNames))
+			{
+				validatedNames = names;
+				++validationEpoch;
+			}
+		}
+
+		// modes which are unchanged since they were last validated are skipped in incremental mode
+		ArrayList<AutomatonMode> changedModes = new ArrayList<AutomatonMode>();
+
 		for (AutomatonMode m : modes.values())
-			m.validate();
+		{
+			if (incremental && m.isUnchangedSinceValidation(validationEpoch))
+				continue;
+
+			m.validate(variableSet);
+			changedModes.add(m);
+		}
+
+		HashSet<String> usedLabels = new HashSet<String>();
 
 		for (AutomatonTransition t : transitions)
+		{
 			t.validate();
+			usedLabels.add(t.label);
+		}
 
 		for (String label : labels)
 		{
-			boolean found = false;
-
-			for (AutomatonTransition t : transitions)
-			{
-				if (label.equals(t.label))
-				{
-					found = true;
-					break;
-				}
-			}
-
-			if (!found)
+			if (!usedLabels.contains(label))
 			{
 				String msg = "Exported label '" + label + "' was not used in BaseComponent '"
 						+ getPrintableInstanceName() + "'.";
@@ -224,13 +249,20 @@ public class BaseComponent extends Component
 				}
 			}
 
+		}
+
+		for (AutomatonMode am : changedModes)
+		{
+			if (am.urgent)
+				continue;
+
 			for (Entry<String, ExpressionInterval> entry : am.flowDynamics.entrySet())
 			{
 				Expression exp = entry.getValue().getExpression();
 
 				try
 				{
-					checkExpression(exp);
+					checkExpression(exp, variableSet);
 				}
 				catch (AutomatonValidationException ave)
 				{
@@ -242,6 +274,12 @@ public class BaseComponent extends Component
 				}
 			}
 		}
+
+		if (incremental)
+		{
+			for (AutomatonMode am : changedModes)
+				am.markValidated(validationEpoch);
+		}
 	}
 
 	/**
@@ -249,14 +287,16 @@ public class BaseComponent extends Component
 	 * 
 	 * @param e
 	 *            the expression to check
+	 * @param variableSet
+	 *            the variables of this component
 	 */
-	private void checkExpression(Expression e)
+	private void checkExpression(Expression e, Set<String> variableSet)
 	{
 		if (e instanceof Variable)
 		{
 			Variable v = (Variable) e;
 
-			if (!variables.contains(v.name) && !constants.containsKey(v.name))
+			if (!variableSet.contains(v.name) && !constants.containsKey(v.name))
 				throw new AutomatonValidationException(
 						"Variable/constant not in automaton: '" + v.name + "'");
 		}
@@ -265,7 +305,7 @@ public class BaseComponent extends Component
 			Operation o = e.asOperation();
 
 			for (Expression child : o.children)
-				checkExpression(child);
+				checkExpression(child, variableSet);
 		}
 	}
 
@@ -297,15 +337,7 @@ public class BaseComponent extends Component
 	@Override
 	public Collection<String> getAllVariables()
 	{
-		ArrayList<String> rv = new ArrayList<String>(variables.size());
-
-		for (String v : variables)
-		{
-			String fullName = getFullyQualifiedVariableName(v);
-			rv.add(fullName);
-		}
-
-		return rv;
+		return getFullyQualifiedVariableNames(variables);
 	}
 
 	@Override
@@ -313,14 +345,13 @@ public class BaseComponent extends Component
 	{
 		BaseComponent rv = new BaseComponent();
 
-		// copy modes
-		for (Entry<String, AutomatonMode> e : modes.entrySet())
-		{
-			AutomatonMode am = e.getValue();
-			rv.modes.put(e.getKey(), am.copy(rv, am.name));
-		}
+		// copy modes (this adds them to rv)
+		for (AutomatonMode am : modes.values())
+			am.copy(rv, am.name);
 
 		// copy transitions
+		rv.transitions.ensureCapacity(transitions.size());
+
 		for (AutomatonTransition at : transitions)
 			at.copy(rv); // this adds it to rv
 
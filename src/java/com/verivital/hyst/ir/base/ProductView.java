@@ -0,0 +1,761 @@
+package com.verivital.hyst.ir.base;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.Component;
+import com.verivital.hyst.ir.network.ComponentInstance;
+import com.verivital.hyst.ir.network.NetworkComponent;
+import com.verivital.hyst.passes.basic.RemoveSimpleUnsatInvariantsPass;
+import com.verivital.hyst.passes.complex.FlattenAutomatonPass;
+
+/**
+ * A read-only view of the flattened product of a network component, which creates the product
+ * modes and transitions while they're iterated instead of storing them. The modes, transitions, and
+ * their order are the same as FlattenAutomatonPass would produce, but memory use depends on the
+ * size of the network rather than the size of the product.
+ *
+ * The network must use fully-qualified names (see
+ * FlattenRenameUtils.convertToFullyQualifiedParams()). If initial modes are given, only modes which
+ * are discretely reachable from them (through modes without provably unsatisfiable invariants) are
+ * in the view, like FlattenAutomatonPass.flattenAndOptimize().
+ *
+ * Each mode and transition returned is a new object belonging to getComponent(), which has the
+ * product's variables, constants, and labels but no modes or transitions. They share their
+ * expressions with the network, so they should not be modified (their reset and flow maps are new,
+ * and can be).
+ */
+public class ProductView
+{
+	private final BaseComponent component;
+	private final Node root;
+	private final BaseComponent[] leaves;
+	private final AutomatonMode[][] leafModes;
+	private final ArrayList<HashMap<String, Integer>> leafModeIndices = new ArrayList<HashMap<String, Integer>>();
+	private final IdentityHashMap<AutomatonMode, Integer> modeIndices = new IdentityHashMap<AutomatonMode, Integer>();
+	private final IdentityHashMap<AutomatonMode, List<AutomatonTransition>> outgoing = new IdentityHashMap<AutomatonMode, List<AutomatonTransition>>();
+
+	// product index = sum of leaf mode index * stride
+	private final long[] strides;
+	private final long productSize;
+
+	// if not null, the product indices of the modes in the view, and the number of modes in the
+	// view before each word of the bitset (for getModeNumber())
+	private BitSet included = null;
+	private long[] includedWords = null;
+	private int[] rankBefore = null;
+	private long numModes;
+
+	/**
+	 * A component in the network tree. Transitions are merged pairwise along the tree, the same way
+	 * FlattenAutomatonPass merges them.
+	 */
+	private static class Node
+	{
+		int firstLeaf;
+		int endLeaf;
+		Node[] children = null; // null for leaves
+		Set<String> labels = new HashSet<String>();
+
+		// for networks, prefixLabels.get(k) are the labels of children 0 to k - 1
+		ArrayList<Set<String>> prefixLabels = null;
+	}
+
+	/**
+	 * A product transition before it's created: the target leaf modes and the merged parts
+	 */
+	private static class Step
+	{
+		final int[] target;
+		final Expression guard;
+		final LinkedHashMap<String, ExpressionInterval> reset;
+		final String label;
+
+		Step(int[] target, Expression guard, LinkedHashMap<String, ExpressionInterval> reset,
+				String label)
+		{
+			this.target = target;
+			this.guard = guard;
+			this.reset = reset;
+			this.label = label;
+		}
+	}
+
+	/**
+	 * A mode in the product, which remembers its leaf modes
+	 */
+	private static class ProductMode extends AutomatonMode
+	{
+		final int[] leafModes;
+
+		ProductMode(BaseComponent ha, String name, int[] leafModes)
+		{
+			super(ha, name);
+			this.leafModes = leafModes;
+		}
+	}
+
+	/**
+	 * Create a view of the full product (without removing unreachable modes)
+	 *
+	 * @param nc
+	 *            the network, with fully-qualified names
+	 */
+	public ProductView(NetworkComponent nc)
+	{
+		this(nc, null);
+	}
+
+	/**
+	 * Create a view of the product
+	 *
+	 * @param nc
+	 *            the network, with fully-qualified names
+	 * @param initModes
+	 *            the names of the initial product modes (like the keys of Configuration.init after
+	 *            FlattenRenameUtils.convertSettingsSeparator()), or null to include every mode
+	 * @throws AutomatonExportException
+	 *             if an initial mode is not in the product, or if the product is too large to
+	 *             compute the reachable modes
+	 */
+	public ProductView(NetworkComponent nc, Collection<String> initModes)
+	{
+		component = collectParams(nc);
+		component.instanceName = nc.instanceName;
+
+		ArrayList<BaseComponent> leafList = new ArrayList<BaseComponent>();
+		root = makeNode(nc, leafList);
+		leaves = leafList.toArray(new BaseComponent[leafList.size()]);
+		leafModes = new AutomatonMode[leaves.length][];
+		strides = new long[leaves.length];
+
+		long size = 1;
+
+		for (int k = leaves.length - 1; k >= 0; --k)
+		{
+			BaseComponent leaf = leaves[k];
+			leafModes[k] = leaf.modes.values().toArray(new AutomatonMode[leaf.modes.size()]);
+
+			for (int m = 0; m < leafModes[k].length; ++m)
+			{
+				AutomatonMode am = leafModes[k][m];
+				modeIndices.put(am, m);
+				outgoing.put(am, new ArrayList<AutomatonTransition>());
+			}
+
+			for (AutomatonTransition at : leaf.transitions)
+				outgoing.get(at.from).add(at);
+
+			strides[k] = size;
+
+			if (size > 0 && leafModes[k].length > Long.MAX_VALUE / size)
+				size = -1; // overflow
+			else if (size > 0)
+				size *= leafModes[k].length;
+		}
+
+		for (int k = 0; k < leaves.length; ++k)
+		{
+			HashMap<String, Integer> indices = new HashMap<String, Integer>();
+
+			for (int m = 0; m < leafModes[k].length; ++m)
+				indices.put(leafModes[k][m].name, m);
+
+			leafModeIndices.add(indices);
+		}
+
+		productSize = size;
+
+		if (initModes == null)
+		{
+			if (productSize < 0)
+				throw new AutomatonExportException(
+						"Product of network has more than " + Long.MAX_VALUE + " modes.");
+
+			numModes = productSize;
+		}
+		else
+			findReachable(initModes);
+	}
+
+	/**
+	 * Get the component the product modes and transitions belong to. It has the variables,
+	 * constants, and labels of the product (in the same order as FlattenAutomatonPass), but no
+	 * modes or transitions.
+	 */
+	public BaseComponent getComponent()
+	{
+		return component;
+	}
+
+	/**
+	 * Get the number of modes in the view
+	 */
+	public long getNumModes()
+	{
+		return numModes;
+	}
+
+	/**
+	 * Get the position of a mode in the iteration order of getModes()
+	 *
+	 * @param name
+	 *            the product mode name
+	 * @return the position, or -1 if the mode is not in the view
+	 */
+	public long getModeNumber(String name)
+	{
+		int[] leafModes = findLeafModes(name);
+		long rv = -1;
+
+		if (leafModes != null)
+		{
+			long index = getProductIndex(leafModes);
+
+			if (included == null)
+				rv = index;
+			else if (included.get((int) index))
+			{
+				int word = (int) (index >> 6);
+				long below = includedWords[word] & ((1L << (index & 63)) - 1);
+
+				rv = rankBefore[word] + Long.bitCount(below);
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Check if a mode is in the view
+	 *
+	 * @param name
+	 *            the product mode name
+	 */
+	public boolean containsMode(String name)
+	{
+		return getModeNumber(name) != -1;
+	}
+
+	/**
+	 * Check if every variable has a flow in every non-urgent product mode. If not,
+	 * ConvertHavocFlows would need to run on the flattened automaton. This checks the full product,
+	 * so it may be false even if the modes missing flows are not in the view.
+	 */
+	public boolean hasAllFlowsAssigned()
+	{
+		boolean rv = true;
+
+		for (String v : component.variables)
+		{
+			// a product mode is missing v if every leaf mode in it is non-urgent and missing v
+			boolean missing = true;
+
+			for (int k = 0; missing && k < leaves.length; ++k)
+			{
+				boolean leafMissing = false;
+
+				for (AutomatonMode am : leafModes[k])
+				{
+					if (!am.urgent && !am.flowDynamics.containsKey(v))
+					{
+						leafMissing = true;
+						break;
+					}
+				}
+
+				missing = leafMissing;
+			}
+
+			if (missing)
+			{
+				rv = false;
+				break;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Iterate over the modes in the view. Modes are created as they're iterated.
+	 */
+	public Iterable<AutomatonMode> getModes()
+	{
+		return new Iterable<AutomatonMode>()
+		{
+			@Override
+			public Iterator<AutomatonMode> iterator()
+			{
+				return new Iterator<AutomatonMode>()
+				{
+					private long next = nextIndex(0);
+
+					@Override
+					public boolean hasNext()
+					{
+						return next != -1;
+					}
+
+					@Override
+					public AutomatonMode next()
+					{
+						if (next == -1)
+							throw new NoSuchElementException();
+
+						AutomatonMode rv = makeMode(getLeafModes(next));
+						next = nextIndex(next + 1);
+
+						return rv;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Get the transitions out of a mode. The transitions are created when this is called, with
+	 * the passed-in mode as their source.
+	 *
+	 * @param from
+	 *            a mode in the view
+	 * @return the outgoing transitions, in the same order as FlattenAutomatonPass
+	 */
+	public List<AutomatonTransition> getTransitionsFrom(AutomatonMode from)
+	{
+		int[] source = (from instanceof ProductMode) ? ((ProductMode) from).leafModes
+				: findLeafModes(from.name);
+
+		if (source == null)
+			throw new AutomatonExportException("Mode is not in the product: " + from.name);
+
+		List<Step> steps = getSteps(root, source);
+		List<AutomatonTransition> rv = new ArrayList<AutomatonTransition>(steps.size());
+
+		for (Step s : steps)
+		{
+			AutomatonTransition at = new AutomatonTransition(component, from, makeMode(s.target));
+			at.guard = s.guard;
+			at.reset = new LinkedHashMap<String, ExpressionInterval>(s.reset);
+			at.label = s.label;
+
+			rv.add(at);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Iterate over all the transitions in the view, grouped by source mode (in getModes() order).
+	 * Transitions are created as they're iterated.
+	 */
+	public Iterable<AutomatonTransition> getTransitions()
+	{
+		return new Iterable<AutomatonTransition>()
+		{
+			@Override
+			public Iterator<AutomatonTransition> iterator()
+			{
+				return new Iterator<AutomatonTransition>()
+				{
+					private final Iterator<AutomatonMode> modes = getModes().iterator();
+					private Iterator<AutomatonTransition> cur = null;
+
+					@Override
+					public boolean hasNext()
+					{
+						while ((cur == null || !cur.hasNext()) && modes.hasNext())
+							cur = getTransitionsFrom(modes.next()).iterator();
+
+						return cur != null && cur.hasNext();
+					}
+
+					@Override
+					public AutomatonTransition next()
+					{
+						if (!hasNext())
+							throw new NoSuchElementException();
+
+						return cur.next();
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Get the first product index at or after the given one which is in the view
+	 *
+	 * @return the index, or -1 if there are no more
+	 */
+	private long nextIndex(long from)
+	{
+		long rv;
+
+		if (included != null)
+			rv = included.nextSetBit((int) from);
+		else
+			rv = from < productSize ? from : -1;
+
+		return rv;
+	}
+
+	private long getProductIndex(int[] leafModes)
+	{
+		long rv = 0;
+
+		for (int k = 0; k < leafModes.length; ++k)
+			rv += leafModes[k] * strides[k];
+
+		return rv;
+	}
+
+	private int[] getLeafModes(long productIndex)
+	{
+		int[] rv = new int[leaves.length];
+
+		for (int k = 0; k < leaves.length; ++k)
+			rv[k] = (int) ((productIndex / strides[k]) % leafModes[k].length);
+
+		return rv;
+	}
+
+	/**
+	 * Find the leaf modes of a product mode name (the leaf mode names joined with
+	 * FlattenAutomatonPass.SEPARATOR). Since mode names may contain the separator, this backtracks
+	 * over the possible splits.
+	 *
+	 * @return the leaf mode indices, or null if no split matches
+	 */
+	private int[] findLeafModes(String name)
+	{
+		int[] rv = new int[leaves.length];
+
+		return findLeafModes(name, 0, 0, rv) ? rv : null;
+	}
+
+	private boolean findLeafModes(String name, int start, int leaf, int[] rv)
+	{
+		boolean found = false;
+		HashMap<String, Integer> indices = leafModeIndices.get(leaf);
+
+		if (leaf == leaves.length - 1)
+		{
+			Integer m = indices.get(name.substring(start));
+
+			if (m != null)
+			{
+				rv[leaf] = m;
+				found = true;
+			}
+		}
+		else
+		{
+			String sep = FlattenAutomatonPass.SEPARATOR;
+
+			for (int end = name.indexOf(sep, start); !found && end != -1; end = name.indexOf(sep,
+					end + 1))
+			{
+				Integer m = indices.get(name.substring(start, end));
+
+				if (m != null)
+				{
+					rv[leaf] = m;
+					found = findLeafModes(name, end + sep.length(), leaf + 1, rv);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Create a product mode, merging the leaf modes the same way as FlattenAutomatonPass
+	 */
+	private ProductMode makeMode(int[] leafModeIndices)
+	{
+		StringBuilder name = new StringBuilder();
+		Expression invariant = null;
+		boolean urgent = false;
+
+		for (int k = 0; k < leaves.length; ++k)
+		{
+			AutomatonMode am = leafModes[k][leafModeIndices[k]];
+
+			if (k > 0)
+				name.append(FlattenAutomatonPass.SEPARATOR);
+
+			name.append(am.name);
+			invariant = FlattenAutomatonPass.andExpressions(invariant, am.invariant);
+			urgent = urgent || am.urgent;
+		}
+
+		ProductMode rv = new ProductMode(component, name.toString(), leafModeIndices);
+		rv.invariant = invariant;
+		rv.urgent = urgent;
+
+		if (urgent)
+			rv.flowDynamics = null;
+		else
+		{
+			LinkedHashMap<String, ExpressionInterval> flows = leafModes[0][leafModeIndices[0]].flowDynamics;
+
+			try
+			{
+				for (int k = 1; k < leaves.length; ++k)
+					flows = FlattenAutomatonPass.mergeExpressionMap(flows,
+							leafModes[k][leafModeIndices[k]].flowDynamics);
+			}
+			catch (AutomatonExportException e)
+			{
+				throw new AutomatonExportException(
+						"Conflicting dynamics (multiple drivers) detected while "
+								+ "flattening automaton",
+						e);
+			}
+
+			rv.flowDynamics = new LinkedHashMap<String, ExpressionInterval>(flows);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the transitions out of the given leaf modes in the part of the product for a node. The
+	 * targets are full leaf mode arrays, which only differ from the source in the node's leaves.
+	 */
+	private List<Step> getSteps(Node n, int[] source)
+	{
+		List<Step> rv = new ArrayList<Step>();
+
+		if (n.children == null)
+		{
+			AutomatonMode from = leafModes[n.firstLeaf][source[n.firstLeaf]];
+
+			for (AutomatonTransition at : outgoing.get(from))
+			{
+				int[] target = source.clone();
+				target[n.firstLeaf] = modeIndices.get(at.to);
+
+				rv.add(new Step(target, at.guard, at.reset, at.label));
+			}
+		}
+		else
+		{
+			rv = getSteps(n.children[0], source);
+
+			for (int c = 1; c < n.children.length; ++c)
+			{
+				Node child = n.children[c];
+				Set<String> leftLabels = n.prefixLabels.get(c);
+				List<Step> childSteps = getSteps(child, source);
+				List<Step> merged = new ArrayList<Step>();
+
+				// non-shared transitions on the left, then on the right, then shared ones
+				for (Step s : rv)
+				{
+					if (!isShared(s.label, leftLabels, child.labels))
+						merged.add(s);
+				}
+
+				for (Step s : childSteps)
+				{
+					if (!isShared(s.label, leftLabels, child.labels))
+						merged.add(s);
+				}
+
+				for (Step left : rv)
+				{
+					if (!isShared(left.label, leftLabels, child.labels))
+						continue;
+
+					for (Step right : childSteps)
+					{
+						if (left.label.equals(right.label))
+							merged.add(synchronize(left, right, child));
+					}
+				}
+
+				rv = merged;
+			}
+		}
+
+		return rv;
+	}
+
+	private static boolean isShared(String label, Set<String> left, Set<String> right)
+	{
+		return label != null && left.contains(label) && right.contains(label);
+	}
+
+	private static Step synchronize(Step left, Step right, Node rightNode)
+	{
+		int[] target = left.target.clone();
+
+		for (int k = rightNode.firstLeaf; k < rightNode.endLeaf; ++k)
+			target[k] = right.target[k];
+
+		LinkedHashMap<String, ExpressionInterval> reset;
+
+		try
+		{
+			reset = FlattenAutomatonPass.mergeExpressionMap(left.reset, right.reset);
+		}
+		catch (AutomatonExportException e)
+		{
+			throw new AutomatonExportException(
+					"Conflicting reset (multiple drivers) detected while " + "flattening automaton",
+					e);
+		}
+
+		return new Step(target, FlattenAutomatonPass.andExpressions(left.guard, right.guard),
+				reset, left.label);
+	}
+
+	/**
+	 * Find the modes reachable from the initial modes, skipping modes with provably unsatisfiable
+	 * invariants
+	 */
+	private void findReachable(Collection<String> initModes)
+	{
+		if (productSize < 0 || productSize > Integer.MAX_VALUE)
+			throw new AutomatonExportException("Product of network is too large ("
+					+ (productSize < 0 ? "more than " + Long.MAX_VALUE : "" + productSize)
+					+ " modes) to find the reachable modes.");
+
+		included = new BitSet();
+		BitSet visited = new BitSet();
+		ArrayDeque<int[]> next = new ArrayDeque<int[]>();
+
+		for (String name : initModes)
+		{
+			int[] leafModes = findLeafModes(name);
+
+			if (leafModes == null)
+				throw new AutomatonExportException("Initial mode is not in the product: " + name);
+
+			visit(leafModes, visited, next);
+		}
+
+		while (!next.isEmpty())
+		{
+			int[] source = next.poll();
+
+			for (Step s : getSteps(root, source))
+				visit(s.target, visited, next);
+		}
+
+		numModes = included.cardinality();
+		includedWords = included.toLongArray();
+		rankBefore = new int[includedWords.length];
+
+		for (int w = 1; w < includedWords.length; ++w)
+			rankBefore[w] = rankBefore[w - 1] + Long.bitCount(includedWords[w - 1]);
+	}
+
+	private void visit(int[] leafModes, BitSet visited, ArrayDeque<int[]> next)
+	{
+		int index = (int) getProductIndex(leafModes);
+
+		if (!visited.get(index))
+		{
+			visited.set(index);
+
+			if (!RemoveSimpleUnsatInvariantsPass.isUnsat(makeMode(leafModes).invariant))
+			{
+				included.set(index);
+				next.add(leafModes);
+			}
+		}
+	}
+
+	/**
+	 * Build the network tree and collect the leaves, in order
+	 */
+	private static Node makeNode(Component c, ArrayList<BaseComponent> leaves)
+	{
+		Node rv = new Node();
+		rv.firstLeaf = leaves.size();
+
+		if (c instanceof BaseComponent)
+		{
+			leaves.add((BaseComponent) c);
+			rv.labels.addAll(c.labels);
+		}
+		else
+		{
+			NetworkComponent nc = (NetworkComponent) c;
+
+			if (nc.children.size() == 0)
+				throw new AutomatonExportException(
+						"Network component with zero children are not allowed.");
+
+			rv.children = new Node[nc.children.size()];
+			rv.prefixLabels = new ArrayList<Set<String>>();
+			rv.prefixLabels.add(null);
+			int i = 0;
+
+			for (ComponentInstance ci : nc.children.values())
+			{
+				Node child = makeNode(ci.child, leaves);
+				rv.children[i++] = child;
+				rv.labels.addAll(child.labels);
+				rv.prefixLabels.add(new HashSet<String>(rv.labels));
+			}
+
+			rv.labels.addAll(nc.labels);
+		}
+
+		rv.endLeaf = leaves.size();
+
+		return rv;
+	}
+
+	/**
+	 * Collect the variables, constants, and labels of the flattened component, in the same order as
+	 * FlattenAutomatonPass
+	 */
+	private static BaseComponent collectParams(Component c)
+	{
+		BaseComponent rv = new BaseComponent();
+
+		if (c instanceof NetworkComponent)
+		{
+			NetworkComponent nc = (NetworkComponent) c;
+
+			for (ComponentInstance ci : nc.children.values())
+				FlattenAutomatonPass.mergeParams(rv, collectParams(ci.child));
+
+			FlattenAutomatonPass.mergeParams(rv, nc);
+			FlattenAutomatonPass.fixVariableOrder(rv, nc);
+		}
+		else
+			FlattenAutomatonPass.mergeParams(rv, c);
+
+		return rv;
+	}
+}
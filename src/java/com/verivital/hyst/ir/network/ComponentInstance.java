@@ -2,6 +2,7 @@ package com.verivital.hyst.ir.network;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.importer.TemplateImporter;
@@ -50,9 +51,11 @@ public class ComponentInstance
 			throw new AutomatonValidationException(
 					"child.parent not equal to the parent in the component instance");
 
-		validateMapping(varMapping, parent.variables, child.variables, "variable");
+		validateMapping(varMapping, new HashSet<String>(parent.variables),
+				new HashSet<String>(child.variables), "variable");
 		validateMapping(constMapping, parent.constants.keySet(), child.constants.keySet(), "const");
-		validateMapping(labelMapping, parent.labels, child.labels, "label");
+		validateMapping(labelMapping, new HashSet<String>(parent.labels),
+				new HashSet<String>(child.labels), "label");
 
 		child.validate();
 	}
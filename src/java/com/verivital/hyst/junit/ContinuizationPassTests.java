@@ -13,6 +13,7 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
 import com.verivital.hyst.geometry.HyperPoint;
+import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
 import com.verivital.hyst.grammar.formula.Constant;
@@ -26,6 +27,7 @@ import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.passes.complex.ContinuizationPass;
 import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.util.AutomatonUtil;
+import com.verivital.hyst.util.IntervalFlowEnclosure;
 
 @RunWith(Parameterized.class)
 public class ContinuizationPassTests
@@ -81,6 +83,122 @@ public class ContinuizationPassTests
 		Assert.assertEquals(new Interval(-1, 1), i2);
 	}
 
+	/**
+	 * Test for the validated (enclosure-based) range detection, which doesn't need python
+	 */
+	@Test
+	public void testEnclosureRangeSine()
+	{
+		String[][] dynamics = { { "t", "1" }, { "y", "cos(t)" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+
+		List<Interval> times = new ArrayList<Interval>();
+		times.add(new Interval(0, Math.PI / 4.0));
+		times.add(new Interval(0, 2 * Math.PI));
+
+		IntervalFlowEnclosure enclosure = new IntervalFlowEnclosure(ha.variables,
+				ha.modes.get("on").flowDynamics);
+		enclosure.compute(new HyperRectangle(new Interval(0), new Interval(0)), 2 * Math.PI,
+				Arrays.asList(new Double[] { Math.PI / 4.0 }));
+
+		List<Interval> result = enclosure.derivativeRanges("y", times);
+		Interval i1 = result.get(0);
+		Interval i2 = result.get(1);
+
+		// ranges must be sound
+		Assert.assertTrue("range contains cos([0, pi/4])",
+				i1.contains(new Interval(Math.sqrt(2) / 2.0, 1)));
+		Assert.assertTrue("range contains cos([0, 2*pi])", i2.contains(new Interval(-1, 1)));
+
+		// and reasonably tight
+		Assert.assertEquals(Math.sqrt(2) / 2.0, i1.min, 1e-2);
+		Assert.assertEquals(1, i1.max, 1e-2);
+		Assert.assertEquals(-1, i2.min, 1e-2);
+		Assert.assertEquals(1, i2.max, 1e-2);
+	}
+
+	@Test
+	public void testEnclosureRangeStableLinear()
+	{
+		// a damped oscillator; plain interval arithmetic would blow up here
+		String[][] dynamics = { { "x", "v" }, { "v", "-10 * x - 3 * v" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+
+		IntervalFlowEnclosure enclosure = new IntervalFlowEnclosure(ha.variables,
+				ha.modes.get("on").flowDynamics);
+		enclosure.compute(new HyperRectangle(new Interval(0.9, 1.1), new Interval(0)), 10,
+				new ArrayList<Double>());
+
+		// the oscillation decays to near zero by the end
+		HyperRectangle end = enclosure.getStateBox(new Interval(10));
+		Assert.assertTrue("x converges", end.dims[0].max < 0.01 && end.dims[0].min > -0.01);
+		Assert.assertTrue("v converges", end.dims[1].max < 0.01 && end.dims[1].min > -0.01);
+
+		// initial derivative of v is in [-11, -9]
+		Interval der = enclosure.derivativeRanges("v", Arrays.asList(new Interval(0))).get(0);
+		Assert.assertTrue("initial derivative range is sound", der.contains(new Interval(-11, -9)));
+	}
+
+	@Test
+	public void testEnclosureContainsExactSolution()
+	{
+		// x' = -x, y' = x - y from (1, 0): x = e^-t, y = t * e^-t
+		String[][] dynamics = { { "x", "-x" }, { "y", "x - y" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+
+		IntervalFlowEnclosure enclosure = new IntervalFlowEnclosure(ha.variables,
+				ha.modes.get("on").flowDynamics);
+		enclosure.compute(new HyperRectangle(new Interval(1), new Interval(0)), 2,
+				Arrays.asList(new Double[] { 1.0 }));
+
+		for (double t : new double[] { 1.0, 2.0 })
+		{
+			HyperRectangle box = enclosure.getStateBox(new Interval(t));
+
+			Assert.assertTrue("x(t) is enclosed", box.dims[0].contains(Math.exp(-t)));
+			Assert.assertTrue("y(t) is enclosed", box.dims[1].contains(t * Math.exp(-t)));
+			Assert.assertTrue("enclosure is tight", box.dims[0].width() < 1e-2);
+		}
+	}
+
+	@Test
+	public void testContinuizationPassEnclosure()
+	{
+		String[][] dynamics = { { "x", "v", "0.05" }, { "v", "a", "0" },
+				{ "a", "-10 * v - 3 * a", "9.5" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+
+		// no bloating terms are needed with the enclosure
+		String continuizationParam = ContinuizationPass.makeEnclosureParamString("a", "t", 0.005,
+				false, Arrays.asList(new Double[] { 1.5, 5.0 }));
+
+		new ContinuizationPass().runTransformationPass(c, continuizationParam);
+		BaseComponent ha = (BaseComponent) c.root;
+
+		AutomatonMode running1 = ha.modes.get("on");
+		AutomatonMode running2 = ha.modes.get("on_2");
+		int numErrorModes = 0;
+
+		for (AutomatonMode am : ha.modes.values())
+		{
+			if (am.name.contains("error"))
+				++numErrorModes;
+		}
+
+		Assert.assertNotEquals("on found", null, running1);
+		Assert.assertNotEquals("on_2 found", null, running2);
+		Assert.assertEquals("four error modes", numErrorModes, 4);
+
+		// initially a' = -10 * 0 - 3 * 9.5 = -28.5, so K contains -28.5 in the first domain
+		// and v' = a gets the interval [-0.005, 0] * K added to it
+		Interval vInterval = running1.flowDynamics.get("v").getInterval();
+		Assert.assertTrue("mode1 v_der interval contains 0.005 * 28.5", vInterval.max >= 0.1425);
+		Assert.assertTrue("mode1 v_der interval is bounded", vInterval.max < 0.2);
+	}
+
 	@Test
 	public void testContinuizationPassSineWave()
 	{
@@ -17,16 +17,21 @@ import com.verivital.hyst.generators.IntegralChainGenerator;
 import com.verivital.hyst.generators.NamedNavigationGenerator;
 import com.verivital.hyst.generators.NavigationGenerator;
 import com.verivital.hyst.generators.SwitchedOscillatorGenerator;
+import com.verivital.hyst.generators.SyntheticNetworkGenerator;
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
+import com.verivital.hyst.ir.network.ComponentInstance;
+import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
+import com.verivital.hyst.passes.complex.FlattenAutomatonPass;
 import com.verivital.hyst.printers.FlowstarPrinter;
 import com.verivital.hyst.printers.Hylaa2Printer;
 import com.verivital.hyst.printers.PySimPrinter;
+import com.verivital.hyst.printers.SpaceExPrinter;
 import com.verivital.hyst.printers.ToolPrinter;
 import com.verivital.hyst.python.PythonBridge;
 
@@ -193,6 +198,76 @@ public class GeneratorTests
 		Assert.assertTrue("some output exists", out.length() > 10);
 	}
 
+	@Test
+	public void testSyntheticNetwork()
+	{
+		SyntheticNetworkGenerator gen = new SyntheticNetworkGenerator();
+
+		String param = "-components 5 -modes 3 -vars 2 -labels 2 -label_density 0.5 "
+				+ "-nonlinear 0.5 -depth 3 -seed 7";
+		Configuration c = gen.generate(param);
+
+		Assert.assertEquals("ten variables", 10, c.root.getAllVariables().size());
+
+		// root -> two networks -> networks of base components
+		NetworkComponent root = (NetworkComponent) c.root;
+		Assert.assertEquals(2, root.children.size());
+
+		int numLeaves = 0;
+
+		for (ComponentInstance ci : root.children.values())
+		{
+			for (ComponentInstance sub : ((NetworkComponent) ci.child).children.values())
+			{
+				NetworkComponent nc = (NetworkComponent) sub.child;
+
+				for (ComponentInstance leaf : nc.children.values())
+				{
+					Assert.assertEquals(3, ((BaseComponent) leaf.child).modes.size());
+					++numLeaves;
+				}
+			}
+		}
+
+		Assert.assertEquals("five base components", 5, numLeaves);
+		Assert.assertEquals("m0.m0.m0.m0.m0", c.init.keySet().iterator().next());
+
+		// the same seed gives the same model, a different seed doesn't
+		String str = c.toString();
+		Assert.assertEquals(str, new SyntheticNetworkGenerator().generate(param).toString());
+		Assert.assertNotEquals(str, new SyntheticNetworkGenerator()
+				.generate(param.replace("-seed 7", "-seed 8")).toString());
+
+		ToolPrinter printer = new SpaceExPrinter();
+		printer.setOutputString();
+		printer.print(c, "", "model.xml");
+
+		String out = printer.outputString.toString();
+
+		Assert.assertTrue("some output exists", out.length() > 10);
+	}
+
+	@Test
+	public void testSyntheticNetworkFlatten()
+	{
+		SyntheticNetworkGenerator gen = new SyntheticNetworkGenerator();
+
+		Configuration c = gen.generate("-components 3 -modes 2 -vars 1 -label_density 1 -depth 2");
+		FlattenAutomatonPass.flattenAndOptimize(c);
+
+		BaseComponent ha = (BaseComponent) c.root;
+		Assert.assertEquals("three variables", 3, ha.variables.size());
+		Assert.assertTrue("at most 2^3 modes", ha.modes.size() <= 8);
+
+		ToolPrinter printer = new FlowstarPrinter();
+		printer.setOutputString();
+		printer.print(c, "", "model.xml");
+
+		String out = printer.outputString.toString();
+
+		Assert.assertTrue("some output exists", out.length() > 10);
+	}
+
 	@Test
 	public void testMatthiasDrivetrain()
 	{
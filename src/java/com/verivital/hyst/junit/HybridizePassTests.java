@@ -22,6 +22,7 @@ import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
+import com.verivital.hyst.geometry.Trajectory;
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
 import com.verivital.hyst.grammar.formula.Expression;
@@ -797,6 +798,36 @@ public class HybridizePassTests
 		Assert.assertEquals(9.5, res.get(1).hp.dims[1], 1e-4);
 	}
 
+	@Test
+	public void testSimAllPointsParallel()
+	{
+		if (!PythonBridge.hasPython())
+			return;
+
+		Configuration c = AutomatonUtil
+				.makeDebugConfiguration(new String[][] { { "x", "1" }, { "y", "2*x" } });
+
+		ArrayList<SymbolicStatePoint> simPoints = new ArrayList<SymbolicStatePoint>();
+
+		for (int i = 0; i < 10; ++i)
+			simPoints.add(new SymbolicStatePoint("on", new HyperPoint(i, 0.5 * i)));
+
+		// points simulated in worker processes should come back in order, same as in serial
+		ArrayList<SymbolicStatePoint> serial = HybridizeMixedTriggeredPass.simAllPoints(c,
+				simPoints, 2.0, 1);
+		ArrayList<SymbolicStatePoint> parallel = HybridizeMixedTriggeredPass.simAllPoints(c,
+				simPoints, 2.0, 3);
+
+		Assert.assertEquals(simPoints.size(), parallel.size());
+
+		for (int i = 0; i < simPoints.size(); ++i)
+		{
+			Assert.assertEquals("on", parallel.get(i).modeName);
+			Assert.assertEquals(i + 2, parallel.get(i).hp.dims[0], 1e-4);
+			Assert.assertEquals(serial.get(i).hp.dims[1], parallel.get(i).hp.dims[1], 1e-4);
+		}
+	}
+
 	@Test
 	public void testMultiSimTrajectoryTime()
 	{
@@ -811,21 +842,25 @@ public class HybridizePassTests
 		startList.add(new SymbolicStatePoint("on", new HyperPoint(0, 0)));
 		startList.add(new SymbolicStatePoint("on", new HyperPoint(1, 3.14)));
 
-		ArrayList<ArrayList<SymbolicStatePoint>> result = HybridizeMixedTriggeredPass
-				.simMultiGetTrajectory(c, startList, 2.0);
+		ArrayList<Trajectory> result = HybridizeMixedTriggeredPass.simMultiGetTrajectory(c,
+				startList, 2.0);
+
+		Trajectory first = result.get(0);
 
-		for (SymbolicStatePoint ssp : result.get(0))
+		for (int i = 0; i < first.size(); ++i)
 		{
-			Assert.assertEquals("on", ssp.modeName);
-			Assert.assertEquals(ssp.hp.dims[0] * ssp.hp.dims[0], ssp.hp.dims[1], 1e-4);
+			Assert.assertEquals("on", first.getModeName(i));
+			Assert.assertEquals(first.get(i, 0) * first.get(i, 0), first.get(i, 1), 1e-4);
+			Assert.assertEquals(first.getTime(i), first.get(i, 0), 1e-4);
 		}
 
 		// check first and last of second point
-		ArrayList<SymbolicStatePoint> list = result.get(1);
-		Assert.assertEquals(list.get(0).hp.dims[0], 1, 1e-4);
-		Assert.assertEquals(list.get(0).hp.dims[1], 3.14, 1e-4);
+		Trajectory second = result.get(1);
+		Assert.assertEquals(second.get(0, 0), 1, 1e-4);
+		Assert.assertEquals(second.get(0, 1), 3.14, 1e-4);
 
-		Assert.assertEquals(list.get(list.size() - 1).hp.dims[0], 3, 1e-4);
+		Assert.assertEquals(second.get(second.size() - 1, 0), 3, 1e-4);
+		Assert.assertEquals(second.getTime(second.size() - 1), 2, 1e-4);
 	}
 
 	@Test
@@ -1,5 +1,10 @@
 package com.verivital.hyst.junit;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -12,6 +17,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
@@ -21,16 +27,20 @@ import com.verivital.hyst.grammar.formula.LutExpression;
 import com.verivital.hyst.grammar.formula.MatrixExpression;
 import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
+import com.verivital.hyst.grammar.formula.Variable;
+import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
+import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
 import com.verivital.hyst.passes.complex.ConvertLutFlowsPass;
 import com.verivital.hyst.printers.PySimPrinter;
 import com.verivital.hyst.printers.ToolPrinter;
 import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.util.AutomatonUtil;
+import com.verivital.hyst.util.LutInterpolator;
 
 @RunWith(Parameterized.class)
 public class LutMatrixTest
@@ -473,6 +483,99 @@ public class LutMatrixTest
 			Assert.fail("2-d lut interpolation was wrong: " + msg);
 	}
 
+	@Test
+	public void testLinearInterpolation2dInternal()
+	{
+		String lutStr = "lut([a, b], [1, 2, 4 ; 2, 3, 5 ; 3, 5, 10], [0, 1, 3], [0, 10, 30])";
+		LutExpression lut = (LutExpression) FormulaParser.parseValue(lutStr);
+		int[] indexList = new int[] { 1, 1 };
+		Interval[] rangeList = new Interval[] { new Interval(1, 3), new Interval(10, 30) };
+
+		Expression expected = FormulaParser
+				.parseValue("3+(a-1)*1 + (b-10)/20 * (5+(a-1)*2.5 - (3+(a-1)*1))");
+		Expression got = ConvertLutFlowsPass.nLinearInterpolation(lut, indexList, rangeList,
+				ConvertLutFlowsPass.SIMPLIFY_INTERNAL);
+
+		String msg = AutomatonUtil.areExpressionsEqual(expected, got);
+
+		if (msg != null)
+			Assert.fail("internal 2-d lut interpolation was wrong: " + msg);
+
+		// 1.75 + 0.25 * a + 0.025 * b + 0.075 * a * b
+		double[] coefficients = ConvertLutFlowsPass.interpolationCoefficients(lut, indexList,
+				rangeList);
+		double[] expectedCoefficients = { 1.75, 0.25, 0.025, 0.075 };
+
+		for (int i = 0; i < expectedCoefficients.length; ++i)
+			Assert.assertEquals(expectedCoefficients[i], coefficients[i], 1e-12);
+	}
+
+	/**
+	 * Test merging of adjacent cells with the same interpolated dynamics
+	 */
+	@Test
+	public void testLutMerge1d()
+	{
+		// the first three breakpoints are collinear, so the first two cells merge
+		String lutStr = "lut([t], [1, 2, 3, 2], [0, 10, 20, 40])";
+		String[][] dynamics = { { "t", "1", "0" }, { "y", lutStr, "15" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+
+		new ConvertLutFlowsPass().runTransformationPass(c, "-merge 1e-9");
+
+		// 2 modes + init
+		Assert.assertEquals("3 modes after conversion", 3, ha.modes.size());
+
+		// 2 from init and 2 between the merged modes
+		Assert.assertEquals("4 transitions after conversion", 4, ha.transitions.size());
+
+		AutomatonMode merged = ha.modes.get("on_0to1");
+		Assert.assertNotNull("merged mode exists", merged);
+		Assert.assertEquals("t <= 20.0", merged.invariant.toDefaultString());
+		Assert.assertNull(AutomatonUtil.areExpressionsEqual(FormulaParser.parseValue("1 + t / 10"),
+				merged.flowDynamics.get("y").asExpression()));
+
+		AutomatonMode last = ha.modes.get("on_2");
+		Assert.assertNotNull("last mode exists", last);
+		Assert.assertEquals("t >= 20.0", last.invariant.toDefaultString());
+
+		Assert.assertNotNull(ha.findTransition("on_0to1", "on_2"));
+		Assert.assertNotNull(ha.findTransition("on_2", "on_0to1"));
+	}
+
+	/**
+	 * Test merging in a 2-d table, where the dynamics only depend on one of the inputs in part of
+	 * the table
+	 */
+	@Test
+	public void testLutMerge2d()
+	{
+		// rows are a, columns are b; the first two columns (in b) give the same linear function,
+		// and the last column differs
+		String lutStr = "lut([a, b], [0, 0, 5 ; 1, 1, 6 ; 2, 2, 9], [0, 1, 2], [0, 1, 2])";
+		String[][] dynamics = { { "a", "1", "0" }, { "b", "1", "0" }, { "y", lutStr, "0" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+
+		new ConvertLutFlowsPass().runTransformationPass(c, "-merge 1e-9");
+
+		// cells (0,0) and (1,0) have y' = a, cells (0,1) and (1,1) differ
+		// 3 modes + init
+		Assert.assertEquals("4 modes after conversion", 4, ha.modes.size());
+
+		AutomatonMode merged = ha.modes.get("on_0to1_0");
+		Assert.assertNotNull("merged mode exists", merged);
+		Assert.assertEquals("b <= 1.0", merged.invariant.toDefaultString());
+		Assert.assertNull(AutomatonUtil.areExpressionsEqual(FormulaParser.parseValue("a"),
+				merged.flowDynamics.get("y").asExpression()));
+
+		// the merged mode borders both of the other modes
+		Assert.assertNotNull(ha.findTransition("on_0to1_0", "on_0_1"));
+		Assert.assertNotNull(ha.findTransition("on_0to1_0", "on_1_1"));
+		Assert.assertNotNull(ha.findTransition("on_1_1", "on_0to1_0"));
+	}
+
 	@Test
 	public void testClassifyLut()
 	{
@@ -575,8 +678,7 @@ public class LutMatrixTest
 	@Test
 	public void testLutLinearNoSmall()
 	{
-		if (!PythonBridge.hasPython())
-			return;
+		ConvertLutFlowsPass.simplifyMode = ConvertLutFlowsPass.SIMPLIFY_INTERNAL;
 
 		String lutStr = "lut([x, v],  " + "[-2, -1.9; " + "-1.9, -1.8]," + "[-1, 0], " + "[-1, 0])";
 		String[][] dynamics = { { "t", "1", "0" }, { "x", "v", "0" }, { "v", lutStr, "0" } };
@@ -602,8 +704,7 @@ public class LutMatrixTest
 	@Test
 	public void testLutLinearNoSmallFullTable()
 	{
-		if (!PythonBridge.hasPython())
-			return;
+		ConvertLutFlowsPass.simplifyMode = ConvertLutFlowsPass.SIMPLIFY_INTERNAL;
 
 		String lutStr = "lut([(input-x)*5,(input-x-v)], " + "[-2.0000, -1.9000; "
 				+ "-1.9000, -1.8000]" + ", [-1.0000, -0.0800]" + ", [-1.0000, -0.0800])";
@@ -664,4 +765,172 @@ public class LutMatrixTest
 
 		Assert.assertEquals("[-1.0, -0.5, 0.0, 0.5, 1.0]", e.toDefaultString());
 	}
+
+	/**
+	 * Test that constant matrices use the numeric representation, and that copies are independent
+	 */
+	@Test
+	public void testNumericMatrix()
+	{
+		MatrixExpression m = (MatrixExpression) FormulaParser.parseValue("[1, 2; 3, 4; 5, 6]");
+
+		Assert.assertTrue("constant matrix should be numeric", m.isNumeric());
+		Assert.assertEquals(3, m.getValue(1, 0), 1e-9);
+		Assert.assertEquals(6, m.getValue(2, 1), 1e-9);
+		Assert.assertEquals("[1.0, 2.0 ; 3.0, 4.0 ; 5.0, 6.0]", m.toDefaultString());
+
+		MatrixExpression copy = (MatrixExpression) m.copy();
+		copy.setExpressionAtIndex(new int[] { 0, 0 }, new Constant(10));
+
+		Assert.assertTrue("copy should still be numeric", copy.isNumeric());
+		Assert.assertEquals(10, copy.getValue(0, 0), 1e-9);
+		Assert.assertEquals("original was modified", 1, m.getValue(0, 0), 1e-9);
+
+		// a copy of a matrix which was already written to doesn't share its values either
+		MatrixExpression copy2 = (MatrixExpression) copy.copy();
+		m.setExpressionAtIndex(new int[] { 1, 0 }, new Constant(20));
+		MatrixExpression copy3 = (MatrixExpression) m.copy();
+		m.setExpressionAtIndex(new int[] { 1, 1 }, new Constant(30));
+
+		Assert.assertEquals(10, copy2.getValue(0, 0), 1e-9);
+		Assert.assertEquals(20, copy3.getValue(1, 0), 1e-9);
+		Assert.assertEquals("copy was modified", 4, copy3.getValue(1, 1), 1e-9);
+		Assert.assertEquals(30, m.getValue(1, 1), 1e-9);
+
+		copy.setExpressionAtIndex(new int[] { 0, 0 }, new Variable("x"));
+		Assert.assertFalse("matrix with a variable is not numeric", copy.isNumeric());
+		Assert.assertEquals("[x, 2.0 ; 3.0, 4.0 ; 5.0, 6.0]", copy.toDefaultString());
+
+		MatrixExpression symbolic = (MatrixExpression) FormulaParser.parseValue("[1, y]");
+		Assert.assertFalse("matrix with a variable is not numeric", symbolic.isNumeric());
+	}
+
+	/**
+	 * Test loading lut data from external csv and binary files
+	 */
+	@Test
+	public void testLoadMatrixFile() throws IOException
+	{
+		File csv = File.createTempFile("hyst_lut", ".csv");
+		File bin = File.createTempFile("hyst_lut", ".bin");
+		csv.deleteOnExit();
+		bin.deleteOnExit();
+
+		// 2-d csv, rows are separated by lines
+		Files.write(csv.toPath(), "1, 2\n3, 4\n5, 6\n".getBytes("UTF-8"));
+
+		MatrixExpression m = (MatrixExpression) FormulaParser
+				.parseValue("load(\"" + csv.getPath() + "\")");
+
+		Assert.assertTrue(m.isNumeric());
+		Assert.assertEquals("[1.0, 2.0 ; 3.0, 4.0 ; 5.0, 6.0]", m.toDefaultString());
+
+		// relative names are resolved against the model's directory, not the working directory
+		File prevDir = FormulaParser.setBaseDirectory(csv.getParentFile());
+
+		try
+		{
+			MatrixExpression rel = (MatrixExpression) FormulaParser
+					.parseValue("load(\"" + csv.getName() + "\")");
+			Assert.assertEquals(m.toDefaultString(), rel.toDefaultString());
+		}
+		finally
+		{
+			FormulaParser.setBaseDirectory(prevDir);
+		}
+
+		// binary, in reshape() order with explicit sizes; it should only be read when needed
+		ByteBuffer buf = ByteBuffer.allocate(8 * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+		for (int i = 1; i <= 8; ++i)
+			buf.putDouble(i);
+
+		Files.write(bin.toPath(), buf.array());
+
+		MatrixExpression m3 = (MatrixExpression) FormulaParser
+				.parseValue("load(\"" + bin.getPath() + "\", 2, 2, 2)");
+
+		Assert.assertEquals(3, m3.getNumDims());
+		Assert.assertEquals(7, m3.getValue(0, 1, 1), 1e-9);
+		Assert.assertEquals("reshape([1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0], 2, 2, 2)", m3.toDefaultString());
+
+		// a lut using the loaded table
+		String lutStr = "lut([t, u], load(\"" + csv.getPath() + "\"), [0, 10, 20], [0, 1])";
+		LutExpression lut = (LutExpression) FormulaParser.parseValue(lutStr);
+		Interval[] ranges = { new Interval(10, 20), new Interval(0, 1) };
+		double[] coefficients = ConvertLutFlowsPass.interpolationCoefficients(lut,
+				new int[] { 1, 0 }, ranges);
+
+		// in the cell, value = 1 + 0.2 * t + u
+		Assert.assertArrayEquals(new double[] { 1, 0.2, 1, 0 }, coefficients, 1e-9);
+
+		try
+		{
+			FormulaParser.parseValue("load(\"" + bin.getPath() + "\", 3, 3)");
+			Assert.fail("wrong size binary data should be rejected");
+		}
+		catch (AutomatonExportException e)
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * Test numeric and interval evaluation of luts, without converting them to modes
+	 */
+	@Test
+	public void testLutEvaluation()
+	{
+		String lutStr = "lut([x, y], [1, 2; 3, 4; 5, 9], [0, 10, 20], [0, 1])";
+		LutExpression lut = (LutExpression) FormulaParser.parseValue(lutStr);
+		LutInterpolator li = LutInterpolator.get(lut);
+		double tol = 1e-9;
+
+		LutExpression lutCopy = (LutExpression) lut.copy();
+		Assert.assertSame("copies of a lut should share the interpolator", li,
+				LutInterpolator.get(lutCopy));
+
+		// changing the table of the copy doesn't change the original's interpolation
+		lutCopy.table.setExpressionAtIndex(new int[] { 1, 0 }, new Constant(13));
+		Assert.assertEquals(13, LutInterpolator.get(lutCopy).evaluate(10, 0), tol);
+		Assert.assertEquals(3, LutInterpolator.get(lut).evaluate(10, 0), tol);
+
+		// corners, interior and linear extrapolation past the last breakpoint
+		Assert.assertEquals(3, li.evaluate(10, 0), tol);
+		Assert.assertEquals(9, li.evaluate(20, 1), tol);
+		Assert.assertEquals(2.5, li.evaluate(5, 0.5), tol);
+		Assert.assertEquals(5.25, li.evaluate(15, 0.5), tol);
+		Assert.assertEquals(7, li.evaluate(30, 0), tol);
+
+		// walk along a trajectory (uses the cell hints) and compare to the cell polynomials
+		for (double x = -5; x <= 25; x += 0.25)
+		{
+			int cell = x < 10 ? 0 : 1;
+			Interval[] ranges = { new Interval(lut.breakpoints[0][cell],
+					lut.breakpoints[0][cell + 1]), new Interval(0, 1) };
+			double[] c = ConvertLutFlowsPass.interpolationCoefficients(lut,
+					new int[] { cell, 0 }, ranges);
+			double y = 0.3;
+			double expected = c[0] + c[1] * x + c[2] * y + c[3] * x * y;
+
+			Assert.assertEquals("at x = " + x, expected, li.evaluate(x, y), tol);
+		}
+
+		// interval evaluation is the exact range over the cells the box spans
+		HashMap<String, Interval> box = new HashMap<String, Interval>();
+		box.put("x", new Interval(5, 15));
+		box.put("y", new Interval(0, 1));
+
+		Interval range = Interval.intervalEvaluate(FormulaParser.parseValue(lutStr + " + 1"), box);
+		Assert.assertEquals(3, range.min, tol);
+		Assert.assertEquals(7.5, range.max, tol);
+
+		// simplification (and so point evaluation) with constant inputs
+		Expression e = FormulaParser.parseValue("2 * " + lutStr.replace("[x, y]", "[15, 1]"));
+		Assert.assertEquals("13.0", SimplifyExpressionsPass.simplifyExpression(e).toDefaultString());
+
+		double val = AutomatonUtil.evaluateExpression(FormulaParser.parseValue(lutStr),
+				new HyperPoint(15, 0.5), Arrays.asList("x", "y"));
+		Assert.assertEquals(5.25, val, tol);
+	}
 }
@@ -17,6 +17,7 @@ import org.junit.runners.Parameterized.Parameters;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
 import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.FormulaParser;
 import com.verivital.hyst.importer.ConfigurationMaker;
 import com.verivital.hyst.importer.SpaceExImporter;
 import com.verivital.hyst.importer.TemplateImporter;
@@ -28,6 +29,7 @@ import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
+import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.ir.network.ComponentInstance;
 import com.verivital.hyst.ir.network.ComponentMapping;
 import com.verivital.hyst.ir.network.NetworkComponent;
@@ -1419,4 +1421,66 @@ UNIT_BASEDIR = "tests/unit/models/";
 
 		Assert.assertTrue("some output exists", out.length() > 10);
 	}
+
+	/**
+	 * Incremental validation should re-check modified modes, and all modes if the variables change
+	 */
+	@Test
+	public void testIncrementalValidation()
+	{
+		BaseComponent ha = new BaseComponent();
+		Configuration c = new Configuration(ha);
+		ha.variables.add("x");
+		ha.variables.add("t");
+
+		for (int i = 0; i < 3; ++i)
+			ha.createMode("m" + i, "t <= 5", "x' == 2 * x & t' == 1");
+
+		c.init.put("m0", FormulaParser.parseInitialForbidden("x = 0 & t = 0"));
+		c.settings.plotVariableNames[0] = "t";
+		c.settings.plotVariableNames[1] = "x";
+
+		boolean prev = Configuration.INCREMENTAL_VALIDATION;
+		Configuration.INCREMENTAL_VALIDATION = true;
+
+		try
+		{
+			c.validate();
+
+			// a new flow expression in one mode is detected
+			AutomatonMode m1 = ha.modes.get("m1");
+			ExpressionInterval ok = m1.flowDynamics.get("x");
+			m1.flowDynamics.put("x", new ExpressionInterval("2 * y"));
+
+			try
+			{
+				c.validate();
+				Assert.fail("validation error not detected in modified mode");
+			}
+			catch (AutomatonValidationException e)
+			{
+				Assert.assertTrue(e.getMessage().contains("m1"));
+			}
+
+			m1.flowDynamics.put("x", ok);
+			c.validate();
+
+			// renaming a variable invalidates every mode, even unmodified ones
+			ha.variables.set(0, "y");
+
+			try
+			{
+				c.validate();
+				Assert.fail("validation error not detected after variable rename");
+			}
+			catch (AutomatonValidationException e)
+			{
+				Assert.assertTrue(e.getMessage().contains("dynamics were defined for variable 'x'"));
+			}
+		}
+		finally
+		{
+			Configuration.INCREMENTAL_VALIDATION = prev;
+		}
+	}
 }
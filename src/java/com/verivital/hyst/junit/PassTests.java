@@ -28,13 +28,19 @@ import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.ir.network.ComponentInstance;
 import com.verivital.hyst.ir.network.ComponentMapping;
 import com.verivital.hyst.ir.network.NetworkComponent;
+import com.verivital.hyst.passes.basic.ConvertHavocFlows;
 import com.verivital.hyst.passes.basic.CopyInstancePass;
+import com.verivital.hyst.passes.basic.ShortenModeNamesPass;
 import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
 import com.verivital.hyst.passes.basic.SubstituteConstantsPass;
+import com.verivital.hyst.passes.complex.FlattenAutomatonPass;
 import com.verivital.hyst.printers.FlowstarPrinter;
 import com.verivital.hyst.printers.Hylaa2Printer;
 import com.verivital.hyst.printers.ToolPrinter;
 import com.verivital.hyst.python.PythonBridge;
+import com.verivital.hyst.util.AutomatonUtil;
+import com.verivital.hyst.util.Preconditions;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 import de.uni_freiburg.informatik.swt.sxhybridautomaton.SpaceExDocument;
 
@@ -205,4 +211,85 @@ public class PassTests
 
 		tp.print(config, "", "out.xml");
 	}
+
+	/**
+	 * Preconditions established by a check are skipped later, and passes clear the ones they don't
+	 * preserve
+	 */
+	@Test
+	public void testEstablishedPreconditions()
+	{
+		Configuration c = makeSampleNetworkConfiguration();
+		FlattenAutomatonPass.flattenAndOptimize(c);
+		BaseComponent ha = (BaseComponent) c.root;
+		ha.transitions.get(0).reset.put("x",
+				new ExpressionInterval(new Constant(0), new Interval(-1, 1)));
+
+		// first check doesn't convert nondeterministic resets
+		Preconditions p = new Preconditions(false);
+		p.skip(PreconditionsFlag.CONVERT_NONDETERMINISTIC_RESETS);
+		p.check(c, "first");
+
+		Assert.assertTrue(c.establishedPreconditions
+				.contains(PreconditionsFlag.CONVERT_INTERVAL_CONST_TO_VAR));
+		Assert.assertTrue(
+				c.establishedPreconditions.contains(PreconditionsFlag.CONVERT_TO_FLAT_AUTOMATON));
+		Assert.assertFalse(c.establishedPreconditions
+				.contains(PreconditionsFlag.CONVERT_NONDETERMINISTIC_RESETS));
+
+		// second check converts the reset to an interval constant, which must then be converted
+		// to a variable even though that was established before
+		new Preconditions(false).check(c, "second");
+		ha = (BaseComponent) c.root;
+
+		Assert.assertEquals("interval constant was converted", 0, ha.constants.size());
+		Assert.assertEquals("interval variable was added", 3, ha.variables.size());
+		Assert.assertTrue(c.establishedPreconditions.contains(PreconditionsFlag.NO_URGENT));
+
+		// a pass which only renames modes preserves everything
+		new ShortenModeNamesPass().runVanillaPass(c, "");
+		Assert.assertTrue(c.establishedPreconditions.contains(PreconditionsFlag.NO_URGENT));
+
+		// a pass without declared preserved preconditions clears them
+		new ConvertHavocFlows().runVanillaPass(c, "");
+		Assert.assertTrue(c.establishedPreconditions.isEmpty());
+	}
+
+	/**
+	 * Substituting constants can create affine terms, and the affine conversion inside a check
+	 * keeps the preconditions established before it
+	 */
+	@Test
+	public void testEstablishedAffineTerms()
+	{
+		String[][] dynamics = { { "x", "x" }, { "y", "-y" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+		ha.constants.put("a", new Interval(2));
+		ha.modes.get("on").flowDynamics.put("x",
+				new ExpressionInterval(FormulaParser.parseValue("-x + a")));
+
+		Preconditions p = new Preconditions(false);
+		p.skip(PreconditionsFlag.CONVERT_CONSTANTS_TO_VALUES);
+		p.unskip(PreconditionsFlag.CONVERT_AFFINE_TERMS);
+		p.check(c, "first");
+
+		Assert.assertFalse("constant was not substituted", c.root.variables.contains("affine"));
+		Assert.assertTrue(
+				c.establishedPreconditions.contains(PreconditionsFlag.CONVERT_AFFINE_TERMS));
+
+		new SubstituteConstantsPass().runVanillaPass(c, "");
+		Assert.assertFalse(
+				c.establishedPreconditions.contains(PreconditionsFlag.CONVERT_AFFINE_TERMS));
+
+		p.check(c, "second");
+		ha = (BaseComponent) c.root;
+
+		Assert.assertTrue("affine variable was added", ha.variables.contains("affine"));
+		Assert.assertEquals("-1.0 * x + 2.0 * affine",
+				ha.modes.get("on").flowDynamics.get("x").asExpression().toDefaultString());
+		Assert.assertTrue(
+				c.establishedPreconditions.contains(PreconditionsFlag.CONVERT_BASIC_OPERATORS));
+		Assert.assertTrue(c.establishedPreconditions.contains(PreconditionsFlag.NO_URGENT));
+	}
 }
@@ -1,6 +1,11 @@
 package com.verivital.hyst.junit;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -17,6 +22,7 @@ import org.junit.runners.Parameterized.Parameters;
 import com.verivital.hyst.generators.DrivetrainGenerator;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.grammar.formula.FormulaParser;
 import com.verivital.hyst.importer.ConfigurationMaker;
@@ -30,17 +36,24 @@ import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
+import com.verivital.hyst.ir.base.ProductView;
+import com.verivital.hyst.ir.network.ComponentInstance;
+import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
+import com.verivital.hyst.passes.complex.FlattenAutomatonPass;
 import com.verivital.hyst.passes.complex.hybridize.HybridizeMixedTriggeredPass;
 import com.verivital.hyst.printers.DReachPrinter;
 import com.verivital.hyst.printers.FlowstarPrinter;
 import com.verivital.hyst.printers.Hylaa2Printer;
+import com.verivital.hyst.printers.HystBinPrinter;
 import com.verivital.hyst.printers.PySimPrinter;
 import com.verivital.hyst.printers.SpaceExPrinter;
 import com.verivital.hyst.printers.ToolPrinter;
 import com.verivital.hyst.printers.hycreate2.HyCreate2Printer;
 import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.util.AutomatonUtil;
+import com.verivital.hyst.util.FlattenRenameUtils;
+import com.verivital.hyst.util.HystBinFormat;
 import com.verivital.hyst.util.Preconditions.PreconditionsFailedException;
 
 import de.uni_freiburg.informatik.swt.sxhybridautomaton.SpaceExDocument;
@@ -516,6 +529,22 @@ public class PrintersTest
 		Assert.assertTrue("some output exists", out.length() > 10);
 	}
 
+	@Test
+	public void testPysimPrintDenseSolver()
+	{
+		Configuration config = AutomatonUtil
+				.makeDebugConfiguration(new String[][] { { "x", "1" }, { "y", "2*x" } });
+
+		ToolPrinter printer = new PySimPrinter();
+		printer.setOutputString();
+		printer.print(config, "-solver RK45", "model.xml");
+
+		String out = printer.outputString.toString();
+
+		Assert.assertTrue("solver is set", out.contains("s.solver = 'RK45'"));
+		Assert.assertTrue("solver is used", out.contains("solver_name=settings.solver"));
+	}
+
 	@Test
 	public void testPrintHybridized()
 	{
@@ -864,6 +893,33 @@ public class PrintersTest
 		Assert.assertTrue("correctly converted inputs", out.contains("x' = y + [-0.5, 0.5]"));
 	}
 
+	/**
+	 * Flow* should use 'lti ode' for affine flows (linear plus constant terms), like x' = -x + 1,
+	 * and 'poly ode' only for nonlinear polynomial flows
+	 */
+	@Test
+	public void testFlowstarAffineOdeType()
+	{
+		String[][] affine = { { "x", "-x + 1" }, { "y", "x - 2 * y - 0.5" } };
+		String[][] poly = { { "x", "-x + 1" }, { "y", "x * y" } };
+		String[] expected = { "lti ode", "poly ode 1" };
+		String[][][] models = { affine, poly };
+
+		for (int i = 0; i < models.length; ++i)
+		{
+			Configuration c = AutomatonUtil.makeDebugConfiguration(models[i]);
+
+			ToolPrinter printer = new FlowstarPrinter();
+			printer.setOutputString();
+			printer.print(c, "", "model.xml");
+
+			String out = printer.outputString.toString();
+
+			Assert.assertTrue("expected " + expected[i] + " in output:\n" + out,
+					out.contains(expected[i]));
+		}
+	}
+
 	/**
 	 * Flow* printing with german locale
 	 */
@@ -929,4 +985,279 @@ public class PrintersTest
 		Assert.assertFalse("empty hyperrectangle is not printed",
 				out.contains("HyperRectangle([])"));
 	}
+
+	/**
+	 * Save a model as a .hystbin snapshot, load it back and check it is unchanged
+	 */
+	private void checkHystBinRoundTrip(String dir, String name) throws IOException
+	{
+		String cfgPath = UNIT_BASEDIR + dir + "/" + name + ".cfg";
+		String xmlPath = UNIT_BASEDIR + dir + "/" + name + ".xml";
+
+		SpaceExDocument doc = SpaceExImporter.importModels(cfgPath, xmlPath);
+		Map<String, Component> componentTemplates = TemplateImporter.createComponentTemplates(doc);
+		Configuration config = ConfigurationMaker.fromSpaceEx(doc, componentTemplates);
+
+		File f = File.createTempFile("hyst_" + name, HystBinFormat.EXTENSION);
+		f.deleteOnExit();
+
+		ToolPrinter printer = new HystBinPrinter();
+		printer.setOutputFile(f.getPath());
+		printer.print(config, "", "model.xml");
+
+		Configuration loaded = HystBinFormat.load(f.getPath());
+		loaded.validate();
+
+		// templates are not part of the snapshot
+		clearTemplates(config.root);
+
+		Expression.expressionPrinter = DefaultExpressionPrinter.instance;
+		Assert.assertEquals("round trip of " + name, config.toString(), loaded.toString());
+
+		// printed output of the flattened model should also be the same
+		Configuration flat = ModelParserTest
+				.flatten(SpaceExImporter.importModels(cfgPath, xmlPath));
+		Configuration flatLoaded = ModelParserTest
+				.flatten(SpaceExImporter.importModels(cfgPath, xmlPath));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HystBinFormat.write(flatLoaded, Channels.newChannel(bytes));
+		flatLoaded = HystBinFormat.read(ByteBuffer.wrap(bytes.toByteArray()));
+
+		ToolPrinter sp = new SpaceExPrinter();
+		sp.setOutputString();
+		sp.print(flat, "", "model.xml");
+		String expected = sp.outputString.toString();
+
+		sp.print(flatLoaded, "", "model.xml");
+		Assert.assertEquals("printed round trip of " + name, expected, sp.outputString.toString());
+	}
+
+	private static void clearTemplates(Component c)
+	{
+		c.template = null;
+
+		if (c instanceof NetworkComponent)
+		{
+			for (ComponentInstance ci : ((NetworkComponent) c).children.values())
+				clearTemplates(ci.child);
+		}
+	}
+
+	@Test
+	public void testHystBinRoundTrip() throws IOException
+	{
+		checkHystBinRoundTrip("controller_heater", "controller_heater");
+		checkHystBinRoundTrip("three_hier", "three_hier");
+		checkHystBinRoundTrip("comp_base", "sys2");
+		checkHystBinRoundTrip("two_network_diff_names", "sys");
+		checkHystBinRoundTrip("lut_table", "lut_table");
+		checkHystBinRoundTrip("urgent_simple", "urgent_simple");
+	}
+
+	@Test
+	public void testHystBinBadVersion()
+	{
+		Configuration c = makeSampleConfiguration();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try
+		{
+			HystBinFormat.write(c, Channels.newChannel(bytes));
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		byte[] data = bytes.toByteArray();
+		data[11] = (byte) (HystBinFormat.VERSION + 1); // low byte of the version
+
+		try
+		{
+			HystBinFormat.read(ByteBuffer.wrap(data));
+			Assert.fail("expected version mismatch to be rejected");
+		}
+		catch (AutomatonExportException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("version"));
+		}
+
+		// truncated data
+		try
+		{
+			HystBinFormat.read(ByteBuffer.wrap(Arrays.copyOf(bytes.toByteArray(), 20)));
+			Assert.fail("expected truncated data to be rejected");
+		}
+		catch (AutomatonExportException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("Truncated"));
+		}
+	}
+
+	private Configuration loadUnitModel(String baseName)
+	{
+		String path = UNIT_BASEDIR + baseName + "/" + baseName;
+		SpaceExDocument doc = SpaceExImporter.importModels(path + ".cfg", path + ".xml");
+		Map<String, Component> componentTemplates = TemplateImporter.createComponentTemplates(doc);
+
+		return ConfigurationMaker.fromSpaceEx(doc, componentTemplates);
+	}
+
+	private static String describeTransition(AutomatonTransition at)
+	{
+		return at.from.name + " -> " + at.to.name + " [" + at.label + "] " + at.guard + " "
+				+ at.reset;
+	}
+
+	/**
+	 * The product view of a network should have the same modes and transitions, in the same order,
+	 * as the flattened automaton
+	 */
+	@Test
+	public void testProductViewMatchesFlatten()
+	{
+		Expression.expressionPrinter = DefaultExpressionPrinter.instance;
+
+		for (String model : new String[] { "three_hier", "controller_heater",
+				"urgent_composition" })
+		{
+			Configuration flat = loadUnitModel(model);
+			FlattenAutomatonPass.flattenAndOptimize(flat);
+			BaseComponent ha = (BaseComponent) flat.root;
+
+			Configuration net = loadUnitModel(model);
+			FlattenRenameUtils.convertToFullyQualifiedParams(net.root);
+			FlattenRenameUtils.convertSettingsSeparator(net);
+			ProductView view = new ProductView((NetworkComponent) net.root, net.init.keySet());
+
+			Assert.assertEquals(model, ha.variables, view.getComponent().variables);
+			Assert.assertEquals(model, ha.modes.size(), view.getNumModes());
+
+			ArrayList<String> expected = new ArrayList<String>();
+			ArrayList<String> actual = new ArrayList<String>();
+			long num = 0;
+
+			for (AutomatonMode am : view.getModes())
+			{
+				AutomatonMode flatMode = ha.modes.get(am.name);
+				Assert.assertNotNull(model + " mode " + am.name, flatMode);
+				Assert.assertEquals(num++, view.getModeNumber(am.name));
+				Assert.assertEquals(flatMode.toString(), am.toString());
+
+				for (AutomatonTransition at : ha.transitions)
+				{
+					if (at.from == flatMode)
+						expected.add(describeTransition(at));
+				}
+
+				for (AutomatonTransition at : view.getTransitionsFrom(am))
+					actual.add(describeTransition(at));
+			}
+
+			Assert.assertEquals(model, expected, actual);
+		}
+	}
+
+	/**
+	 * Printing a network with a printer which streams a product view should give the same output
+	 * as printing the flattened automaton
+	 */
+	@Test
+	public void testPrintProductView()
+	{
+		String model = "controller_heater";
+		Configuration flat = loadUnitModel(model);
+		FlattenAutomatonPass.flattenAndOptimize(flat);
+
+		ToolPrinter printer = new DReachPrinter();
+		printer.setOutputString();
+		printer.print(flat, "", "model.xml");
+		String expected = printer.outputString.toString();
+
+		Configuration net = loadUnitModel(model);
+		printer = new DReachPrinter();
+		printer.setOutputString();
+		printer.print(net, "", "model.xml");
+
+		Assert.assertTrue("network was not flattened", net.root instanceof NetworkComponent);
+		Assert.assertEquals(expected, printer.outputString.toString());
+	}
+
+	/**
+	 * A network whose product has modes without flows falls back to flattening. The flattening
+	 * should get the network as it was imported, so local variables are renamed only once.
+	 */
+	@Test
+	public void testPrintProductViewFallback()
+	{
+		Configuration net = loadUnitModel("local_var_no_flow");
+		ToolPrinter printer = new DReachPrinter();
+		printer.setOutputString();
+		printer.print(net, "", "model.xml");
+		String out = printer.outputString.toString();
+
+		Assert.assertTrue("network was flattened", net.root instanceof BaseComponent);
+		Assert.assertTrue(out.contains("d/dt[templateA_inst_h] = 0.0;"));
+		Assert.assertTrue(out.contains("d/dt[templateB_inst_h] = 0.0;"));
+	}
+
+	/**
+	 * Modes and transitions rendered in parallel should give exactly the serial output, both to a
+	 * string and to a file
+	 */
+	@Test
+	public void testParallelRenderingMatchesSerial() throws IOException
+	{
+		String[][] dynamics = { { "x", "1", "0" }, { "y", "-1", "0" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+		AutomatonMode prev = ha.modes.get("on");
+
+		for (int i = 0; i < 200; ++i)
+		{
+			AutomatonMode am = ha.createMode("m" + i);
+			am.flowDynamics.put("x", new ExpressionInterval(0.5 * i));
+			am.flowDynamics.put("y", new ExpressionInterval("x - " + i));
+			am.invariant = FormulaParser.parseInvariant("x <= " + i);
+
+			AutomatonTransition at = ha.createTransition(prev, am);
+			at.guard = FormulaParser.parseGuard("x >= " + (i - 1));
+			at.reset.put("y", new ExpressionInterval(i));
+			prev = am;
+		}
+
+		c.validate();
+
+		final String SERIAL = "-render_threads 1";
+		final String PARALLEL = "-render_threads 4 -render_batch 3";
+
+		ToolPrinter printer = new PySimPrinter();
+		printer.setOutputString();
+		printer.print(c.copy(), SERIAL, "model.xml");
+		String expected = printer.outputString.toString();
+
+		printer = new PySimPrinter();
+		printer.setOutputString();
+		printer.print(c.copy(), PARALLEL, "model.xml");
+
+		Assert.assertTrue("all modes printed", expected.contains("m199 = ha.new_mode('m199')"));
+		Assert.assertEquals(expected, printer.outputString.toString());
+
+		File f = File.createTempFile("hyst_parallel", ".py");
+		f.deleteOnExit();
+
+		printer = new PySimPrinter();
+		printer.setOutputFile(f.getPath());
+		printer.print(c.copy(), SERIAL, "model.xml");
+		String expectedFile = new String(Files.readAllBytes(f.toPath()));
+
+		printer = new PySimPrinter();
+		printer.setOutputFile(f.getPath());
+		printer.print(c.copy(), PARALLEL, "model.xml");
+		String fromFile = new String(Files.readAllBytes(f.toPath()));
+		f.delete();
+
+		Assert.assertTrue(fromFile.contains("m199 = ha.new_mode('m199')"));
+		Assert.assertEquals(expectedFile, fromFile);
+	}
 }
@@ -14,6 +14,7 @@ import org.junit.runners.Parameterized.Parameters;
 
 import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
+import com.verivital.hyst.geometry.Trajectory;
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
 import com.verivital.hyst.grammar.formula.Expression;
@@ -102,15 +103,16 @@ public class PseudoInvariantTest
 		SymbolicStatePoint start = new SymbolicStatePoint("mode1", new HyperPoint(0.0));
 		List<Double> times = Arrays.asList(0.5, 2.0);
 
-		List<SymbolicStatePoint> result = PseudoInvariantSimulatePass.pythonSimulate(c, start,
-				times);
+		Trajectory result = PseudoInvariantSimulatePass.pythonSimulate(c, start, times);
 		double TOL = 1e-6;
 
-		Assert.assertEquals("mode1", result.get(0).modeName);
-		Assert.assertEquals(1.0, result.get(0).hp.dims[0], TOL);
+		Assert.assertEquals("mode1", result.getModeName(0));
+		Assert.assertEquals(1.0, result.get(0, 0), TOL);
+		Assert.assertEquals(0.5, result.getTime(0), TOL);
 
-		Assert.assertEquals("mode2", result.get(1).modeName);
-		Assert.assertEquals(3.0, result.get(1).hp.dims[0], TOL);
+		Assert.assertEquals("mode2", result.getModeName(1));
+		Assert.assertEquals(3.0, result.get(1, 0), TOL);
+		Assert.assertEquals(2.0, result.getTime(1), TOL);
 	}
 
 	/**
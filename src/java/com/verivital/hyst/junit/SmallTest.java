@@ -1,16 +1,26 @@
 package com.verivital.hyst.junit;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.verivital.hyst.geometry.BoxIndex;
+import com.verivital.hyst.geometry.HyperPoint;
+import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.geometry.Trajectory;
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
 import com.verivital.hyst.grammar.formula.Expression;
@@ -19,6 +29,11 @@ import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
 import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.Configuration;
+import com.verivital.hyst.ir.ConfigurationSnapshot;
+import com.verivital.hyst.ir.SymbolTable;
+import com.verivital.hyst.ir.base.AutomatonMode;
+import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.main.Hyst;
@@ -31,10 +46,17 @@ import com.verivital.hyst.printers.SimulinkStateflowPrinter;
 import com.verivital.hyst.printers.ToolPrinter;
 import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.Classification;
+import com.verivital.hyst.util.DnfIterator;
+import com.verivital.hyst.util.DynamicsUtil;
+import com.verivital.hyst.util.KodiakUtil;
+import com.verivital.hyst.util.KodiakUtil.KodiakExpressionPrinter;
+import com.verivital.hyst.util.Polynomial;
+import com.verivital.hyst.util.RangeOptimizer;
 import com.verivital.hyst.util.RangeExtractor;
 import com.verivital.hyst.util.RangeExtractor.ConstantMismatchException;
 import com.verivital.hyst.util.RangeExtractor.EmptyRangeException;
 import com.verivital.hyst.util.RangeExtractor.UnsupportedConditionException;
+import com.verivital.hyst.util.ValueSubstituter;
 
 import de.uni_freiburg.informatik.swt.sxhybridautomaton.Bind;
 import de.uni_freiburg.informatik.swt.sxhybridautomaton.ParamMap;
@@ -90,6 +112,234 @@ public class SmallTest
 		Assert.assertNotNull(e);
 	}
 
+	/**
+	 * Conjunctions are flattened into n-ary operations, and very deep binary chains can be split,
+	 * simplified and printed without overflowing the stack
+	 */
+	@Test
+	public void testDeepConjunction()
+	{
+		Expression ab = Expression.and(FormulaParser.parseInvariant("a <= 1"),
+				FormulaParser.parseInvariant("b <= 2"));
+		Expression cd = Expression.and(FormulaParser.parseInvariant("c <= 3"),
+				FormulaParser.parseInvariant("d <= 4"));
+		Operation flat = Expression.and(ab, cd).asOperation();
+
+		Assert.assertEquals(Operator.AND, flat.op);
+		Assert.assertEquals(4, flat.children.size());
+		Assert.assertEquals(2, ab.asOperation().children.size()); // operands are not modified
+		Assert.assertEquals("a <= 1.0 & b <= 2.0 & c <= 3.0 & d <= 4.0", flat.toDefaultString());
+
+		// arithmetic stays binary
+		try
+		{
+			Operation.createAssociative(Operator.ADD, new Variable("a"), new Variable("b"));
+			Assert.fail("n-ary sum was created");
+		}
+		catch (AutomatonExportException e)
+		{
+		}
+
+		// left-deep binary chain, like the ones built by appending conditions in a loop
+		final int SIZE = 50000;
+		Expression chain = new Operation(Operator.LESSEQUAL, new Variable("x0"), new Constant(0));
+
+		for (int i = 1; i < SIZE; ++i)
+			chain = new Operation(Operator.AND, chain,
+					new Operation(Operator.LESSEQUAL, new Variable("x" + i), new Constant(i)));
+
+		Assert.assertEquals(SIZE, DynamicsUtil.splitConjunction(chain).size());
+
+		Expression simplified = SimplifyExpressionsPass.simplifyExpression(chain);
+		Assert.assertEquals(SIZE, simplified.asOperation().children.size());
+
+		String str = simplified.toDefaultString();
+		Assert.assertTrue(str.startsWith("x0 <= 0.0 & x1 <= 1.0 & x2 <= 2.0"));
+
+		TreeMap<String, Interval> ranges = RangeExtractor.getVariableRanges(simplified, "chain");
+		Assert.assertEquals(SIZE, ranges.size());
+		Assert.assertEquals(7, ranges.get("x7").max, 1e-9);
+	}
+
+	/**
+	 * The lazy DNF expansion should enumerate disjuncts in order, prune contradictory partial
+	 * conjunctions, and refuse expansions larger than the limit
+	 */
+	@Test
+	public void testDnfIterator()
+	{
+		Expression e = FormulaParser.parseGuard("(a >= 1 | b >= 1) & (c >= 1 | d >= 1)");
+		DnfIterator it = new DnfIterator(e, false);
+		ArrayList<String> disjuncts = new ArrayList<String>();
+
+		Assert.assertEquals(4, it.getExpansionSize());
+
+		while (it.hasNext())
+			disjuncts.add(DnfIterator.toConjunction(it.next()).toDefaultString());
+
+		Assert.assertEquals(Arrays.asList("a >= 1.0 & c >= 1.0", "b >= 1.0 & c >= 1.0",
+				"a >= 1.0 & d >= 1.0", "b >= 1.0 & d >= 1.0"), disjuncts);
+
+		// x <= 1 & x >= 2 is infeasible, so those partial conjunctions are dropped
+		e = FormulaParser.parseGuard("(x <= 1 | x >= 5) & x >= 2 & (y <= 1 | y >= 2)");
+		it = new DnfIterator(e, true);
+		Assert.assertEquals(4, it.getExpansionSize());
+		int count = 0;
+
+		for (; it.hasNext(); ++count)
+			Assert.assertTrue(it.next().get(0).toDefaultString().equals("x >= 5.0"));
+
+		Assert.assertEquals(2, count);
+
+		// product of 20 two-way disjunctions
+		e = Constant.TRUE;
+
+		for (int i = 0; i < 20; ++i)
+			e = Expression.and(e, FormulaParser.parseGuard("x" + i + " <= 0 | x" + i + " >= 1"));
+
+		Assert.assertEquals(1 << 20, DnfIterator.countDisjuncts(e));
+
+		try
+		{
+			new DnfIterator(e, true, 1000);
+			Assert.fail("expansion over the limit should raise an error");
+		}
+		catch (AutomatonExportException ex)
+		{
+			Assert.assertTrue(ex.getMessage().contains("1048576 disjuncts"));
+		}
+	}
+
+	/**
+	 * Test the per-configuration symbol table and the id-based evaluators
+	 */
+	@Test
+	public void testSymbolTable()
+	{
+		String[][] dynamics = { { "x", "2 * y", "1" }, { "y", "-x", "2" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		SymbolTable st = c.getSymbolTable();
+
+		Assert.assertEquals(0, st.getId("x"));
+		Assert.assertEquals(1, st.getId("y"));
+		Assert.assertEquals(-1, st.getId("z"));
+		Assert.assertSame("ids are stable across calls", st, c.getSymbolTable());
+
+		Expression e = FormulaParser.parseValue("x * x + 2 * y - 1");
+		double[] values = new double[st.size()];
+		values[st.getId("x")] = 3;
+		values[st.getId("y")] = 0.5;
+
+		Assert.assertEquals(9.0, AutomatonUtil.evaluateExpression(e, st, values), 1e-9);
+
+		// resolved ids are cached in the variable, and follow renames
+		Variable v = new Variable("y");
+		Assert.assertEquals(1, st.getId(v));
+		v.name = "x";
+		Assert.assertEquals(0, st.getId(v));
+
+		Interval[] ranges = new Interval[st.size()];
+		ranges[st.getId("x")] = new Interval(-1, 2);
+		ranges[st.getId("y")] = new Interval(0, 1);
+
+		Interval i = Interval.intervalEvaluate(FormulaParser.parseValue("x + 3 * y"), st, ranges);
+		Assert.assertEquals(-1, i.min, 1e-9);
+		Assert.assertEquals(5, i.max, 1e-9);
+
+		Expression[] subs = new Expression[st.size()];
+		subs[st.getId("y")] = new Constant(4);
+		ValueSubstituter vs = new ValueSubstituter(st, subs);
+
+		Assert.assertEquals("x + 4.0",
+				vs.substitute(FormulaParser.parseValue("x + y")).toDefaultString());
+	}
+
+	/**
+	 * Test that a copied configuration links its transitions to its own modes, and is independent
+	 * of the original
+	 */
+	@Test
+	public void testConfigurationCopy()
+	{
+		String[][] dynamics = { { "x", "1", "0" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		BaseComponent ha = (BaseComponent) c.root;
+		AutomatonMode first = ha.modes.values().iterator().next();
+		AutomatonMode prev = first;
+
+		for (int i = 0; i < 50; ++i)
+		{
+			AutomatonMode am = ha.createMode("m" + i);
+			am.invariant = Constant.TRUE;
+			am.flowDynamics.put("x", new ExpressionInterval(new Constant(i)));
+
+			AutomatonTransition at = ha.createTransition(prev, am);
+			at.guard = FormulaParser.parseGuard("x >= " + i);
+			prev = am;
+		}
+
+		Configuration copy = c.copy();
+		copy.validate();
+
+		BaseComponent copyHa = (BaseComponent) copy.root;
+		Assert.assertEquals(ha.modes.size(), copyHa.modes.size());
+		Assert.assertEquals(ha.transitions.size(), copyHa.transitions.size());
+
+		for (int i = 0; i < ha.transitions.size(); ++i)
+		{
+			AutomatonTransition orig = ha.transitions.get(i);
+			AutomatonTransition at = copyHa.transitions.get(i);
+
+			Assert.assertSame(copyHa.modes.get(orig.from.name), at.from);
+			Assert.assertSame(copyHa.modes.get(orig.to.name), at.to);
+			Assert.assertNotSame(orig.guard, at.guard);
+		}
+
+		// editing the copy does not change the original
+		copyHa.transitions.get(0).guard = Constant.FALSE;
+		copyHa.modes.get("m0").invariant = Constant.FALSE;
+
+		Assert.assertEquals("x >= 0.0", ha.transitions.get(0).guard.toDefaultString());
+		Assert.assertEquals(Constant.TRUE, ha.modes.get("m0").invariant);
+	}
+
+	/**
+	 * Test that snapshots share a configuration until they are edited, and that edits stay in the
+	 * snapshot which made them
+	 */
+	@Test
+	public void testConfigurationSnapshot()
+	{
+		String[][] dynamics = { { "x", "1", "0" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		String modeName = ((BaseComponent) c.root).modes.keySet().iterator().next();
+
+		ConfigurationSnapshot base = new ConfigurationSnapshot(c);
+		ConfigurationSnapshot branch = base.snapshot();
+
+		// nothing is copied until an edit
+		Assert.assertSame(c, base.read());
+		Assert.assertSame(c, branch.read());
+
+		Configuration edited = branch.edit();
+		Assert.assertNotSame(c, edited);
+		Assert.assertSame(edited, branch.edit());
+		Assert.assertSame(edited, branch.read());
+
+		((BaseComponent) edited.root).modes.get(modeName).invariant = Constant.FALSE;
+		Assert.assertEquals(Constant.TRUE, ((BaseComponent) c.root).modes.get(modeName).invariant);
+
+		// a snapshot of an edited branch shares its state, and each side copies on the next edit
+		ConfigurationSnapshot nested = branch.snapshot();
+		Assert.assertSame(edited, nested.read());
+		Assert.assertSame(edited, branch.read());
+
+		((BaseComponent) nested.edit().root).modes.get(modeName).invariant = Constant.TRUE;
+		Assert.assertEquals(Constant.FALSE,
+				((BaseComponent) branch.read().root).modes.get(modeName).invariant);
+		Assert.assertNotSame(edited, branch.edit());
+	}
+
 	@Test
 	public void testTripleExpressionCondition()
 	{
@@ -706,6 +956,45 @@ public class SmallTest
 		Assert.assertEquals("(x = x ^ 2.1234)", exp_printer.print(e3));
 	}
 
+	/**
+	 * Printing uses an explicit stack, so very deep expressions can be printed, and printing into an
+	 * Appendable gives the same text as printing to a string
+	 */
+	@Test
+	public void testPrintDeepExpression()
+	{
+		int depth = 100000;
+		Expression e = new Variable("x");
+
+		// ((x - 1) - 1) - ... and the negation of a right-nested product
+		for (int i = 0; i < depth; ++i)
+			e = new Operation(Operator.SUBTRACT, e, new Constant(1));
+
+		Expression prod = new Variable("y");
+
+		for (int i = 0; i < depth; ++i)
+			prod = new Operation(Operator.MULTIPLY, new Variable("y"), prod);
+
+		e = new Operation(Operator.LESSEQUAL, e, new Operation(Operator.NEGATIVE, prod));
+
+		String s = DefaultExpressionPrinter.instance.print(e);
+
+		Assert.assertTrue(s.startsWith("x - 1.0 - 1.0"));
+		Assert.assertTrue(s.contains("1.0 <= -(y * y * y"));
+		Assert.assertTrue(s.endsWith("y * y)"));
+
+		StringBuilder sb = new StringBuilder("prefix: ");
+		DefaultExpressionPrinter.instance.print(e, sb);
+		Assert.assertEquals("prefix: " + s, sb.toString());
+
+		// subclass layouts stream as well
+		Expression guard = FormulaParser.parseGuard("-5 <= x && x <= 5 | y >= x^2");
+		DReachExpressionPrinter dreach = new DReachExpressionPrinter();
+		sb.setLength(0);
+		dreach.print(guard, sb);
+		Assert.assertEquals("(or (and (-5.0 <= x) (x <= 5.0)) (y >= x ^ 2.0))", sb.toString());
+	}
+
 	@Test
 	public void testStateflowExpressionPrinterOne()
 	{
@@ -771,6 +1060,64 @@ public class SmallTest
 			Assert.fail("expression was not detected as linear: " + exp2);
 	}
 
+	@Test
+	public void testPolynomialConversion()
+	{
+		Polynomial p = Polynomial.fromExpression(FormulaParser.parseValue("(x + 2 * y)^2 - x * x"));
+
+		Assert.assertEquals(2, p.getDegree());
+		Assert.assertFalse(p.isLinear());
+		Assert.assertEquals(2, p.getNumTerms()); // x^2 terms cancel
+		Assert.assertEquals(4.0, p.getCoefficient(new int[] { 1, 1 }), 1e-12);
+		Assert.assertEquals(4.0, p.getCoefficient(new int[] { 0, 2 }), 1e-12);
+		Assert.assertEquals(0.0, p.getCoefficient(new int[] { 2, 0 }), 1e-12);
+
+		Assert.assertNull(AutomatonUtil.areExpressionsEqual(
+				FormulaParser.parseValue("4 * x * y + 4 * y * y"), p.toExpression()));
+
+		Polynomial linear = Polynomial.fromExpression(FormulaParser.parseValue("3 - (x - y) / 2"));
+		Assert.assertTrue(linear.isLinear());
+		Assert.assertEquals(3.0, linear.getConstant(), 1e-12);
+		Assert.assertEquals(-0.5, linear.getLinearCoefficient("x"), 1e-12);
+		Assert.assertEquals(0.5, linear.getLinearCoefficient("y"), 1e-12);
+		Assert.assertEquals(0.0, linear.getLinearCoefficient("z"), 1e-12);
+
+		// non-polynomial expressions
+		String[] nonPoly = { "sin(x)", "x / y", "x^0.5", "x^y", "1 / (x - x)" };
+
+		for (String str : nonPoly)
+			Assert.assertNull("expected non-polynomial: " + str,
+					Polynomial.fromExpression(FormulaParser.parseValue(str)));
+	}
+
+	@Test
+	public void testFlowPolynomialCache()
+	{
+		String[][] dynamics = { { "x", "2 * x - y + 1", "0" }, { "y", "x * y", "0" } };
+		Configuration c = AutomatonUtil.makeDebugConfiguration(dynamics);
+		AutomatonMode am = ((BaseComponent) c.root).modes.values().iterator().next();
+
+		Polynomial px = am.getFlowPolynomial("x");
+		Assert.assertSame("flow polynomial should be cached", px, am.getFlowPolynomial("x"));
+		Assert.assertFalse(am.getFlowPolynomial("y").isLinear());
+		Assert.assertFalse(Classification.isLinearDynamics(am));
+
+		ArrayList<String> vars = new ArrayList<String>();
+		vars.add("x");
+		vars.add("y");
+		Assert.assertEquals("[2.0, -1.0]", DynamicsUtil.extractLinearVector(px, vars).toString());
+
+		// replacing the flow invalidates the cached entry
+		am.flowDynamics.put("y", new ExpressionInterval("3 * x"));
+		Assert.assertTrue(am.getFlowPolynomial("y").isLinear());
+		Assert.assertTrue(Classification.isLinearDynamics(am));
+
+		// modifying the flow in place is also detected: 2 * x - y + 1 becomes 2 * x - y + x * y
+		Operation o = am.flowDynamics.get("x").getExpression().asOperation();
+		o.children.set(1, FormulaParser.parseValue("x * y"));
+		Assert.assertFalse(am.getFlowPolynomial("x").isLinear());
+	}
+
 	/*
 	 * @Test public void testFlowstarLinearDetection() { String exp = "(1.0 - x * x) * y - x";
 	 * 
@@ -1017,6 +1364,170 @@ public class SmallTest
 		Assert.assertNotEquals(e, null);
 	}
 
+	/**
+	 * Write the structure of an expression, including constant values and which operations have
+	 * which children
+	 */
+	private static void describeTree(Expression e, StringBuilder out)
+	{
+		if (e == null)
+			out.append("null");
+		else if (e instanceof Operation)
+		{
+			Operation o = (Operation) e;
+			out.append(o.op.name() + "(");
+
+			for (int i = 0; i < o.children.size(); ++i)
+			{
+				if (i > 0)
+					out.append(", ");
+
+				describeTree(o.children.get(i), out);
+			}
+
+			out.append(")");
+		}
+		else if (e instanceof Constant)
+			out.append("C" + Double.toString(((Constant) e).getVal()));
+		else if (e instanceof Variable)
+			out.append("V" + ((Variable) e).name);
+		else
+			out.append(e.getClass().getSimpleName() + ":" + e.toDefaultString());
+	}
+
+	private static String parseAndDescribe(String part, String text, boolean fast)
+	{
+		boolean saved = FormulaParser.useFastPath;
+		FormulaParser.useFastPath = fast;
+		StringBuilder rv = new StringBuilder();
+
+		try
+		{
+			Expression e;
+
+			if (part.equals("guard"))
+				e = FormulaParser.parseGuard(text);
+			else if (part.equals("invariant"))
+				e = FormulaParser.parseInvariant(text);
+			else if (part.equals("flow"))
+				e = FormulaParser.parseFlow(text);
+			else if (part.equals("reset"))
+				e = FormulaParser.parseReset(text);
+			else if (part.equals("init"))
+				e = FormulaParser.parseInitialForbidden(text);
+			else
+				e = FormulaParser.parseValue(text);
+
+			describeTree(e, rv);
+		}
+		catch (AutomatonExportException e)
+		{
+			rv.append("error: " + e.getMessage());
+		}
+		finally
+		{
+			FormulaParser.useFastPath = saved;
+		}
+
+		return rv.toString();
+	}
+
+	/**
+	 * The hand-written parser fast path should give exactly the same expressions (and errors) as
+	 * the ANTLR parser
+	 */
+	@Test
+	public void testFastParserMatchesAntlr()
+	{
+		String[][] tests = { { "value", "2 * x - 5" }, { "value", "- (-x)" },
+				{ "value", "-x^2^3" }, { "value", "x^-2" }, { "value", "- - 3" },
+				{ "value", "1.5e-3 * .5 + 2E+2 / 7" }, { "value", "sin(x) + COS(y * 2) - ln(exp(z))" },
+				{ "value", "sqrt((x + 1) * (tan(x)))" }, { "value", "x'" }, { "value", "-0" },
+				{ "value", "a - b - c + d" }, { "value", "a / b * c / d" }, { "value", "1 + " },
+				{ "value", "foo(x)" }, { "value", "sin(x, y)" }, { "value", "[1, 2, 3]" },
+				{ "value", "2e" }, { "value", "1." },
+				{ "guard", "x >= 5" }, { "guard", "t >= 1 & x <= 2 & y == 3 && z < 4" },
+				{ "guard", "a < b == c < d" }, { "guard", "x > 1 | y < 2 || z != 3 & w = 4" },
+				{ "guard", "(x + 1) * 2 >= y" }, { "guard", "(x >= 1 & y <= 2) | (z > 3)" },
+				{ "guard", "((x) <= 1)" }, { "guard", "!(x > 1 | y < 2)" }, { "guard", "true" },
+				{ "guard", "false | (true)" }, { "guard", "" }, { "guard", "x >= 1)" },
+				{ "guard", "x" }, { "guard", "x.y >= 1" }, { "guard", "loc() == on" },
+				{ "invariant", "0 <= x <= 1 & -1 <= y <= 1" }, { "invariant", "x <= 5 &" },
+				{ "flow", "x' == 1 & y' = -x + 2 * y & z' == sin(t)" }, { "flow", "x' = 1" },
+				{ "flow", "false" }, { "flow", "" }, { "flow", "x' = y' = 1" },
+				{ "reset", "x := 1 & y := x + y" }, { "reset", "x' == x + 1 & y' == 0" },
+				{ "reset", "x' == x + 1 <= y" }, { "reset", "x' := 1" },
+				{ "init", "x == 1 & 0 <= y <= 2 | x >= 3" }, { "init", "loc(a) == on & x == 1" },
+				{ "init", "a.x >= 1" } };
+
+		for (String[] test : tests)
+		{
+			String part = test[0];
+			String text = test[1];
+
+			Assert.assertEquals("parsing " + part + " '" + text + "'",
+					parseAndDescribe(part, text, false), parseAndDescribe(part, text, true));
+		}
+	}
+
+	/**
+	 * The fast path should also match the ANTLR parser on generated linear flows, guards and
+	 * invariants, like the ones in most models
+	 */
+	@Test
+	public void testFastParserMatchesAntlrGenerated()
+	{
+		Random rand = new Random(0);
+		String[] parts = { "flow", "guard", "invariant" };
+
+		for (int i = 0; i < 300; ++i)
+		{
+			String part = parts[i % parts.length];
+			StringBuilder text = new StringBuilder();
+			int numVars = 2 + rand.nextInt(6);
+
+			for (int v = 0; v < numVars; ++v)
+			{
+				if (v > 0)
+					text.append(" & ");
+
+				if (part.equals("flow"))
+					text.append("x" + v + "' == " + randomLinearTerm(rand, numVars));
+				else
+				{
+					String op = rand.nextBoolean() ? " <= " : " >= ";
+					text.append(randomLinearTerm(rand, numVars) + op + rand.nextInt(100));
+				}
+			}
+
+			String fast = parseAndDescribe(part, text.toString(), true);
+
+			Assert.assertFalse("parsing " + part + " '" + text + "'", fast.startsWith("error"));
+			Assert.assertEquals("parsing " + part + " '" + text + "'",
+					parseAndDescribe(part, text.toString(), false), fast);
+		}
+	}
+
+	private static String randomLinearTerm(Random rand, int numVars)
+	{
+		StringBuilder rv = new StringBuilder();
+		int numTerms = 1 + rand.nextInt(numVars);
+
+		for (int t = 0; t < numTerms; ++t)
+		{
+			double coeff = Math.round(rand.nextGaussian() * 1000) / 100.0;
+
+			if (t > 0)
+				rv.append(coeff < 0 ? " - " : " + ");
+			else if (coeff < 0)
+				rv.append("-");
+
+			rv.append(Math.abs(coeff) + " * x" + rand.nextInt(numVars));
+		}
+
+		return rv.toString();
+	}
+
 	/*
 	 * @Test public void testExtractDynamicsMatrixA() { String test = "-100 * x - 4 * v - 9.81";
 	 * 
@@ -1033,4 +1544,359 @@ public class SmallTest
 	 * Assert.assertEquals(-100.0, (double) matrix.get(1).get(0), 1e-9); Assert.assertEquals(-4.0,
 	 * (double) matrix.get(1).get(1), 1e-9); }
 	 */
+
+	/**
+	 * Kodiak results which are in the (disk) cache are returned without running kodiak
+	 */
+	@Test
+	public void testKodiakCache() throws IOException
+	{
+		Expression e = FormulaParser.parseValue("x * y + 0.5");
+		HashMap<String, Interval> bounds = new HashMap<String, Interval>();
+		bounds.put("y", new Interval(1, 3));
+		bounds.put("x", new Interval(0, 2));
+
+		File f = File.createTempFile("hyst_kodiak_cache", ".txt");
+		f.deleteOnExit();
+		FileWriter fw = new FileWriter(f);
+		fw.write("0.5\t6.5\tx in [0.0, 2.0]; y in [1.0, 3.0]; "
+				+ new KodiakExpressionPrinter().print(e) + "\n");
+		fw.close();
+
+		try
+		{
+			KodiakUtil.setDiskCache(f.getAbsolutePath());
+
+			List<Interval> result = KodiakUtil.kodiakOptimize(Arrays.asList(e, e),
+					Arrays.asList(bounds, bounds));
+
+			Assert.assertEquals(2, result.size());
+			Assert.assertEquals(new Interval(0.5, 6.5), result.get(0));
+
+			// results are copies of the cached ones
+			result.get(0).max = 100;
+			Assert.assertEquals(new Interval(0.5, 6.5), result.get(1));
+			Assert.assertEquals(new Interval(0.5, 6.5), KodiakUtil
+					.kodiakOptimize(Arrays.asList(e), Arrays.asList(bounds)).get(0));
+		}
+		finally
+		{
+			KodiakUtil.setDiskCache(null);
+			KodiakUtil.clearCache();
+		}
+	}
+
+	/**
+	 * Test parsing trajectories, and slicing, downsampling and bounding them
+	 */
+	@Test
+	public void testTrajectory()
+	{
+		String text = "on,0.0,1,2;on,0.5,2,4;off,1.0,3,-1;off,1.5,0,0;on,2.0,5,1|on,0,7,7";
+		List<Trajectory> trajs = Trajectory.parseAll(text);
+
+		Assert.assertEquals(2, trajs.size());
+		Trajectory t = trajs.get(0);
+
+		Assert.assertEquals(5, t.size());
+		Assert.assertEquals(2, t.numDims());
+		Assert.assertEquals(Arrays.asList("on", "off"), t.getModeNames());
+		Assert.assertEquals("off", t.getModeName(2));
+		Assert.assertEquals(0, t.getModeId(4));
+		Assert.assertEquals(1.5, t.getTime(3), 1e-12);
+		Assert.assertEquals(new HyperPoint(3, -1), t.getPoint(2));
+		Assert.assertEquals(3 * 2 + -1 * 3, t.dot(2, new double[] { 2, 3 }), 1e-12);
+
+		Assert.assertEquals(new HyperRectangle(new Interval(0, 5), new Interval(-1, 4)),
+				t.boundingBox());
+
+		// views share storage and compose
+		Trajectory slice = t.slice(1, 4);
+		Assert.assertEquals(3, slice.size());
+		Assert.assertEquals(0.5, slice.getTime(0), 1e-12);
+		Assert.assertEquals(new HyperRectangle(new Interval(0, 3), new Interval(-1, 4)),
+				slice.boundingBox());
+
+		Trajectory down = t.downsample(2);
+		Assert.assertEquals(3, down.size());
+		Assert.assertEquals(2.0, down.getTime(2), 1e-12);
+		Assert.assertEquals(1.0, down.slice(1, 3).getTime(0), 1e-12);
+		Assert.assertEquals(new HyperPoint(5, 1), down.downsample(2).getPoint(1));
+
+		Assert.assertEquals(new HyperPoint(7, 7), trajs.get(1).getState(0).hp);
+		Assert.assertNull(t.slice(2, 2).boundingBox());
+
+		try
+		{
+			Trajectory.parseAll("on,0,1,2;on,1,2");
+			Assert.fail("expected exception for mismatched dimensions");
+		}
+		catch (AutomatonExportException e)
+		{
+		}
+	}
+
+	/**
+	 * The box index should find the same boxes as checking every box, in the same order
+	 */
+	@Test
+	public void testBoxIndex()
+	{
+		Random rand = new Random(0);
+
+		for (int numDims = 1; numDims <= 3; ++numDims)
+		{
+			ArrayList<HyperRectangle> boxes = new ArrayList<HyperRectangle>();
+			ArrayList<Integer> ids = new ArrayList<Integer>();
+
+			for (int i = 0; i < 500; ++i)
+			{
+				boxes.add(randomBox(rand, numDims));
+				ids.add(i);
+			}
+
+			// an unbounded box, like an invariant that doesn't constrain every variable
+			HyperRectangle unbounded = randomBox(rand, numDims);
+			unbounded.dims[0] = new Interval(-Double.MAX_VALUE, Double.MAX_VALUE);
+			boxes.add(unbounded);
+			ids.add(boxes.size() - 1);
+
+			BoxIndex<Integer> index = new BoxIndex<Integer>(boxes, ids, 4);
+			Assert.assertEquals(boxes.size(), index.size());
+
+			for (int q = 0; q < 200; ++q)
+			{
+				HyperRectangle query = randomBox(rand, numDims);
+				ArrayList<Integer> expected = new ArrayList<Integer>();
+
+				for (int i = 0; i < boxes.size(); ++i)
+				{
+					if (HyperRectangle.intersection(boxes.get(i), query) != null)
+						expected.add(i);
+				}
+
+				Assert.assertEquals(expected, index.query(query));
+			}
+
+			// touching boxes intersect
+			HyperRectangle touch = new HyperRectangle(numDims);
+
+			for (int d = 0; d < numDims; ++d)
+				touch.dims[d] = new Interval(boxes.get(0).dims[d].max, 200);
+
+			Assert.assertTrue(index.query(touch).contains(0));
+		}
+
+		Assert.assertEquals(0, new BoxIndex<Integer>(new ArrayList<HyperRectangle>(),
+				new ArrayList<Integer>()).query(new HyperRectangle(new HyperPoint(1, 2))).size());
+	}
+
+	private static HyperRectangle randomBox(Random rand, int numDims)
+	{
+		HyperRectangle rv = new HyperRectangle(numDims);
+
+		for (int d = 0; d < numDims; ++d)
+		{
+			double min = rand.nextInt(100);
+			rv.dims[d] = new Interval(min, min + rand.nextInt(10));
+		}
+
+		return rv;
+	}
+
+	private static Expression parseAny(String text)
+	{
+		Expression rv;
+
+		if (text.contains("'"))
+			rv = FormulaParser.parseFlow(text);
+		else if (text.contains("=") || text.equals("true"))
+			rv = FormulaParser.parseInvariant(text);
+		else
+			rv = FormulaParser.parseValue(text);
+
+		return rv;
+	}
+
+	/**
+	 * Structural equality and hashing of expressions should match comparing printed strings
+	 */
+	@Test
+	public void testStructuralEquality()
+	{
+		String[] exps = { "x <= 5 & y >= 2", "x <= 5 & y >= 2.0", "x <= 5 & y >= 3", "y >= 2 & x <= 5",
+				"x + y * z", "(x + y) * z", "sin(x) + 1", "cos(x) + 1", "x' == y", "true" };
+
+		for (String a : exps)
+		{
+			for (String b : exps)
+			{
+				Expression ea = parseAny(a);
+				Expression eb = parseAny(b);
+				boolean printedEqual = ea.toDefaultString().equals(eb.toDefaultString());
+
+				Assert.assertEquals(a + " vs " + b, printedEqual,
+						Expression.structurallyEqual(ea, eb));
+
+				if (printedEqual)
+					Assert.assertEquals(Expression.structuralHash(ea),
+							Expression.structuralHash(eb));
+			}
+		}
+
+		Assert.assertTrue(Expression.structurallyEqual(Constant.TRUE, Constant.TRUE));
+		Assert.assertFalse(Expression.structurallyEqual(Constant.TRUE, new Constant(1)));
+		Assert.assertFalse(Expression.structurallyEqual(new Variable("x"), null));
+		Assert.assertTrue(Expression.structurallyEqual(null, null));
+
+		// deep expressions don't overflow the stack
+		Expression deep = new Variable("x");
+		Expression deep2 = new Variable("x");
+
+		for (int i = 0; i < 100000; ++i)
+		{
+			deep = new Operation(Operator.ADD, deep, new Constant(i));
+			deep2 = new Operation(Operator.ADD, deep2, new Constant(i));
+		}
+
+		Assert.assertTrue(Expression.structurallyEqual(deep, deep2));
+		Assert.assertEquals(Expression.structuralHash(deep), Expression.structuralHash(deep2));
+	}
+
+	/**
+	 * Affine evaluation keeps correlations between repeated variables, and stays sound
+	 */
+	@Test
+	public void testAffineEvaluate()
+	{
+		HashMap<String, Interval> ranges = new HashMap<String, Interval>();
+		ranges.put("x", new Interval(0, 1));
+		ranges.put("y", new Interval(1, 2));
+		double TOL = 1e-9;
+
+		Interval i = Interval.affineEvaluate(FormulaParser.parseValue("x - x"), ranges);
+		Assert.assertEquals(0, i.min, TOL);
+		Assert.assertEquals(0, i.max, TOL);
+
+		// interval arithmetic gives [0, 1]; the true range is [0, 0.25]
+		i = Interval.affineEvaluate(FormulaParser.parseValue("x * (1 - x)"), ranges);
+		Assert.assertEquals(0, i.min, TOL);
+		Assert.assertEquals(0.5, i.max, TOL);
+
+		i = Interval.affineEvaluate(FormulaParser.parseValue("(x + y) - (y + 2 * x)"), ranges);
+		Assert.assertEquals(-1, i.min, TOL);
+		Assert.assertEquals(0, i.max, TOL);
+
+		// nonlinear functions enclose sampled values, and are no worse than interval arithmetic
+		String[] exps = { "x^2 - 2*x", "exp(x) - x", "ln(y) - y / 2", "sqrt(x) - x", "x / y - x",
+				"sin(x) * cos(y)", "x^3 * y - y^2", "1 / (y - x / 2)" };
+		Random rand = new Random(0);
+
+		for (String str : exps)
+		{
+			Expression e = FormulaParser.parseValue(str);
+			Interval affine = Interval.affineEvaluate(e, ranges);
+			Interval interval = Interval.intervalEvaluate(e, ranges);
+
+			Assert.assertTrue(str, interval.contains(affine));
+
+			for (int s = 0; s < 200; ++s)
+			{
+				HashMap<String, Interval> pt = new HashMap<String, Interval>();
+				pt.put("x", new Interval(s == 0 ? 0 : (s == 1 ? 1 : rand.nextDouble())));
+				pt.put("y", new Interval(1 + (s == 0 ? 0 : (s == 1 ? 1 : rand.nextDouble()))));
+
+				double val = Interval.intervalEvaluate(e, pt).middle();
+
+				Assert.assertTrue(str + " at " + pt + " = " + val + " not in " + affine,
+						affine.min <= val + TOL && val - TOL <= affine.max);
+			}
+		}
+
+		try
+		{
+			Interval.affineEvaluate(FormulaParser.parseValue("y / x"), ranges);
+			Assert.fail("expected exception for division by zero");
+		}
+		catch (AutomatonExportException e)
+		{
+		}
+	}
+
+	/**
+	 * Bounded range optimization with affine arithmetic meets the error bound with fewer
+	 * evaluations than interval arithmetic
+	 */
+	@Test
+	public void testRangeOptimizer()
+	{
+		// f(x) - linear approximation, as in hybridization
+		Expression e = FormulaParser.parseValue("x^2 - 2*x * y - (0.5 * x - y + 1)");
+		HashMap<String, Interval> bounds = new HashMap<String, Interval>();
+		bounds.put("x", new Interval(0, 2));
+		bounds.put("y", new Interval(-1, 1));
+		double maxError = 0.01;
+
+		// the true range, by dense sampling
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+
+		for (int a = 0; a <= 400; ++a)
+		{
+			for (int b = 0; b <= 400; ++b)
+			{
+				double x = a * 2 / 400.0, y = -1 + b * 2 / 400.0;
+				double val = x * x - 2 * x * y - (0.5 * x - y + 1);
+				min = Math.min(min, val);
+				max = Math.max(max, val);
+			}
+		}
+
+		RangeOptimizer intervalOpt = new RangeOptimizer(false, maxError);
+		RangeOptimizer affineOpt = new RangeOptimizer(true, maxError);
+
+		for (RangeOptimizer opt : new RangeOptimizer[] { intervalOpt, affineOpt })
+		{
+			Interval i = opt.optimize(e, bounds);
+
+			Assert.assertTrue("unsound: " + i, i.min <= min + 1e-9 && i.max >= max - 1e-9);
+			Assert.assertTrue("too wide: " + i, i.min >= min - maxError - 1e-3
+					&& i.max <= max + maxError + 1e-3);
+		}
+
+		Assert.assertTrue(
+				"affine evals " + affineOpt.getNumEvaluations() + ", interval evals "
+						+ intervalOpt.getNumEvaluations(),
+				affineOpt.getNumEvaluations() * 2 < intervalOpt.getNumEvaluations());
+
+		List<Interval> all = RangeOptimizer.optimizeAll(Arrays.asList(e, e),
+				Arrays.asList(bounds, bounds), true, 0);
+		Assert.assertEquals(2, all.size());
+		Assert.assertTrue(all.get(0).min <= min && all.get(0).max >= max);
+	}
+
+	/**
+	 * Copies of a substituted interval term are correlated when extracting the interval
+	 */
+	@Test
+	public void testSubstituteCorrelatedIntervals()
+	{
+		Expression e = FormulaParser.parseValue("c - 2 * c + x");
+		Expression sub = new Operation(Operator.ADD, new Variable("c"),
+				new IntervalTerm(new Interval(0, 1)));
+		Expression result = AutomatonUtil.substituteVariable(e, "c", sub);
+
+		ExpressionInterval ei = ContinuizationPass.simplifyExpressionWithIntervals(result);
+
+		// plain interval arithmetic gives [-2, 1]
+		Assert.assertEquals(-1, ei.getInterval().min, 1e-9);
+		Assert.assertEquals(0, ei.getInterval().max, 1e-9);
+
+		// the same interval value in different terms are not correlated
+		Expression twoTerms = new Operation(Operator.SUBTRACT,
+				new IntervalTerm(new Interval(0, 1)), new IntervalTerm(new Interval(0, 1)));
+		ei = ContinuizationPass.simplifyExpressionWithIntervals(twoTerms);
+
+		Assert.assertEquals(-1, ei.getInterval().min, 1e-9);
+		Assert.assertEquals(1, ei.getInterval().max, 1e-9);
+	}
 }
@@ -0,0 +1,276 @@
+package com.verivital.hyst.main;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Output sink for the text area in the GUI. Text can be appended from any thread. Appended text is
+ * batched into a bounded ring of chunks, and a swing timer moves it to the text area at a fixed
+ * rate, so the event dispatch thread is not flooded when a large model is printed.
+ *
+ * Memory is bounded regardless of the output size: the text area only shows the last
+ * MAX_DISPLAY_CHARS characters, and if the gui falls behind the oldest pending chunks are dropped.
+ * The full output is streamed to a temporary file, which can be copied with saveTo().
+ */
+public class GuiOutputSink implements ActionListener
+{
+	public static final int CHUNK_CHARS = 16 * 1024;
+	public static final int MAX_PENDING_CHUNKS = 64;
+	public static final int MAX_DISPLAY_CHARS = 512 * 1024;
+	public static final int REPAINT_MS = 100;
+
+	private static final String TRUNCATED_HEADER = "[... earlier output not shown; "
+			+ "use 'Save Output' to get the full output ...]\n";
+
+	private final JTextArea area;
+	private final Timer timer;
+
+	// guarded by this
+	private final ArrayDeque<StringBuilder> pending = new ArrayDeque<StringBuilder>();
+	private boolean droppedPending = false; // chunks were dropped since the last repaint
+	private boolean clearPending = false; // text area should be cleared on the next repaint
+	private File spillFile = null;
+	private Writer spill = null;
+
+	// only accessed on the event dispatch thread
+	private boolean showingHeader = false;
+
+	public GuiOutputSink(JTextArea area)
+	{
+		this.area = area;
+
+		openSpill();
+
+		timer = new Timer(REPAINT_MS, this);
+		timer.start();
+	}
+
+	/**
+	 * Append text to the output. This can be called from any thread.
+	 *
+	 * @param s
+	 *            the text to append
+	 */
+	public synchronized void append(String s)
+	{
+		if (spill != null)
+		{
+			try
+			{
+				spill.write(s);
+			}
+			catch (IOException e)
+			{
+				closeSpill();
+				System.err.println("Error writing full gui output to temporary file: " + e);
+			}
+		}
+
+		int start = 0;
+
+		while (start < s.length())
+		{
+			StringBuilder last = pending.peekLast();
+
+			if (last == null || last.length() >= CHUNK_CHARS)
+			{
+				if (pending.size() == MAX_PENDING_CHUNKS)
+				{
+					pending.pollFirst();
+					droppedPending = true;
+				}
+
+				last = new StringBuilder(CHUNK_CHARS);
+				pending.addLast(last);
+			}
+
+			int end = Math.min(s.length(), start + CHUNK_CHARS - last.length());
+			last.append(s, start, end);
+			start = end;
+		}
+	}
+
+	/**
+	 * Clear the output (both the display and the full output). Call this from the event dispatch
+	 * thread.
+	 */
+	public synchronized void clear()
+	{
+		pending.clear();
+		droppedPending = false;
+		clearPending = true;
+
+		closeSpill();
+		openSpill();
+	}
+
+	/**
+	 * Stream the full output to a file. Call this from the event dispatch thread.
+	 *
+	 * @param f
+	 *            the file to write
+	 */
+	public synchronized void saveTo(File f) throws IOException
+	{
+		if (spill == null)
+			throw new IOException("Full output was not recorded (temporary file unavailable).");
+
+		spill.flush();
+		Files.copy(spillFile.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Stop updating the text area and delete the temporary file
+	 */
+	public synchronized void dispose()
+	{
+		timer.stop();
+		pending.clear();
+		closeSpill();
+	}
+
+	private void openSpill()
+	{
+		try
+		{
+			spillFile = File.createTempFile("hyst_output", ".txt");
+			spillFile.deleteOnExit();
+
+			spill = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spillFile),
+					Charset.forName("UTF-8")));
+		}
+		catch (IOException e)
+		{
+			spill = null;
+			System.err.println("Error creating temporary file for gui output: " + e);
+		}
+	}
+
+	private void closeSpill()
+	{
+		if (spill != null)
+		{
+			try
+			{
+				spill.close();
+			}
+			catch (IOException e)
+			{
+				System.err.println("Error closing temporary gui output file: " + e);
+			}
+
+			spill = null;
+		}
+
+		if (spillFile != null)
+		{
+			spillFile.delete();
+			spillFile = null;
+		}
+	}
+
+	/**
+	 * Timer callback on the event dispatch thread: move pending text into the text area
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		StringBuilder text = null;
+		boolean reset;
+		boolean truncated;
+
+		synchronized (this)
+		{
+			reset = clearPending;
+			truncated = droppedPending;
+
+			if (!pending.isEmpty())
+			{
+				int size = 0;
+
+				for (StringBuilder sb : pending)
+					size += sb.length();
+
+				text = new StringBuilder(size);
+
+				for (StringBuilder sb : pending)
+					text.append(sb);
+
+				pending.clear();
+			}
+
+			clearPending = false;
+			droppedPending = false;
+		}
+
+		if (reset || truncated)
+		{
+			area.setText("");
+			showingHeader = false;
+		}
+
+		if (text != null)
+		{
+			if (text.length() > MAX_DISPLAY_CHARS)
+			{
+				text.delete(0, text.length() - MAX_DISPLAY_CHARS);
+				truncated = true;
+			}
+
+			area.append(text.toString());
+		}
+
+		if (truncated)
+			showTruncatedHeader();
+
+		trimDisplay();
+	}
+
+	private void showTruncatedHeader()
+	{
+		if (!showingHeader)
+		{
+			area.insert(TRUNCATED_HEADER, 0);
+			showingHeader = true;
+		}
+	}
+
+	/**
+	 * Remove text at the start of the text area, so that at most MAX_DISPLAY_CHARS are shown
+	 */
+	private void trimDisplay()
+	{
+		Document doc = area.getDocument();
+		int headerLen = showingHeader ? TRUNCATED_HEADER.length() : 0;
+		int excess = doc.getLength() - headerLen - MAX_DISPLAY_CHARS;
+
+		if (excess > 0)
+		{
+			try
+			{
+				doc.remove(headerLen, excess);
+			}
+			catch (BadLocationException ex)
+			{
+				throw new RuntimeException("Error trimming gui output", ex);
+			}
+
+			showTruncatedHeader();
+		}
+	}
+}
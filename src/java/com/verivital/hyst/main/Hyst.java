@@ -25,6 +25,7 @@ import com.verivital.hyst.generators.ModelGenerator;
 import com.verivital.hyst.generators.NamedNavigationGenerator;
 import com.verivital.hyst.generators.NavigationGenerator;
 import com.verivital.hyst.generators.SwitchedOscillatorGenerator;
+import com.verivital.hyst.generators.SyntheticNetworkGenerator;
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.importer.ConfigurationMaker;
 import com.verivital.hyst.importer.SpaceExImporter;
@@ -55,6 +56,7 @@ import com.verivital.hyst.printers.DReachPrinter;
 import com.verivital.hyst.printers.FlowstarPrinter;
 import com.verivital.hyst.printers.HyCompPrinter;
 import com.verivital.hyst.printers.Hylaa2Printer;
+import com.verivital.hyst.printers.HystBinPrinter;
 import com.verivital.hyst.printers.PySimPrinter;
 import com.verivital.hyst.printers.PythonQBMCPrinter;
 import com.verivital.hyst.printers.SimulinkStateflowPrinter;
@@ -63,6 +65,7 @@ import com.verivital.hyst.printers.ToolPrinter;
 import com.verivital.hyst.printers.hycreate2.HyCreate2Printer;
 import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.util.CmdLineRuntimeException;
+import com.verivital.hyst.util.HystBinFormat;
 import com.verivital.hyst.util.PairStringOptionHandler;
 import com.verivital.hyst.util.Preconditions.PreconditionsFailedException;
 import com.verivital.hyst.util.StringOperations;
@@ -81,7 +84,7 @@ public class Hyst
 	private final ToolPrinter[] printers = { new FlowstarPrinter(), new DReachPrinter(),
 			new HyCreate2Printer(), new HyCompPrinter(), new PythonQBMCPrinter(),
 			new SpaceExPrinter(), new SimulinkStateflowPrinter(), new PySimPrinter(),
-			new Hylaa2Printer() };
+			new Hylaa2Printer(), new HystBinPrinter() };
 
 	// list of supported model transformation passes (add new ones here)
 	private final TransformationPass[] passes = { new AddIdentityResetPass(),
@@ -96,7 +99,8 @@ public class Hyst
 	// list of supported model generators (add new ones here)
 	private final ModelGenerator[] generators = { new IntegralChainGenerator(),
 			new NavigationGenerator(), new NamedNavigationGenerator(),
-			new SwitchedOscillatorGenerator(), new BuildGenerator(), new DrivetrainGenerator() };
+			new SwitchedOscillatorGenerator(), new BuildGenerator(), new DrivetrainGenerator(),
+			new SyntheticNetworkGenerator() };
 
 	public static String TOOL_NAME = "Hyst v1.6";
 
@@ -141,6 +145,7 @@ public class Hyst
 	// extracted from arguments
 	private ArrayList<String> xmlFilenames = new ArrayList<String>();
 	private String cfgFilename = null;
+	private String hystbinFilename = null; // binary snapshot input, instead of cfg/xml
 
 	// command line options
 	@Option(name = "-help", aliases = { "-h" }, usage = "print command-line usage")
@@ -257,6 +262,31 @@ public class Hyst
 	@Option(name = FLAG_DEBUG, aliases = { "-d" }, usage = "print debug (and verbose) output")
 	public boolean debugFlag = false;
 
+	public static final String FLAG_VALIDATE = "-validate";
+
+	public enum ValidationMode
+	{
+		FULL, // validate the whole model after every pass
+		INCREMENTAL, // only re-validate modes which were modified (can miss in-place changes)
+		OFF,
+	};
+
+	ValidationMode validationMode = ValidationMode.FULL;
+
+	@Option(name = FLAG_VALIDATE, usage = "model validation after each pass: full (default), incremental (faster, but doesn't detect expressions modified in place) or off", metaVar = "MODE")
+	public void setValidationMode(String mode) throws CmdLineException
+	{
+		try
+		{
+			validationMode = ValidationMode.valueOf(mode.toUpperCase());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new CmdLineException(parser, hystLocalizable, FLAG_VALIDATE
+					+ " expected one of full, incremental or off; got '" + mode + "'.");
+		}
+	}
+
 	///////// hidden options ///////////////
 
 	@Option(name = "-novalidate", hidden = true, usage = "disable model validation")
@@ -343,10 +373,19 @@ public class Hyst
 				cfgFilename = file;
 				gotCfg = true;
 			}
+			else if (file.endsWith(HystBinFormat.EXTENSION))
+			{
+				if (hystbinFilename != null)
+					throw new CmdLineException(parser, hystLocalizable,
+							"Multiple " + HystBinFormat.EXTENSION
+									+ " input files are not allowed.");
+
+				hystbinFilename = file;
+			}
 			else
 				throw new CmdLineException(parser, hystLocalizable,
-						"Unrecognized input file extension (expected .cfg or .xml): '" + file
-								+ "'");
+						"Unrecognized input file extension (expected .cfg, .xml or "
+								+ HystBinFormat.EXTENSION + "): '" + file + "'");
 		}
 	}
 
@@ -393,7 +432,19 @@ public class Hyst
 
 		parsePasses();
 
-		if (modelGenerator == null)
+		if (hystbinFilename != null)
+		{
+			if (modelGenerator != null || cfgFilename != null || xmlFilenames.size() > 0)
+				throw new CmdLineException(parser, hystLocalizable,
+						"A " + HystBinFormat.EXTENSION
+								+ " input cannot be combined with cfg/xml files or model generation.");
+
+			if (!new File(hystbinFilename).exists())
+				throw new CmdLineException(parser, hystLocalizable,
+						"Input " + HystBinFormat.EXTENSION + " file not found: '"
+								+ hystbinFilename + "'.");
+		}
+		else if (modelGenerator == null)
 		{
 			if (cfgFilename == null)
 				throw new CmdLineException(parser, hystLocalizable,
@@ -492,12 +543,17 @@ public class Hyst
 			Hyst.debugMode = Hyst.verboseMode = false;
 
 		if (noValidateFlag)
+			validationMode = ValidationMode.OFF;
+
+		if (validationMode == ValidationMode.OFF)
 		{
 			Configuration.DO_VALIDATION = false;
 			Hyst.log("Internal model validatation disabled.");
 		}
 		else
 			Configuration.DO_VALIDATION = true;
+
+		Configuration.INCREMENTAL_VALIDATION = (validationMode == ValidationMode.INCREMENTAL);
 	}
 
 	private ExitCode doTestPython()
@@ -603,6 +659,12 @@ public class Hyst
 														// geneartor
 				config = modelGenerator.generate(modelGenParam);
 			}
+			else if (hystbinFilename != null)
+			{
+				// load a previously-saved binary snapshot, skipping xml parsing
+				config = HystBinFormat.load(hystbinFilename);
+				config.validate();
+			}
 			else
 			{
 				// 1. import the SpaceExDocument
@@ -621,7 +683,15 @@ public class Hyst
 			}
 
 			// 5. run passes
-			runPasses(config);
+			try
+			{
+				runPasses(config);
+			}
+			finally
+			{
+				// incremental validation is only used between passes
+				Configuration.INCREMENTAL_VALIDATION = false;
+			}
 
 			// 6. run printer
 			runPrinter(toolPrinter, config);
@@ -682,7 +752,8 @@ public class Hyst
 	{
 		Expression.expressionPrinter = null; // should be assigned in printer
 
-		String originalFilename = StringOperations.join(" ", xmlFilenames.toArray(new String[] {}));
+		String originalFilename = hystbinFilename != null ? hystbinFilename
+				: StringOperations.join(" ", xmlFilenames.toArray(new String[] {}));
 
 		if (outputFilename != null)
 			printer.setOutputFile(outputFilename);
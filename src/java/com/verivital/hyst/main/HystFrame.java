@@ -17,6 +17,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Vector;
@@ -78,7 +79,8 @@ public class HystFrame extends JFrame implements ActionListener, WindowListener,
 	JButton runButton = new JButton("Convert");
 
 	JTextArea outputArea = new JTextArea();
-	StringBuffer outputBuffer = new StringBuffer();
+	GuiOutputSink outputSink = new GuiOutputSink(outputArea);
+	JButton saveOutputButton = new JButton("Save Output");
 
 	private Vector<String> passNames;
 	private ToolPrinter[] printers;
@@ -86,7 +88,6 @@ public class HystFrame extends JFrame implements ActionListener, WindowListener,
 
 	final static private JFileChooser fileChooser = new JFileChooser();
 	final private static String GUISTATE_FILENAME = ".hyst.xml";
-	private static boolean shouldUpdate = false;
 
 	public HystFrame(ToolPrinter[] printers, TransformationPass[] passes)
 	{
@@ -216,26 +217,35 @@ public class HystFrame extends JFrame implements ActionListener, WindowListener,
 
 		rv.add(sp, BorderLayout.CENTER);
 
+		JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		saveOutputButton.addActionListener(this);
+		buttonPanel.add(saveOutputButton);
+		rv.add(buttonPanel, BorderLayout.SOUTH);
+
 		return rv;
 	}
 
+	/**
+	 * Add a line of output. This can be called from any thread; the text area is updated in
+	 * batches.
+	 * 
+	 * @param s
+	 *            the line to add
+	 */
 	public void addOutput(final String s)
 	{
-		outputBuffer.append(s + "\n");
-
-		if (shouldUpdate == false)
-		{
-			shouldUpdate = true;
+		outputSink.append(s + "\n");
+	}
 
-			SwingUtilities.invokeLater(new Runnable()
-			{
-				public void run()
-				{
-					shouldUpdate = false;
-					outputArea.setText(outputBuffer.toString());
-				}
-			});
-		}
+	/**
+	 * Add text to the output as is, without ending the line. This can be called from any thread.
+	 * 
+	 * @param s
+	 *            the text to add
+	 */
+	public void addOutputText(final String s)
+	{
+		outputSink.append(s);
 	}
 
 	private JPanel makeOptionsPanel()
@@ -689,6 +699,7 @@ public class HystFrame extends JFrame implements ActionListener, WindowListener,
 	@Override
 	public void windowClosed(WindowEvent e)
 	{
+		outputSink.dispose();
 		saveGuiState();
 	}
 
@@ -730,8 +741,7 @@ public class HystFrame extends JFrame implements ActionListener, WindowListener,
 			else
 			{
 				// clear the output
-				outputBuffer.setLength(0);
-				outputArea.setText(outputBuffer.toString());
+				outputSink.clear();
 
 				tabs.setSelectedIndex(1);
 
@@ -754,6 +764,24 @@ public class HystFrame extends JFrame implements ActionListener, WindowListener,
 				saveGuiState();
 			}
 		}
+		else if (e.getSource() == saveOutputButton)
+		{
+			String s = getPath(false, "");
+
+			if (s != null)
+			{
+				try
+				{
+					outputSink.saveTo(new File(s));
+				}
+				catch (IOException ex)
+				{
+					JOptionPane.showMessageDialog(this,
+							"Error saving output: " + ex.getMessage(), "Error",
+							JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}
 		else if (e.getSource() == xmlButton)
 		{
 			String s = getPath(true, xmlTf.getText());
@@ -1,6 +1,7 @@
 package com.verivital.hyst.passes;
 
 import java.io.ByteArrayOutputStream;
+import java.util.EnumSet;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -12,6 +13,7 @@ import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.CmdLineRuntimeException;
 import com.verivital.hyst.util.Preconditions;
 import com.verivital.hyst.util.Preconditions.PreconditionsFailedException;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 /**
  * A transformation pass is a behavior which modifies a Configuration (Hybrid Automaton) object.
@@ -100,6 +102,8 @@ public abstract class TransformationPass
 		config = c;
 		runPass(params);
 
+		c.establishedPreconditions.retainAll(getPreservedPreconditions());
+
 		// validate modified configuration
 		try
 		{
@@ -114,6 +118,18 @@ public abstract class TransformationPass
 		}
 	}
 
+	/**
+	 * Get the preconditions which this pass never breaks: if they held before the pass, they still
+	 * hold afterwards, so they don't need to be rechecked by later passes and printers. By default
+	 * this is empty, since a pass may change anything in the model.
+	 * 
+	 * @return the preserved preconditions
+	 */
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
+	{
+		return EnumSet.noneOf(PreconditionsFlag.class);
+	}
+
 	/**
 	 * Get the longer version of the help text for this pass.
 	 * 
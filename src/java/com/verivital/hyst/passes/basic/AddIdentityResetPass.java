@@ -1,11 +1,15 @@
 package com.verivital.hyst.passes.basic;
 
+import java.util.Collection;
+import java.util.EnumSet;
+
 import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.passes.TransformationPass;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 // Adds identity resets to resets which don't have them
 public class AddIdentityResetPass extends TransformationPass
@@ -21,15 +25,33 @@ public class AddIdentityResetPass extends TransformationPass
 		BaseComponent ha = (BaseComponent) config.root;
 
 		for (AutomatonTransition t : ha.transitions)
+			addIdentityResets(t, ha.variables);
+	}
+
+	/**
+	 * Add x := x resets to a transition for the variables it doesn't reset
+	 * 
+	 * @param t
+	 *            the transition
+	 * @param variables
+	 *            the variables which should all have resets
+	 */
+	public static void addIdentityResets(AutomatonTransition t, Collection<String> variables)
+	{
+		for (String v : variables)
 		{
-			for (String v : ha.variables)
-			{
-				if (!t.reset.containsKey(v))
-					t.reset.put(v, new ExpressionInterval(new Variable(v)));
-			}
+			if (!t.reset.containsKey(v))
+				t.reset.put(v, new ExpressionInterval(new Variable(v)));
 		}
 	}
 
+	@Override
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
+	{
+		// only adds deterministic x := x resets
+		return EnumSet.allOf(PreconditionsFlag.class);
+	}
+
 	@Override
 	public String getCommandLineFlag()
 	{
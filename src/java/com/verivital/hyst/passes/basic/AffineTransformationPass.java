@@ -14,6 +14,7 @@ import com.verivital.hyst.grammar.formula.Operator;
 import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.Component;
+import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
@@ -35,6 +36,21 @@ public class AffineTransformationPass extends TransformationPass
 
 	@Override
 	protected void runPass()
+	{
+		run(config, varName);
+	}
+
+	/**
+	 * Convert the affine terms of a flat automaton in place, without going through the pass
+	 * interface (so the configuration's established preconditions are left alone). This is used by
+	 * the preconditions check.
+	 * 
+	 * @param config
+	 *            the configuration to convert, which must be flat
+	 * @param varName
+	 *            the name of the new affine variable
+	 */
+	public static void run(Configuration config, String varName)
 	{
 		BaseComponent ha = (BaseComponent) config.root;
 
@@ -190,18 +190,30 @@ public class ConvertHavocFlows extends TransformationPass
 		{
 			Operation o = e.asOperation();
 
-			Expression childA = o.children.get(0);
-			Expression childB = o.children.get(1);
-
 			if (o.op == Operator.AND)
 			{
-				Expression a = removeConditionWithVariable(childA, name);
-				Expression b = removeConditionWithVariable(childB, name);
+				ArrayList<Expression> kept = new ArrayList<Expression>();
+
+				for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+				{
+					Expression c = removeConditionWithVariable(conjunct, name);
 
-				rv = Expression.and(a, b);
+					if (c != Constant.TRUE)
+						kept.add(c);
+				}
+
+				if (kept.isEmpty())
+					rv = Constant.TRUE;
+				else if (kept.size() == 1)
+					rv = kept.get(0);
+				else
+					rv = new Operation(Operator.AND, kept);
 			}
 			else
 			{
+				Expression childA = o.children.get(0);
+				Expression childB = o.children.get(1);
+
 				if (childA instanceof Variable && ((Variable) childA).name.equals(name))
 					rv = Constant.TRUE;
 				else if (childB instanceof Variable && ((Variable) childB).name.equals(name))
@@ -1,5 +1,8 @@
 package com.verivital.hyst.passes.basic;
 
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -56,6 +59,14 @@ public class RemoveDiscreteUnreachablePass extends TransformationPass
 				i.remove();
 		}
 
+		// remove labels which were only used by unreachable transitions
+		HashSet<String> usedLabels = new HashSet<String>();
+
+		for (AutomatonTransition t : ha.transitions)
+			usedLabels.add(t.label);
+
+		ha.labels.retainAll(usedLabels);
+
 		// remove unreachable initial states
 		for (Iterator<Entry<String, Expression>> i = config.init.entrySet().iterator(); i
 				.hasNext();)
@@ -79,56 +90,53 @@ public class RemoveDiscreteUnreachablePass extends TransformationPass
 
 	private Set<String> constructReacahbleStates(BaseComponent ha)
 	{
-		HashSet<String> reachable = new HashSet<String>();
-		HashSet<String> next = new HashSet<String>();
+		// successors of each mode, computed once rather than scanning all transitions per mode
+		HashMap<String, Set<String>> successors = new HashMap<String, Set<String>>();
 
-		for (String s : config.init.keySet())
+		for (AutomatonTransition t : ha.transitions)
 		{
-			reachable.add(s);
+			Set<String> set = successors.get(t.from.name);
 
-			for (String successor : successorsOf(s, ha))
+			if (set == null)
 			{
-				if (!reachable.contains(successor))
-					next.add(successor);
+				set = new HashSet<String>();
+				successors.put(t.from.name, set);
 			}
+
+			set.add(t.to.name);
 		}
 
-		while (!next.isEmpty())
+		HashSet<String> reachable = new HashSet<String>();
+		ArrayDeque<String> next = new ArrayDeque<String>();
+
+		for (String s : config.init.keySet())
 		{
-			String s = next.iterator().next();
+			if (reachable.add(s))
+				next.add(s);
+		}
 
-			reachable.add(s);
+		while (!next.isEmpty())
+		{
+			Set<String> succ = successors.get(next.poll());
 
-			for (String successor : successorsOf(s, ha))
+			if (succ != null)
 			{
-				if (!reachable.contains(successor))
-					next.add(successor);
+				for (String successor : succ)
+				{
+					if (reachable.add(successor))
+						next.add(successor);
+				}
 			}
-
-			next.remove(s);
 		}
 
 		return reachable;
 	}
 
-	/**
-	 * Get the successor states of s in ha
-	 * 
-	 * @param s
-	 * @param ha
-	 * @return the set of sucessors
-	 */
-	private Set<String> successorsOf(String s, BaseComponent ha)
+	@Override
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
 	{
-		HashSet<String> rv = new HashSet<String>();
-
-		for (AutomatonTransition t : ha.transitions)
-		{
-			if (t.from.name.equals(s))
-				rv.add(t.to.name);
-		}
-
-		return rv;
+		// only removes modes, transitions and labels
+		return EnumSet.allOf(PreconditionsFlag.class);
 	}
 
 	@Override
@@ -47,7 +47,7 @@ public class RemoveSimpleUnsatInvariantsPass extends TransformationPass
 	 *            the expression to check
 	 * @return true if the expression is provably unsatisfiable
 	 */
-	private static boolean isUnsat(Expression e)
+	public static boolean isUnsat(Expression e)
 	{
 		boolean rv = false;
 
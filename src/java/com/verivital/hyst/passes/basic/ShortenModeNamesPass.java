@@ -1,5 +1,6 @@
 package com.verivital.hyst.passes.basic;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -10,6 +11,7 @@ import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.main.Hyst;
 import com.verivital.hyst.passes.TransformationPass;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 /**
  * A model transformation pass which shortens mode names. They will be renamed to mode_#, and the
@@ -26,6 +28,13 @@ public class ShortenModeNamesPass extends TransformationPass
 		return "Shorten Mode Names Pass";
 	}
 
+	@Override
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
+	{
+		// only mode names change
+		return EnumSet.allOf(PreconditionsFlag.class);
+	}
+
 	@Override
 	public String getCommandLineFlag()
 	{
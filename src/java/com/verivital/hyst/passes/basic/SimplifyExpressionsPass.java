@@ -1,9 +1,13 @@
 package com.verivital.hyst.passes.basic;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+
 import org.kohsuke.args4j.Option;
 
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.LutExpression;
 import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
 import com.verivital.hyst.ir.AutomatonExportException;
@@ -15,7 +19,9 @@ import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.passes.TransformationPass;
 import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.python.PythonUtil;
+import com.verivital.hyst.util.LutInterpolator;
 import com.verivital.hyst.util.Preconditions;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 /**
  * This pass attempts to simplify expressions in the automaton. Uses internal rules and not anything
@@ -99,172 +105,272 @@ public class SimplifyExpressionsPass extends TransformationPass
 
 	/**
 	 * Simplify a single expression and return it Boolean expressions are simplified to
-	 * Constant.FALSE or Constant.TRUE
+	 * Constant.FALSE or Constant.TRUE. Conjunctions and disjunctions are flattened into n-ary
+	 * operations. Lookup tables with numeric tables and constant inputs are evaluated.
 	 */
 	public static Expression simplifyExpression(Expression e)
 	{
-		Expression rv = simplifyExpressionRec(e);
+		Expression rv = e;
 
-		return rv;
-	}
+		if (e instanceof LutExpression)
+			rv = simplifyLut((LutExpression) e);
 
-	private static Expression simplifyExpressionRec(Expression e)
-	{
-		Expression rv = e;
+		// post-order traversal with an explicit stack, so deep expressions don't overflow the call
+		// stack; nextChild holds the index of the next child to visit for each operation
+		ArrayList<Operation> stack = new ArrayList<Operation>();
+		ArrayList<Integer> nextChild = new ArrayList<Integer>();
 
 		if (e instanceof Operation)
+			push(stack, nextChild, (Operation) e);
+
+		while (!stack.isEmpty())
 		{
-			Operation o = (Operation) e;
-			Operator op = o.op;
+			int top = stack.size() - 1;
+			Operation o = stack.get(top);
+			int index = nextChild.get(top);
 
-			for (int i = 0; i < o.children.size(); ++i)
+			if (index < o.children.size())
 			{
-				Expression child = o.children.get(i);
+				nextChild.set(top, index + 1);
+				Expression child = o.children.get(index);
 
-				o.children.set(i, simplifyExpressionRec(child));
+				if (child instanceof Operation)
+					push(stack, nextChild, (Operation) child);
+				else if (child instanceof LutExpression)
+					o.children.set(index, simplifyLut((LutExpression) child));
 			}
-
-			if (op == Operator.AND && o.getLeft() instanceof Constant)
+			else
 			{
-				// short-circuit AND (left)
-				if (o.getLeft().equals(Constant.FALSE))
-					rv = Constant.FALSE;
+				// all children are simplified, now simplify the operation itself
+				Expression simplified = simplifyOperation(o);
+
+				stack.remove(top);
+				nextChild.remove(top);
+
+				if (top == 0)
+					rv = simplified;
 				else
-					rv = o.getRight();
+					stack.get(top - 1).children.set(nextChild.get(top - 1) - 1, simplified);
 			}
-			else if (op == Operator.AND && o.getRight() instanceof Constant)
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Simplify the inputs of a lookup table, and evaluate it if they are all constants
+	 */
+	private static Expression simplifyLut(LutExpression lut)
+	{
+		Expression rv = lut;
+		boolean allConstant = true;
+
+		for (int i = 0; i < lut.inputs.length; ++i)
+		{
+			lut.inputs[i] = simplifyExpression(lut.inputs[i]);
+
+			if (!(lut.inputs[i] instanceof Constant))
+				allConstant = false;
+		}
+
+		if (allConstant && lut.table.isNumeric())
+		{
+			double[] vals = new double[lut.inputs.length];
+
+			for (int i = 0; i < vals.length; ++i)
+				vals[i] = ((Constant) lut.inputs[i]).getVal();
+
+			rv = new Constant(LutInterpolator.get(lut).evaluate(vals));
+		}
+
+		return rv;
+	}
+
+	private static void push(ArrayList<Operation> stack, ArrayList<Integer> nextChild, Operation o)
+	{
+		// merge nested conjunctions / disjunctions up front, so a long chain is visited as a single
+		// n-ary operation (rather than merging the lists at every level, which is quadratic)
+		if (o.op == Operator.AND || o.op == Operator.OR)
+			o.children = Expression.getOperands(o, o.op);
+
+		stack.add(o);
+		nextChild.add(0);
+	}
+
+	/**
+	 * Short-circuit an AND or OR operation (with any number of children), and merge nested operations
+	 * of the same operator into it
+	 */
+	private static Expression simplifyJunction(Operation o)
+	{
+		Expression rv = null;
+		Operator op = o.op;
+		ArrayList<Expression> operands = new ArrayList<Expression>();
+
+		for (Expression child : o.children)
+		{
+			if (child instanceof Constant)
 			{
-				// short-circuit AND (right)
-				if (o.getRight().equals(Constant.FALSE))
+				boolean isFalse = child.equals(Constant.FALSE);
+
+				if (op == Operator.AND && isFalse)
 					rv = Constant.FALSE;
-				else
-					rv = o.getLeft();
-			}
-			else if (op == Operator.OR && o.getLeft() instanceof Constant)
-			{
-				// short-circuit OR (left)
-				if (o.getLeft().equals(Constant.FALSE))
-					rv = o.getRight();
-				else
+				else if (op == Operator.OR && !isFalse)
 					rv = Constant.TRUE;
 			}
-			else if (op == Operator.OR && o.getRight() instanceof Constant)
+			else if (child instanceof Operation && ((Operation) child).op == op)
+				operands.addAll(((Operation) child).children);
+			else
+				operands.add(child);
+
+			if (rv != null)
+				break;
+		}
+
+		if (rv == null)
+		{
+			if (operands.isEmpty())
+				rv = (op == Operator.AND) ? Constant.TRUE : Constant.FALSE;
+			else if (operands.size() == 1)
+				rv = operands.get(0);
+			else
 			{
-				// short-circuit OR (right)
-				if (o.getRight().equals(Constant.FALSE))
-					rv = o.getLeft();
-				else
-					rv = Constant.TRUE;
+				o.children = operands;
+				rv = o;
 			}
-			else if (o.children.size() == 1 && o.children.get(0) instanceof Constant)
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Simplify a single operation, whose children have already been simplified
+	 */
+	private static Expression simplifyOperation(Operation o)
+	{
+		Expression rv = o;
+		Operator op = o.op;
+
+		if (op == Operator.AND || op == Operator.OR)
+			rv = simplifyJunction(o);
+		else if (o.children.size() == 1 && o.children.get(0) instanceof Constant)
+		{
+			double val = ((Constant) o.children.get(0)).getVal();
+
+			switch (op)
 			{
-				double val = ((Constant) o.children.get(0)).getVal();
-
-				switch (op)
-				{
-				case SUBTRACT:
-					rv = new Constant(-val);
-					break;
-				case COS:
-					rv = new Constant(Math.cos(val));
-					break;
-				case EXP:
-					rv = new Constant(Math.exp(val));
-					break;
-				case SIN:
-					rv = new Constant(Math.sin(val));
-					break;
-				case SQRT:
-					rv = new Constant(Math.sqrt(val));
-					break;
-				case TAN:
-					rv = new Constant(Math.tan(val));
-					break;
-				case LN:
-					rv = new Constant(Math.log(val));
-					break;
-				case NEGATIVE:
-					rv = new Constant(-val);
-					break;
-				default:
-					// should never come up
-					throw new AutomatonExportException("Unsupported unary operation: " + op);
-				}
+			case SUBTRACT:
+				rv = new Constant(-val);
+				break;
+			case COS:
+				rv = new Constant(Math.cos(val));
+				break;
+			case EXP:
+				rv = new Constant(Math.exp(val));
+				break;
+			case SIN:
+				rv = new Constant(Math.sin(val));
+				break;
+			case SQRT:
+				rv = new Constant(Math.sqrt(val));
+				break;
+			case TAN:
+				rv = new Constant(Math.tan(val));
+				break;
+			case LN:
+				rv = new Constant(Math.log(val));
+				break;
+			case NEGATIVE:
+				rv = new Constant(-val);
+				break;
+			default:
+				// should never come up
+				throw new AutomatonExportException("Unsupported unary operation: " + op);
 			}
-			else if (o.children.size() == 2 && o.getLeft() instanceof Constant
-					&& o.getRight() instanceof Constant)
+		}
+		else if (o.children.size() == 2 && o.getLeft() instanceof Constant
+				&& o.getRight() instanceof Constant)
+		{
+			// simplify constant comparisons / math
+
+			double left = ((Constant) o.getLeft()).getVal();
+			double right = ((Constant) o.getRight()).getVal();
+
+			switch (op)
 			{
-				// simplify constant comparisons / math
-
-				double left = ((Constant) o.getLeft()).getVal();
-				double right = ((Constant) o.getRight()).getVal();
-
-				switch (op)
-				{
-				case MULTIPLY:
-					rv = new Constant(left * right);
-					break;
-				case DIVIDE:
-					rv = new Constant(left / right);
-					break;
-				case ADD:
-					rv = new Constant(left + right);
-					break;
-				case SUBTRACT:
-					rv = new Constant(left - right);
-					break;
-				case POW:
-					rv = new Constant(Math.pow(left, right));
-					break;
-				case EQUAL:
-					rv = left == right ? Constant.TRUE : Constant.FALSE;
-					break;
-				case LESS:
-					rv = left < right ? Constant.TRUE : Constant.FALSE;
-					break;
-				case GREATER:
-					rv = left > right ? Constant.TRUE : Constant.FALSE;
-					break;
-				case LESSEQUAL:
-					rv = left <= right ? Constant.TRUE : Constant.FALSE;
-					break;
-				case GREATEREQUAL:
-					rv = left >= right ? Constant.TRUE : Constant.FALSE;
-					break;
-				case NOTEQUAL:
-					rv = left != right ? Constant.TRUE : Constant.FALSE;
-					break;
-				default:
-					throw new AutomatonExportException("Unsupported binary operation: " + op);
-				}
+			case MULTIPLY:
+				rv = new Constant(left * right);
+				break;
+			case DIVIDE:
+				rv = new Constant(left / right);
+				break;
+			case ADD:
+				rv = new Constant(left + right);
+				break;
+			case SUBTRACT:
+				rv = new Constant(left - right);
+				break;
+			case POW:
+				rv = new Constant(Math.pow(left, right));
+				break;
+			case EQUAL:
+				rv = left == right ? Constant.TRUE : Constant.FALSE;
+				break;
+			case LESS:
+				rv = left < right ? Constant.TRUE : Constant.FALSE;
+				break;
+			case GREATER:
+				rv = left > right ? Constant.TRUE : Constant.FALSE;
+				break;
+			case LESSEQUAL:
+				rv = left <= right ? Constant.TRUE : Constant.FALSE;
+				break;
+			case GREATEREQUAL:
+				rv = left >= right ? Constant.TRUE : Constant.FALSE;
+				break;
+			case NOTEQUAL:
+				rv = left != right ? Constant.TRUE : Constant.FALSE;
+				break;
+			default:
+				throw new AutomatonExportException("Unsupported binary operation: " + op);
 			}
-			// shortcut math operations
-			else if (op == Operator.ADD && o.getRight() instanceof Constant
-					&& ((Constant) o.getRight()).getVal() == 0)
-				rv = o.getLeft();
-			else if (op == Operator.ADD && o.getLeft() instanceof Constant
-					&& ((Constant) o.getLeft()).getVal() == 0)
-				rv = o.getRight();
-			else if (op == Operator.SUBTRACT && o.getRight() instanceof Constant
-					&& ((Constant) o.getRight()).getVal() == 0)
-				rv = o.getLeft();
-			else if (op == Operator.MULTIPLY && o.getRight() instanceof Constant
-					&& ((Constant) o.getRight()).getVal() == 0)
-				rv = new Constant(0);
-			else if (op == Operator.MULTIPLY && o.getLeft() instanceof Constant
-					&& ((Constant) o.getLeft()).getVal() == 0)
-				rv = new Constant(0);
-			else if (op == Operator.POW && o.getRight() instanceof Constant
-					&& ((Constant) o.getRight()).getVal() == 0)
-				rv = new Constant(1); // anything^0 = 1
-			else if (op == Operator.POW && o.getRight() instanceof Constant
-					&& ((Constant) o.getRight()).getVal() == 1)
-				rv = o.getLeft();
 		}
+		else if (o.children.size() != 2)
+		{
+			// the shortcuts below are for binary operations
+		}
+		// shortcut math operations
+		else if (op == Operator.ADD && o.getRight() instanceof Constant
+				&& ((Constant) o.getRight()).getVal() == 0)
+			rv = o.getLeft();
+		else if (op == Operator.ADD && o.getLeft() instanceof Constant
+				&& ((Constant) o.getLeft()).getVal() == 0)
+			rv = o.getRight();
+		else if (op == Operator.SUBTRACT && o.getRight() instanceof Constant
+				&& ((Constant) o.getRight()).getVal() == 0)
+			rv = o.getLeft();
+		else if (op == Operator.MULTIPLY && o.getRight() instanceof Constant
+				&& ((Constant) o.getRight()).getVal() == 0)
+			rv = new Constant(0);
+		else if (op == Operator.MULTIPLY && o.getLeft() instanceof Constant
+				&& ((Constant) o.getLeft()).getVal() == 0)
+			rv = new Constant(0);
+		else if (op == Operator.POW && o.getRight() instanceof Constant
+				&& ((Constant) o.getRight()).getVal() == 0)
+			rv = new Constant(1); // anything^0 = 1
+		else if (op == Operator.POW && o.getRight() instanceof Constant
+				&& ((Constant) o.getRight()).getVal() == 1)
+			rv = o.getLeft();
 
 		return rv;
 	}
 
+	@Override
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
+	{
+		return EnumSet.allOf(PreconditionsFlag.class);
+	}
+
 	@Override
 	public String getCommandLineFlag()
 	{
@@ -1,13 +1,10 @@
 package com.verivital.hyst.passes.basic;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 
-import com.verivital.hyst.grammar.formula.Expression;
-import com.verivital.hyst.grammar.formula.Operation;
-import com.verivital.hyst.grammar.formula.Operator;
+import org.kohsuke.args4j.Option;
+
 import com.verivital.hyst.ir.Component;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
@@ -15,6 +12,7 @@ import com.verivital.hyst.ir.network.ComponentInstance;
 import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.main.Hyst;
 import com.verivital.hyst.passes.TransformationPass;
+import com.verivital.hyst.util.DnfIterator;
 
 /**
  * This pass splits guards with disjunctions into multiple transitions.
@@ -22,11 +20,19 @@ import com.verivital.hyst.passes.TransformationPass;
  * For example, A -- (x == 1 || x == 2) --> B would be split into two transitions from A to B, one
  * with (x==1) and one with (x == 2)
  * 
+ * Guards are expanded into disjunctive normal form lazily (see DnfIterator), and disjuncts with
+ * contradictory interval constraints are dropped during the expansion. If a guard would expand into
+ * more than -max_disjuncts transitions, an error is raised before anything is expanded.
+ * 
  * @author Stanley Bak (October 2014)
  *
  */
 public class SplitDisjunctionGuardsPass extends TransformationPass
 {
+	@Option(name = "-max_disjuncts", usage = "maximum number of transitions a single guard can be "
+			+ "split into (0 = no limit)", metaVar = "NUM")
+	public long maxDisjuncts = DnfIterator.DEFAULT_MAX_DISJUNCTS;
+
 	@Override
 	public String getCommandLineFlag()
 	{
@@ -42,15 +48,15 @@ public class SplitDisjunctionGuardsPass extends TransformationPass
 	@Override
 	protected void runPass()
 	{
-		split(config.root);
+		splitRecursive(config.root, maxDisjuncts);
 	}
 
 	public static void split(Component root)
 	{
-		splitRecursive(root);
+		splitRecursive(root, DnfIterator.DEFAULT_MAX_DISJUNCTS);
 	}
 
-	private static void splitRecursive(Component c)
+	private static void splitRecursive(Component c, long maxDisjuncts)
 	{
 		if (c instanceof BaseComponent)
 		{
@@ -61,22 +67,29 @@ public class SplitDisjunctionGuardsPass extends TransformationPass
 
 			for (AutomatonTransition t : originalTransitions)
 			{
-				Collection<Expression> conditions = splitExpression(t.guard);
+				DnfIterator it = new DnfIterator(t.guard, true, maxDisjuncts);
 
-				if (conditions.size() > 1)
+				if (it.getExpansionSize() > 1)
 				{
 					Hyst.log("Splitting disjunctive guard '" + t.guard.toDefaultString()
-							+ "' in automaton " + ha.instanceName);
+							+ "' in automaton " + ha.instanceName + " (up to "
+							+ it.getExpansionSize() + " transitions)");
 
 					// remove the old one
 					ha.transitions.remove(t);
 
 					// add the new ones
-					for (Expression subCondition : conditions)
+					boolean added = false;
+
+					while (it.hasNext())
 					{
 						AutomatonTransition newT = t.copy(ha);
-						newT.guard = subCondition;
+						newT.guard = DnfIterator.toConjunction(it.next());
+						added = true;
 					}
+
+					if (!added)
+						Hyst.log("Guard is unsatisfiable; removed transition " + t);
 				}
 			}
 		}
@@ -86,31 +99,7 @@ public class SplitDisjunctionGuardsPass extends TransformationPass
 			NetworkComponent nc = (NetworkComponent) c;
 
 			for (ComponentInstance ci : nc.children.values())
-				splitRecursive(ci.child);
+				splitRecursive(ci.child, maxDisjuncts);
 		}
 	}
-
-	/**
-	 * split a disjunctive expression into several sub expressions
-	 * 
-	 * @param reset
-	 * @return
-	 */
-	private static Collection<Expression> splitExpression(Expression e)
-	{
-		Collection<Expression> rv = new LinkedList<Expression>();
-
-		// currently just split top-level disjunctions
-		if (e instanceof Operation && ((Operation) e).op == Operator.OR)
-		{
-			Operation o = (Operation) e;
-
-			rv.addAll(splitExpression(o.getLeft()));
-			rv.addAll(splitExpression(o.getRight()));
-		}
-		else // not a disjunction
-			rv.add(e);
-
-		return rv;
-	}
 }
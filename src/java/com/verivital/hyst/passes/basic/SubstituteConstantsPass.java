@@ -1,5 +1,6 @@
 package com.verivital.hyst.passes.basic;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -148,6 +149,15 @@ public class SubstituteConstantsPass extends TransformationPass
 		return vs.substitute(exp);
 	}
 
+	@Override
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
+	{
+		// substituted values may make expressions simplifiable, and create affine terms (a named
+		// constant is treated like a variable before substitution)
+		return EnumSet.complementOf(EnumSet.of(PreconditionsFlag.SIMPLIFY_EXPRESSIONS,
+				PreconditionsFlag.CONVERT_AFFINE_TERMS));
+	}
+
 	@Override
 	public String getCommandLineFlag()
 	{
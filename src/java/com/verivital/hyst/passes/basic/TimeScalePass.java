@@ -1,5 +1,6 @@
 package com.verivital.hyst.passes.basic;
 
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 
@@ -13,6 +14,7 @@ import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.passes.TransformationPass;
+import com.verivital.hyst.util.PreconditionsFlag;
 
 /**
  * A model transformation pass which re-scales time
@@ -34,6 +36,14 @@ public class TimeScalePass extends TransformationPass
 		return "Scale Time Pass";
 	}
 
+	@Override
+	protected EnumSet<PreconditionsFlag> getPreservedPreconditions()
+	{
+		// flows are multiplied by the scale
+		return EnumSet.complementOf(EnumSet.of(PreconditionsFlag.SIMPLIFY_EXPRESSIONS,
+				PreconditionsFlag.CONVERT_AFFINE_TERMS));
+	}
+
 	@Override
 	public String getCommandLineFlag()
 	{
@@ -4,10 +4,13 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import org.kohsuke.args4j.Option;
 
+import com.verivital.hyst.geometry.AffineForm;
 import com.verivital.hyst.geometry.HyperPoint;
+import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
 import com.verivital.hyst.grammar.formula.Constant;
@@ -30,8 +33,10 @@ import com.verivital.hyst.printers.PySimPrinter;
 import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.DoubleArrayOptionHandler;
+import com.verivital.hyst.util.IntervalFlowEnclosure;
 import com.verivital.hyst.util.Preconditions.PreconditionsFailedException;
 import com.verivital.hyst.util.PreconditionsFlag;
+import com.verivital.hyst.util.RangeExtractor;
 import com.verivital.hyst.util.StringOperations;
 
 public class ContinuizationPass extends TransformationPass
@@ -75,9 +80,15 @@ public class ContinuizationPass extends TransformationPass
 	@Option(name = "-times", required = true, handler = DoubleArrayOptionHandler.class, usage = "time domain boundaries", metaVar = "TIME1 TIME2 ...")
 	List<Double> times;
 
-	@Option(name = "-bloats", required = true, handler = DoubleArrayOptionHandler.class, usage = "bloating terms for each time domain", metaVar = "VAL1 VAL2 ...")
+	@Option(name = "-bloats", handler = DoubleArrayOptionHandler.class, usage = "bloating terms for each time domain (required unless -enclosure is used)", metaVar = "VAL1 VAL2 ...")
 	List<Double> bloats;
 
+	@Option(name = "-enclosure", usage = "compute derivative ranges using an outward-rounded flow enclosure, instead of simulation")
+	boolean useEnclosure = false;
+
+	@Option(name = "-enclosurestep", usage = "step size for the flow enclosure", metaVar = "STEP")
+	double enclosureStep = IntervalFlowEnclosure.DEFAULT_STEP;
+
 	public static String makeParamString(String var, String timeVar, double period,
 			boolean skipError, List<Double> times, List<Double> bloats)
 	{
@@ -101,6 +112,32 @@ public class ContinuizationPass extends TransformationPass
 		return rv.toString();
 	}
 
+	/**
+	 * Make the param string for using the validated flow enclosure to estimate ranges, rather than
+	 * simulation. Bloating terms are not needed in this case.
+	 */
+	public static String makeEnclosureParamString(String var, String timeVar, double period,
+			boolean skipError, List<Double> times)
+	{
+		StringBuffer rv = new StringBuffer();
+		rv.append("-var " + var);
+
+		if (timeVar != null)
+			rv.append(" -timevar " + timeVar);
+
+		rv.append(" -period " + period);
+
+		if (skipError == true)
+			rv.append(" -noerrormodes");
+
+		rv.append(" -times ");
+		rv.append(StringOperations.join(" ", times.toArray(new Double[] {})));
+
+		rv.append(" -enclosure");
+
+		return rv.toString();
+	}
+
 	@Override
 	public String getCommandLineFlag()
 	{
@@ -121,6 +158,9 @@ public class ContinuizationPass extends TransformationPass
 				+ "the 'range_adders' are combined with a simulation to determine the ranges of\n"
 				+ "the variables. The ranges are initially estimated from a simulation, then this gets increased by\n"
 				+ "range_adder. If you reach the error_range_ modes try increasing these values.\n\n"
+				+ "With -enclosure, the ranges are instead computed from a validated interval enclosure of\n"
+				+ "the flow (starting from the whole initial set), which is guaranteed to contain every\n"
+				+ "trajectory. No bloating terms are needed in this case, and python is not used.\n\n"
 				+ "If several partitions are used, the time_var_name must be provided, otherwise it can be omitted.";
 
 		return header;
@@ -308,18 +348,109 @@ public class ContinuizationPass extends TransformationPass
 	 */
 	public static ExpressionInterval simplifyExpressionWithIntervals(Expression e)
 	{
+		// computed first, since simplifyExpressionWithIntervalsRec may modify e
+		AffineForm affinePart = affineIntervalPart(e);
+
 		ExpressionInterval rv = simplifyExpressionWithIntervalsRec(e);
 
 		if (rv == null)
 			throw new AutomatonExportException(
 					"Expression simplification resulted in null: " + e.toDefaultString());
 
+		// copies of the same IntervalTerm are correlated, so the affine bound can be much tighter
+		// (for example, c - 2 * c with c := c + [0, 1] gives [-1, 0], rather than [-2, 1])
+		if (rv.getInterval() != null && affinePart != null)
+		{
+			Interval tight = Interval.intersection(rv.getInterval(), affinePart.toInterval());
+
+			if (tight != null)
+				rv.setInterval(tight.isExactly(0) ? null : tight);
+		}
+
 		// simplify expression to get rid of 0's
 		rv.setExpression(SimplifyExpressionsPass.simplifyExpression(rv.getExpression()));
 
 		return rv;
 	}
 
+	// the interval part of expressions without IntervalTerms
+	private static final AffineForm ZERO = AffineForm.constant(0);
+
+	/**
+	 * Get the interval part of an expression which may contain IntervalTerms, as an affine form
+	 * where each IntervalTerm (and its copies) has its own noise symbol. This supports the same
+	 * operations as simplifyExpressionWithIntervalsRec().
+	 * 
+	 * @param e
+	 *            the expression
+	 * @return the interval part (the constant 0 if there are no IntervalTerms), or null if the
+	 *         interval part can't be extracted
+	 */
+	private static AffineForm affineIntervalPart(Expression e)
+	{
+		AffineForm rv = ZERO;
+
+		if (e instanceof IntervalTerm)
+		{
+			IntervalTerm it = (IntervalTerm) e;
+			rv = AffineForm.fromInterval(it.i, it.symbol);
+		}
+		else if (e instanceof Operation)
+		{
+			Operation o = e.asOperation();
+			ArrayList<AffineForm> parts = new ArrayList<AffineForm>(o.children.size());
+			int numIntervals = 0;
+
+			for (Expression child : o.children)
+			{
+				AffineForm part = affineIntervalPart(child);
+
+				if (part == null)
+					return null;
+
+				if (part != ZERO)
+					++numIntervals;
+
+				parts.add(part);
+			}
+
+			if (numIntervals == 0)
+				rv = ZERO;
+			else if (o.op == Operator.NEGATIVE)
+				rv = parts.get(0).negate();
+			else if (o.op == Operator.ADD)
+			{
+				for (AffineForm part : parts)
+					rv = rv.add(part);
+			}
+			else if (o.op == Operator.SUBTRACT)
+				rv = parts.get(0).subtract(parts.get(1));
+			else if (o.op == Operator.MULTIPLY && numIntervals == 1)
+			{
+				// interval part times the product of the other (constant) factors
+				double product = 1;
+
+				for (int i = 0; i < o.children.size(); ++i)
+				{
+					Expression child = o.children.get(i);
+
+					if (parts.get(i) != ZERO)
+						rv = parts.get(i);
+					else if (child instanceof Constant)
+						product *= ((Constant) child).getVal();
+					else
+						return null;
+				}
+
+				rv = rv.multiply(product);
+			}
+			else
+				rv = null;
+		}
+
+		return rv;
+	}
+
 	public static ExpressionInterval simplifyExpressionWithIntervalsRec(Expression e)
 	{
 		ExpressionInterval rv = null;
@@ -620,6 +751,13 @@ public class ContinuizationPass extends TransformationPass
 	{
 		ConvertFromStandardForm.run(config);
 
+		if (useEnclosure)
+		{
+			enclosureRanges();
+			ConvertToStandardForm.run(config);
+			return;
+		}
+
 		// simulate from initial state
 		HyperPoint initPt = AutomatonUtil.getInitialPoint((BaseComponent) config.root, config);
 		String initMode = config.init.keySet().iterator().next();
@@ -659,6 +797,107 @@ public class ContinuizationPass extends TransformationPass
 		ConvertToStandardForm.run(config);
 	}
 
+	/**
+	 * Compute ranges of the cyber variable derivative in each region, using a flow enclosure (see
+	 * IntervalFlowEnclosure for how rounding is handled). The automaton should be in non-standard
+	 * form (a single mode, or an urgent initial mode with a single transition).
+	 */
+	private void enclosureRanges()
+	{
+		BaseComponent ha = (BaseComponent) config.root;
+		String initModeName = config.init.keySet().iterator().next();
+		AutomatonMode mode = ha.modes.get(initModeName);
+
+		TreeMap<String, Interval> initRanges = RangeExtractor
+				.getVariableRanges(config.init.get(initModeName), "initial states");
+
+		if (mode.urgent)
+		{
+			// apply the reset of the urgent transition (guards are ignored, which is an
+			// overapproximation)
+			AutomatonTransition at = null;
+
+			for (AutomatonTransition t : ha.transitions)
+			{
+				if (t.from != mode)
+					continue;
+
+				if (at != null)
+					throw new AutomatonExportException("Urgent initial mode " + mode.name
+							+ " has more than one outgoing transition; the flow enclosure "
+							+ "requires a single one.");
+
+				at = t;
+			}
+
+			if (at == null)
+				throw new AutomatonExportException(
+						"Urgent initial mode " + mode.name + " has no outgoing transition.");
+
+			TreeMap<String, Interval> resetRanges = new TreeMap<String, Interval>(initRanges);
+
+			for (Entry<String, ExpressionInterval> e : at.reset.entrySet())
+			{
+				ExpressionInterval ei = e.getValue();
+				Interval i = Interval.intervalEvaluate(ei.getExpression(), initRanges);
+
+				if (ei.getInterval() != null)
+					i = Interval.add(i, ei.getInterval());
+
+				resetRanges.put(e.getKey(), i);
+			}
+
+			initRanges = resetRanges;
+			mode = at.to;
+		}
+
+		HyperRectangle initBox = new HyperRectangle(ha.variables.size());
+
+		for (int i = 0; i < ha.variables.size(); ++i)
+		{
+			String v = ha.variables.get(i);
+			Interval range = initRanges.get(v);
+
+			if (range == null)
+				throw new AutomatonExportException("Initial states do not bound variable '" + v
+						+ "', which is needed for the flow enclosure.");
+
+			initBox.dims[i] = range;
+		}
+
+		ArrayList<Interval> times = new ArrayList<Interval>();
+		ArrayList<Double> breakpoints = new ArrayList<Double>();
+
+		for (DomainValues d : domains)
+		{
+			times.add(new Interval(d.startTime, d.endTime));
+			breakpoints.add(d.endTime);
+		}
+
+		IntervalFlowEnclosure enclosure = new IntervalFlowEnclosure(ha.variables,
+				mode.flowDynamics);
+		enclosure.setStepSize(enclosureStep);
+		enclosure.compute(initBox, domains.get(domains.size() - 1).endTime, breakpoints);
+
+		List<Interval> ranges = enclosure.derivativeRanges(varName, times);
+
+		for (int index = 0; index < domains.size(); ++index)
+		{
+			DomainValues dv = domains.get(index);
+			dv.range = ranges.get(index);
+		}
+
+		Hyst.log("Ranges from flow enclosure were:");
+		logAllRanges();
+
+		// bloat ranges (if bloating terms were given)
+		for (DomainValues dv : domains)
+		{
+			dv.range.max += dv.bloat;
+			dv.range.min -= dv.bloat;
+		}
+	}
+
 	private void logAllRanges()
 	{
 		for (DomainValues dv : domains)
@@ -677,6 +916,19 @@ public class ContinuizationPass extends TransformationPass
 		if (!config.root.variables.contains(varName))
 			throw new AutomatonExportException("Varname '" + varName + "' not found in automaton.");
 
+		if (bloats == null)
+		{
+			if (!useEnclosure)
+				throw new AutomatonExportException(
+						"Bloat values are required, unless the -enclosure flag is used.");
+
+			// enclosure ranges are sound (up to rounding), no bloating needed
+			bloats = new ArrayList<Double>();
+
+			for (int i = 0; i < times.size(); ++i)
+				bloats.add(0.0);
+		}
+
 		// for every time domain, you should have a corresponding bloat defined
 		if (times.size() != bloats.size())
 			throw new AutomatonExportException("Number of bloat values (" + bloats.size()
@@ -836,15 +1088,24 @@ public class ContinuizationPass extends TransformationPass
 	{
 		Interval i;
 
+		// copies of a term are the same unknown value, so they share a noise symbol (see AffineForm)
+		final long symbol;
+
 		public IntervalTerm(Interval i)
+		{
+			this(i, AffineForm.newSymbol());
+		}
+
+		private IntervalTerm(Interval i, long symbol)
 		{
 			this.i = new Interval(i);
+			this.symbol = symbol;
 		}
 
 		@Override
 		public Expression copy()
 		{
-			return new IntervalTerm(i);
+			return new IntervalTerm(i, symbol);
 		}
 
 		@Override
@@ -4,8 +4,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.kohsuke.args4j.Option;
 
 import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.HyperRectangle;
@@ -28,7 +36,6 @@ import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.main.Hyst;
 import com.verivital.hyst.passes.TransformationPass;
 import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
-import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.python.PythonUtil;
 import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.PreconditionsFlag;
@@ -37,6 +44,10 @@ import com.verivital.hyst.util.StringOperations;
 /**
  * A model transformation pass which converts look-up tables
  * 
+ * Each cell of the table becomes a mode, whose dynamics are the n-linear interpolation of the
+ * table values at the cell's corners. With -merge, adjacent cells whose interpolations agree are
+ * combined into a single mode.
+ * 
  * @author Stanley Bak (October 2014)
  *
  */
@@ -44,6 +55,17 @@ public class ConvertLutFlowsPass extends TransformationPass
 {
 	public static int MAX_CONVERSIONS = 1000;
 
+	@Option(name = "-simplify", usage = "how to simplify the interpolated dynamics in each cell: "
+			+ "internal, python or none (default: internal)", metaVar = "MODE")
+	private String simplifyParam = null;
+
+	@Option(name = "-merge", usage = "merge adjacent cells whose interpolation coefficients "
+			+ "differ by at most this tolerance (negative = no merging)", metaVar = "TOL")
+	private double mergeTol = -1;
+
+	// the simplification mode used in the current run
+	private int simplify = SIMPLIFY_INTERNAL;
+
 	@Override
 	public String getCommandLineFlag()
 	{
@@ -64,14 +86,31 @@ public class ConvertLutFlowsPass extends TransformationPass
 					"Only BaseComponents are supported until the IR is updated to support"
 							+ "checking if a mode is initial (github issue #10).");
 
+		if (simplifyParam == null)
+			simplify = simplifyMode;
+		else if (simplifyParam.equals("internal"))
+			simplify = SIMPLIFY_INTERNAL;
+		else if (simplifyParam.equals("python"))
+			simplify = SIMPLIFY_PYTHON;
+		else if (simplifyParam.equals("none"))
+			simplify = SIMPLIFY_NONE;
+		else
+			throw new AutomatonExportException(
+					"Unknown -simplify mode (expected internal, python or none): "
+							+ simplifyParam);
+
 		convertLuts(config.root);
 	}
 
-	public static int SIMPLIFY_PYTHON = 0;
-	public static int SIMPLIFY_INTERNAL = 1;
-	public static int SIMPLIFY_NONE = 2;
+	public static final int SIMPLIFY_PYTHON = 0;
+	public static final int SIMPLIFY_INTERNAL = 1;
+	public static final int SIMPLIFY_NONE = 2;
 
-	public static int simplifyMode = SIMPLIFY_PYTHON;
+	// default simplification mode, if -simplify is not given
+	public static int simplifyMode = SIMPLIFY_INTERNAL;
+
+	// coefficients smaller than this are set to zero when simplifying interpolations
+	private static final double CHOP_TOL = 1e-8;
 
 	public ConvertLutFlowsPass()
 	{
@@ -84,8 +123,6 @@ public class ConvertLutFlowsPass extends TransformationPass
 
 		// urgent modes are supported
 		preconditions.skip(PreconditionsFlag.NO_URGENT);
-
-		simplifyMode = PythonBridge.hasPython() ? SIMPLIFY_PYTHON : SIMPLIFY_INTERNAL;
 	}
 
 	private void convertLuts(Component c)
@@ -200,9 +237,13 @@ public class ConvertLutFlowsPass extends TransformationPass
 	 */
 	public void convertFlowInMode(AutomatonMode am, String variable, LutExpression lut)
 	{
-		ArrayList<AutomatonMode> newModes = createLutModes(am, lut);
+		ArrayList<LutCell> cells = createLutCells(lut);
 
-		createDynamicsAndTransitions(am, variable, lut);
+		createCellFlows(am, variable, lut, cells);
+
+		ArrayList<AutomatonMode> newModes = createLutModes(am, cells);
+
+		createDynamicsAndTransitions(am, variable, lut, cells);
 
 		fixOutgoingTransitions(am, newModes);
 
@@ -210,29 +251,322 @@ public class ConvertLutFlowsPass extends TransformationPass
 	}
 
 	/**
-	 * Should this value be skipped? We create modes between two table values, i and i + 1, so if
-	 * the current value is the last one in any dimension, we skip it
+	 * A (possibly merged) box of table cells, which becomes a single mode. Cell i in some dimension
+	 * is the region between breakpoints i and i + 1.
+	 */
+	private static class LutCell
+	{
+		int[] lo; // lowest cell index in each dimension
+		int[] hi; // highest cell index in each dimension (inclusive)
+		double[] coefficients; // interpolation coefficients, or null
+		Expression flow; // the new flow for the variable containing the lut
+		AutomatonMode mode;
+
+		LutCell(int[] lo, int[] hi, double[] coefficients)
+		{
+			this.lo = lo;
+			this.hi = hi;
+			this.coefficients = coefficients;
+		}
+
+		/**
+		 * Get the mode name for this cell, for example on_1_2 or (if merged) on_0to3_2
+		 */
+		String getName(String prefix)
+		{
+			StringBuilder rv = new StringBuilder(prefix);
+
+			for (int d = 0; d < lo.length; ++d)
+			{
+				rv.append("_");
+				rv.append(lo[d]);
+
+				if (hi[d] != lo[d])
+					rv.append("to" + hi[d]);
+			}
+
+			return rv.toString();
+		}
+	}
+
+	/**
+	 * Get the number of cells in each dimension of a lut (one less than the number of
+	 * breakpoints)
+	 */
+	private static int[] getNumCells(LutExpression lut)
+	{
+		int[] rv = new int[lut.breakpoints.length];
+
+		for (int d = 0; d < rv.length; ++d)
+			rv[d] = lut.breakpoints[d].length - 1;
+
+		return rv;
+	}
+
+	/**
+	 * Get the total number of cells in a lut
+	 */
+	private static int getTotalCells(int[] numCells)
+	{
+		int rv = 1;
+
+		for (int n : numCells)
+			rv *= n;
+
+		return rv;
+	}
+
+	/**
+	 * Advance an index list to the next index within the box [lo, hi], with the first dimension
+	 * changing fastest (the same order as iterating over a MatrixExpression)
 	 * 
-	 * @param indexList
-	 *            the index
-	 * @param m
-	 *            the table data
-	 * @return true iff we're at the last entry in any dimension
+	 * @return false if the iteration is done
+	 */
+	private static boolean nextIndex(int[] cur, int[] lo, int[] hi)
+	{
+		for (int d = 0; d < cur.length; ++d)
+		{
+			if (cur[d] < hi[d])
+			{
+				++cur[d];
+				return true;
+			}
+
+			cur[d] = lo[d];
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the flat offset of a cell index
 	 */
-	private boolean shouldSkip(int[] indexList, MatrixExpression m)
+	private static int cellOffset(int[] index, int[] numCells)
 	{
-		boolean skip = false;
+		int rv = 0;
+		int multiplier = 1;
 
-		for (int d = 0; d < indexList.length; ++d)
+		for (int d = 0; d < index.length; ++d)
 		{
-			if (indexList[d] == m.getDimWidth(d) - 1)
+			rv += multiplier * index[d];
+			multiplier *= numCells[d];
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the range of the lut inputs within a cell
+	 */
+	private static Interval[] getCellRanges(LutExpression lut, int[] index)
+	{
+		Interval[] rv = new Interval[index.length];
+
+		for (int d = 0; d < index.length; ++d)
+			rv[d] = new Interval(lut.breakpoints[d][index[d]], lut.breakpoints[d][index[d] + 1]);
+
+		return rv;
+	}
+
+	/**
+	 * Partition the lut cells into boxes, one per mode. If mergeTol is nonnegative, adjacent cells
+	 * whose interpolating polynomials agree within the tolerance are greedily grown into larger
+	 * boxes. Otherwise, each cell is its own box.
+	 * 
+	 * @param lut
+	 *            the lut
+	 * @return the list of boxes, in the order of their lowest cell
+	 */
+	private ArrayList<LutCell> createLutCells(LutExpression lut)
+	{
+		int[] numCells = getNumCells(lut);
+		int total = getTotalCells(numCells);
+		int[] zero = new int[numCells.length];
+		int[] top = new int[numCells.length];
+
+		for (int d = 0; d < numCells.length; ++d)
+			top[d] = numCells[d] - 1;
+
+		// the interpolation coefficients of every cell are only needed for merging
+		double[][] coefficients = new double[total][];
+		boolean canMerge = mergeTol >= 0;
+
+		if (canMerge)
+		{
+			int[] cur = new int[numCells.length];
+
+			do
 			{
-				skip = true;
-				break;
+				double[] c = interpolationCoefficients(lut, cur, getCellRanges(lut, cur));
+
+				if (c == null)
+				{
+					Hyst.log("LUT cells will not be merged, since the table has non-numeric "
+							+ "entries.");
+					canMerge = false;
+					break;
+				}
+
+				coefficients[cellOffset(cur, numCells)] = c;
+			} while (nextIndex(cur, zero, top));
+		}
+
+		ArrayList<LutCell> rv = new ArrayList<LutCell>();
+		LutCell[] owner = new LutCell[total];
+		int[] cur = new int[numCells.length];
+
+		do
+		{
+			if (owner[cellOffset(cur, numCells)] != null)
+				continue;
+
+			double[] seed = coefficients[cellOffset(cur, numCells)];
+			LutCell cell = new LutCell(Arrays.copyOf(cur, cur.length),
+					Arrays.copyOf(cur, cur.length), seed);
+
+			// grow the box one dimension at a time, as long as the whole next slab matches
+			for (int d = 0; canMerge && d < numCells.length; ++d)
+			{
+				while (cell.hi[d] + 1 < numCells[d])
+				{
+					int[] slabLo = Arrays.copyOf(cell.lo, cell.lo.length);
+					int[] slabHi = Arrays.copyOf(cell.hi, cell.hi.length);
+					slabLo[d] = slabHi[d] = cell.hi[d] + 1;
+
+					if (!slabMatches(slabLo, slabHi, numCells, owner, coefficients, seed))
+						break;
+
+					++cell.hi[d];
+				}
+			}
+
+			int[] inner = Arrays.copyOf(cell.lo, cell.lo.length);
+
+			do
+			{
+				owner[cellOffset(inner, numCells)] = cell;
+			} while (nextIndex(inner, cell.lo, cell.hi));
+
+			rv.add(cell);
+		} while (nextIndex(cur, zero, top));
+
+		if (canMerge)
+			Hyst.log("Merged " + total + " LUT cells into " + rv.size() + " modes.");
+
+		return rv;
+	}
+
+	/**
+	 * Check if every cell in a box is unassigned and has interpolation coefficients within mergeTol
+	 * of the seed's
+	 */
+	private boolean slabMatches(int[] lo, int[] hi, int[] numCells, LutCell[] owner,
+			double[][] coefficients, double[] seed)
+	{
+		int[] cur = Arrays.copyOf(lo, lo.length);
+
+		do
+		{
+			int offset = cellOffset(cur, numCells);
+
+			if (owner[offset] != null)
+				return false;
+
+			double[] c = coefficients[offset];
+
+			for (int i = 0; i < c.length; ++i)
+			{
+				if (Math.abs(c[i] - seed[i]) > mergeTol)
+					return false;
+			}
+		} while (nextIndex(cur, lo, hi));
+
+		return true;
+	}
+
+	/**
+	 * Compute the new flow for the variable containing the lut, for each cell. The interpolation
+	 * in each cell is independent, so this is done in parallel, except when simplifying using
+	 * python (there is a single python process).
+	 * 
+	 * @param original
+	 *            the original mode
+	 * @param variableWithLut
+	 *            the variable who's flow contains a LUT subexpression
+	 * @param lut
+	 *            the LUT subexpression to replace
+	 * @param cells
+	 *            the cells, flow is assigned in each one
+	 */
+	private void createCellFlows(AutomatonMode original, String variableWithLut,
+			final LutExpression lut, ArrayList<LutCell> cells)
+	{
+		final Expression originalFlow = original.flowDynamics.get(variableWithLut)
+				.getExpression();
+		final int mode = simplify;
+
+		if (mode == SIMPLIFY_PYTHON || cells.size() == 1)
+		{
+			for (LutCell cell : cells)
+				cell.flow = makeCellFlow(originalFlow, lut, cell, mode);
+
+			return;
+		}
+
+		int threads = Math.max(1,
+				Math.min(cells.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try
+		{
+			ArrayList<Future<Expression>> results = new ArrayList<Future<Expression>>();
+
+			for (final LutCell cell : cells)
+			{
+				results.add(pool.submit(new Callable<Expression>()
+				{
+					@Override
+					public Expression call()
+					{
+						return makeCellFlow(originalFlow, lut, cell, mode);
+					}
+				}));
 			}
+
+			for (int i = 0; i < cells.size(); ++i)
+				cells.get(i).flow = results.get(i).get();
+		}
+		catch (InterruptedException ex)
+		{
+			throw new AutomatonExportException("Interrupted while converting LUT", ex);
 		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
 
-		return skip;
+			throw new AutomatonExportException("Error while converting LUT", ex);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Make the flow expression for a single cell, by replacing the lut with its interpolation
+	 */
+	private static Expression makeCellFlow(Expression originalFlow, LutExpression lut,
+			LutCell cell, int mode)
+	{
+		Expression interpolation;
+
+		if (cell.coefficients != null && mode == SIMPLIFY_INTERNAL)
+			interpolation = coefficientsToExpression(cell.coefficients, lut.inputs, CHOP_TOL);
+		else
+			interpolation = nLinearInterpolation(lut, cell.lo, getCellRanges(lut, cell.lo), mode);
+
+		return replaceLutSubexpression(originalFlow, lut, interpolation);
 	}
 
 	/**
@@ -289,34 +623,26 @@ public class ConvertLutFlowsPass extends TransformationPass
 	}
 
 	/**
-	 * Create the AutomatonModes corresponding to this lut. This does not create dynamics/invariants
-	 * or transitions.
+	 * Create the AutomatonModes corresponding to the lut cells. This does not create
+	 * dynamics/invariants or transitions.
 	 * 
 	 * @param original
 	 *            the original location
-	 * @param variableWithLut
-	 *            the variable with dynamics that contains a look up table
-	 * @param lut
-	 *            the subexpression we're splitting
+	 * @param cells
+	 *            the cells of the table, mode is assigned in each one
 	 * @return the created modes
 	 */
-	private ArrayList<AutomatonMode> createLutModes(AutomatonMode original, LutExpression lut)
+	private ArrayList<AutomatonMode> createLutModes(AutomatonMode original,
+			ArrayList<LutCell> cells)
 	{
 		ArrayList<AutomatonMode> rv = new ArrayList<AutomatonMode>();
 		BaseComponent ha = original.automaton;
 
-		for (Entry<int[], Expression> e : lut.table)
+		for (LutCell cell : cells)
 		{
-			int[] indexList = e.getKey();
+			cell.mode = ha.createMode(cell.getName(original.name));
 
-			if (shouldSkip(indexList, lut.table))
-				continue;
-
-			// shouldn't skip, construct mode
-			AutomatonMode am = ha
-					.createMode(original.name + "_" + StringOperations.join("_", indexList));
-
-			rv.add(am);
+			rv.add(cell.mode);
 		}
 
 		return rv;
@@ -331,25 +657,33 @@ public class ConvertLutFlowsPass extends TransformationPass
 	 *            the variable who's flow contains a LUT subexpression
 	 * @param lut
 	 *            the LUT subexpression to replace
+	 * @param cells
+	 *            the cells of the table, with modes and flows already assigned
 	 */
 	private void createDynamicsAndTransitions(AutomatonMode original, String variableWithLut,
-			LutExpression lut)
+			LutExpression lut, ArrayList<LutCell> cells)
 	{
 		BaseComponent ha = original.automaton;
 		int tableDims = lut.table.getNumDims();
+		int[] numCells = getNumCells(lut);
+		LutCell[] owner = new LutCell[getTotalCells(numCells)];
 
-		for (Entry<int[], Expression> e : lut.table)
+		for (LutCell cell : cells)
 		{
-			int[] indexList = e.getKey();
+			int[] cur = Arrays.copyOf(cell.lo, cell.lo.length);
 
-			if (shouldSkip(indexList, lut.table))
-				continue;
+			do
+			{
+				owner[cellOffset(cur, numCells)] = cell;
+			} while (nextIndex(cur, cell.lo, cell.hi));
+		}
 
-			String name = original.name + "_" + StringOperations.join("_", indexList);
-			AutomatonMode am = ha.modes.get(name);
-			am.invariant = original.invariant.copy();
+		ExpressionInterval originalExpInt = original.flowDynamics.get(variableWithLut);
 
-			Interval[] rangeList = new Interval[tableDims];
+		for (LutCell cell : cells)
+		{
+			AutomatonMode am = cell.mode;
+			am.invariant = original.invariant.copy();
 
 			// create dynamics for all other variables
 			for (String var : ha.variables)
@@ -361,115 +695,101 @@ public class ConvertLutFlowsPass extends TransformationPass
 				}
 			}
 
-			// this loop populates range list, which is used to create the
-			// dynamics
-			for (int varIndex = 0; varIndex < tableDims; ++varIndex)
-			{
-				int indexInTable = indexList[varIndex];
-				double[] breakpoints = lut.breakpoints[varIndex];
-				Constant leftBreakpoint = new Constant(breakpoints[indexInTable]);
-				Constant rightBreakpoint = new Constant(breakpoints[indexInTable + 1]); // in
-																						// bounds
-																						// because
-																						// shouldSkip
-																						// was
-																						// false
-
-				rangeList[varIndex] = new Interval(leftBreakpoint.getVal(),
-						rightBreakpoint.getVal());
-			}
-
 			// create dynamics for variableWithLut
 			// must be done before creating transitions, since inputs may use
 			// variableWithLut
-			Expression replaceLutExpression = nLinearInterpolation(lut, indexList, rangeList);
-			ExpressionInterval originalExpInt = original.flowDynamics.get(variableWithLut);
-
-			Expression newFlow = replaceLutSubexpression(originalExpInt.getExpression(), lut,
-					replaceLutExpression);
-
 			Interval newI = originalExpInt.getInterval() == null ? null
 					: originalExpInt.getInterval().copy();
-			am.flowDynamics.put(variableWithLut, new ExpressionInterval(newFlow, newI));
+			am.flowDynamics.put(variableWithLut, new ExpressionInterval(cell.flow, newI));
 
 			// this loop accumulates the invariant, and creates neighbor
 			// transitions
 			for (int varIndex = 0; varIndex < tableDims; ++varIndex)
 			{
 				Expression inputExpr = lut.inputs[varIndex];
-				int indexInTable = indexList[varIndex];
 				double[] breakpoints = lut.breakpoints[varIndex];
-				Constant leftBreakpoint = new Constant(breakpoints[indexInTable]);
-				Constant rightBreakpoint = new Constant(breakpoints[indexInTable + 1]); // in
-																						// bounds
-																						// because
-																						// shouldSkip
-																						// was
-																						// false
 
 				// if there's a left neighbor
-				if (indexInTable > 0)
+				if (cell.lo[varIndex] > 0)
 				{
+					Constant leftBreakpoint = new Constant(breakpoints[cell.lo[varIndex]]);
 					Expression inRange = new Operation(inputExpr, Operator.GREATEREQUAL,
 							leftBreakpoint);
 
 					// accumulate inRange into invariant
 					am.invariant = Expression.and(am.invariant, inRange);
 
-					// add transition to left neighbor
+					// add transitions to left neighbors
 					Expression guard = new Operation(inputExpr, Operator.LESSEQUAL, leftBreakpoint);
-					int[] leftIndexList = Arrays.copyOf(indexList, indexList.length);
-					--leftIndexList[varIndex];
-					String leftName = original.name + "_"
-							+ StringOperations.join("_", leftIndexList);
-					AutomatonMode leftMode = ha.modes.get(leftName);
-
-					if (leftMode == null)
-						throw new AutomatonExportException(
-								"Left mode named '" + leftName + "' not found in automaton");
-
 					Expression goingLeft = new Operation(Operator.LESSEQUAL,
 							AutomatonUtil.derivativeOf(inputExpr, asExpressionMap(am)),
 							new Constant(0));
 
-					ha.createTransition(am, leftMode).guard = Expression.and(guard, goingLeft);
+					for (LutCell neighbor : getNeighbors(cell, varIndex, cell.lo[varIndex] - 1,
+							numCells, owner))
+						ha.createTransition(am, neighbor.mode).guard = Expression.and(guard,
+								goingLeft);
 				}
 
-				// if there's a right neighbor (3 breakpoints = 2 modes which
+				// if there's a right neighbor (3 breakpoints = 2 cells which
 				// means only index 0 has a right neighbor)
-				int numModes = breakpoints.length - 1;
-
-				if (indexInTable < numModes - 1)
+				if (cell.hi[varIndex] < numCells[varIndex] - 1)
 				{
+					Constant rightBreakpoint = new Constant(breakpoints[cell.hi[varIndex] + 1]);
 					Expression inRange = new Operation(inputExpr, Operator.LESSEQUAL,
 							rightBreakpoint);
 
 					// accumulate inRange into invariant
 					am.invariant = Expression.and(am.invariant, inRange);
 
-					// add transition to right neighbor
+					// add transitions to right neighbors
 					Expression guard = new Operation(inputExpr, Operator.GREATEREQUAL,
 							rightBreakpoint);
-					int[] rightIndexList = Arrays.copyOf(indexList, indexList.length);
-					++rightIndexList[varIndex];
-					String rightName = original.name + "_"
-							+ StringOperations.join("_", rightIndexList);
-					AutomatonMode rightMode = ha.modes.get(rightName);
-
-					if (rightMode == null)
-						throw new AutomatonExportException(
-								"Right mode named '" + rightName + "' not found in automaton");
-
 					Expression goingRight = new Operation(Operator.GREATEREQUAL,
 							AutomatonUtil.derivativeOf(inputExpr, asExpressionMap(am)),
 							new Constant(0));
 
-					ha.createTransition(am, rightMode).guard = Expression.and(guard, goingRight);
+					for (LutCell neighbor : getNeighbors(cell, varIndex, cell.hi[varIndex] + 1,
+							numCells, owner))
+						ha.createTransition(am, neighbor.mode).guard = Expression.and(guard,
+								goingRight);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Get the (distinct) cells which touch a face of the passed-in cell
+	 * 
+	 * @param cell
+	 *            the cell
+	 * @param dim
+	 *            the dimension of the face
+	 * @param index
+	 *            the cell index of the neighbors in dimension dim
+	 * @param numCells
+	 *            the number of cells in each dimension
+	 * @param owner
+	 *            the cell which owns each flat offset
+	 * @return the neighbors, in iteration order
+	 */
+	private static Collection<LutCell> getNeighbors(LutCell cell, int dim, int index,
+			int[] numCells, LutCell[] owner)
+	{
+		LinkedHashSet<LutCell> rv = new LinkedHashSet<LutCell>();
+		int[] lo = Arrays.copyOf(cell.lo, cell.lo.length);
+		int[] hi = Arrays.copyOf(cell.hi, cell.hi.length);
+		lo[dim] = hi[dim] = index;
+		int[] cur = Arrays.copyOf(lo, lo.length);
+
+		do
+		{
+			rv.add(owner[cellOffset(cur, numCells)]);
+		} while (nextIndex(cur, lo, hi));
+
+		return rv;
+	}
+
 	/**
 	 * Return a mode's expression map from the dynamics
 	 * 
@@ -499,7 +819,7 @@ public class ConvertLutFlowsPass extends TransformationPass
 	 *            the expression to use in place of lut
 	 * @return a copy of the complete expression
 	 */
-	private Expression replaceLutSubexpression(Expression expression, LutExpression lut,
+	private static Expression replaceLutSubexpression(Expression expression, LutExpression lut,
 			Expression replaceLutExpression)
 	{
 		Expression rv = null;
@@ -538,6 +858,25 @@ public class ConvertLutFlowsPass extends TransformationPass
 	 */
 	public static Expression nLinearInterpolation(LutExpression lut, int[] indexList,
 			Interval[] rangeList)
+	{
+		return nLinearInterpolation(lut, indexList, rangeList, simplifyMode);
+	}
+
+	/**
+	 * Perform n-linear interpolation, using a specific simplification mode
+	 * 
+	 * @param lut
+	 *            the lookup table expression
+	 * @param indexList
+	 *            the index values for each dimension we want to interpolate
+	 * @param rangeList
+	 *            the ranges being interpolated
+	 * @param mode
+	 *            one of SIMPLIFY_PYTHON, SIMPLIFY_INTERNAL, or SIMPLIFY_NONE
+	 * @return an expression which is the n-linear interpolation
+	 */
+	public static Expression nLinearInterpolation(LutExpression lut, int[] indexList,
+			Interval[] rangeList, int mode)
 	{
 		Expression[] inputList = lut.inputs;
 		MatrixExpression table = lut.table;
@@ -557,6 +896,15 @@ public class ConvertLutFlowsPass extends TransformationPass
 			throw new AutomatonExportException(
 					"passed-in variables.length must match number of ranges");
 
+		if (mode == SIMPLIFY_INTERNAL)
+		{
+			double[] coefficients = interpolationCoefficients(lut, indexList, rangeList);
+
+			// numeric tables can be simplified directly from the interpolating polynomial
+			if (coefficients != null)
+				return coefficientsToExpression(coefficients, inputList, CHOP_TOL);
+		}
+
 		for (int d = 0; d < numDims; ++d)
 		{
 			Expression input = inputList[d].copy();
@@ -582,18 +930,178 @@ public class ConvertLutFlowsPass extends TransformationPass
 		Hyst.logDebug("nLinearInterpolation result expression for " + Arrays.toString(indexList)
 				+ ": " + e.toDefaultString());
 
-		double CHOP_TOL = 1e-8;
-
-		if (simplifyMode == SIMPLIFY_PYTHON)
+		if (mode == SIMPLIFY_PYTHON)
 			e = PythonUtil.pythonSimplifyExpressionChop(e, CHOP_TOL);
-		else if (simplifyMode == SIMPLIFY_INTERNAL)
+		else if (mode == SIMPLIFY_INTERNAL)
 			e = SimplifyExpressionsPass.simplifyExpression(e);
 
-		Hyst.logDebug("after pythonSimplifyExpressionChop: " + e.toDefaultString());
+		Hyst.logDebug("after simplification: " + e.toDefaultString());
 
 		return e;
 	}
 
+	/**
+	 * Compute the n-linear interpolation within a cell as a multilinear polynomial in the lut
+	 * inputs. Entry k of the result is the coefficient of the product of the inputs whose bits are
+	 * set in k, so entry 0 is the constant term and entry 1 is the coefficient of inputs[0].
+	 * 
+	 * @param lut
+	 *            the lookup table expression
+	 * @param indexList
+	 *            the lower index of the cell in each dimension
+	 * @param rangeList
+	 *            the ranges being interpolated
+	 * @return the 2^n coefficients, or null if the table values at the corners are not numeric
+	 */
+	public static double[] interpolationCoefficients(LutExpression lut, int[] indexList,
+			Interval[] rangeList)
+	{
+		int numDims = indexList.length;
+		double[] rv = new double[1 << numDims];
+		int[] index = new int[numDims];
+		MatrixExpression table = lut.table;
+
+		// corner values, bit d of k means the upper corner in dimension d
+		if (table.isNumeric())
+		{
+			// read the corners directly from the flat array, using the strides
+			double[] values = table.getValues();
+			int[] strides = new int[numDims];
+			int base = 0;
+
+			for (int d = 0, stride = 1; d < numDims; stride *= table.getDimWidth(d), ++d)
+			{
+				strides[d] = stride;
+				base += stride * indexList[d];
+			}
+
+			for (int k = 0; k < rv.length; ++k)
+			{
+				int offset = base;
+
+				for (int d = 0; d < numDims; ++d)
+				{
+					if (((k >> d) & 1) != 0)
+						offset += strides[d];
+				}
+
+				rv[k] = values[offset];
+			}
+		}
+		else
+		{
+			for (int k = 0; k < rv.length; ++k)
+			{
+				for (int d = 0; d < numDims; ++d)
+					index[d] = indexList[d] + ((k >> d) & 1);
+
+				Expression val = table.get(index);
+
+				if (!(val instanceof Constant))
+				{
+					val = SimplifyExpressionsPass.simplifyExpression(val);
+
+					if (!(val instanceof Constant))
+						return null;
+				}
+
+				rv[k] = ((Constant) val).getVal();
+			}
+		}
+
+		// differencing in each dimension gives the coefficients in the normalized
+		// coordinates u_d = (input_d - min_d) / width_d
+		for (int d = 0; d < numDims; ++d)
+		{
+			int bit = 1 << d;
+
+			for (int k = 0; k < rv.length; ++k)
+			{
+				if ((k & bit) != 0)
+					rv[k] -= rv[k ^ bit];
+			}
+		}
+
+		// substitute u_d = input_d / width_d - min_d / width_d
+		for (int d = 0; d < numDims; ++d)
+		{
+			int bit = 1 << d;
+			double width = rangeList[d].width();
+			double min = rangeList[d].min;
+
+			for (int k = 0; k < rv.length; ++k)
+			{
+				if ((k & bit) != 0)
+				{
+					double c = rv[k];
+					rv[k] = c / width;
+					rv[k ^ bit] -= c * min / width;
+				}
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Convert the coefficients of a multilinear polynomial (from interpolationCoefficients) to an
+	 * expression
+	 * 
+	 * @param coefficients
+	 *            the 2^n coefficients
+	 * @param inputs
+	 *            the n inputs
+	 * @param chopTol
+	 *            coefficients with magnitudes at most this are dropped
+	 * @return the expression
+	 */
+	public static Expression coefficientsToExpression(double[] coefficients, Expression[] inputs,
+			double chopTol)
+	{
+		Expression rv = null;
+
+		for (int k = 0; k < coefficients.length; ++k)
+		{
+			double c = coefficients[k];
+
+			if (Math.abs(c) <= chopTol)
+				continue;
+
+			Expression product = null;
+
+			for (int d = 0; d < inputs.length; ++d)
+			{
+				if (((k >> d) & 1) != 0)
+				{
+					Expression input = inputs[d].copy();
+					product = (product == null) ? input
+							: new Operation(Operator.MULTIPLY, product, input);
+				}
+			}
+
+			boolean subtract = rv != null && c < 0;
+			double magnitude = subtract ? -c : c;
+			Expression term;
+
+			if (product == null)
+				term = new Constant(magnitude);
+			else if (magnitude == 1)
+				term = product;
+			else
+				term = new Operation(Operator.MULTIPLY, new Constant(magnitude), product);
+
+			if (rv == null)
+				rv = term;
+			else
+				rv = new Operation(subtract ? Operator.SUBTRACT : Operator.ADD, rv, term);
+		}
+
+		if (rv == null)
+			rv = new Constant(0);
+
+		return rv;
+	}
+
 	// used to accumulate the expression when performing the interpolation
 	private static class InterpolateCornerEnumerator extends HyperRectangleCornerEnumerator
 	{
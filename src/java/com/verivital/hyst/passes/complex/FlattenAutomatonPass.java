@@ -173,7 +173,7 @@ public class FlattenAutomatonPass extends TransformationPass
 	 * @param rv
 	 * @param nc
 	 */
-	private void fixVariableOrder(BaseComponent rv, NetworkComponent nc)
+	public static void fixVariableOrder(BaseComponent rv, NetworkComponent nc)
 	{
 		ArrayList<String> ordered = new ArrayList<String>();
 
@@ -222,7 +222,7 @@ public class FlattenAutomatonPass extends TransformationPass
 	 * @param from
 	 *            the place to take them from
 	 */
-	private static void mergeParams(Component rv, Component from)
+	public static void mergeParams(Component rv, Component from)
 	{
 		mergeList(rv.variables, from.variables);
 		mergeList(rv.labels, from.labels);
@@ -259,7 +259,7 @@ public class FlattenAutomatonPass extends TransformationPass
 	/**
 	 * And's two expressions, which maybe null
 	 */
-	private static Expression andExpressions(Expression a, Expression b)
+	public static Expression andExpressions(Expression a, Expression b)
 	{
 		Expression rv = null;
 
@@ -312,7 +312,7 @@ public class FlattenAutomatonPass extends TransformationPass
 		}
 	}
 
-	private static LinkedHashMap<String, ExpressionInterval> mergeExpressionMap(
+	public static LinkedHashMap<String, ExpressionInterval> mergeExpressionMap(
 			LinkedHashMap<String, ExpressionInterval> a,
 			LinkedHashMap<String, ExpressionInterval> b)
 	{
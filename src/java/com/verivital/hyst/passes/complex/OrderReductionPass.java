@@ -77,7 +77,7 @@ public class OrderReductionPass extends TransformationPass
 				String variableString = "";
 				for (String v : ha.variables)
 				{
-					if (cf.varID.get(v) < sp.getAMatrixSize(e.getValue()))
+					if (cf.varID.getId(v) < sp.getAMatrixSize(e.getValue()))
 						variableString = variableString + " " + v;
 				}
 
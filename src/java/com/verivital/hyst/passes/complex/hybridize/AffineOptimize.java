@@ -20,6 +20,7 @@ import com.verivital.hyst.python.PythonBridge;
 import com.verivital.hyst.python.PythonUtil;
 import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.KodiakUtil;
+import com.verivital.hyst.util.RangeOptimizer;
 import com.verivital.hyst.util.StringOperations;
 
 public class AffineOptimize
@@ -69,8 +70,10 @@ public class AffineOptimize
 	 * between a nonlinear derivative and its linear approximation.
 	 * 
 	 * @param optimizationType
-	 *            one of {"basinhopping", "kodiak", "interval", "intervalXXX" where XXX is a real
-	 *            number describing the maximum overapproximation error
+	 *            one of {"basinhopping", "kodiak", "interval", "intervalXXX", "affine", "affineXXX"}
+	 *            where XXX is a real number describing the maximum overapproximation error. The
+	 *            affine methods use affine arithmetic in Java (see RangeOptimizer) rather than
+	 *            interval arithmetic in python
 	 * @param params
 	 *            [in/out] the list of OptimizationParams to optimize. Result is stored here
 	 */
@@ -80,7 +83,8 @@ public class AffineOptimize
 			throw new AutomatonExportException(
 					"createAffineDynamics was called with params list of length 0");
 
-		PythonBridge.getInstance(PythonBridge.NO_TIMEOUT); // turn off timeout
+		if (!optimizationType.startsWith("affine"))
+			PythonBridge.getInstance(PythonBridge.NO_TIMEOUT); // turn off timeout
 
 		ArrayList<Expression> expList = new ArrayList<Expression>();
 		ArrayList<HashMap<String, Interval>> boundsList = new ArrayList<HashMap<String, Interval>>();
@@ -99,9 +103,13 @@ public class AffineOptimize
 			optimizationResult = KodiakUtil.kodiakOptimize(expList, boundsList);
 		else if (optimizationType.equals("interval"))
 			optimizationResult = PythonUtil.intervalOptimize(expList, boundsList);
-		else if (optimizationType.startsWith("interval"))
+		else if (optimizationType.equals("affine"))
+			optimizationResult = RangeOptimizer.optimizeAll(expList, boundsList, true, 0);
+		else if (optimizationType.startsWith("interval") || optimizationType.startsWith("affine"))
 		{
-			String num = optimizationType.substring("interval".length());
+			boolean affine = optimizationType.startsWith("affine");
+			String prefix = affine ? "affine" : "interval";
+			String num = optimizationType.substring(prefix.length());
 
 			try
 			{
@@ -109,14 +117,18 @@ public class AffineOptimize
 
 				if (accuracy <= 0)
 					throw new AutomatonExportException(
-							"malformed interval optimization param: " + accuracy);
+							"malformed " + prefix + " optimization param: " + accuracy);
 
-				optimizationResult = PythonUtil.intervalOptimizeBounded(expList, boundsList,
-						accuracy);
+				if (affine)
+					optimizationResult = RangeOptimizer.optimizeAll(expList, boundsList, true,
+							accuracy);
+				else
+					optimizationResult = PythonUtil.intervalOptimizeBounded(expList, boundsList,
+							accuracy);
 			}
 			catch (NumberFormatException e)
 			{
-				throw new AutomatonExportException("invalid interval optimization param", e);
+				throw new AutomatonExportException("invalid " + prefix + " optimization param", e);
 			}
 		}
 		else
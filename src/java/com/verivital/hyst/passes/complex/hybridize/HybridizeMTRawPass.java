@@ -8,6 +8,7 @@ import java.util.List;
 
 import org.kohsuke.args4j.Option;
 
+import com.verivital.hyst.geometry.BoxIndex;
 import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.Interval;
@@ -108,7 +109,8 @@ public class HybridizeMTRawPass extends TransformationPass
 	// O or optimization
 	@Option(name = "-O", aliases = {
 			"-opt" }, usage = "the optimization method, one of {basinhopping, kodiak, interval, interval#, "
-					+ "where # is the max error, like 0.1}", metaVar = "METHOD")
+					+ "affine, affine#}, where # is the max error, like 0.1 (affine uses affine "
+					+ "arithmetic in Java rather than interval arithmetic in python)", metaVar = "METHOD")
 	String opt = "basinhopping";
 
 	@Option(name = "-T", aliases = {
@@ -375,7 +377,7 @@ public class HybridizeMTRawPass extends TransformationPass
 	 * 
 	 * @param optimizationType
 	 *            the optimization engine to use, one of "basinhopping", "kodiak", "interval",
-	 *            "intervalXX"
+	 *            "intervalXX", "affine", "affineXX"
 	 * @param oldModes
 	 *            The list of all modes in the original automaton
 	 * @param modeChain
@@ -399,14 +401,40 @@ public class HybridizeMTRawPass extends TransformationPass
 		int chainLen = modeChain.size();
 		List<Integer> boxIntersectsCount = new ArrayList<Integer>(chainLen);
 
+		// the invariant boxes and hashes of the old modes are computed once, and boxes are found
+		// with a spatial index rather than by checking every old mode for each chain element
+		ArrayList<AutomatonMode> oldModeList = new ArrayList<AutomatonMode>(oldModes);
+		ArrayList<HyperRectangle> invBoxes = new ArrayList<HyperRectangle>(oldModeList.size());
+		int[] invHashes = new int[oldModeList.size()];
+
+		for (int m = 0; m < oldModeList.size(); ++m)
+		{
+			Expression inv = oldModeList.get(m).invariant;
+
+			invBoxes.add(expressionToBox(inv, vars));
+			invHashes[m] = Expression.structuralHash(inv);
+		}
+
+		BoxIndex<AutomatonMode> invIndex = new BoxIndex<AutomatonMode>(invBoxes, oldModeList);
+
 		for (int i = 0; i < chainLen; ++i)
 		{
 			HyperRectangle box = rects.get(i);
 
-			List<AutomatonMode> boxIntersects = getIntersectingModes(oldModes, box);
-			boxIntersectsCount.add(boxIntersects.size());
+			int[] boxIntersects = invIndex.queryIndices(box);
+
+			if (boxIntersects.length == 0)
+				throw new AutomatonExportException("Domain box for " + modeChain.get(i).name
+						+ " did not intersect the invariant of any mode: " + box);
 
-			LinkedHashMap<String, ExpressionInterval> avgFlow = getAverageFlow(boxIntersects);
+			boxIntersectsCount.add(boxIntersects.length);
+
+			List<AutomatonMode> intersectModes = new ArrayList<AutomatonMode>(boxIntersects.length);
+
+			for (int m : boxIntersects)
+				intersectModes.add(oldModeList.get(m));
+
+			LinkedHashMap<String, ExpressionInterval> avgFlow = getAverageFlow(intersectModes);
 			OptimizationParams op = new OptimizationParams();
 
 			HashMap<String, Interval> bounds = toVariableBounds(box, vars);
@@ -417,12 +445,15 @@ public class HybridizeMTRawPass extends TransformationPass
 					+ StringOperations.makeDefaultEiMapString(avgFlow));
 
 			// update the invariant if they're all equal
-			Expression invariant = boxIntersects.get(0).invariant;
+			int first = boxIntersects[0];
+			Expression invariant = oldModeList.get(first).invariant;
 
-			for (int m = 1; m < boxIntersects.size(); ++m)
+			for (int k = 1; k < boxIntersects.length; ++k)
 			{
-				if (!boxIntersects.get(m).invariant.toDefaultString()
-						.equals(invariant.toDefaultString()))
+				int m = boxIntersects[k];
+
+				if (invHashes[m] != invHashes[first]
+						|| !Expression.structurallyEqual(oldModeList.get(m).invariant, invariant))
 				{
 					// invariant SHOULD be disjunction of all modes, but we'll
 					// be pessimistic
@@ -434,13 +465,13 @@ public class HybridizeMTRawPass extends TransformationPass
 			if (invariant != Constant.TRUE)
 				modeChain.get(i).invariant = Expression.and(invariant, modeChain.get(i).invariant);
 
-			for (int imIndex = 0; imIndex < boxIntersects.size(); ++imIndex)
+			for (int m : boxIntersects)
 			{
-				AutomatonMode mode = boxIntersects.get(imIndex);
+				AutomatonMode mode = oldModeList.get(m);
 				OptimizationModeParams modeParams = new OptimizationModeParams();
 				op.origModes.add(modeParams);
 
-				modeParams.bounds = invIntersection(mode, box);
+				modeParams.bounds = invIntersection(invBoxes.get(m), box, vars);
 				modeParams.origDynamics = removeTTFlow(mode.flowDynamics);
 			}
 		}
@@ -491,19 +522,20 @@ public class HybridizeMTRawPass extends TransformationPass
 	}
 
 	/**
-	 * Get the intersection (as a hashmap of var->intervals) of a mode's invariant and a box
+	 * Get the intersection (as a hashmap of var->intervals) of a mode's invariant box and a box
 	 * 
-	 * @param am
-	 *            the mode
+	 * @param invBox
+	 *            the mode's invariant, as a box
 	 * @param box
+	 * @param vars
+	 *            the variables, in the order of the box dimensions
 	 * @return
 	 */
-	private static HashMap<String, Interval> invIntersection(AutomatonMode am, HyperRectangle box)
+	private static HashMap<String, Interval> invIntersection(HyperRectangle invBox,
+			HyperRectangle box, List<String> vars)
 	{
 		HashMap<String, Interval> rv = new HashMap<String, Interval>();
-		List<String> vars = getNonTTVaraibles(am.automaton);
 
-		HyperRectangle invBox = expressionToBox(am.invariant, vars);
 		HyperRectangle inter = HyperRectangle.intersection(invBox, box);
 		int i = 0;
 
@@ -605,27 +637,6 @@ public class HybridizeMTRawPass extends TransformationPass
 		return rv;
 	}
 
-	private static List<AutomatonMode> getIntersectingModes(Collection<AutomatonMode> oldModes,
-			HyperRectangle box)
-	{
-		assert oldModes.size() > 0;
-
-		ArrayList<AutomatonMode> rv = new ArrayList<AutomatonMode>();
-
-		// remove time-triggered variable
-		List<String> vars = getNonTTVaraibles(oldModes.iterator().next().automaton);
-
-		for (AutomatonMode am : oldModes)
-		{
-			HyperRectangle modeBox = expressionToBox(am.invariant, vars);
-
-			if (HyperRectangle.intersection(modeBox, box) != null)
-				rv.add(am);
-		}
-
-		return rv;
-	}
-
 	private void redirectStart()
 	{
 		AutomatonMode firstMode = modeChain.get(0);
@@ -972,7 +983,8 @@ public class HybridizeMTRawPass extends TransformationPass
 		if (domains.size() == 0)
 			throw new AutomatonExportException("expected at least one domain");
 
-		if (!opt.equals("basinhopping") && !opt.equals("kodiak") && !opt.startsWith("interval"))
+		if (!opt.equals("basinhopping") && !opt.equals("kodiak") && !opt.startsWith("interval")
+				&& !opt.startsWith("affine"))
 			throw new AutomatonExportException("unknown optimization method: " + opt);
 
 		int numDims = config.root.variables.size();
@@ -14,6 +14,7 @@ import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.HyperRectangleCornerEnumerator;
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
+import com.verivital.hyst.geometry.Trajectory;
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.Configuration;
@@ -52,6 +53,9 @@ import com.verivital.hyst.util.RangeExtractor.UnsupportedConditionException;
  * 
  * The bloating term, epsilon
  * 
+ * The simulations from the set of points can be split across a pool of python processes, whose
+ * size is set with -sim_procs (by default, 1, which simulates in the bridge's python process).
+ * 
  * @author Stanley Bak
  *
  */
@@ -87,13 +91,17 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 	// O or optimization
 	@Option(name = "-O", aliases = {
 			"-opt" }, usage = "the optimization method, one of {basinhopping, kodiak, interval, interval#, "
-					+ "where # is the max error, like 0.1}", metaVar = "METHOD")
+					+ "affine, affine#}, where # is the max error, like 0.1 (affine uses affine "
+					+ "arithmetic in Java rather than interval arithmetic in python)", metaVar = "METHOD")
 	String opt = "basinhopping";
 
 	// no error
 	@Option(name = "-noerror", usage = "do not insert the forbidden DCEM mode (useful for plotting)")
 	boolean noError = false;
 
+	@Option(name = "-sim_procs", usage = "the number of python processes used to simulate the points (1 is serial)", metaVar = "NUM")
+	int simProcs = 1;
+
 	// derived params
 	SimulationType simType = SimulationType.CENTER;
 	int randCount = -1; // for SimulationType.RAND
@@ -463,28 +471,31 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 	 * @param startBox
 	 *            the start box
 	 * @param centerTrajectory
-	 *            the center point
+	 *            the trajectory of the center point
 	 * @return the discovered pi point, or null if failed
 	 */
 	public static SymbolicStatePoint getPiPoint(BaseComponent ha, HyperRectangle startBox,
-			ArrayList<SymbolicStatePoint> centerTrajectory)
+			Trajectory centerTrajectory)
 	{
 		// the first point of simPoints is the center point we should simulate
 		SymbolicStatePoint rv = null;
+		HyperPoint hp = new HyperPoint(centerTrajectory.numDims());
 
 		// simulate up to piMaxTime, looking for a state where all the corners
 		// of startBox
 		// are on one side of p
-		for (SymbolicStatePoint p : centerTrajectory)
+		for (int s = 0; s < centerTrajectory.size(); ++s)
 		{
-			HyperPoint hp = p.hp;
-			AutomatonMode am = ha.modes.get(p.modeName);
+			for (int d = 0; d < hp.dims.length; ++d)
+				hp.dims[d] = centerTrajectory.get(s, d);
+
+			AutomatonMode am = ha.modes.get(centerTrajectory.getModeName(s));
 
 			if (testHyperPlane(hp, startBox, am))
 			{
-				Hyst.log("Found pi point: " + p + " with gradient "
+				rv = centerTrajectory.getState(s);
+				Hyst.log("Found pi point: " + rv + " with gradient "
 						+ Arrays.toString(gradient(hp, am)));
-				rv = p;
 				break;
 			}
 		}
@@ -507,8 +518,8 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 			ArrayList<SymbolicStatePoint> simPoints)
 	{
 		// first, get the trajectories for all the simPoints up piMaxtime
-		ArrayList<ArrayList<SymbolicStatePoint>> trajectories = simMultiGetTrajectory(config,
-				simPoints, piMaxTime);
+		ArrayList<Trajectory> trajectories = simMultiGetTrajectory(config, simPoints, piMaxTime,
+				simProcs);
 
 		boolean rv = false;
 		SymbolicStatePoint piPoint = getPiPoint(ha, startBox, trajectories.get(0));
@@ -532,22 +543,27 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 							"While constructing PI, initial sim-point was on incorrect side of pi hyperplane (shouldn't occur)");
 
 				// when we cross, we will interpolate between the straddling
-				// simulation points
-				SymbolicStatePoint prevPoint = simPoints.get(i);
+				// simulation points (prev is the index in traj, or -1 for the start point)
+				SymbolicStatePoint startPoint = simPoints.get(i);
+				Trajectory traj = trajectories.get(i);
+				int prev = -1;
 
 				// simulate up to 2*piMaxTime
-				for (SymbolicStatePoint p : trajectories.get(i))
+				for (int s = 0; s < traj.size(); ++s)
 				{
-					// check if p crossed the hyperplane
-					double val = dotProduct(piGradient, p.hp);
+					// check if sample s crossed the hyperplane
+					double val = traj.dot(s, piGradient);
 
 					if (val >= piVal)
 					{
+						String prevMode = prev == -1 ? startPoint.modeName
+								: traj.getModeName(prev);
+
 						// if prevPoint and p are in different mode, probably a
 						// reset was used
 						// this is a BAD case of pseudo-invariants, so we're
 						// better off failing
-						if (!p.modeName.equals(prevPoint.modeName))
+						if (!traj.getModeName(s).equals(prevMode))
 							throw new AutomatonExportException("When detecting crossing of "
 									+ "space-triggered boundary, different modes detected (was a "
 									+ "reset used? This would be a BAD case for space-triggered"
@@ -565,17 +581,23 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 
 						// now the point we want is prevPoint + 1/3 * (curPoint
 						// - prevPoint)
-						HyperPoint vector = HyperPoint.subtract(p.hp, prevPoint.hp);
-						HyperPoint fracVector = HyperPoint.multiply(vector, frac);
-						HyperPoint newPoint = HyperPoint.add(prevPoint.hp, fracVector);
+						HyperPoint newPoint = new HyperPoint(traj.numDims());
+
+						for (int d = 0; d < newPoint.dims.length; ++d)
+						{
+							double prevDim = prev == -1 ? startPoint.hp.dims[d]
+									: traj.get(prev, d);
+
+							newPoint.dims[d] = prevDim + (traj.get(s, d) - prevDim) * frac;
+						}
 
-						newSimPoints.add(new SymbolicStatePoint(p.modeName, newPoint));
+						newSimPoints.add(new SymbolicStatePoint(traj.getModeName(s), newPoint));
 
 						break;
 					}
 
 					prevVal = val;
-					prevPoint = p;
+					prev = s;
 				}
 
 				if (quitEarly)
@@ -620,7 +642,7 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 		HyperRectangle simBox = boundingBox(points(simPoints));
 		HyperRectangle startBox = HyperRectangle.bloatAdditive(simBox, epsilon);
 
-		ArrayList<SymbolicStatePoint> newSimPoints = simAllPoints(config, simPoints, timeStep);
+		ArrayList<SymbolicStatePoint> newSimPoints = simAllPoints(config, simPoints, timeStep, simProcs);
 		simPoints.clear();
 		simPoints.addAll(newSimPoints);
 
@@ -753,6 +775,25 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 	 */
 	public static ArrayList<SymbolicStatePoint> simAllPoints(Configuration config,
 			ArrayList<SymbolicStatePoint> simPoints, double time)
+	{
+		return simAllPoints(config, simPoints, time, 1);
+	}
+
+	/**
+	 * Do a simulation of the passed-in point list, split across several python processes
+	 * 
+	 * @param c
+	 *            the configuration
+	 * @param simPoints
+	 *            the list of points
+	 * @param time
+	 *            the time to run the simulation
+	 * @param numProcs
+	 *            the number of python worker processes to simulate with (1 = no workers)
+	 * @return the resultant points, in the same order as simPoints
+	 */
+	public static ArrayList<SymbolicStatePoint> simAllPoints(Configuration config,
+			ArrayList<SymbolicStatePoint> simPoints, double time, int numProcs)
 	{
 		for (SymbolicStatePoint ssp : simPoints)
 		{
@@ -770,8 +811,8 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 		String points = makePointsString(simPoints);
 		String modes = makeModeString(simPoints);
 
-		s.append("print simulate_set_time(define_ha(), " + modes + ", " + points + ", " + time
-				+ ")");
+		s.append("print simulate_set_time(define_ha, " + modes + ", " + points + ", " + time
+				+ ", num_procs=" + numProcs + ")");
 
 		String result = pb.send(s.toString());
 
@@ -908,10 +949,30 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 	 *            the points where each simulation starts
 	 * @param time
 	 *            the desired simulation time
-	 * @return the resultant trajectories (each trajectory is a list of points)
+	 * @return the resultant trajectories
+	 */
+	public static ArrayList<Trajectory> simMultiGetTrajectory(Configuration config,
+			ArrayList<SymbolicStatePoint> startPoints, double time)
+	{
+		return simMultiGetTrajectory(config, startPoints, time, 1);
+	}
+
+	/**
+	 * Simulate from multiple points split across several python processes, returning the
+	 * trajectories
+	 * 
+	 * @param config
+	 *            the automaton
+	 * @param startPoints
+	 *            the points where each simulation starts
+	 * @param time
+	 *            the desired simulation time
+	 * @param numProcs
+	 *            the number of python worker processes to simulate with (1 = no workers)
+	 * @return the resultant trajectories, in the same order as startPoints
 	 */
-	public static ArrayList<ArrayList<SymbolicStatePoint>> simMultiGetTrajectory(
-			Configuration config, ArrayList<SymbolicStatePoint> startPoints, double time)
+	public static ArrayList<Trajectory> simMultiGetTrajectory(Configuration config,
+			ArrayList<SymbolicStatePoint> startPoints, double time, int numProcs)
 	{
 		PythonBridge pb = PythonBridge.getInstance();
 		pb.send("from pythonbridge.pysim_utils import simulate_multi_trajectory_time");
@@ -922,36 +983,13 @@ public class HybridizeMixedTriggeredPass extends TransformationPass
 		String modes = makeModeString(startPoints);
 		String points = makePointsString(startPoints);
 
-		s.append("print simulate_multi_trajectory_time(define_ha(), " + modes + ", " + points + ", "
-				+ time + ")");
+		s.append("print simulate_multi_trajectory_time(define_ha, " + modes + ", " + points + ", "
+				+ time + ", num_procs=" + numProcs + ", with_times=True)");
 
 		String result = pb.send(s.toString());
 
-		// parse result into SymbolicState objects
-		// result is semi-colon separated lists, first is the mode name, rest is
-		// the point
-		ArrayList<ArrayList<SymbolicStatePoint>> rv = new ArrayList<ArrayList<SymbolicStatePoint>>();
-
-		for (String traj : result.split("\\|"))
-		{
-			ArrayList<SymbolicStatePoint> trajStates = new ArrayList<SymbolicStatePoint>();
-
-			for (String part : traj.split(";"))
-			{
-				String[] comma_parts = part.split(",");
-
-				String mode = comma_parts[0]; // first one is the mode
-				HyperPoint pt = new HyperPoint(comma_parts.length - 1);
-
-				for (int i = 1; i < comma_parts.length; ++i)
-					pt.dims[i - 1] = Double.parseDouble(comma_parts[i]);
-
-				trajStates.add(new SymbolicStatePoint(mode, pt));
-			}
-
-			rv.add(trajStates);
-		}
-
-		return rv;
+		// result is the trajectories separated by '|', each a semi-colon separated list of
+		// states: the mode name, time, then the point
+		return Trajectory.parseAll(result);
 	}
 }
\ No newline at end of file
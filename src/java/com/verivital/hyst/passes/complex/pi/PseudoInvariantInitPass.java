@@ -7,6 +7,7 @@ import org.kohsuke.args4j.Option;
 import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.HyperRectangle;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
+import com.verivital.hyst.geometry.Trajectory;
 import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.main.Hyst;
@@ -61,7 +62,7 @@ public class PseudoInvariantInitPass extends TransformationPass
 		startPoints.add(new SymbolicStatePoint(initialMode, center));
 
 		double simTime = config.settings.spaceExConfig.timeHorizon;
-		ArrayList<SymbolicStatePoint> trajectory = HybridizeMixedTriggeredPass
+		Trajectory trajectory = HybridizeMixedTriggeredPass
 				.simMultiGetTrajectory(config, startPoints, simTime).get(0);
 
 		SymbolicStatePoint piPoint = HybridizeMixedTriggeredPass.getPiPoint(ha, initBox,
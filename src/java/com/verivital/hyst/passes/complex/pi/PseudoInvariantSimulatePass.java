@@ -8,6 +8,7 @@ import org.kohsuke.args4j.Option;
 
 import com.verivital.hyst.geometry.HyperPoint;
 import com.verivital.hyst.geometry.SymbolicStatePoint;
+import com.verivital.hyst.geometry.Trajectory;
 import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.Configuration;
 import com.verivital.hyst.ir.base.AutomatonMode;
@@ -61,19 +62,20 @@ public class PseudoInvariantSimulatePass extends TransformationPass
 		SymbolicStatePoint init = new SymbolicStatePoint();
 		init.modeName = config.init.entrySet().iterator().next().getKey();
 		init.hp = AutomatonUtil.getInitialPoint(ha, config);
-		List<SymbolicStatePoint> states = pythonSimulate(config, init, times);
+		Trajectory states = pythonSimulate(config, init, times);
 
 		List<String> modes = new ArrayList<String>(times.size());
 		List<HyperPoint> points = new ArrayList<HyperPoint>(times.size());
 		List<HyperPoint> dirs = new ArrayList<HyperPoint>(times.size());
 
-		for (SymbolicStatePoint ss : states)
+		for (int s = 0; s < states.size(); ++s)
 		{
-			AutomatonMode mode = ha.modes.get(ss.modeName);
-			double[] gradient = AutomatonUtil.getGradientAtPoint(mode, ss.hp);
+			AutomatonMode mode = ha.modes.get(states.getModeName(s));
+			HyperPoint hp = states.getPoint(s);
+			double[] gradient = AutomatonUtil.getGradientAtPoint(mode, hp);
 
 			modes.add(mode.name);
-			points.add(new HyperPoint(ss.hp));
+			points.add(hp);
 			dirs.add(new HyperPoint(gradient));
 		}
 
@@ -94,7 +96,7 @@ public class PseudoInvariantSimulatePass extends TransformationPass
 	 *            the times where to return the state
 	 * @return the state at each of the times
 	 */
-	public static List<SymbolicStatePoint> pythonSimulate(Configuration automaton,
+	public static Trajectory pythonSimulate(Configuration automaton,
 			SymbolicStatePoint start, List<Double> times)
 	{
 		if (start.hp.dims.length != automaton.root.variables.size())
@@ -111,29 +113,12 @@ public class PseudoInvariantSimulatePass extends TransformationPass
 		String timesStr = "[" + StringOperations.join(",", times.toArray(new Double[0])) + "]";
 
 		s.append("print simulate_times(define_ha(), '" + start.modeName + "', " + point + ", "
-				+ timesStr + ")");
+				+ timesStr + ", with_times=True)");
 
 		String result = pb.send(s.toString());
 
-		// parse result into SymbolicState objects
-		// result is semi-colon separated lists, first is the mode name, rest is
-		// the point
-		ArrayList<SymbolicStatePoint> rv = new ArrayList<SymbolicStatePoint>();
-
-		for (String part : result.split(";"))
-		{
-			String[] comma_parts = part.split(",");
-
-			String mode = comma_parts[0]; // first one is the mode
-			HyperPoint pt = new HyperPoint(comma_parts.length - 1);
-
-			for (int i = 1; i < comma_parts.length; ++i)
-				pt.dims[i - 1] = Double.parseDouble(comma_parts[i]);
-
-			rv.add(new SymbolicStatePoint(mode, pt));
-		}
-
-		return rv;
+		// result is semi-colon separated lists: the mode name, time, then the point
+		return Trajectory.parse(result, 0, result.length());
 	}
 
 	public static String makeParamString(double... times)
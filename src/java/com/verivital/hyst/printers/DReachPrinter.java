@@ -87,6 +87,25 @@ public class DReachPrinter extends ToolPrinter
 		}
 
 		RenameParams.run(config, mapping);
+
+		// the product view has its own copy of the params
+		if (productView != null)
+			RenameParams.swapNames(ha, mapping);
+	}
+
+	/**
+	 * Get the numeric id of a mode, starting from 1
+	 */
+	private long getModeId(String modeName)
+	{
+		long rv;
+
+		if (productView != null)
+			rv = productView.getModeNumber(modeName) + 1;
+		else
+			rv = modeNamesToIds.get(modeName);
+
+		return rv;
 	}
 
 	/**
@@ -164,7 +183,7 @@ public class DReachPrinter extends ToolPrinter
 		printNewline();
 		printLine("init:");
 
-		printLine("@" + modeNamesToIds.get(config.init.keySet().iterator().next()).toString() + " "
+		printLine("@" + getModeId(config.init.keySet().iterator().next()) + " "
 				+ config.init.values().iterator().next() + ";");
 	}
 
@@ -178,8 +197,8 @@ public class DReachPrinter extends ToolPrinter
 
 		// outStream.print("@" + ModeNamesToIds.get(ha.forbiddenMode).toString()
 		// + " ");
-		printLine("@" + modeNamesToIds.get(config.forbidden.keySet().iterator().next()).toString()
-				+ " " + config.forbidden.values().iterator().next() + ";");
+		printLine("@" + getModeId(config.forbidden.keySet().iterator().next()) + " "
+				+ config.forbidden.values().iterator().next() + ";");
 	}
 
 	/**
@@ -195,25 +214,32 @@ public class DReachPrinter extends ToolPrinter
 		// modename
 		boolean first = true;
 
-		// first pass over to create ids
-		int id = 1;
-
-		for (String modeName : ha.modes.keySet())
-			modeNamesToIds.put(modeName, id++);
+		// first pass over to create ids (product views number their modes)
+		Iterable<AutomatonMode> modes;
 
-		for (Entry<String, AutomatonMode> e : ha.modes.entrySet())
+		if (productView != null)
+			modes = productView.getModes();
+		else
 		{
-			AutomatonMode mode = e.getValue();
+			int id = 1;
+
+			for (String modeName : ha.modes.keySet())
+				modeNamesToIds.put(modeName, id++);
+
+			modes = ha.modes.values();
+		}
 
+		for (AutomatonMode mode : modes)
+		{
 			if (first)
 				first = false;
 			else
 				printNewline();
 
-			String locName = e.getKey();
+			String locName = mode.name;
 			printLine(commentChar + " " + locName);
 			printLine("{");
-			printLine("mode " + modeNamesToIds.get(locName) + ";");
+			printLine("mode " + getModeId(locName) + ";");
 
 			// invariant
 			printLine("invt:");
@@ -257,11 +283,15 @@ public class DReachPrinter extends ToolPrinter
 		printNewline();
 		printLine("jump:");
 		this.increaseIndentation();
-		int fromId = modeNamesToIds.get(mode.name);
+		long fromId = getModeId(mode.name);
+		Iterable<AutomatonTransition> transitions = ha.transitions;
+
+		if (productView != null)
+			transitions = productView.getTransitionsFrom(mode);
 
 		boolean first = true;
 
-		for (AutomatonTransition t : ha.transitions)
+		for (AutomatonTransition t : transitions)
 		{
 			if (t.from != mode)
 				continue;
@@ -272,7 +302,7 @@ public class DReachPrinter extends ToolPrinter
 				printNewline();
 
 			String toName = t.to.name;
-			int toId = modeNamesToIds.get(toName);
+			long toId = getModeId(toName);
 
 			printLine(commentChar + " " + mode.name + " -> " + toName + " (" + fromId + " -> "
 					+ toId + ")");
@@ -282,9 +312,13 @@ public class DReachPrinter extends ToolPrinter
 			String line = "";
 
 			if (t.guard != Constant.TRUE)
-				line += t.guard + " ==> @" + this.modeNamesToIds.get(toName);
+				line += t.guard + " ==> @" + toId;
 			else
-				line += "(true) ==> @" + this.modeNamesToIds.get(toName);
+				line += "(true) ==> @" + toId;
+
+			// product view transitions are created here, so their identity resets are added here
+			if (productView != null)
+				AddIdentityResetPass.addIdentityResets(t, ha.variables);
 
 			Map<String, ExpressionInterval> reset = t.reset;
 
@@ -352,10 +386,9 @@ public class DReachPrinter extends ToolPrinter
 			constFormatter.setMinimumFractionDigits(1);
 		}
 
-		public String printOperation(Operation o)
+		@Override
+		protected void layoutOperation(Operation o, Layout layout)
 		{
-			String rv = null;
-
 			Operator op = o.op;
 
 			// dreach expects a mix of infix and prefix
@@ -367,7 +400,7 @@ public class DReachPrinter extends ToolPrinter
 			case SUBTRACT:
 			case POW:
 				// default
-				rv = super.printOperation(o);
+				super.layoutOperation(o, layout);
 				break;
 			case EQUAL:
 			case LESS:
@@ -376,24 +409,22 @@ public class DReachPrinter extends ToolPrinter
 			case GREATEREQUAL:
 			case NOTEQUAL:
 				// infix
-				rv = "(" + print(o.getLeft()) + " " + opNames.get(op) + " " + print(o.getRight())
-						+ ")";
+				layout.text("(").expression(o.getLeft()).text(" " + opNames.get(op) + " ")
+						.expression(o.getRight()).text(")");
 				break;
 			case NEGATIVE:
-				rv = "-" + print(o.children.get(0));
+				layout.text("-").expression(o.children.get(0));
 				break;
 			default:
 				// prefix
-				rv = "(" + opNames.get(op);
+				layout.text("(" + opNames.get(op));
 
 				for (Expression e : o.children)
-					rv += " " + print(e);
+					layout.text(" ").expression(e);
 
-				rv += ")";
+				layout.text(")");
 				break;
 			}
-
-			return rv;
 		}
 	}
 
@@ -405,7 +436,7 @@ public class DReachPrinter extends ToolPrinter
 																		// to
 																		// constructor?
 
-		this.ha = (BaseComponent) config.root;
+		this.ha = productView != null ? productView.getComponent() : (BaseComponent) config.root;
 
 		if (config.forbidden.size() == 0)
 		{
@@ -423,11 +454,18 @@ public class DReachPrinter extends ToolPrinter
 					"Printer currently only supports single-forbidden-state models");
 
 		// transform resets to include identity expressions
-		new AddIdentityResetPass().runTransformationPass(config, null);
+		if (productView == null)
+			new AddIdentityResetPass().runTransformationPass(config, null);
 
 		printDocument(originalFilename);
 	}
 
+	@Override
+	protected boolean streamsProductView()
+	{
+		return true;
+	}
+
 	@Override
 	public String getToolName()
 	{
@@ -514,9 +514,9 @@ public class FlowstarPrinter extends ToolPrinter
 			// then classify
 			if (ode.equals("auto"))
 			{
-				if (isNonLinearDynamics(mode.flowDynamics))
+				if (isNonPolynomialDynamics(mode))
 					printLine("nonpoly ode");
-				else if (Classification.isLinearDynamics(mode.flowDynamics))
+				else if (Classification.isLinearDynamics(mode))
 					printLine("lti ode");
 				else if (ha.variables.size() <= 3)
 					printLine("poly ode 1");
@@ -555,7 +555,7 @@ public class FlowstarPrinter extends ToolPrinter
 				{
 					printCommentBlock("Original invariant: " + originalInvariant);
 
-					printLine(inv.toString());
+					printExpressionLine(inv);
 				}
 
 				printLine("}"); // end invariant
@@ -567,17 +567,13 @@ public class FlowstarPrinter extends ToolPrinter
 			printLine("}"); // end all modes
 	}
 
-	private boolean isNonLinearDynamics(LinkedHashMap<String, ExpressionInterval> flowDynamics)
+	private boolean isNonPolynomialDynamics(AutomatonMode mode)
 	{
 		boolean rv = false;
 
-		for (ExpressionInterval entry : flowDynamics.values())
+		for (String var : mode.flowDynamics.keySet())
 		{
-			Expression e = entry.getExpression();
-
-			byte classification = AutomatonUtil.classifyExpressionOps(e);
-
-			if ((classification & AutomatonUtil.OPS_NONLINEAR) != 0)
+			if (mode.getFlowPolynomial(var) == null)
 			{
 				rv = true;
 				break;
@@ -673,7 +669,7 @@ public class FlowstarPrinter extends ToolPrinter
 				if (!guard.equals(Constant.TRUE))
 				{
 					printCommentBlock("Original guard: " + t.guard.toDefaultString());
-					printLine(guard.toString());
+					printExpressionLine(guard);
 				}
 
 				printLine("}");
@@ -790,9 +786,9 @@ public class FlowstarPrinter extends ToolPrinter
 		}
 
 		@Override
-		protected String printOperation(Operation o)
+		protected void layoutOperation(Operation o, Layout layout)
 		{
-			String rv = null;
+			String rv = null; // text for the whole operation, if it's a special case
 
 			if (Operator.isComparison(o.op))
 			{
@@ -817,11 +813,12 @@ public class FlowstarPrinter extends ToolPrinter
 				{
 					// make sure it's of the form p ~ c
 					if (o.children.size() == 2 && o.getRight() instanceof Constant)
-						rv = super.printOperation(o);
+						rv = null;
 					else
 					{
 						// change 'p1 ~ p2' to 'p1 - (p2) ~ 0'
-						rv += o.getLeft() + " - (" + o.getRight() + ") " + printOperator(op) + " 0";
+						layout.expression(o.getLeft()).text(" - (").expression(o.getRight())
+								.text(") " + printOperator(op) + " 0");
 					}
 				}
 			}
@@ -867,9 +864,9 @@ public class FlowstarPrinter extends ToolPrinter
 			}
 
 			if (rv == null)
-				rv = super.printOperation(o);
-
-			return rv;
+				super.layoutOperation(o, layout);
+			else
+				layout.text(rv);
 		}
 	}
 
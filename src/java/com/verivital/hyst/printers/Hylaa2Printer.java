@@ -26,6 +26,7 @@ import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.printers.PySimPrinter.PythonPrinterCustomization;
 import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.DynamicsUtil;
+import com.verivital.hyst.util.ParallelRenderer;
 import com.verivital.hyst.util.Preconditions.PreconditionsFailedException;
 import com.verivital.hyst.util.PreconditionsFlag;
 import com.verivital.hyst.util.StringOperations;
@@ -52,6 +53,12 @@ public class Hylaa2Printer extends ToolPrinter
 			+ "settings.deaggregation=False'", handler = StringArrayOptionHandler.class)
 	public List<String> settings = new ArrayList<String>();
 
+	@Option(name = "-render_threads", usage = "threads used to print the modes and transitions", metaVar = "NUM")
+	public int renderThreads = ParallelRenderer.DEFAULT_THREADS;
+
+	@Option(name = "-render_batch", usage = "modes or transitions printed by a thread at a time", metaVar = "NUM")
+	public int renderBatchSize = ParallelRenderer.DEFAULT_BATCH_SIZE;
+
 	private static final String COMMENT_CHAR = "#";
 
 	public Hylaa2Printer()
@@ -870,7 +877,12 @@ public class Hylaa2Printer extends ToolPrinter
 
 		printNewline();
 
-		printLine(PySimPrinter.automatonToString(config, new HylaaExtraPrintFuncs()));
+		HylaaExtraPrintFuncs custom = new HylaaExtraPrintFuncs();
+		custom.renderThreads = renderThreads;
+		custom.renderBatchSize = renderBatchSize;
+
+		PySimPrinter.appendAutomaton(getOutput(), config, custom);
+		printNewline();
 
 		printLine("def define_settings(image_path):");
 		increaseIndentation();
@@ -0,0 +1,73 @@
+package com.verivital.hyst.printers;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.util.HystBinFormat;
+import com.verivital.hyst.util.Preconditions;
+
+/**
+ * Printer which saves the model as a binary .hystbin snapshot (see HystBinFormat). The snapshot can
+ * be given as the input to a later run of Hyst, which avoids parsing the SpaceEx xml again. Since
+ * the snapshot should be exactly the model produced by the passes, no preconditions are run.
+ */
+public class HystBinPrinter extends ToolPrinter
+{
+	public HystBinPrinter()
+	{
+		preconditions = new Preconditions(true); // skip all
+	}
+
+	@Override
+	protected void printAutomaton()
+	{
+		if (outputType == OutputType.FILE)
+			HystBinFormat.save(config, outputFilename);
+		else if (outputType == OutputType.STDOUT)
+		{
+			try
+			{
+				HystBinFormat.write(config, Channels.newChannel(System.out));
+				System.out.flush();
+			}
+			catch (IOException e)
+			{
+				throw new AutomatonExportException("Error writing to stdout", e);
+			}
+		}
+		else if (outputType != OutputType.NONE)
+			throw new AutomatonExportException(getToolName()
+					+ " printer writes binary data and requires file or stdout output.");
+	}
+
+	@Override
+	protected boolean isBinaryOutput()
+	{
+		return true;
+	}
+
+	@Override
+	public String getToolName()
+	{
+		return "Hyst Binary Snapshot";
+	}
+
+	@Override
+	public String getCommandLineFlag()
+	{
+		return "hystbin";
+	}
+
+	@Override
+	protected String getCommentPrefix()
+	{
+		return "#";
+	}
+
+	@Override
+	public String getExtension()
+	{
+		return HystBinFormat.EXTENSION;
+	}
+}
@@ -3,6 +3,7 @@
  */
 package com.verivital.hyst.printers;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -25,6 +26,7 @@ import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
 import com.verivital.hyst.util.DynamicsUtil;
+import com.verivital.hyst.util.ParallelRenderer;
 import com.verivital.hyst.util.PreconditionsFlag;
 import com.verivital.hyst.util.RangeExtractor;
 import com.verivital.hyst.util.RangeExtractor.ConstantMismatchException;
@@ -69,6 +71,16 @@ public class PySimPrinter extends ToolPrinter
 	@Option(name = "-ydim", usage = "plot y dim", metaVar = "DIM_INDEX")
 	int plotYDim = -1;
 
+	@Option(name = "-solver", usage = "ode solver, like vode, or a dense-output solver which finds events "
+			+ "without integrating again: RK45, RK23, DOP853, Radau, BDF or LSODA", metaVar = "NAME")
+	String solver = "vode";
+
+	@Option(name = "-render_threads", usage = "threads used to print the modes and transitions", metaVar = "NUM")
+	int renderThreads = ParallelRenderer.DEFAULT_THREADS;
+
+	@Option(name = "-render_batch", usage = "modes or transitions printed by a thread at a time", metaVar = "NUM")
+	int renderBatchSize = ParallelRenderer.DEFAULT_BATCH_SIZE;
+
 	private static PySimExpressionPrinter pySimExpressionPrinter = new PySimExpressionPrinter();
 
 	private static final String COMMENT_CHAR = "#";
@@ -109,16 +121,24 @@ public class PySimPrinter extends ToolPrinter
 		return "'''\n" + text + "\n'''";
 	}
 
-	private static void appendModes(StringBuilder rv, BaseComponent ha,
-			PythonPrinterCustomization custom)
+	/**
+	 * Append the code for each mode. Modes are rendered in parallel (see ParallelRenderer), so the
+	 * customization's getPrintModeLines() must not modify shared state.
+	 */
+	private static void appendModes(Appendable rv, BaseComponent ha,
+			final PythonPrinterCustomization custom)
 	{
-		for (AutomatonMode am : ha.modes.values())
+		ParallelRenderer.render(ha.modes.values(), new ParallelRenderer.Renderer<AutomatonMode>()
 		{
-			appendNewline(rv);
+			@Override
+			public void render(AutomatonMode am, StringBuilder out)
+			{
+				appendNewline(out);
 
-			for (String line : custom.getPrintModeLines(am))
-				appendIndentedLine(rv, line);
-		}
+				for (String line : custom.getPrintModeLines(am))
+					appendIndentedLine(out, line);
+			}
+		}, rv, custom.renderThreads, custom.renderBatchSize);
 	}
 
 	/**
@@ -200,21 +220,29 @@ public class PySimPrinter extends ToolPrinter
 		return rv.toString();
 	}
 
-	private static void appendJumps(StringBuilder rv, BaseComponent ha,
-			PythonPrinterCustomization custom)
+	/**
+	 * Append the code for each transition. Like modes, transitions are rendered in parallel.
+	 */
+	private static void appendJumps(Appendable rv, BaseComponent ha,
+			final PythonPrinterCustomization custom)
 	{
 		/*
 		 * t = ha.new_transition(one, two) t.guard = lambda(x): x[0] >= 2 t.reset = lambda(x): (x[0]
 		 * + 1, x[1])
 		 */
 
-		for (AutomatonTransition at : ha.transitions)
-		{
-			appendNewline(rv);
+		ParallelRenderer.render(ha.transitions,
+				new ParallelRenderer.Renderer<AutomatonTransition>()
+				{
+					@Override
+					public void render(AutomatonTransition at, StringBuilder out)
+					{
+						appendNewline(out);
 
-			for (String line : custom.getPrintTransitions(at))
-				appendIndentedLine(rv, line);
-		}
+						for (String line : custom.getPrintTransitions(at))
+							appendIndentedLine(out, line);
+					}
+				}, rv, custom.renderThreads, custom.renderBatchSize);
 	}
 
 	/**
@@ -234,7 +262,12 @@ public class PySimPrinter extends ToolPrinter
 		if (plotYDim >= 0)
 			config.settings.plotVariableNames[1] = ha.variables.get(plotYDim);
 
-		printLine(automatonToString(config));
+		PythonPrinterCustomization custom = new PythonPrinterCustomization();
+		custom.renderThreads = renderThreads;
+		custom.renderBatchSize = renderBatchSize;
+
+		appendAutomaton(getOutput(), config, custom);
+		printNewline();
 
 		printLine("def define_settings():");
 		increaseIndentation();
@@ -276,6 +309,10 @@ public class PySimPrinter extends ToolPrinter
 	{
 		public String automatonObjectName = "HybridAutomaton";
 
+		// how the modes and transitions are printed (see ParallelRenderer)
+		public int renderThreads = ParallelRenderer.DEFAULT_THREADS;
+		public int renderBatchSize = ParallelRenderer.DEFAULT_BATCH_SIZE;
+
 		// mode is named am.name
 		public ArrayList<String> getExtraModePrintLines(AutomatonMode am)
 		{
@@ -457,51 +494,82 @@ public class PySimPrinter extends ToolPrinter
 	 */
 	public static String automatonToString(Configuration config, PythonPrinterCustomization custom)
 	{
-		ExpressionPrinter savedPrinter = Expression.expressionPrinter;
+		StringBuilder rv = new StringBuilder();
 
-		Expression.expressionPrinter = pySimExpressionPrinter;
-		pySimExpressionPrinter.ha = (BaseComponent) config.root;
+		appendAutomaton(rv, config, custom);
 
-		StringBuilder rv = new StringBuilder();
+		return rv.toString();
+	}
 
+	/**
+	 * Write the given hybrid automaton as python code. Modes and transitions are written as they
+	 * are rendered, so the full text is never held in memory at once.
+	 * 
+	 * @param out
+	 *            where to write the code
+	 * @param config
+	 *            the (flat) configuration
+	 * @param custom
+	 *            the printer customization
+	 */
+	public static void appendAutomaton(Appendable out, Configuration config,
+			PythonPrinterCustomization custom)
+	{
 		if (!(config.root instanceof BaseComponent))
 			throw new AutomatonExportException(
 					"PySimPrinter.automatonToString expected flat automaton");
 
-		BaseComponent ha = (BaseComponent) config.root;
+		ExpressionPrinter savedPrinter = Expression.expressionPrinter;
 
-		if (custom != null)
-			for (String line : custom.getImportLines(ha))
-				appendLine(rv, line);
+		Expression.expressionPrinter = pySimExpressionPrinter;
+		pySimExpressionPrinter.ha = (BaseComponent) config.root;
 
-		appendNewline(rv);
+		try
+		{
+			StringBuilder rv = new StringBuilder();
+			BaseComponent ha = (BaseComponent) config.root;
 
-		appendLine(rv, "def define_ha():");
-		appendIndentedLine(rv, "'''make the hybrid automaton and return it'''");
-		appendNewline(rv);
-		appendIndentedLine(rv, "ha = " + custom.automatonObjectName + "()");
-		appendNewline(rv);
+			if (custom != null)
+				for (String line : custom.getImportLines(ha))
+					appendLine(rv, line);
 
-		for (String line : custom.getExtraDeclarationPrintLines(ha))
-			appendIndentedLine(rv, line);
+			appendNewline(rv);
 
-		appendModes(rv, ha, custom);
-		appendJumps(rv, ha, custom);
-		appendNewline(rv);
-		appendIndentedLine(rv, "return ha");
-		appendNewline(rv);
+			appendLine(rv, "def define_ha():");
+			appendIndentedLine(rv, "'''make the hybrid automaton and return it'''");
+			appendNewline(rv);
+			appendIndentedLine(rv, "ha = " + custom.automatonObjectName + "()");
+			appendNewline(rv);
 
-		appendLine(rv, "def define_init_states(ha):");
+			for (String line : custom.getExtraDeclarationPrintLines(ha))
+				appendIndentedLine(rv, line);
 
-		for (String line : custom.getInitLines(config))
-			appendIndentedLine(rv, line);
+			out.append(rv);
+			rv.setLength(0);
 
-		appendNewline(rv);
+			appendModes(out, ha, custom);
+			appendJumps(out, ha, custom);
+			appendNewline(rv);
+			appendIndentedLine(rv, "return ha");
+			appendNewline(rv);
 
-		// restore expressionPrinter
-		Expression.expressionPrinter = savedPrinter;
+			appendLine(rv, "def define_init_states(ha):");
 
-		return rv.toString();
+			for (String line : custom.getInitLines(config))
+				appendIndentedLine(rv, line);
+
+			appendNewline(rv);
+			out.append(rv);
+		}
+		catch (IOException e)
+		{
+			throw new AutomatonExportException("Error writing python automaton", e);
+		}
+		finally
+		{
+			// restore expressionPrinter
+			Expression.expressionPrinter = savedPrinter;
+		}
 	}
 
 	public void printSettings(Configuration config)
@@ -509,6 +577,7 @@ public class PySimPrinter extends ToolPrinter
 		printLine("s = PySimSettings()");
 		printLine("s.max_time = " + config.settings.spaceExConfig.timeHorizon);
 		printLine("s.step = " + config.settings.spaceExConfig.samplingTime);
+		printLine("s.solver = '" + solver + "'");
 
 		int xDim = config.root.variables.indexOf(config.settings.plotVariableNames[0]);
 
@@ -564,7 +633,7 @@ public class PySimPrinter extends ToolPrinter
 		/*
 		 * ha = define_ha() init_states = define_init_states(ha) q_list =
 		 * init_list_to_q_list(init_states, center=True, star=True, corners=False) result =
-		 * sim.simulate_multi(q_list, max_time)
+		 * sim.simulate_multi(q_list, max_time, solver_name=solver)
 		 * 
 		 * return result
 		 */
@@ -572,7 +641,8 @@ public class PySimPrinter extends ToolPrinter
 		printNewline();
 		printLine("q_list = init_list_to_q_list(init_states, " + "center=" + center + ", star="
 				+ star + ", corners=" + corners + ", rand=" + rand + ")");
-		printLine("result = sim.simulate_multi(q_list, settings.max_time)");
+		printLine(
+				"result = sim.simulate_multi(q_list, settings.max_time, solver_name=settings.solver)");
 		printNewline();
 		printLine("return result");
 	}
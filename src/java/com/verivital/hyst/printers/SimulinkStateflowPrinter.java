@@ -21,6 +21,7 @@ import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
 import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.SymbolTable;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
@@ -249,6 +250,25 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 		}
 	}
 
+	/**
+	 * Get the id of a variable in the classification, which is its row/column in the A matrix
+	 *
+	 * @param varID
+	 *            the classification's symbol table
+	 * @param name
+	 *            the variable name
+	 * @return the id, always >= 0
+	 */
+	private static int getVarId(SymbolTable varID, String name)
+	{
+		int rv = varID.getId(name);
+
+		if (rv < 0)
+			throw new AutomatonExportException("Variable not in classification: " + name);
+
+		return rv;
+	}
+
 	/**
 	 * return the size of A matrix depending on a set of variable X
 	 */
@@ -338,7 +358,7 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 	{
 		String rv = "";
 		// Classification cls = new Classification();
-		LinkedHashMap<String, Integer> varID = cls.varID;
+		SymbolTable varID = cls.varID;
 		Expression eInv = m.invariant;
 		for (String v : ha.variables)
 		{
@@ -359,7 +379,7 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 																		// buggy
 				for (String s : ha.variables)
 				{
-					if (varID.get(s) < getAMatrixSize(m))
+					if (getVarId(varID, s) < getAMatrixSize(m))
 					{
 						findInvCoefficient(s, subEquality.asOperation().getRight());
 						rv = rv + coeff + " ";
@@ -487,13 +507,13 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 	public String parseInitialLowerBound(AutomatonMode m)
 	{
 		String rv = "";
-		LinkedHashMap<String, Integer> varID = cls.varID;
+		SymbolTable varID = cls.varID;
 		for (Expression ex : config.init.values())
 		{
 			TreeMap<String, Interval> ranges = getBound(ex);
 			for (String s : ha.variables)
 			{
-				if (varID.get(s) < getAMatrixSize(m))
+				if (getVarId(varID, s) < getAMatrixSize(m))
 				{
 					for (Entry<String, Interval> e : ranges.entrySet())
 					{
@@ -515,13 +535,13 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 	public String parseInitialUpperBound(AutomatonMode m)
 	{
 		String rv = "";
-		LinkedHashMap<String, Integer> varID = cls.varID;
+		SymbolTable varID = cls.varID;
 		for (Expression ex : config.init.values())
 		{
 			TreeMap<String, Interval> ranges = getBound(ex);
 			for (String s : ha.variables)
 			{
-				if (varID.get(s) < getAMatrixSize(m))
+				if (getVarId(varID, s) < getAMatrixSize(m))
 				{
 					for (Entry<String, Interval> e : ranges.entrySet())
 					{
@@ -543,7 +563,7 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 	public String parseInitialInputBound(AutomatonMode m)
 	{
 		String rv = "";
-		LinkedHashMap<String, Integer> varID = cls.varID;
+		SymbolTable varID = cls.varID;
 		double[][] linearMatrix = cls.linearMatrix;
 		boolean allzero = true;
 		for (Expression ex : config.init.values())
@@ -553,7 +573,7 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 			{
 				for (int i = 0; i < getAMatrixSize(m); i++)
 				{
-					if (linearMatrix[i][varID.get(s)] != 0)
+					if (linearMatrix[i][getVarId(varID, s)] != 0)
 						allzero = false;
 				}
 				if (!allzero)
@@ -907,7 +927,7 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 		}
 
 		@Override
-		public String printOperation(Operation operation)
+		protected void layoutOperation(Operation operation, Layout layout)
 		{
 			Operator epsilonOperator = null;
 			final Operator op = operation.getOperator();
@@ -932,7 +952,8 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 					final Operation leq = new Operation(minus, Operator.LESSEQUAL, childRight);
 					final Operation geq = new Operation(plus, Operator.GREATEREQUAL, childRight);
 					operation = new Operation(leq, Operator.AND, geq);
-					return print(operation);
+					layout.expression(operation);
+					return;
 				}
 				break;
 			case LESS:
@@ -1021,14 +1042,15 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 						{
 							builder.append(")");
 						}
-						return builder.toString();
+						layout.text(builder.toString());
+						return;
 					}
 				}
 				break;
 			default:
 				break;
 			}
-			return super.printOperation(operation);
+			super.layoutOperation(operation, layout);
 		}
 	}
 
@@ -1908,11 +1930,15 @@ public class SimulinkStateflowPrinter extends ToolPrinter
 			final Operation formula = stack.pop();
 			if (formula.getOperator() == Operator.AND)
 			{
-				// conjunction, put the conjuncts on the stack
-				assert ((formula.getLeft() instanceof Operation) && (formula
-						.getRight() instanceof Operation)) : "The subformulae should be proper operations.";
-				stack.push((Operation) formula.getRight());
-				stack.push((Operation) formula.getLeft());
+				// conjunction, put the conjuncts on the stack (in reverse, so they are popped in order)
+				final List<Expression> children = formula.children;
+
+				for (int i = children.size() - 1; i >= 0; --i)
+				{
+					assert (children.get(i) instanceof Operation) : "The subformulae should be "
+							+ "proper operations.";
+					stack.push((Operation) children.get(i));
+				}
 			}
 			else
 			{
@@ -6,22 +6,32 @@ package com.verivital.hyst.printers;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Locale;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
+import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.Component;
 import com.verivital.hyst.ir.Configuration;
+import com.verivital.hyst.ir.base.ProductView;
+import com.verivital.hyst.ir.network.NetworkComponent;
 import com.verivital.hyst.main.Hyst;
 import com.verivital.hyst.main.HystFrame;
 import com.verivital.hyst.util.AutomatonUtil;
 import com.verivital.hyst.util.CmdLineRuntimeException;
+import com.verivital.hyst.util.FlattenRenameUtils;
 import com.verivital.hyst.util.Preconditions;
 import com.verivital.hyst.util.Preconditions.PreconditionsFailedException;
 import com.verivital.hyst.util.PreconditionsFlag;
@@ -51,6 +61,10 @@ public abstract class ToolPrinter
 	// ToolPrinter constructor to omit checks)
 	protected Preconditions preconditions = new Preconditions(false);
 
+	// if the model is a network and the printer streams it (see streamsProductView()), the view of
+	// the flattened automaton to print; otherwise null and the root is a flat automaton
+	protected ProductView productView = null;
+
 	// command line parser for tools
 	private CmdLineParser parser = new CmdLineParser(this);
 
@@ -84,6 +98,7 @@ public abstract class ToolPrinter
 
 	// static
 	private static DecimalFormat df;
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
 
 	public void setOutputFile(String filename)
 	{
@@ -146,28 +161,35 @@ public abstract class ToolPrinter
 			{
 				outputStream = System.out;
 			}
-			else if (outputType == OutputType.FILE)
+			else if (outputType == OutputType.FILE && !isBinaryOutput())
 			{
 				shouldCloseStream = true;
-				outputStream = new PrintStream(
-						new BufferedOutputStream(new FileOutputStream(outputFilename)));
+				outputStream = openOutputFile(outputFilename);
 			}
 			else if (outputType == OutputType.STRING)
 				outputString = new StringBuffer();
 
 			this.config = c;
+			productView = null;
+
+			if (canUseProductView(c))
+				checkPreconditionsWithProductView(c);
+			else
+				preconditions.check(c, getToolName());
 
-			preconditions.check(c, getToolName());
 			printAutomaton();
+
+			// printers may modify the model while printing
+			c.establishedPreconditions.clear();
 		}
 		catch (PreconditionsFailedException e)
 		{
 			throw new PreconditionsFailedException(
 					"Preconditions for tool " + getToolName() + " failed", e);
 		}
-		catch (FileNotFoundException e)
+		catch (IOException e)
 		{
-			throw new AutomatonExportException("File Not Found", e);
+			throw new AutomatonExportException("Error opening output file: " + outputFilename, e);
 		}
 		catch (SecurityException e)
 		{
@@ -180,6 +202,107 @@ public abstract class ToolPrinter
 		}
 	}
 
+	/**
+	 * Can this printer print a network directly from a ProductView, instead of from the flattened
+	 * automaton? Printers which override this to return true must read the modes, transitions, and
+	 * params from productView when it is set, rather than from config.root. Since the product is
+	 * never stored, such printers can print networks whose flattened automaton would not fit in
+	 * memory.
+	 */
+	protected boolean streamsProductView()
+	{
+		return false;
+	}
+
+	/**
+	 * Should the network be printed from a product view rather than flattened? Disjunctive initial
+	 * or forbidden states are converted on the flat automaton, so those models are flattened.
+	 */
+	private boolean canUseProductView(Configuration c)
+	{
+		boolean rv = streamsProductView() && c.root instanceof NetworkComponent
+				&& !preconditions.skip[PreconditionsFlag.CONVERT_TO_FLAT_AUTOMATON.ordinal()];
+
+		if (rv && !preconditions.skip[PreconditionsFlag.CONVERT_DISJUNCTIVE_INIT_FORBIDDEN
+				.ordinal()])
+		{
+			byte ops = 0;
+
+			for (Expression e : c.init.values())
+				ops |= AutomatonUtil.classifyExpressionOps(e);
+
+			for (Expression e : c.forbidden.values())
+				ops |= AutomatonUtil.classifyExpressionOps(e);
+
+			rv = (ops & AutomatonUtil.OPS_DISJUNCTION) == 0;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Run the preconditions without flattening the network, and create productView. The network is
+	 * renamed and the settings are converted as in FlattenAutomatonPass, and initial and forbidden
+	 * states which are not in the view (unreachable or unsatisfiable) are removed. If the product
+	 * would need havoc flows converted, the automaton is flattened after all.
+	 * 
+	 * The view is built on a renamed copy of the network, which replaces c.root only if the view is
+	 * used. Otherwise the flattening pass would get a network that was already renamed, and qualify
+	 * the names of local variables a second time.
+	 */
+	private void checkPreconditionsWithProductView(Configuration c)
+	{
+		int flat = PreconditionsFlag.CONVERT_TO_FLAT_AUTOMATON.ordinal();
+		preconditions.skip[flat] = true;
+
+		try
+		{
+			preconditions.check(c, getToolName());
+		}
+		finally
+		{
+			preconditions.skip[flat] = false;
+		}
+
+		Component renamed = c.root.copy();
+		FlattenRenameUtils.convertToFullyQualifiedParams(renamed);
+		ArrayList<String> initModes = new ArrayList<String>(c.init.size());
+
+		for (String mode : c.init.keySet())
+			initModes.add(FlattenRenameUtils.convertModeName(mode));
+
+		ProductView view = new ProductView((NetworkComponent) renamed, initModes);
+
+		if (view.hasAllFlowsAssigned()
+				|| preconditions.skip[PreconditionsFlag.CONVERT_ALL_FLOWS_ASSIGNED.ordinal()])
+		{
+			c.root = renamed;
+			FlattenRenameUtils.convertSettingsSeparator(c);
+			Hyst.log("Printing network from a product view with " + view.getNumModes()
+					+ " reachable modes, without flattening");
+
+			for (Iterator<String> i = c.init.keySet().iterator(); i.hasNext();)
+			{
+				if (!view.containsMode(i.next()))
+					i.remove();
+			}
+
+			for (Iterator<String> i = c.forbidden.keySet().iterator(); i.hasNext();)
+			{
+				if (!view.containsMode(i.next()))
+					i.remove();
+			}
+
+			productView = view;
+		}
+		else
+		{
+			Hyst.log("Product of network has modes without flows for some variables, "
+					+ "flattening to convert them");
+			preconditions.check(c, getToolName());
+		}
+	}
+
 	protected void setBaseName(String originalFilename)
 	{
 		if (originalFilename == null || originalFilename.length() == 0)
@@ -194,6 +317,72 @@ public abstract class ToolPrinter
 		}
 	}
 
+	/**
+	 * Open a text output file. All output goes through a single buffered stream on the file's
+	 * channel, so text rendered in large chunks (see getOutput()) is written with few system calls.
+	 * 
+	 * @param filename
+	 *            the file to create or overwrite
+	 * @return the stream
+	 */
+	private static PrintStream openOutputFile(String filename) throws IOException
+	{
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+		return new PrintStream(
+				new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE));
+	}
+
+	/**
+	 * Get the printer output as an Appendable. Text appended is written as is, without indentation
+	 * or added line breaks. This is useful for text rendered in chunks, such as with
+	 * ParallelRenderer.
+	 * 
+	 * @return the output
+	 */
+	protected Appendable getOutput()
+	{
+		return new Appendable()
+		{
+			@Override
+			public Appendable append(CharSequence csq)
+			{
+				printText(String.valueOf(csq));
+
+				return this;
+			}
+
+			@Override
+			public Appendable append(CharSequence csq, int start, int end)
+			{
+				printText(String.valueOf(csq).substring(start, end));
+
+				return this;
+			}
+
+			@Override
+			public Appendable append(char c)
+			{
+				printText(String.valueOf(c));
+
+				return this;
+			}
+		};
+	}
+
+	/**
+	 * Write text to the output as is. Unlike print(s, false), the gui output doesn't start a new
+	 * line after the text.
+	 */
+	private void printText(String s)
+	{
+		if (outputType == OutputType.GUI)
+			outputFrame.addOutputText(s);
+		else
+			print(s, false);
+	}
+
 	/**
 	 * Print a newline in the output file stream
 	 */
@@ -306,6 +495,25 @@ public abstract class ToolPrinter
 			increaseIndentation();
 	}
 
+	/**
+	 * Print an expression on its own line, using the current Expression.expressionPrinter. The
+	 * expression text is written directly to the output rather than being built as a string first.
+	 * 
+	 * @param e
+	 *            the expression to print
+	 */
+	protected void printExpressionLine(Expression e)
+	{
+		if (outputType == OutputType.GUI)
+			printLine(e.toString()); // gui output is line-based
+		else
+		{
+			print(indentation, false);
+			Expression.expressionPrinter.print(e, getOutput());
+			printNewline();
+		}
+	}
+
 	protected void print(String s)
 	{
 		this.print(s, true);
@@ -371,12 +579,17 @@ public abstract class ToolPrinter
 
 	public static String doubleToString(double n)
 	{
-		return df.format(n);
+		// DecimalFormat is not thread-safe, and modes may be rendered in parallel
+		synchronized (df)
+		{
+			return df.format(n);
+		}
 	}
 
 	public void flush()
 	{
-		if (outputType == OutputType.STDOUT || outputType == OutputType.FILE)
+		if ((outputType == OutputType.STDOUT || outputType == OutputType.FILE)
+				&& outputStream != null)
 			outputStream.flush();
 	}
 
@@ -388,6 +601,17 @@ public abstract class ToolPrinter
 		return out.toString();
 	}
 
+	/**
+	 * Does this printer write binary data instead of text? If so, no text stream is opened for file
+	 * output, and the printer should write to outputFilename itself in printAutomaton().
+	 * 
+	 * @return true for binary printers
+	 */
+	protected boolean isBinaryOutput()
+	{
+		return false;
+	}
+
 	/**
 	 * Get the default extension for model files for this printer
 	 * 
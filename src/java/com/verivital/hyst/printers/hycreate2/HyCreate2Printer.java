@@ -724,17 +724,14 @@ public class HyCreate2Printer extends ToolPrinter
 		}
 
 		@Override
-		public String printOperation(Operation o)
+		protected void layoutOperation(Operation o, Layout layout)
 		{
 			// custom printing for pow operators
-			String rv = null;
-
 			if (o.op == Operator.POW)
-				rv = "Math.pow(" + print(o.getLeft()) + ", " + print(o.getRight()) + ")";
+				layout.text("Math.pow(").expression(o.getLeft()).text(", ")
+						.expression(o.getRight()).text(")");
 			else
-				rv = super.printOperation(o);
-
-			return rv;
+				super.layoutOperation(o, layout);
 		}
 	};
 }
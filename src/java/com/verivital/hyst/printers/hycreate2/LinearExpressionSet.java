@@ -34,8 +34,8 @@ public class LinearExpressionSet
 
 			if (o.op == Operator.AND)
 			{
-				accumulateExpressions(original, o.getLeft(), variables);
-				accumulateExpressions(original, o.getRight(), variables);
+				for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+					accumulateExpressions(original, conjunct, variables);
 			}
 			else
 			{
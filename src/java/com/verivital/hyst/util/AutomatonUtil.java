@@ -3,6 +3,7 @@ package com.verivital.hyst.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -29,6 +30,7 @@ import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.Component;
 import com.verivital.hyst.ir.Configuration;
+import com.verivital.hyst.ir.SymbolTable;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.AutomatonTransition;
 import com.verivital.hyst.ir.base.BaseComponent;
@@ -275,16 +277,22 @@ public abstract class AutomatonUtil
 
 		if (o.op == Operator.AND)
 		{
-			Expression left = removeExactAssignments(o.getLeft(), vars);
-			Expression right = removeExactAssignments(o.getRight(), vars);
+			ArrayList<Expression> kept = new ArrayList<Expression>();
 
-			if (left == null)
-				rv = right;
-			else if (right == null)
-				rv = left;
-			else
-				rv = new Operation(Operator.AND, left, right);
+			for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+			{
+				Expression c = removeExactAssignments(conjunct, vars);
+
+				if (c != null)
+					kept.add(c);
+			}
 
+			if (kept.isEmpty())
+				rv = null;
+			else if (kept.size() == 1)
+				rv = kept.get(0);
+			else
+				rv = new Operation(Operator.AND, kept);
 		}
 		else if (o.op == Operator.EQUAL)
 		{
@@ -350,8 +358,8 @@ public abstract class AutomatonUtil
 
 		if (o.op == Operator.AND)
 		{
-			extractExactAssignmentsRec(rv, vars, o.getLeft());
-			extractExactAssignmentsRec(rv, vars, o.getRight());
+			for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+				extractExactAssignmentsRec(rv, vars, conjunct);
 		}
 		else if (o.op == Operator.EQUAL)
 		{
@@ -465,8 +473,8 @@ public abstract class AutomatonUtil
 
 		if (o.op == Operator.AND)
 		{
-			parseFlowExpressionRecursive(allowedVariables, flow, o.getLeft(), original);
-			parseFlowExpressionRecursive(allowedVariables, flow, o.getRight(), original);
+			for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+				parseFlowExpressionRecursive(allowedVariables, flow, conjunct, original);
 		}
 		else if (o.op == Operator.EQUAL)
 		{
@@ -869,6 +877,17 @@ public abstract class AutomatonUtil
 	public static final byte OPS_MATRIX = 1 << 5; // matrix subexpressions
 	public static final byte OPS_DISJUNCTION = 1 << 6; // or operator (||)
 
+	private static final EnumSet<Operator> LINEAR_OPS = EnumSet.of(Operator.ADD,
+			Operator.SUBTRACT, Operator.MULTIPLY, Operator.NEGATIVE);
+
+	private static final EnumSet<Operator> BOOLEAN_OPS = EnumSet.of(Operator.AND, Operator.OR,
+			Operator.EQUAL, Operator.LESS, Operator.GREATER, Operator.LESSEQUAL,
+			Operator.GREATEREQUAL, Operator.NOTEQUAL, Operator.LOGICAL_NOT);
+
+	private static final EnumSet<Operator> NONLINEAR_OPS = EnumSet.of(Operator.POW,
+			Operator.DIVIDE, Operator.COS, Operator.SIN, Operator.SQRT, Operator.TAN, Operator.EXP,
+			Operator.LN);
+
 	/**
 	 * Classify an Expression's operators. This returns a bitmask, which you can use to check for
 	 * various parts of the expression. For example, val = classifyExpression(e); if (val |
@@ -878,7 +897,9 @@ public abstract class AutomatonUtil
 	 * but not HAS_LINEAR, since there are no linear operations in the expression.
 	 * 
 	 * Notice that the operator classification is NOT the same as the expression classification, for
-	 * example "x*y" is a nonlinear expression, but only uses linear operators (multiplication)
+	 * example "x*y" is a nonlinear expression, but only uses linear operators (multiplication). To
+	 * classify the expression itself (degree, linearity), use Polynomial.fromExpression() or
+	 * AutomatonMode.getFlowPolynomial().
 	 * 
 	 * @param e
 	 *            the expression to check
@@ -888,18 +909,6 @@ public abstract class AutomatonUtil
 	public static byte classifyExpressionOps(Expression e)
 	{
 		byte rv = 0;
-
-		final Collection<Operator> LINEAR_OPS = Arrays.asList(new Operator[] { Operator.ADD,
-				Operator.SUBTRACT, Operator.MULTIPLY, Operator.NEGATIVE });
-
-		final Collection<Operator> BOOLEAN_OPS = Arrays.asList(new Operator[] { Operator.AND,
-				Operator.OR, Operator.EQUAL, Operator.LESS, Operator.GREATER, Operator.LESSEQUAL,
-				Operator.GREATEREQUAL, Operator.NOTEQUAL, Operator.LOGICAL_NOT });
-
-		final Collection<Operator> NONLINEAR_OPS = Arrays
-				.asList(new Operator[] { Operator.POW, Operator.DIVIDE, Operator.COS, Operator.SIN,
-						Operator.SQRT, Operator.TAN, Operator.EXP, Operator.LN });
-
 		Operation o = e.asOperation();
 
 		if (o != null)
@@ -1285,6 +1294,58 @@ public abstract class AutomatonUtil
 				else
 					rv = new Operation(Operator.ADD, leftSide, rightSide);
 			}
+			else if (o.op == Operator.DIVIDE)
+			{
+				Expression num = o.getLeft();
+				Expression den = o.getRight();
+				Expression numDer = derivativeOf(num, timeDerivatives);
+				Expression denDer = derivativeOf(den, timeDerivatives);
+
+				// quotient rule: (x/y)' = (x'y - xy') / y^2
+				rv = new Operation(Operator.DIVIDE,
+						new Operation(Operator.SUBTRACT,
+								new Operation(Operator.MULTIPLY, numDer, den),
+								new Operation(Operator.MULTIPLY, num, denDer)),
+						new Operation(Operator.POW, den, new Constant(2)));
+			}
+			else if (o.op == Operator.POW)
+			{
+				if (!(o.getRight() instanceof Constant))
+					throw new AutomatonExportException(
+							"Only constant exponents are supported in derivativeOf: "
+									+ e.toDefaultString());
+
+				double n = ((Constant) o.getRight()).getVal();
+				Expression base = o.getLeft();
+
+				// (x^n)' = n * x^(n-1) * x'
+				rv = new Operation(Operator.MULTIPLY,
+						new Operation(Operator.MULTIPLY, new Constant(n),
+								new Operation(Operator.POW, base, new Constant(n - 1))),
+						derivativeOf(base, timeDerivatives));
+			}
+			else if (o.op == Operator.SIN || o.op == Operator.COS || o.op == Operator.EXP
+					|| o.op == Operator.LN || o.op == Operator.SQRT)
+			{
+				Expression arg = o.children.get(0);
+				Expression outer;
+
+				// chain rule: f(x)' = f'(x) * x'
+				if (o.op == Operator.SIN)
+					outer = new Operation(Operator.COS, arg);
+				else if (o.op == Operator.COS)
+					outer = new Operation(Operator.NEGATIVE, new Operation(Operator.SIN, arg));
+				else if (o.op == Operator.EXP)
+					outer = new Operation(Operator.EXP, arg);
+				else if (o.op == Operator.LN)
+					outer = new Operation(Operator.DIVIDE, new Constant(1), arg);
+				else
+					outer = new Operation(Operator.DIVIDE, new Constant(1),
+							new Operation(Operator.MULTIPLY, new Constant(2),
+									new Operation(Operator.SQRT, arg)));
+
+				rv = new Operation(Operator.MULTIPLY, outer, derivativeOf(arg, timeDerivatives));
+			}
 			else
 				throw new AutomatonExportException("Unsupported Operation in derivativeOf '"
 						+ o.op.toDefaultString() + "': " + e.toDefaultString());
@@ -1328,25 +1389,192 @@ public abstract class AutomatonUtil
 
 	public static double evaluateExpression(Expression e, HyperPoint pt, List<String> variableNames)
 	{
-		// create value map
-		TreeMap<String, Expression> valMap = new TreeMap<String, Expression>();
+		return evaluateExpression(e, symbolsFor(variableNames), pt.dims);
+	}
+
+	// symbol table for the last variable list passed to evaluateExpression(), per thread
+	private static final ThreadLocal<SymbolTable> lastSymbols = new ThreadLocal<SymbolTable>();
+
+	/**
+	 * Get a symbol table where the id of each variable is its index in the list. The last table
+	 * is reused if the list hasn't changed, so Variable expressions keep their resolved ids across
+	 * calls.
+	 */
+	private static SymbolTable symbolsFor(List<String> variableNames)
+	{
+		SymbolTable rv = lastSymbols.get();
+		boolean same = rv != null && rv.size() == variableNames.size();
+
+		for (int i = 0; same && i < variableNames.size(); ++i)
+			same = rv.getName(i).equals(variableNames.get(i));
+
+		if (!same)
+		{
+			rv = new SymbolTable(variableNames);
+			lastSymbols.set(rv);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Numerically evaluate an expression, with the variable values given by symbol id. Boolean
+	 * operations evaluate to 1 (true) or 0 (false), and lookup tables with numeric tables are
+	 * interpolated.
+	 * 
+	 * @param e
+	 *            the expression
+	 * @param symbols
+	 *            the symbol table the ids are from
+	 * @param values
+	 *            the value of each variable, indexed by id
+	 * @return the value of the expression
+	 * @throws AutomatonExportException
+	 *             if a variable has no value or the expression has an unsupported operation
+	 */
+	public static double evaluateExpression(Expression e, SymbolTable symbols, double[] values)
+	{
+		try
+		{
+			return evaluateRec(e, symbols, values);
+		}
+		catch (AutomatonExportException ex)
+		{
+			throw new AutomatonExportException(
+					"Could not evaluate expression while simulating: " + e.toDefaultString(), ex);
+		}
+	}
+
+	private static double evaluateRec(Expression e, SymbolTable symbols, double[] values)
+	{
+		double rv;
+
+		if (e instanceof Constant)
+			rv = ((Constant) e).getVal();
+		else if (e instanceof Variable)
+		{
+			int id = symbols.getId((Variable) e);
+
+			if (id < 0 || id >= values.length)
+				throw new AutomatonExportException(
+						"No value for variable '" + ((Variable) e).name + "'");
+
+			rv = values[id];
+		}
+		else if (e instanceof LutExpression)
+		{
+			LutExpression lut = (LutExpression) e;
+			double[] inputs = new double[lut.inputs.length];
 
-		for (int i = 0; i < pt.dims.length; ++i)
-			valMap.put(variableNames.get(i), new Constant(pt.dims[i]));
+			for (int i = 0; i < inputs.length; ++i)
+				inputs[i] = evaluateRec(lut.inputs[i], symbols, values);
 
-		ValueSubstituter vs = new ValueSubstituter(valMap);
+			rv = LutInterpolator.get(lut).evaluate(inputs);
+		}
+		else if (e instanceof Operation)
+		{
+			Operation o = (Operation) e;
+			Operator op = o.op;
 
-		Expression substituted = vs.substitute(e);
+			if (op == Operator.ADD || op == Operator.MULTIPLY || op == Operator.AND
+					|| op == Operator.OR)
+			{
+				// possibly n-ary
+				rv = evaluateRec(o.children.get(0), symbols, values);
 
-		Expression result = SimplifyExpressionsPass.simplifyExpression(substituted);
+				for (int i = 1; i < o.children.size(); ++i)
+				{
+					double val = evaluateRec(o.children.get(i), symbols, values);
+
+					if (op == Operator.ADD)
+						rv += val;
+					else if (op == Operator.MULTIPLY)
+						rv *= val;
+					else if (op == Operator.AND)
+						rv = (rv != 0 && val != 0) ? 1 : 0;
+					else
+						rv = (rv != 0 || val != 0) ? 1 : 0;
+				}
+			}
+			else if (o.children.size() == 1)
+			{
+				double val = evaluateRec(o.children.get(0), symbols, values);
 
-		double rv = 0;
+				switch (op)
+				{
+				case SUBTRACT:
+				case NEGATIVE:
+					rv = -val;
+					break;
+				case LOGICAL_NOT:
+					rv = (val == 0) ? 1 : 0;
+					break;
+				case COS:
+					rv = Math.cos(val);
+					break;
+				case EXP:
+					rv = Math.exp(val);
+					break;
+				case SIN:
+					rv = Math.sin(val);
+					break;
+				case SQRT:
+					rv = Math.sqrt(val);
+					break;
+				case TAN:
+					rv = Math.tan(val);
+					break;
+				case LN:
+					rv = Math.log(val);
+					break;
+				default:
+					throw new AutomatonExportException("Unsupported unary operation: " + op);
+				}
+			}
+			else if (o.children.size() == 2)
+			{
+				double left = evaluateRec(o.getLeft(), symbols, values);
+				double right = evaluateRec(o.getRight(), symbols, values);
 
-		if (result instanceof Constant)
-			rv = ((Constant) result).getVal();
+				switch (op)
+				{
+				case DIVIDE:
+					rv = left / right;
+					break;
+				case SUBTRACT:
+					rv = left - right;
+					break;
+				case POW:
+					rv = Math.pow(left, right);
+					break;
+				case EQUAL:
+					rv = (left == right) ? 1 : 0;
+					break;
+				case NOTEQUAL:
+					rv = (left != right) ? 1 : 0;
+					break;
+				case LESS:
+					rv = (left < right) ? 1 : 0;
+					break;
+				case GREATER:
+					rv = (left > right) ? 1 : 0;
+					break;
+				case LESSEQUAL:
+					rv = (left <= right) ? 1 : 0;
+					break;
+				case GREATEREQUAL:
+					rv = (left >= right) ? 1 : 0;
+					break;
+				default:
+					throw new AutomatonExportException("Unsupported binary operation: " + op);
+				}
+			}
+			else
+				throw new AutomatonExportException("Unsupported operation: " + op);
+		}
 		else
 			throw new AutomatonExportException(
-					"Could not simplify flow expression completely while simulating: " + e);
+					"Unsupported expression type: " + e.getClass().getSimpleName());
 
 		return rv;
 	}
@@ -3,17 +3,14 @@
  */
 package com.verivital.hyst.util;
 
-import static com.verivital.hyst.util.AutomatonUtil.simplifyExpression;
-
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 
 import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.grammar.formula.Operation;
-import com.verivital.hyst.grammar.formula.Operator;
-import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonValidationException;
+import com.verivital.hyst.ir.SymbolTable;
 import com.verivital.hyst.ir.base.AutomatonMode;
 import com.verivital.hyst.ir.base.BaseComponent;
 import com.verivital.hyst.ir.base.ExpressionInterval;
@@ -76,7 +73,7 @@ public class Classification
 		// TODO: stochastic ones, etc.
 	}
 
-	public static LinkedHashMap<String, Integer> varID;
+	public static SymbolTable varID;
 	public static double[][] linearMatrix;
 	public static BaseComponent ha;
 
@@ -172,13 +169,18 @@ public class Classification
 		return rv;
 	}
 
-	public static boolean isLinearDynamics(LinkedHashMap<String, ExpressionInterval> flowDynamics)
+	/**
+	 * Check if all the flows in a mode are linear, using the mode's cached polynomials
+	 */
+	public static boolean isLinearDynamics(AutomatonMode m)
 	{
 		boolean rv = true;
 
-		for (ExpressionInterval e : flowDynamics.values())
+		for (String var : m.flowDynamics.keySet())
 		{
-			if (!isLinearExpression(e.getExpression()))
+			Polynomial p = m.getFlowPolynomial(var);
+
+			if (p == null || !p.isLinear())
 			{
 				rv = false;
 				break;
@@ -188,56 +190,16 @@ public class Classification
 		return rv;
 	}
 
-	public static boolean isLinearExpression(Expression e)
+	public static boolean isLinearDynamics(LinkedHashMap<String, ExpressionInterval> flowDynamics)
 	{
 		boolean rv = true;
 
-		Operation o = e.asOperation();
-
-		if (o != null)
+		for (ExpressionInterval e : flowDynamics.values())
 		{
-			if (o.op == Operator.MULTIPLY)
-			{
-				int numVars = 0;
-
-				for (Expression c : o.children)
-				{
-					int count = countVariablesMultNeg(c);
-
-					if (count != Integer.MAX_VALUE)
-					{
-						numVars += count;
-					}
-					else
-					{
-						rv = false;
-						break;
-					}
-				}
-
-				if (numVars > 1)
-				{
-					rv = false;
-				}
-			}
-			else if (o.op == Operator.ADD || o.op == Operator.SUBTRACT)
-			{
-				for (Expression c : o.children)
-				{
-					if (!isLinearExpression(c))
-					{
-						rv = false;
-						break;
-					}
-				}
-			}
-			else if (o.op == Operator.NEGATIVE)
-			{
-				rv = isLinearExpression(o.children.get(0));
-			}
-			else
+			if (!isLinearExpression(e.getExpression()))
 			{
 				rv = false;
+				break;
 			}
 		}
 
@@ -245,47 +207,13 @@ public class Classification
 	}
 
 	/**
-	 * Recursively count the number of variables. only recurse if we have multiplication, or
-	 * negation, otherwise return Integer.MAX_VALUE
-	 *
-	 * @param e
-	 *            the expression
-	 * @return the number of variables
+	 * Check if an expression is linear (affine), by converting it to a polynomial
 	 */
-	private static int countVariablesMultNeg(Expression e)
+	public static boolean isLinearExpression(Expression e)
 	{
-		int rv = 0;
-		Operation o = e.asOperation();
-
-		if (o != null)
-		{
-			if (o.op == Operator.MULTIPLY || o.op == Operator.NEGATIVE)
-			{
-				for (Expression c : o.children)
-				{
-					int count = countVariablesMultNeg(c);
+		Polynomial p = Polynomial.fromExpression(e);
 
-					if (count == Integer.MAX_VALUE)
-					{
-						rv = Integer.MAX_VALUE;
-					}
-					else
-					{
-						rv += count;
-					}
-				}
-			}
-			else
-			{
-				rv = Integer.MAX_VALUE;
-			}
-		}
-		else if (e instanceof Variable)
-		{
-			rv = 1;
-		}
-
-		return rv;
+		return p != null && p.isLinear();
 	}
 
 	/**
@@ -293,16 +221,10 @@ public class Classification
 	 */
 	public void setVarID(BaseComponent ha)
 	{
-		varID = new LinkedHashMap<String, Integer>();
-		int id = 0;
-		for (String v : ha.variables)
-		{
-			varID.put(v, id++);
-		}
+		varID = new SymbolTable(ha.variables);
+
 		for (String c : ha.constants.keySet())
-		{
-			varID.put(c, id++);
-		}
+			varID.intern(c);
 	}
 
 	/**
@@ -310,7 +232,7 @@ public class Classification
 	 */
 	public void setLinearMatrix(AutomatonMode m)
 	{
-		if (!isLinearDynamics(m.flowDynamics))
+		if (!isLinearDynamics(m))
 		{
 			throw new AutomatonValidationException("this is not a linear automaton");
 		}
@@ -319,10 +241,9 @@ public class Classification
 			int size = varID.size();
 			int i = 0;
 			linearMatrix = new double[ha.variables.size()][size];
-			for (ExpressionInterval ei : m.flowDynamics.values())
+			for (String var : m.flowDynamics.keySet())
 			{
-				Expression e = simplifyExpression(ei.getExpression());
-				findCoefficient(i, e);
+				findCoefficient(i, m.getFlowPolynomial(var));
 				i++;
 			}
 		}
@@ -331,79 +252,14 @@ public class Classification
 	/**
 	 * find coefficients for all variables and constants of the linear expressions
 	 */
-	private void findCoefficient(int i, Expression e)
+	private void findCoefficient(int i, Polynomial p)
 	{
-
-		if (e instanceof Variable)
-		{
-			if (e.getParent() != null)
-			{
-				if (e.getParent().op == Operator.SUBTRACT)
-				{
-					linearMatrix[i][varID.get(e.toDefaultString())] = -1;
-				}
-			}
-			else
-			{
-				linearMatrix[i][varID.get(e.toDefaultString())] = 1;
-			}
-		}
-		else if (e instanceof Operation)
+		for (String name : p.getVariables())
 		{
-			Operation o = (Operation) e;
+			int id = varID.getId(name);
 
-			if (o.op == Operator.NEGATIVE)
-			{
-				Expression child = o.children.get(0);
-				linearMatrix[i][varID.get(child.toDefaultString())] = -1;
-			}
-			if (o.op == Operator.MULTIPLY)
-			{
-				Expression l = o.getLeft();
-				Expression r = o.getRight();
-				if (r instanceof Variable && l instanceof Constant)
-				{
-					linearMatrix[i][varID.get(r.toDefaultString())] = ((Constant) l).getVal();
-					if (o.getParent() != null)
-					{
-						if (o.getParent().op == Operator.SUBTRACT
-								&& o.getParent().getRight().equals(o))
-						{
-							linearMatrix[i][varID.get(r.toDefaultString())] = -linearMatrix[i][varID
-									.get(r.toDefaultString())];
-						}
-					}
-				}
-				else if (l instanceof Variable && r instanceof Constant)
-				{
-					linearMatrix[i][varID.get(l.toDefaultString())] = ((Constant) r).getVal();
-					if (o.getParent() != null)
-					{
-						if (o.getParent().op == Operator.SUBTRACT
-								&& o.getParent().getRight().equals(o))
-						{
-							linearMatrix[i][varID.get(l.toDefaultString())] = -linearMatrix[i][varID
-									.get(l.toDefaultString())];
-						}
-					}
-				}
-			}
-			else if (o.op == Operator.ADD || o.op == Operator.SUBTRACT)
-			{
-				if (o.getRight() instanceof Variable)
-				{
-					linearMatrix[i][varID.get(o.getRight().toDefaultString())] = 1;
-				}
-				if (o.getLeft() instanceof Variable)
-				{
-					linearMatrix[i][varID.get(o.getLeft().toDefaultString())] = 1;
-				}
-				if (o.getRight() instanceof Operation || o.getLeft() instanceof Operation)
-				{
-					findCoefficient(i, o.getRight());
-					findCoefficient(i, o.getLeft());
-				}
-			}
+			if (id != -1)
+				linearMatrix[i][id] = p.getLinearCoefficient(name);
 		}
 	}
 
@@ -0,0 +1,345 @@
+package com.verivital.hyst.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.Operation;
+import com.verivital.hyst.grammar.formula.Operator;
+import com.verivital.hyst.ir.AutomatonExportException;
+
+/**
+ * Lazily enumerates the disjunctive normal form (DNF) of a boolean expression. Each element is one
+ * disjunct, given as the list of its atoms (the conditions which are not AND or OR operations), in
+ * the order they appear in the expression. The disjunction of all the elements is equivalent to the
+ * original expression.
+ *
+ * Disjuncts are produced on demand by a depth-first search over the choices of the OR operations,
+ * rather than by building the full (possibly exponential) expansion up front. If pruning is
+ * enabled, partial conjunctions whose interval constraints are contradictory (for example x <= 1 &
+ * x >= 2, checked with RangeExtractor) are dropped as soon as the contradiction is found, along
+ * with every disjunct that would extend them.
+ *
+ * The number of disjuncts before pruning is computed on construction (see getExpansionSize()). If
+ * it's more than the limit, an AutomatonExportException is raised before anything is expanded.
+ *
+ * The enumeration order matches expanding each AND from its last operand to its first, so for
+ * (a | b) & (c | d) the disjuncts are a & c, b & c, a & d, b & d.
+ */
+public class DnfIterator implements Iterator<List<Expression>>
+{
+	// default limit on the number of disjuncts (before pruning)
+	public static final long DEFAULT_MAX_DISJUNCTS = 1 << 16;
+
+	private static final List<Operator> PRUNE_OPS = Arrays.asList(Operator.EQUAL,
+			Operator.LESS, Operator.LESSEQUAL, Operator.GREATER, Operator.GREATEREQUAL);
+
+	private final boolean prune;
+	private final long expansionSize;
+	private final ArrayDeque<State> stack = new ArrayDeque<State>();
+	private List<Expression> next = null;
+
+	/**
+	 * Immutable singly-linked list, so search states can share their common parts
+	 */
+	private static class Cons
+	{
+		final Expression head;
+		final Cons tail;
+
+		Cons(Expression head, Cons tail)
+		{
+			this.head = head;
+			this.tail = tail;
+		}
+	}
+
+	/**
+	 * A partial disjunct in the search: the subexpressions which still need to be expanded, the
+	 * atoms collected so far (most recent first), and the ranges implied by those atoms (if pruning)
+	 */
+	private static class State
+	{
+		final Cons pending;
+		final Cons atoms;
+		final TreeMap<String, Interval> ranges;
+
+		State(Cons pending, Cons atoms, TreeMap<String, Interval> ranges)
+		{
+			this.pending = pending;
+			this.atoms = atoms;
+			this.ranges = ranges;
+		}
+	}
+
+	/**
+	 * Create a DNF iterator with the default limit
+	 *
+	 * @param e
+	 *            the expression to expand
+	 * @param prune
+	 *            should partial conjunctions with contradictory interval constraints be dropped?
+	 */
+	public DnfIterator(Expression e, boolean prune)
+	{
+		this(e, prune, DEFAULT_MAX_DISJUNCTS);
+	}
+
+	/**
+	 * Create a DNF iterator
+	 *
+	 * @param e
+	 *            the expression to expand
+	 * @param prune
+	 *            should partial conjunctions with contradictory interval constraints be dropped?
+	 * @param maxDisjuncts
+	 *            the limit on the number of disjuncts (before pruning), or a nonpositive number for
+	 *            no limit
+	 * @throws AutomatonExportException
+	 *             if the expansion is larger than maxDisjuncts
+	 */
+	public DnfIterator(Expression e, boolean prune, long maxDisjuncts)
+	{
+		this.prune = prune;
+		this.expansionSize = countDisjuncts(e);
+
+		if (maxDisjuncts > 0 && expansionSize > maxDisjuncts)
+		{
+			String size = expansionSize == Long.MAX_VALUE ? "more than " + Long.MAX_VALUE
+					: "" + expansionSize;
+
+			throw new AutomatonExportException("Expanding condition into disjunctive normal form "
+					+ "would produce " + size + " disjuncts, which is more than the limit of "
+					+ maxDisjuncts + ": " + e.toDefaultString());
+		}
+
+		stack.push(new State(new Cons(e, null), null,
+				prune ? new TreeMap<String, Interval>() : null));
+	}
+
+	/**
+	 * Get the number of disjuncts in the full expansion, before pruning. This is an upper bound on
+	 * the number of elements the iterator produces.
+	 */
+	public long getExpansionSize()
+	{
+		return expansionSize;
+	}
+
+	/**
+	 * Count the number of disjuncts in the DNF of an expression, without expanding it
+	 *
+	 * @param e
+	 *            the expression
+	 * @return the number of disjuncts, saturated at Long.MAX_VALUE
+	 */
+	public static long countDisjuncts(Expression e)
+	{
+		long rv = 1;
+		Operation o = e.asOperation();
+
+		if (o != null && o.op == Operator.OR)
+		{
+			rv = 0;
+
+			for (Expression child : Expression.getOperands(o, Operator.OR))
+				rv = saturatedAdd(rv, countDisjuncts(child));
+		}
+		else if (o != null && o.op == Operator.AND)
+		{
+			for (Expression child : Expression.getOperands(o, Operator.AND))
+				rv = saturatedMultiply(rv, countDisjuncts(child));
+		}
+
+		return rv;
+	}
+
+	private static long saturatedAdd(long a, long b)
+	{
+		return (a > Long.MAX_VALUE - b) ? Long.MAX_VALUE : a + b;
+	}
+
+	private static long saturatedMultiply(long a, long b)
+	{
+		long rv;
+
+		if (a == 0 || b == 0)
+			rv = 0;
+		else if (a > Long.MAX_VALUE / b)
+			rv = Long.MAX_VALUE;
+		else
+			rv = a * b;
+
+		return rv;
+	}
+
+	/**
+	 * Convert a disjunct (list of atoms) back into an expression
+	 *
+	 * @param atoms
+	 *            the atoms, as returned by next()
+	 * @return the conjunction of the atoms, or Constant.TRUE if the list is empty
+	 */
+	public static Expression toConjunction(List<Expression> atoms)
+	{
+		Expression rv;
+
+		if (atoms.isEmpty())
+			rv = Constant.TRUE;
+		else if (atoms.size() == 1)
+			rv = atoms.get(0);
+		else
+			rv = new Operation(Operator.AND, new ArrayList<Expression>(atoms));
+
+		return rv;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null)
+			next = advance();
+
+		return next != null;
+	}
+
+	@Override
+	public List<Expression> next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		List<Expression> rv = next;
+		next = null;
+
+		return rv;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Run the search until the next complete disjunct is found
+	 *
+	 * @return the disjunct, or null if there are no more
+	 */
+	private List<Expression> advance()
+	{
+		List<Expression> rv = null;
+
+		while (rv == null && !stack.isEmpty())
+		{
+			State s = stack.pop();
+
+			if (s.pending == null)
+			{
+				// complete disjunct; atoms are most recent first, which is the expression order
+				// since conjunctions are expanded from their last operand
+				rv = new ArrayList<Expression>();
+
+				for (Cons c = s.atoms; c != null; c = c.tail)
+					rv.add(c.head);
+
+				continue;
+			}
+
+			Expression e = s.pending.head;
+			Cons rest = s.pending.tail;
+			Operation o = e.asOperation();
+
+			if (o != null && o.op == Operator.AND)
+			{
+				// the last operand ends up on top of the pending list, so it's expanded first
+				Cons pending = rest;
+
+				for (Expression child : Expression.getOperands(o, Operator.AND))
+					pending = new Cons(child, pending);
+
+				stack.push(new State(pending, s.atoms, s.ranges));
+			}
+			else if (o != null && o.op == Operator.OR)
+			{
+				// push in reverse, so the first disjunct is explored first
+				List<Expression> children = Expression.getOperands(o, Operator.OR);
+
+				for (int i = children.size() - 1; i >= 0; --i)
+					stack.push(new State(new Cons(children.get(i), rest), s.atoms, s.ranges));
+			}
+			else if (e == Constant.TRUE)
+				stack.push(new State(rest, s.atoms, s.ranges));
+			else if (e == Constant.FALSE && prune)
+			{
+				// infeasible, drop it
+			}
+			else
+			{
+				TreeMap<String, Interval> ranges = prune ? narrowRanges(s.ranges, e) : null;
+
+				if (!prune || ranges != null)
+					stack.push(new State(rest, new Cons(e, s.atoms), ranges));
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Intersect the ranges of a partial conjunction with the ranges of a new atom
+	 *
+	 * @return the new ranges, or null if they are contradictory
+	 */
+	private static TreeMap<String, Interval> narrowRanges(TreeMap<String, Interval> ranges,
+			Expression atom)
+	{
+		TreeMap<String, Interval> rv = ranges;
+		Operation o = atom.asOperation();
+
+		if (o != null && PRUNE_OPS.contains(o.op))
+		{
+			TreeMap<String, Interval> atomRanges = new TreeMap<String, Interval>();
+
+			try
+			{
+				RangeExtractor.getWeakVariableRanges(atom, atomRanges);
+			}
+			catch (AutomatonExportException e)
+			{
+				// not an interval constraint, can't be used for pruning
+				atomRanges.clear();
+			}
+
+			if (!atomRanges.isEmpty())
+			{
+				rv = new TreeMap<String, Interval>(ranges);
+
+				for (Entry<String, Interval> entry : atomRanges.entrySet())
+				{
+					Interval cur = rv.get(entry.getKey());
+					Interval i = (cur == null) ? entry.getValue()
+							: Interval.intersection(cur, entry.getValue());
+
+					if (i == null)
+					{
+						rv = null;
+						break;
+					}
+
+					rv.put(entry.getKey(), i);
+				}
+			}
+		}
+
+		return rv;
+	}
+}
@@ -6,7 +6,6 @@ import com.verivital.hyst.grammar.formula.Constant;
 import com.verivital.hyst.grammar.formula.Expression;
 import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
-import com.verivital.hyst.grammar.formula.Variable;
 import com.verivital.hyst.ir.AutomatonExportException;
 import com.verivital.hyst.ir.base.AutomatonMode;
 
@@ -22,9 +21,7 @@ public class DynamicsUtil
 
 		String row = nonInputVars.get(index);
 
-		Expression der = am.flowDynamics.get(row).asExpression();
-
-		return extractLinearVector(der, nonInputVars);
+		return extractLinearVector(getLinearFlowPolynomial(am, row), nonInputVars);
 	}
 
 	/**
@@ -46,9 +43,8 @@ public class DynamicsUtil
 
 		for (String row : nonInputVars)
 		{
-			Expression der = am.flowDynamics.get(row).asExpression();
-
-			ArrayList<Double> line = extractLinearVector(der, inputVars);
+			ArrayList<Double> line = extractLinearVector(getLinearFlowPolynomial(am, row),
+					inputVars);
 
 			rv.add(line);
 		}
@@ -92,9 +88,7 @@ public class DynamicsUtil
 			if (am.flowDynamics == null || am.flowDynamics.get(row) == null)
 				continue;
 
-			Expression der = am.flowDynamics.get(row).asExpression();
-
-			rv.add(extractLinearValue(der));
+			rv.add(getLinearFlowPolynomial(am, row).getConstant());
 		}
 
 		return rv;
@@ -111,25 +105,23 @@ public class DynamicsUtil
 	{
 		ArrayList<Operation> rv = new ArrayList<Operation>();
 
-		if (conj instanceof Operation)
+		for (Expression e : Expression.getOperands(conj, Operator.AND))
 		{
-			Operation o = conj.asOperation();
-			Operator op = o.op;
-
-			if (op == Operator.AND)
+			if (e instanceof Operation)
 			{
-				rv.addAll(splitConjunction(o.getLeft()));
-				rv.addAll(splitConjunction(o.getRight()));
+				Operation o = e.asOperation();
+				Operator op = o.op;
+
+				if (op == Operator.OR || op == Operator.LOGICAL_NOT)
+					throw new AutomatonExportException("Unsupported top-level operator: '"
+							+ op.toDefaultString() + "' in " + conj.toDefaultString());
+				else
+					rv.add(o);
 			}
-			else if (op == Operator.OR || op == Operator.LOGICAL_NOT)
-				throw new AutomatonExportException("Unsupported top-level operator: '"
-						+ op.toDefaultString() + "' in " + conj.toDefaultString());
 			else
-				rv.add(o);
+				throw new AutomatonExportException(
+						"Unsupported non-operator condition: " + e.toDefaultString());
 		}
-		else
-			throw new AutomatonExportException(
-					"Unsupported non-operator condition: " + conj.toDefaultString());
 
 		return rv;
 	}
@@ -145,134 +137,70 @@ public class DynamicsUtil
 	{
 		ArrayList<Expression> rv = new ArrayList<Expression>();
 
-		if (disj instanceof Operation)
+		for (Expression e : Expression.getOperands(disj, Operator.OR))
 		{
-			Operation o = disj.asOperation();
-			Operator op = o.op;
-
-			if (op == Operator.OR)
+			if (e instanceof Operation)
 			{
-				rv.addAll(splitDisjunction(o.getLeft()));
-				rv.addAll(splitDisjunction(o.getRight()));
+				Operation o = e.asOperation();
+				Operator op = o.op;
+
+				if (op == Operator.LOGICAL_NOT)
+					throw new AutomatonExportException("Unsupported top-level operator: '"
+							+ op.toDefaultString() + "' in " + disj.toDefaultString());
+				else
+					rv.add(o);
 			}
-			else if (op == Operator.LOGICAL_NOT)
-				throw new AutomatonExportException("Unsupported top-level operator: '"
-						+ op.toDefaultString() + "' in " + disj.toDefaultString());
+			else if (e == Constant.TRUE || e == Constant.FALSE)
+				rv.add(e);
 			else
-				rv.add(o);
+				throw new AutomatonExportException(
+						"Unsupported non-operator condition: " + e.toDefaultString());
 		}
-		else if (disj == Constant.TRUE || disj == Constant.FALSE)
-			rv.add(disj);
-		else
-			throw new AutomatonExportException(
-					"Unsupported non-operator condition: " + disj.toDefaultString());
 
 		return rv;
 	}
 
-	private static Expression findMultiplier(String varName, Expression summation)
+	/**
+	 * Get the (cached) polynomial form of a linear flow
+	 * 
+	 * @param am
+	 *            the mode
+	 * @param var
+	 *            the variable whose flow we want
+	 * @return the polynomial, which is guaranteed to be linear
+	 */
+	private static Polynomial getLinearFlowPolynomial(AutomatonMode am, String var)
 	{
-		Expression rv = null;
+		Expression der = am.flowDynamics.get(var).asExpression();
+		Polynomial rv = am.getFlowPolynomial(var);
 
-		if (summation instanceof Operation)
-		{
-			Operation o = summation.asOperation();
-			Operator op = o.op;
-
-			if (op == Operator.NEGATIVE)
-			{
-				rv = findMultiplier(varName, o.children.get(0));
+		if (rv == null || !rv.isLinear())
+			throw new AutomatonExportException("Unsupported nonlinear derivative for variable '"
+					+ var + "' in mode '" + am.name + "': '" + der.toDefaultString() + "'");
 
-				if (rv != null)
-					rv = new Operation(Operator.NEGATIVE, rv);
-			}
-			else if (op == Operator.MULTIPLY)
-			{
-				Expression left = o.getLeft();
-				Expression right = o.getRight();
-
-				if (left instanceof Variable && right instanceof Variable)
-					throw new AutomatonExportException(
-							"Unsupported variable-variable term in linear derivative: '"
-									+ o.toDefaultString() + "'");
-				else if (left instanceof Variable)
-				{
-					if (((Variable) left).name.equals(varName))
-						rv = right;
-				}
-				else if (right instanceof Variable)
-				{
-					if (((Variable) right).name.equals(varName))
-						rv = left;
-				}
-				else
-					throw new AutomatonExportException(
-							"Unsupported term in linear derivative: '" + o.toDefaultString() + "'");
-			}
-			else if (op == Operator.DIVIDE)
-			{
-				// only support variable / constant
-
-				Expression left = o.getLeft();
-				Expression right = o.getRight();
-
-				if (left instanceof Variable && right instanceof Constant
-						&& ((Constant) right).getVal() != 0)
-				{
-					if (((Variable) left).name.equals(varName))
-						rv = new Constant(1.0 / ((Constant) right).getVal());
-				}
-				else
-					throw new AutomatonExportException(
-							"Unsupported term in linear derivative: '" + o.toDefaultString() + "'");
-			}
-			else if (op == Operator.ADD || op == Operator.SUBTRACT)
-			{
-				Expression left = o.getLeft();
-				Expression right = o.getRight();
-
-				Expression leftRv = findMultiplier(varName, left);
-				Expression rightRv = findMultiplier(varName, right);
-
-				if (leftRv != null && rightRv != null)
-					throw new AutomatonExportException("Unsupported term in linear derivative ("
-							+ varName + " in multiple places): " + summation.toDefaultString());
-				else if (leftRv != null)
-					rv = leftRv;
-				else if (rightRv != null)
-				{
-					if (op == Operator.SUBTRACT)
-						rv = new Operation(Operator.NEGATIVE, rightRv);
-					else
-						rv = rightRv;
-				}
-			}
-			else
-				throw new AutomatonExportException(
-						"Unsupported operation in linear derivative (expecting '+', '-', '*', or'/'): '"
-								+ o.toDefaultString());
-		}
-		else if (summation instanceof Constant)
-		{
-			// constant by itself
+		return rv;
+	}
 
-			if (varName == null)
-				rv = summation;
-		}
-		else if (summation instanceof Variable)
-		{
-			// variable by itself
+	/**
+	 * Convert an expression to a polynomial, making sure it's linear
+	 * 
+	 * @param exp
+	 *            the expression
+	 * @return the polynomial
+	 */
+	private static Polynomial getLinearPolynomial(Expression exp)
+	{
+		Polynomial rv = Polynomial.fromExpression(exp);
 
-			Variable v = (Variable) summation;
+		if (rv == null)
+			throw new AutomatonExportException(
+					"Unsupported operation in linear expression (expecting '+', '-', '*', or'/'): '"
+							+ exp.toDefaultString() + "'");
 
-			if (v.name.equals(varName))
-				rv = new Constant(1);
-		}
-		else
+		if (!rv.isLinear())
 			throw new AutomatonExportException(
-					"Unsupported expression type (" + summation.getClass()
-							+ ") in linear derivative (expecting sum of multiples): '"
-							+ summation.toDefaultString() + "'");
+					"Unsupported nonlinear term in linear expression: '" + exp.toDefaultString()
+							+ "'");
 
 		return rv;
 	}
@@ -288,59 +216,37 @@ public class DynamicsUtil
 	 */
 	public static ArrayList<Double> extractLinearVector(Expression exp, ArrayList<String> vars)
 	{
-		ArrayList<Double> rv = new ArrayList<Double>();
+		return extractLinearVector(getLinearPolynomial(exp), vars);
+	}
 
-		for (String v : vars)
-		{
-			Expression multiplierExpression = null;
+	/**
+	 * Extract a linear vector from a linear polynomial
+	 * 
+	 * @param p
+	 *            the polynomial to extract from
+	 * @param vars
+	 *            the variables, in order
+	 * @return a list of linear coefficients for each variable
+	 */
+	public static ArrayList<Double> extractLinearVector(Polynomial p, ArrayList<String> vars)
+	{
+		ArrayList<Double> rv = new ArrayList<Double>(vars.size());
 
-			try
-			{
-				// find variable 'col' in expression 'exp'
-				multiplierExpression = findMultiplier(v, exp);
-
-				if (multiplierExpression != null)
-				{
-					double val = AutomatonUtil.evaluateConstant(multiplierExpression);
-					rv.add(val);
-				}
-				else
-					rv.add(0.0);
-			}
-			catch (AutomatonExportException ex)
-			{
-				throw new AutomatonExportException(
-						"Error extracting linear coefficient for variable '" + v
-								+ "' in expression: '" + exp.toDefaultString() + "'",
-						ex);
-			}
-		}
+		for (String v : vars)
+			rv.add(p.getLinearCoefficient(v));
 
 		return rv;
 	}
 
+	/**
+	 * Extract the constant term from a linear expression
+	 * 
+	 * @param exp
+	 *            the expression
+	 * @return the constant term
+	 */
 	public static double extractLinearValue(Expression exp)
 	{
-		double val = 0.0;
-
-		Expression e = null;
-
-		try
-		{
-			// find variable 'col' in expression 'der'
-			e = findMultiplier(null, exp);
-		}
-		catch (AutomatonExportException ex)
-		{
-			throw new AutomatonExportException("Error extracting constant from linear expression: '"
-					+ exp.toDefaultString() + "'", ex);
-		}
-
-		if (e != null)
-		{
-			val = AutomatonUtil.evaluateConstant(e);
-		}
-
-		return val;
+		return getLinearPolynomial(exp).getConstant();
 	}
 }
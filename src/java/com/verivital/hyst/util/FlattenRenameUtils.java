@@ -192,6 +192,19 @@ public class FlattenRenameUtils
 		}
 	}
 
+	/**
+	 * Convert a mode name in init or forbidden from the dotted notation to the flattened equivalent
+	 * (as convertSettingsSeparator() does)
+	 * 
+	 * @param name
+	 *            the dotted mode name
+	 * @return the flattened mode name
+	 */
+	public static String convertModeName(String name)
+	{
+		return ChangeDotsModifier.modifyString(name);
+	}
+
 	/**
 	 * Change mode names in init and forbidden from the dotted notation to the flattened equivalent
 	 * 
@@ -0,0 +1,897 @@
+package com.verivital.hyst.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.LutExpression;
+import com.verivital.hyst.grammar.formula.MatrixExpression;
+import com.verivital.hyst.grammar.formula.Operation;
+import com.verivital.hyst.grammar.formula.Operator;
+import com.verivital.hyst.grammar.formula.Variable;
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.AutomatonSettings;
+import com.verivital.hyst.ir.Component;
+import com.verivital.hyst.ir.Configuration;
+import com.verivital.hyst.ir.base.AutomatonMode;
+import com.verivital.hyst.ir.base.AutomatonTransition;
+import com.verivital.hyst.ir.base.BaseComponent;
+import com.verivital.hyst.ir.base.ExpressionInterval;
+import com.verivital.hyst.ir.network.ComponentInstance;
+import com.verivital.hyst.ir.network.ComponentMapping;
+import com.verivital.hyst.ir.network.NetworkComponent;
+import com.verivital.hyst.main.Hyst;
+
+import de.uni_freiburg.informatik.swt.sxhybridautomaton.SpaceExConfigValues;
+
+/**
+ * Binary snapshot format (.hystbin) for a Configuration, so large models can be reloaded without
+ * parsing the SpaceEx xml and all the expression text again.
+ *
+ * The file is big-endian and has four sections: a header (magic bytes and format version), a
+ * string table, an expression node table, and the component structure. Strings (names, operators)
+ * are referenced by their index in the string table. Expressions are stored as a node table in
+ * post-order, where each node references its children by node index, so a reader can build every
+ * node in one forward pass. -1 is used for null references.
+ *
+ * Component templates are not stored, so loaded components have a null template.
+ */
+public class HystBinFormat
+{
+	public static final String EXTENSION = ".hystbin";
+
+	// increment this when the layout changes; older files are rejected
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = { 'H', 'Y', 'S', 'T', 'B', 'I', 'N', 0 };
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// expression node tags
+	private static final byte NODE_CONSTANT = 0;
+	private static final byte NODE_TRUE = 1;
+	private static final byte NODE_FALSE = 2;
+	private static final byte NODE_VARIABLE = 3;
+	private static final byte NODE_OPERATION = 4;
+	private static final byte NODE_MATRIX = 5;
+	private static final byte NODE_LUT = 6;
+	private static final byte NODE_NUMERIC_MATRIX = 7;
+
+	// component tags
+	private static final byte COMPONENT_BASE = 0;
+	private static final byte COMPONENT_NETWORK = 1;
+
+	/**
+	 * Save a configuration to a .hystbin file
+	 *
+	 * @param c
+	 *            the configuration
+	 * @param filename
+	 *            the file to write (overwritten if it exists)
+	 */
+	public static void save(Configuration c, String filename)
+	{
+		FileChannel ch = null;
+
+		try
+		{
+			ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+			write(c, ch);
+		}
+		catch (IOException e)
+		{
+			throw new AutomatonExportException("Error writing " + filename, e);
+		}
+		finally
+		{
+			closeQuietly(ch);
+		}
+	}
+
+	/**
+	 * Load a configuration from a .hystbin file, by memory-mapping it
+	 *
+	 * @param filename
+	 *            the file to read
+	 * @return the loaded configuration
+	 */
+	public static Configuration load(String filename)
+	{
+		FileChannel ch = null;
+
+		try
+		{
+			ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+
+			return read(buf);
+		}
+		catch (IOException e)
+		{
+			throw new AutomatonExportException("Error reading " + filename, e);
+		}
+		finally
+		{
+			closeQuietly(ch);
+		}
+	}
+
+	private static void closeQuietly(FileChannel ch)
+	{
+		if (ch != null)
+		{
+			try
+			{
+				ch.close();
+			}
+			catch (IOException e)
+			{
+				Hyst.logDebug("Error closing channel: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Write a configuration snapshot to a channel
+	 *
+	 * @param c
+	 *            the configuration
+	 * @param out
+	 *            the channel to write to
+	 */
+	public static void write(Configuration c, WritableByteChannel out) throws IOException
+	{
+		Writer w = new Writer();
+		w.writeConfiguration(c);
+
+		ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4);
+		header.put(MAGIC);
+		header.putInt(VERSION);
+		header.flip();
+
+		ByteBuffer[] sections = { header, w.makeStringTable(), w.makeNodeTable(),
+				ByteBuffer.wrap(w.structureBytes.toByteArray()) };
+
+		for (ByteBuffer b : sections)
+		{
+			while (b.hasRemaining())
+				out.write(b);
+		}
+	}
+
+	/**
+	 * Read a configuration snapshot
+	 *
+	 * @param buf
+	 *            the buffer, positioned at the start of the snapshot
+	 * @return the configuration
+	 */
+	public static Configuration read(ByteBuffer buf)
+	{
+		try
+		{
+			byte[] magic = new byte[MAGIC.length];
+			buf.get(magic);
+
+			for (int i = 0; i < MAGIC.length; ++i)
+			{
+				if (magic[i] != MAGIC[i])
+					throw new AutomatonExportException("Not a " + EXTENSION + " file.");
+			}
+
+			int version = buf.getInt();
+
+			if (version != VERSION)
+				throw new AutomatonExportException("Unsupported " + EXTENSION + " version "
+						+ version + " (expected " + VERSION + ")");
+
+			return new Reader(buf).readConfiguration();
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new AutomatonExportException("Truncated or corrupt " + EXTENSION + " data.", e);
+		}
+	}
+
+	/**
+	 * Accumulates the string table, the node table, and the structure while writing
+	 */
+	private static class Writer
+	{
+		LinkedHashMap<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		ByteArrayOutputStream nodeBytes = new ByteArrayOutputStream();
+		DataOutputStream nodes = new DataOutputStream(nodeBytes);
+		int numNodes = 0;
+
+		ByteArrayOutputStream structureBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(structureBytes);
+
+		ByteBuffer makeStringTable()
+		{
+			ArrayList<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+			int size = 4;
+
+			for (String s : strings.keySet())
+			{
+				byte[] b = s.getBytes(UTF8);
+				encoded.add(b);
+				size += 4 + b.length;
+			}
+
+			ByteBuffer rv = ByteBuffer.allocate(size);
+			rv.putInt(encoded.size());
+
+			for (byte[] b : encoded)
+			{
+				rv.putInt(b.length);
+				rv.put(b);
+			}
+
+			rv.flip();
+			return rv;
+		}
+
+		ByteBuffer makeNodeTable()
+		{
+			byte[] b = nodeBytes.toByteArray();
+			ByteBuffer rv = ByteBuffer.allocate(4 + b.length);
+			rv.putInt(numNodes);
+			rv.put(b);
+			rv.flip();
+
+			return rv;
+		}
+
+		int stringId(String s)
+		{
+			if (s == null)
+				return -1;
+
+			Integer rv = strings.get(s);
+
+			if (rv == null)
+			{
+				rv = strings.size();
+				strings.put(s, rv);
+			}
+
+			return rv;
+		}
+
+		void writeString(String s) throws IOException
+		{
+			out.writeInt(stringId(s));
+		}
+
+		void writeStrings(List<String> list) throws IOException
+		{
+			out.writeInt(list.size());
+
+			for (String s : list)
+				writeString(s);
+		}
+
+		/**
+		 * Add an expression to the node table (children first)
+		 *
+		 * @return the node index of the expression, or -1 for null
+		 */
+		int addNode(Expression e) throws IOException
+		{
+			if (e == null)
+				return -1;
+
+			if (e == Constant.TRUE)
+				nodes.writeByte(NODE_TRUE);
+			else if (e == Constant.FALSE)
+				nodes.writeByte(NODE_FALSE);
+			else if (e instanceof Constant)
+			{
+				nodes.writeByte(NODE_CONSTANT);
+				nodes.writeDouble(((Constant) e).getVal());
+			}
+			else if (e instanceof Variable)
+			{
+				nodes.writeByte(NODE_VARIABLE);
+				nodes.writeInt(stringId(((Variable) e).name));
+			}
+			else if (e instanceof Operation)
+			{
+				Operation o = e.asOperation();
+				int[] children = new int[o.children.size()];
+
+				for (int i = 0; i < children.length; ++i)
+					children[i] = addNode(o.children.get(i));
+
+				nodes.writeByte(NODE_OPERATION);
+				nodes.writeInt(stringId(o.op.name()));
+				writeIds(children);
+			}
+			else if (e instanceof MatrixExpression && ((MatrixExpression) e).isNumeric())
+			{
+				MatrixExpression m = (MatrixExpression) e;
+				int[] sizes = new int[m.getNumDims()];
+
+				for (int d = 0; d < sizes.length; ++d)
+					sizes[d] = m.getDimWidth(d);
+
+				// values are stored inline, so file-backed matrices are self-contained
+				nodes.writeByte(NODE_NUMERIC_MATRIX);
+				writeIds(sizes);
+
+				for (double d : m.getValues())
+					nodes.writeDouble(d);
+			}
+			else if (e instanceof MatrixExpression)
+			{
+				MatrixExpression m = (MatrixExpression) e;
+				int[] sizes = new int[m.getNumDims()];
+				int total = 1;
+
+				for (int d = 0; d < sizes.length; ++d)
+				{
+					sizes[d] = m.getDimWidth(d);
+					total *= sizes[d];
+				}
+
+				int[] data = new int[total];
+				int index = 0;
+
+				// iteration order is the same as the internal data order
+				for (Iterator<Entry<int[], Expression>> it = m.iterator(); it.hasNext();)
+					data[index++] = addNode(it.next().getValue());
+
+				nodes.writeByte(NODE_MATRIX);
+				writeIds(sizes);
+				writeIds(data);
+			}
+			else if (e instanceof LutExpression)
+			{
+				LutExpression l = (LutExpression) e;
+				int[] inputs = new int[l.inputs.length];
+
+				for (int i = 0; i < inputs.length; ++i)
+					inputs[i] = addNode(l.inputs[i]);
+
+				int table = addNode(l.table);
+
+				nodes.writeByte(NODE_LUT);
+				writeIds(inputs);
+				nodes.writeInt(table);
+
+				for (double[] bp : l.breakpoints)
+				{
+					nodes.writeInt(bp.length);
+
+					for (double d : bp)
+						nodes.writeDouble(d);
+				}
+			}
+			else
+				throw new AutomatonExportException("Unsupported expression type in "
+						+ EXTENSION + " export: " + e.getClass().getName());
+
+			return numNodes++;
+		}
+
+		private void writeIds(int[] ids) throws IOException
+		{
+			nodes.writeInt(ids.length);
+
+			for (int i : ids)
+				nodes.writeInt(i);
+		}
+
+		void writeExpression(Expression e) throws IOException
+		{
+			out.writeInt(addNode(e));
+		}
+
+		void writeExpressionInterval(ExpressionInterval ei) throws IOException
+		{
+			if (ei == null)
+				out.writeByte(0);
+			else
+			{
+				out.writeByte(1);
+				writeExpression(ei.getExpression());
+				writeInterval(ei.getInterval());
+			}
+		}
+
+		void writeInterval(Interval i) throws IOException
+		{
+			out.writeBoolean(i != null);
+
+			if (i != null)
+			{
+				out.writeDouble(i.min);
+				out.writeDouble(i.max);
+			}
+		}
+
+		void writeEiMap(Map<String, ExpressionInterval> map) throws IOException
+		{
+			if (map == null)
+				out.writeInt(-1);
+			else
+			{
+				out.writeInt(map.size());
+
+				for (Entry<String, ExpressionInterval> e : map.entrySet())
+				{
+					writeString(e.getKey());
+					writeExpressionInterval(e.getValue());
+				}
+			}
+		}
+
+		void writeExpressionMap(Map<String, Expression> map) throws IOException
+		{
+			out.writeInt(map.size());
+
+			for (Entry<String, Expression> e : map.entrySet())
+			{
+				writeString(e.getKey());
+				writeExpression(e.getValue());
+			}
+		}
+
+		void writeMappings(List<ComponentMapping> mappings) throws IOException
+		{
+			out.writeInt(mappings.size());
+
+			for (ComponentMapping m : mappings)
+			{
+				writeString(m.childParam);
+				writeString(m.parentParam);
+			}
+		}
+
+		void writeConfiguration(Configuration c) throws IOException
+		{
+			writeComponent(c.root);
+			writeExpressionMap(c.init);
+			writeExpressionMap(c.forbidden);
+			writeSettings(c.settings);
+		}
+
+		void writeSettings(AutomatonSettings s) throws IOException
+		{
+			out.writeInt(s.plotVariableNames.length);
+
+			for (String name : s.plotVariableNames)
+				writeString(name);
+
+			SpaceExConfigValues v = s.spaceExConfig;
+			writeStrings(v.outputVars);
+			out.writeDouble(v.timeHorizon);
+			out.writeInt(v.maxIterations);
+			out.writeDouble(v.samplingTime);
+			writeString(v.systemID);
+			writeString(v.outputFormat);
+			writeString(v.scenario);
+			writeString(v.directions);
+			writeString(v.aggregation);
+			out.writeDouble(v.flowpipeTol);
+			writeString(v.forbidden);
+			out.writeBoolean(v.timeTriggered);
+		}
+
+		void writeComponent(Component c) throws IOException
+		{
+			out.writeByte(c instanceof BaseComponent ? COMPONENT_BASE : COMPONENT_NETWORK);
+			writeString(c.instanceName);
+			writeStrings(c.variables);
+
+			out.writeInt(c.constants.size());
+
+			for (Entry<String, Interval> e : c.constants.entrySet())
+			{
+				writeString(e.getKey());
+				writeInterval(e.getValue());
+			}
+
+			writeStrings(c.labels);
+
+			if (c instanceof BaseComponent)
+				writeBaseComponent((BaseComponent) c);
+			else
+				writeNetworkComponent((NetworkComponent) c);
+		}
+
+		void writeBaseComponent(BaseComponent ha) throws IOException
+		{
+			LinkedHashMap<AutomatonMode, Integer> modeIndex = new LinkedHashMap<AutomatonMode, Integer>();
+			out.writeInt(ha.modes.size());
+
+			for (AutomatonMode am : ha.modes.values())
+			{
+				modeIndex.put(am, modeIndex.size());
+				writeString(am.name);
+				out.writeBoolean(am.urgent);
+				writeExpression(am.invariant);
+				writeEiMap(am.flowDynamics);
+			}
+
+			out.writeInt(ha.transitions.size());
+
+			for (AutomatonTransition at : ha.transitions)
+			{
+				out.writeInt(modeIndex.get(at.from));
+				out.writeInt(modeIndex.get(at.to));
+				writeString(at.label);
+				writeExpression(at.guard);
+				writeEiMap(at.reset);
+			}
+		}
+
+		void writeNetworkComponent(NetworkComponent nc) throws IOException
+		{
+			out.writeInt(nc.children.size());
+
+			for (Entry<String, ComponentInstance> e : nc.children.entrySet())
+			{
+				ComponentInstance ci = e.getValue();
+
+				writeString(e.getKey());
+				writeMappings(ci.varMapping);
+				writeMappings(ci.labelMapping);
+				writeMappings(ci.constMapping);
+				writeComponent(ci.child);
+			}
+		}
+	}
+
+	/**
+	 * Reads the sections of a snapshot, after the header
+	 */
+	private static class Reader
+	{
+		ByteBuffer in;
+		String[] strings;
+		Expression[] nodes;
+
+		Reader(ByteBuffer in)
+		{
+			this.in = in;
+
+			strings = new String[in.getInt()];
+
+			for (int i = 0; i < strings.length; ++i)
+			{
+				byte[] b = new byte[in.getInt()];
+				in.get(b);
+				strings[i] = new String(b, UTF8);
+			}
+
+			nodes = new Expression[in.getInt()];
+
+			for (int i = 0; i < nodes.length; ++i)
+				nodes[i] = readNode();
+		}
+
+		String string(int id)
+		{
+			return id == -1 ? null : strings[id];
+		}
+
+		String readString()
+		{
+			return string(in.getInt());
+		}
+
+		ArrayList<String> readStrings()
+		{
+			int n = in.getInt();
+			ArrayList<String> rv = new ArrayList<String>(n);
+
+			for (int i = 0; i < n; ++i)
+				rv.add(readString());
+
+			return rv;
+		}
+
+		int[] readIds()
+		{
+			int[] rv = new int[in.getInt()];
+
+			for (int i = 0; i < rv.length; ++i)
+				rv[i] = in.getInt();
+
+			return rv;
+		}
+
+		Expression node(int id)
+		{
+			return id == -1 ? null : nodes[id];
+		}
+
+		Expression readNode()
+		{
+			Expression rv;
+			byte tag = in.get();
+
+			if (tag == NODE_TRUE)
+				rv = Constant.TRUE;
+			else if (tag == NODE_FALSE)
+				rv = Constant.FALSE;
+			else if (tag == NODE_CONSTANT)
+				rv = new Constant(in.getDouble());
+			else if (tag == NODE_VARIABLE)
+				rv = new Variable(readString());
+			else if (tag == NODE_OPERATION)
+			{
+				Operator op = Operator.valueOf(readString());
+				int[] children = readIds();
+				Operation o = new Operation(op);
+
+				for (int c : children)
+					o.children.add(node(c));
+
+				rv = o;
+			}
+			else if (tag == NODE_MATRIX)
+			{
+				int[] sizes = readIds();
+				int[] data = readIds();
+				Expression[] entries = new Expression[data.length];
+
+				for (int i = 0; i < data.length; ++i)
+					entries[i] = node(data[i]);
+
+				rv = new MatrixExpression(entries, sizes);
+			}
+			else if (tag == NODE_NUMERIC_MATRIX)
+			{
+				int[] sizes = readIds();
+				int total = 1;
+
+				for (int s : sizes)
+					total *= s;
+
+				double[] values = new double[total];
+				in.asDoubleBuffer().get(values);
+				in.position(in.position() + 8 * total);
+
+				rv = new MatrixExpression(values, sizes);
+			}
+			else if (tag == NODE_LUT)
+			{
+				int[] inputIds = readIds();
+				Expression[] inputs = new Expression[inputIds.length];
+
+				for (int i = 0; i < inputs.length; ++i)
+					inputs[i] = node(inputIds[i]);
+
+				MatrixExpression table = (MatrixExpression) node(in.getInt());
+				MatrixExpression[] breakpoints = new MatrixExpression[inputs.length];
+
+				for (int d = 0; d < inputs.length; ++d)
+				{
+					double[] bp = new double[in.getInt()];
+
+					for (int i = 0; i < bp.length; ++i)
+						bp[i] = in.getDouble();
+
+					breakpoints[d] = new MatrixExpression(bp);
+				}
+
+				rv = new LutExpression(inputs, table, breakpoints);
+			}
+			else
+				throw new AutomatonExportException(
+						"Unknown expression node tag in " + EXTENSION + " data: " + tag);
+
+			return rv;
+		}
+
+		Expression readExpression()
+		{
+			return node(in.getInt());
+		}
+
+		Interval readInterval()
+		{
+			Interval rv = null;
+
+			if (in.get() != 0)
+			{
+				double min = in.getDouble();
+				double max = in.getDouble();
+				rv = new Interval(min, max);
+			}
+
+			return rv;
+		}
+
+		ExpressionInterval readExpressionInterval()
+		{
+			ExpressionInterval rv = null;
+
+			if (in.get() != 0)
+			{
+				Expression e = readExpression();
+				rv = new ExpressionInterval(e, readInterval());
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Read a map of ExpressionIntervals into the passed-in map
+		 *
+		 * @return false if the stored map was null
+		 */
+		boolean readEiMap(Map<String, ExpressionInterval> map)
+		{
+			int n = in.getInt();
+
+			for (int i = 0; i < n; ++i)
+			{
+				String var = readString();
+				map.put(var, readExpressionInterval());
+			}
+
+			return n != -1;
+		}
+
+		void readExpressionMap(Map<String, Expression> map)
+		{
+			int n = in.getInt();
+
+			for (int i = 0; i < n; ++i)
+			{
+				String mode = readString();
+				map.put(mode, readExpression());
+			}
+		}
+
+		void readMappings(List<ComponentMapping> mappings)
+		{
+			int n = in.getInt();
+
+			for (int i = 0; i < n; ++i)
+			{
+				String child = readString();
+				mappings.add(new ComponentMapping(child, readString()));
+			}
+		}
+
+		Configuration readConfiguration()
+		{
+			Configuration c = new Configuration(readComponent());
+
+			readExpressionMap(c.init);
+			readExpressionMap(c.forbidden);
+			readSettings(c.settings);
+
+			return c;
+		}
+
+		void readSettings(AutomatonSettings s)
+		{
+			s.plotVariableNames = new String[in.getInt()];
+
+			for (int i = 0; i < s.plotVariableNames.length; ++i)
+				s.plotVariableNames[i] = readString();
+
+			SpaceExConfigValues v = s.spaceExConfig;
+			v.outputVars = readStrings();
+			v.timeHorizon = in.getDouble();
+			v.maxIterations = in.getInt();
+			v.samplingTime = in.getDouble();
+			v.systemID = readString();
+			v.outputFormat = readString();
+			v.scenario = readString();
+			v.directions = readString();
+			v.aggregation = readString();
+			v.flowpipeTol = in.getDouble();
+			v.forbidden = readString();
+			v.timeTriggered = in.get() != 0;
+		}
+
+		Component readComponent()
+		{
+			byte tag = in.get();
+			Component rv;
+
+			if (tag == COMPONENT_BASE)
+				rv = new BaseComponent();
+			else if (tag == COMPONENT_NETWORK)
+				rv = new NetworkComponent();
+			else
+				throw new AutomatonExportException(
+						"Unknown component tag in " + EXTENSION + " data: " + tag);
+
+			rv.instanceName = readString();
+			rv.variables = readStrings();
+
+			int numConstants = in.getInt();
+
+			for (int i = 0; i < numConstants; ++i)
+			{
+				String name = readString();
+				rv.constants.put(name, readInterval());
+			}
+
+			rv.labels = readStrings();
+
+			if (rv instanceof BaseComponent)
+				readBaseComponent((BaseComponent) rv);
+			else
+				readNetworkComponent((NetworkComponent) rv);
+
+			return rv;
+		}
+
+		void readBaseComponent(BaseComponent ha)
+		{
+			AutomatonMode[] modes = new AutomatonMode[in.getInt()];
+
+			for (int i = 0; i < modes.length; ++i)
+			{
+				AutomatonMode am = ha.createMode(readString());
+				am.urgent = in.get() != 0;
+				am.invariant = readExpression();
+
+				am.flowDynamics.clear();
+
+				if (!readEiMap(am.flowDynamics))
+					am.flowDynamics = null;
+
+				modes[i] = am;
+			}
+
+			int numTransitions = in.getInt();
+
+			for (int i = 0; i < numTransitions; ++i)
+			{
+				AutomatonMode from = modes[in.getInt()];
+				AutomatonMode to = modes[in.getInt()];
+				AutomatonTransition at = ha.createTransition(from, to);
+
+				at.label = readString();
+				at.guard = readExpression();
+				readEiMap(at.reset);
+			}
+		}
+
+		void readNetworkComponent(NetworkComponent nc)
+		{
+			int numChildren = in.getInt();
+
+			for (int i = 0; i < numChildren; ++i)
+			{
+				String name = readString();
+				ComponentInstance ci = new ComponentInstance(nc, null);
+
+				readMappings(ci.varMapping);
+				readMappings(ci.labelMapping);
+				readMappings(ci.constMapping);
+
+				ci.child = readComponent();
+				ci.child.parent = nc;
+				nc.children.put(name, ci);
+			}
+		}
+	}
+}
@@ -0,0 +1,1092 @@
+package com.verivital.hyst.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.verivital.hyst.geometry.HyperRectangle;
+import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.ir.base.ExpressionInterval;
+import com.verivital.hyst.main.Hyst;
+import com.verivital.hyst.passes.basic.SimplifyExpressionsPass;
+
+/**
+ * An enclosure of the solutions of the ODE x' = f(x) + u, where u may be a constant
+ * interval (nondeterministic flows), starting from a box of initial states.
+ *
+ * The flow is propagated in steps using Lohner's parallelepiped method: the reachable set at each
+ * step is kept as c + M * R, where c is a point, M is a matrix and R is a box. This avoids most of
+ * the wrapping effect of plain interval arithmetic, which would otherwise make the boxes grow
+ * without bound even for stable linear systems. At each step, an a priori enclosure of every state
+ * reached during the step is found with the Picard-Lindelof operator. These enclosures are used to
+ * bound expressions (like derivatives) over time intervals.
+ *
+ * The arithmetic done by this class (the Taylor expansion of the center, the matrix exponential and
+ * its truncation error, and the parallelepiped updates) is rounded outward by one ulp per
+ * operation. Expressions (the flows and their derivatives) are evaluated with
+ * Interval.intervalEvaluate(), which rounds to nearest, so those results are widened by a small
+ * relative tolerance instead. This is far larger than the rounding error of typical flow
+ * expressions, but it is not a proof; an expression with heavy cancellation could in principle
+ * exceed it.
+ */
+public class IntervalFlowEnclosure
+{
+	public static final double DEFAULT_STEP = 0.001;
+
+	private static final int MAX_APRIORI_ITERATIONS = 10;
+	private static final int MAX_STEP_HALVINGS = 20;
+	private static final double APRIORI_INFLATION = 0.1; // relative inflation
+	private static final double ROUNDING_TOL = 1e-13; // relative bloating of evaluated expressions
+	private static final int EXPM_TERMS = 20;
+
+	private final List<String> variables;
+	private final Expression[] flows;
+	private final Interval[] flowInputs; // interval part of each flow, may be null
+	private final Expression[][] jacobian; // jacobian[i][j] = d(flow_i) / d(x_j)
+	private boolean hasInputs = false;
+
+	private double step = DEFAULT_STEP;
+
+	// the result of compute(), one entry per step
+	private ArrayList<EnclosureStep> steps = new ArrayList<EnclosureStep>();
+
+	/**
+	 * A single step of the enclosure. Every state reached during the step is in c + M * R + S, and
+	 * also in the a priori box.
+	 */
+	private static class EnclosureStep
+	{
+		Interval time;
+		double[] c;
+		double[][] m;
+		Interval[] r;
+		Interval[] s; // [0, h] * f(apriori), the change during the step
+		Interval[] apriori;
+
+		// the state at the end of the step
+		double[] nextC;
+		double[][] nextM;
+		Interval[] nextR;
+	}
+
+	/**
+	 * Create an enclosure object for a set of flows
+	 *
+	 * @param variables
+	 *            the variables, in order
+	 * @param flowDynamics
+	 *            the flow for every variable
+	 */
+	public IntervalFlowEnclosure(List<String> variables,
+			Map<String, ExpressionInterval> flowDynamics)
+	{
+		int n = variables.size();
+		this.variables = new ArrayList<String>(variables);
+		flows = new Expression[n];
+		flowInputs = new Interval[n];
+		jacobian = new Expression[n][];
+
+		for (int i = 0; i < n; ++i)
+		{
+			String v = variables.get(i);
+			ExpressionInterval ei = flowDynamics.get(v);
+
+			if (ei == null)
+				throw new AutomatonExportException(
+						"Flow enclosure requires defined dynamics for variable " + v);
+
+			flows[i] = ei.getExpression();
+			flowInputs[i] = ei.getInterval();
+
+			if (flowInputs[i] != null && !flowInputs[i].isExactly(0))
+				hasInputs = true;
+
+			jacobian[i] = gradient(flows[i], this.variables);
+		}
+	}
+
+	/**
+	 * Set the (maximum) step size used when propagating the enclosure
+	 *
+	 * @param h
+	 *            the step size, must be positive
+	 */
+	public void setStepSize(double h)
+	{
+		if (h <= 0)
+			throw new AutomatonExportException("Enclosure step size must be positive: " + h);
+
+		step = h;
+	}
+
+	/**
+	 * Compute the enclosure of all the trajectories starting in init, from time 0 to maxTime.
+	 *
+	 * @param init
+	 *            the initial states, in the order of the variables
+	 * @param maxTime
+	 *            the time bound
+	 * @param breakpoints
+	 *            times where steps should end, so that later queries on time intervals with these
+	 *            endpoints are not padded by partially-overlapping steps (may be empty)
+	 */
+	public void compute(HyperRectangle init, double maxTime, Collection<Double> breakpoints)
+	{
+		int n = variables.size();
+
+		if (init.dims.length != n)
+			throw new AutomatonExportException("Initial box had " + init.dims.length
+					+ " dimensions; expected " + n);
+
+		steps.clear();
+
+		TreeSet<Double> bounds = new TreeSet<Double>();
+		bounds.add(maxTime);
+
+		for (Double d : breakpoints)
+		{
+			if (d > 0 && d < maxTime)
+				bounds.add(d);
+		}
+
+		double[] c = new double[n];
+		double[][] m = identity(n);
+		Interval[] r = new Interval[n];
+
+		for (int i = 0; i < n; ++i)
+		{
+			c[i] = init.dims[i].middle();
+			r[i] = outward(init.dims[i].min - c[i], init.dims[i].max - c[i]);
+		}
+
+		double t = 0;
+
+		while (t < maxTime)
+		{
+			double next = bounds.higher(t);
+			double h = Math.min(step, next - t);
+			EnclosureStep s = null;
+
+			for (int halvings = 0; s == null; ++halvings)
+			{
+				if (halvings > MAX_STEP_HALVINGS)
+					throw new AutomatonExportException("Flow enclosure failed at time " + t
+							+ ". The dynamics may escape in finite time, or the set may be too large.");
+
+				s = tryStep(c, m, r, h);
+
+				if (s == null)
+					h /= 2;
+			}
+
+			double nextTime = t + h;
+
+			// snap to the breakpoint to avoid tiny steps from rounding
+			if (next - nextTime < 1e-9 * step)
+				nextTime = next;
+
+			s.c = c;
+			s.m = m;
+			s.r = r;
+			s.time = new Interval(t, nextTime);
+			steps.add(s);
+
+			c = s.nextC;
+			m = s.nextM;
+			r = s.nextR;
+			t = nextTime;
+		}
+
+		Hyst.log("Computed flow enclosure with " + steps.size() + " steps up to time " + maxTime);
+	}
+
+	/**
+	 * Get the number of steps in the computed enclosure
+	 */
+	public int getNumSteps()
+	{
+		return steps.size();
+	}
+
+	/**
+	 * Get a box containing every state reached in the given time interval
+	 *
+	 * @param time
+	 *            the time interval
+	 * @return the bounding box, or null if no step was computed for that time
+	 */
+	public HyperRectangle getStateBox(Interval time)
+	{
+		HyperRectangle rv = null;
+
+		for (EnclosureStep s : steps)
+		{
+			if (overlaps(s.time, time))
+			{
+				HyperRectangle box = new HyperRectangle(s.apriori);
+
+				rv = (rv == null) ? box : HyperRectangle.union(rv, box);
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Bound the value of an expression over a time interval. The result is the intersection of the
+	 * interval evaluation over the a priori boxes, and a mean-value form over the parallelepiped
+	 * enclosure (which is exact for linear expressions).
+	 *
+	 * @param e
+	 *            the expression over the variables
+	 * @param time
+	 *            the time interval
+	 * @return an enclosure of the range of e, or null if no step was computed for that time
+	 */
+	public Interval bound(Expression e, Interval time)
+	{
+		Expression[] grad = null;
+
+		try
+		{
+			grad = gradient(e, variables);
+		}
+		catch (AutomatonExportException ex)
+		{
+			// no symbolic derivative available, use the natural interval evaluation only
+		}
+
+		Interval rv = null;
+
+		for (EnclosureStep s : steps)
+		{
+			if (!overlaps(s.time, time))
+				continue;
+
+			Interval i = evaluate(e, s.apriori);
+
+			if (grad != null)
+			{
+				Interval mv = meanValue(e, grad, s);
+				Interval both = Interval.intersection(i, mv);
+
+				if (both != null)
+					i = both;
+			}
+
+			rv = (rv == null) ? i : Interval.union(rv, i);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Bound the value of an expression over several time intervals, in parallel
+	 *
+	 * @param e
+	 *            the expression
+	 * @param times
+	 *            the time intervals
+	 * @return the bounds, in the order of times
+	 */
+	public ArrayList<Interval> bound(final Expression e, List<Interval> times)
+	{
+		ArrayList<Interval> rv = new ArrayList<Interval>();
+		int threads = Math.max(1,
+				Math.min(times.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try
+		{
+			ArrayList<Future<Interval>> results = new ArrayList<Future<Interval>>();
+
+			for (final Interval time : times)
+			{
+				results.add(pool.submit(new Callable<Interval>()
+				{
+					@Override
+					public Interval call()
+					{
+						return bound(e, time);
+					}
+				}));
+			}
+
+			for (Future<Interval> f : results)
+				rv.add(f.get());
+		}
+		catch (InterruptedException ex)
+		{
+			throw new AutomatonExportException("Interrupted while bounding expression", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+
+			throw new AutomatonExportException("Error while bounding expression", ex);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get an enclosure of the range of the derivative of a variable, over several time intervals
+	 *
+	 * @param variable
+	 *            the variable whose derivative range we want
+	 * @param times
+	 *            the time intervals
+	 * @return the ranges, in the order of times
+	 */
+	public ArrayList<Interval> derivativeRanges(String variable, List<Interval> times)
+	{
+		int index = variables.indexOf(variable);
+
+		if (index == -1)
+			throw new AutomatonExportException(
+					"Variable '" + variable + "' not found in flow enclosure.");
+
+		ArrayList<Interval> rv = bound(flows[index], times);
+
+		for (int i = 0; i < rv.size(); ++i)
+		{
+			if (rv.get(i) == null)
+				throw new AutomatonExportException(
+						"Flow enclosure was not computed for time " + times.get(i));
+
+			if (flowInputs[index] != null)
+				rv.set(i, add(rv.get(i), flowInputs[index]));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Try to take a single step of size h. Returns null if the a priori enclosure could not be
+	 * found (the step should be retried with a smaller h).
+	 */
+	private EnclosureStep tryStep(double[] c, double[][] m, Interval[] r, double h)
+	{
+		int n = c.length;
+		Interval[] box = add(c, mult(m, r));
+		Interval[] apriori = aprioriEnclosure(box, h);
+
+		if (apriori == null)
+			return null;
+
+		Interval[] aprioriCenter = aprioriEnclosure(pointBox(c), h);
+
+		if (aprioriCenter == null)
+			return null;
+
+		// propagate the center point: Taylor expansion with Lagrange remainder
+		Interval[] fc = evaluateFlow(pointBox(c));
+		Interval[][] dCenter = evaluateJacobian(aprioriCenter);
+		Interval[] remainder;
+
+		if (!hasInputs)
+		{
+			// x(h) = c + h * f(c) + h^2 / 2 * Df(x(s)) * f(x(s))
+			remainder = scale(mult(dCenter, evaluateFlow(aprioriCenter)), outward(h * h / 2, h * h / 2));
+		}
+		else
+		{
+			// inputs may not be smooth, use the mean value form of the integral
+			// x(h) = c + h * u + h * f(c) + int f(x(s)) - f(c) ds
+			remainder = scale(mult(dCenter, subtract(aprioriCenter, c)), h);
+		}
+
+		Interval[] nextCenter = add(add(pointBox(c), scale(fc, h)), remainder);
+
+		// jacobian of the flow map: J = e^{h Dm} + h * E1 * (D - Dm) * P
+		Interval[][] d = evaluateJacobian(apriori);
+
+		if (d == null)
+			return null;
+
+		double[][] dMid = middle(d);
+		Interval[][] dDelta = subtract(d, dMid);
+		double eps = Math.nextUp(Math.nextUp(Math.expm1(Math.nextUp(magnitudeNorm(d) * h))));
+		Interval[][] bound = identityPlusMinus(n, eps);
+		Interval[][] jac = add(expm(dMid, h), scale(mult(mult(bound, dDelta), bound), h));
+
+		EnclosureStep rv = new EnclosureStep();
+		rv.apriori = apriori;
+		rv.s = scale(evaluateFlow(apriori), new Interval(0, h));
+		rv.nextC = middleVector(nextCenter);
+		rv.nextM = mult(middle(jac), m);
+
+		// error terms go into the box part of the parallelepiped: (J * M - nextM) * R, which also
+		// covers the rounding in the point product nextM
+		Interval[] err = add(subtract(nextCenter, rv.nextC),
+				mult(subtract(mult(jac, m), rv.nextM), r));
+
+		Interval[][] inv = enclosingInverse(rv.nextM);
+
+		if (inv == null)
+			throw new AutomatonExportException(
+					"Parallelepiped matrix became singular in flow enclosure.");
+
+		rv.nextR = add(r, mult(inv, err));
+
+		return rv;
+	}
+
+	/**
+	 * Find a box B such that box + [0, h] * f(B) is contained in B. By the Picard-Lindelof theorem,
+	 * every trajectory from box stays in B for time h.
+	 *
+	 * @return the enclosure, or null if none was found
+	 */
+	private Interval[] aprioriEnclosure(Interval[] box, double h)
+	{
+		Interval timeStep = new Interval(0, h);
+		Interval[] f = evaluateFlow(box);
+
+		if (f == null)
+			return null;
+
+		Interval[] b = add(box, scale(f, timeStep));
+
+		for (int iter = 0; iter < MAX_APRIORI_ITERATIONS; ++iter)
+		{
+			for (int i = 0; i < b.length; ++i)
+			{
+				double w = APRIORI_INFLATION * b[i].width()
+						+ ROUNDING_TOL * (1 + magnitude(b[i]));
+				b[i] = new Interval(b[i].min - w, b[i].max + w);
+			}
+
+			f = evaluateFlow(b);
+
+			if (f == null)
+				return null;
+
+			Interval[] next = add(box, scale(f, timeStep));
+			boolean contained = true;
+
+			for (int i = 0; i < b.length && contained; ++i)
+				contained = b[i].contains(next[i]);
+
+			if (contained)
+				return next;
+
+			b = next;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Mean value form of e over a step: e(c) + grad(e)(B) * (M * R + S)
+	 */
+	private Interval meanValue(Expression e, Expression[] grad, EnclosureStep s)
+	{
+		int n = s.c.length;
+		Interval rv = evaluate(e, pointBox(s.c));
+		Interval[] g = new Interval[n];
+
+		for (int i = 0; i < n; ++i)
+			g[i] = evaluate(grad[i], s.apriori);
+
+		// multiply g * M first to keep the correlation inside the parallelepiped
+		for (int j = 0; j < n; ++j)
+		{
+			Interval gm = new Interval(0);
+
+			for (int i = 0; i < n; ++i)
+				gm = add(gm, mult(g[i], s.m[i][j]));
+
+			rv = add(rv, mult(gm, s.r[j]));
+		}
+
+		for (int i = 0; i < n; ++i)
+			rv = add(rv, mult(g[i], s.s[i]));
+
+		return rv;
+	}
+
+	private Interval[] evaluateFlow(Interval[] box)
+	{
+		int n = flows.length;
+		Map<String, Interval> ranges = makeRanges(box);
+		Interval[] rv = new Interval[n];
+
+		try
+		{
+			for (int i = 0; i < n; ++i)
+			{
+				rv[i] = widen(Interval.intervalEvaluate(flows[i], ranges));
+
+				if (flowInputs[i] != null)
+					rv[i] = add(rv[i], flowInputs[i]);
+
+				if (Double.isNaN(rv[i].min) || Double.isNaN(rv[i].max)
+						|| Double.isInfinite(rv[i].min) || Double.isInfinite(rv[i].max))
+					return null;
+			}
+		}
+		catch (AutomatonExportException e)
+		{
+			// for example, division by an interval containing zero
+			return null;
+		}
+
+		return rv;
+	}
+
+	private Interval[][] evaluateJacobian(Interval[] box)
+	{
+		int n = flows.length;
+		Map<String, Interval> ranges = makeRanges(box);
+		Interval[][] rv = new Interval[n][n];
+
+		try
+		{
+			for (int i = 0; i < n; ++i)
+				for (int j = 0; j < n; ++j)
+					rv[i][j] = widen(Interval.intervalEvaluate(jacobian[i][j], ranges));
+		}
+		catch (AutomatonExportException e)
+		{
+			return null;
+		}
+
+		return rv;
+	}
+
+	private Interval evaluate(Expression e, Interval[] box)
+	{
+		return widen(Interval.intervalEvaluate(e, makeRanges(box)));
+	}
+
+	private Map<String, Interval> makeRanges(Interval[] box)
+	{
+		Map<String, Interval> rv = new HashMap<String, Interval>();
+
+		for (int i = 0; i < box.length; ++i)
+			rv.put(variables.get(i), box[i]);
+
+		return rv;
+	}
+
+	/**
+	 * Get the symbolic gradient of an expression
+	 *
+	 * @param e
+	 *            the expression
+	 * @param vars
+	 *            the variables to differentiate with respect to
+	 * @return the partial derivatives, in the order of vars
+	 */
+	private static Expression[] gradient(Expression e, List<String> vars)
+	{
+		Expression[] rv = new Expression[vars.size()];
+
+		for (int j = 0; j < vars.size(); ++j)
+		{
+			Map<String, Expression> ders = new HashMap<String, Expression>();
+			ders.put(vars.get(j), new Constant(1));
+
+			Expression der = AutomatonUtil.derivativeOf(e, ders);
+			rv[j] = SimplifyExpressionsPass.simplifyExpression(der);
+		}
+
+		return rv;
+	}
+
+	private static boolean overlaps(Interval stepTime, Interval time)
+	{
+		boolean rv;
+
+		if (time.width() == 0)
+			rv = stepTime.contains(time.min);
+		else
+			rv = Math.min(stepTime.max, time.max) - Math.max(stepTime.min, time.min) > 0;
+
+		return rv;
+	}
+
+	///////////// outward-rounded interval vector / matrix helpers //////////////
+
+	/**
+	 * Widen an interval by one ulp on each side. Each floating-point operation is rounded to
+	 * nearest, so this encloses the exact result of a single operation.
+	 */
+	private static Interval outward(double min, double max)
+	{
+		return new Interval(Math.nextAfter(min, Double.NEGATIVE_INFINITY), Math.nextUp(max));
+	}
+
+	private static Interval outward(Interval i)
+	{
+		return outward(i.min, i.max);
+	}
+
+	/**
+	 * Widen the result of an expression evaluation by the relative rounding tolerance
+	 */
+	private static Interval widen(Interval i)
+	{
+		double slack = ROUNDING_TOL * magnitude(i) + Double.MIN_NORMAL;
+
+		return outward(i.min - slack, i.max + slack);
+	}
+
+	private static Interval add(Interval a, Interval b)
+	{
+		return outward(Interval.add(a, b));
+	}
+
+	private static Interval mult(Interval a, Interval b)
+	{
+		return outward(Interval.mult(a, b));
+	}
+
+	private static Interval mult(Interval a, double b)
+	{
+		return outward(Interval.mult(a, b));
+	}
+
+	private static double magnitude(Interval i)
+	{
+		return Math.max(Math.abs(i.min), Math.abs(i.max));
+	}
+
+	private static Interval[] pointBox(double[] c)
+	{
+		Interval[] rv = new Interval[c.length];
+
+		for (int i = 0; i < c.length; ++i)
+			rv[i] = new Interval(c[i]);
+
+		return rv;
+	}
+
+	private static double[][] identity(int n)
+	{
+		double[][] rv = new double[n][n];
+
+		for (int i = 0; i < n; ++i)
+			rv[i][i] = 1;
+
+		return rv;
+	}
+
+	private static Interval[][] identityPlusMinus(int n, double eps)
+	{
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+			{
+				double center = (i == j) ? 1 : 0;
+				rv[i][j] = outward(center - eps, center + eps);
+			}
+
+		return rv;
+	}
+
+	private static Interval[] add(double[] a, Interval[] b)
+	{
+		Interval[] rv = new Interval[a.length];
+
+		for (int i = 0; i < a.length; ++i)
+			rv[i] = outward(a[i] + b[i].min, a[i] + b[i].max);
+
+		return rv;
+	}
+
+	private static Interval[] add(Interval[] a, Interval[] b)
+	{
+		Interval[] rv = new Interval[a.length];
+
+		for (int i = 0; i < a.length; ++i)
+			rv[i] = add(a[i], b[i]);
+
+		return rv;
+	}
+
+	private static Interval[] subtract(Interval[] a, double[] b)
+	{
+		Interval[] rv = new Interval[a.length];
+
+		for (int i = 0; i < a.length; ++i)
+			rv[i] = outward(a[i].min - b[i], a[i].max - b[i]);
+
+		return rv;
+	}
+
+	private static Interval[] scale(Interval[] a, double s)
+	{
+		Interval[] rv = new Interval[a.length];
+
+		for (int i = 0; i < a.length; ++i)
+			rv[i] = mult(a[i], s);
+
+		return rv;
+	}
+
+	private static Interval[] scale(Interval[] a, Interval s)
+	{
+		Interval[] rv = new Interval[a.length];
+
+		for (int i = 0; i < a.length; ++i)
+			rv[i] = mult(a[i], s);
+
+		return rv;
+	}
+
+	private static double[] middleVector(Interval[] a)
+	{
+		double[] rv = new double[a.length];
+
+		for (int i = 0; i < a.length; ++i)
+			rv[i] = a[i].middle();
+
+		return rv;
+	}
+
+	private static Interval[] mult(double[][] m, Interval[] v)
+	{
+		Interval[] rv = new Interval[m.length];
+
+		for (int i = 0; i < m.length; ++i)
+		{
+			rv[i] = new Interval(0);
+
+			for (int j = 0; j < v.length; ++j)
+				rv[i] = add(rv[i], mult(v[j], m[i][j]));
+		}
+
+		return rv;
+	}
+
+	private static Interval[] mult(Interval[][] m, Interval[] v)
+	{
+		Interval[] rv = new Interval[m.length];
+
+		for (int i = 0; i < m.length; ++i)
+		{
+			rv[i] = new Interval(0);
+
+			for (int j = 0; j < v.length; ++j)
+				rv[i] = add(rv[i], mult(m[i][j], v[j]));
+		}
+
+		return rv;
+	}
+
+	private static double[][] mult(double[][] a, double[][] b)
+	{
+		int n = a.length;
+		double[][] rv = new double[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int k = 0; k < n; ++k)
+				for (int j = 0; j < n; ++j)
+					rv[i][j] += a[i][k] * b[k][j];
+
+		return rv;
+	}
+
+	private static Interval[][] mult(Interval[][] a, Interval[][] b)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+			{
+				rv[i][j] = new Interval(0);
+
+				for (int k = 0; k < n; ++k)
+					rv[i][j] = add(rv[i][j], mult(a[i][k], b[k][j]));
+			}
+
+		return rv;
+	}
+
+	private static Interval[][] mult(Interval[][] a, double[][] b)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+			{
+				rv[i][j] = new Interval(0);
+
+				for (int k = 0; k < n; ++k)
+					rv[i][j] = add(rv[i][j], mult(a[i][k], b[k][j]));
+			}
+
+		return rv;
+	}
+
+	private static Interval[][] add(Interval[][] a, Interval[][] b)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = add(a[i][j], b[i][j]);
+
+		return rv;
+	}
+
+	private static Interval[][] subtract(Interval[][] a, Interval[][] b)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = outward(a[i][j].min - b[i][j].max, a[i][j].max - b[i][j].min);
+
+		return rv;
+	}
+
+	private static Interval[][] subtract(Interval[][] a, double[][] b)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = outward(a[i][j].min - b[i][j], a[i][j].max - b[i][j]);
+
+		return rv;
+	}
+
+	private static Interval[][] scale(Interval[][] a, Interval s)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = mult(a[i][j], s);
+
+		return rv;
+	}
+
+	private static Interval[][] scale(Interval[][] a, double s)
+	{
+		int n = a.length;
+		Interval[][] rv = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = mult(a[i][j], s);
+
+		return rv;
+	}
+
+	private static double[][] middle(Interval[][] a)
+	{
+		int n = a.length;
+		double[][] rv = new double[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = a[i][j].middle();
+
+		return rv;
+	}
+
+	/**
+	 * Get the infinity norm of the magnitude matrix (max row sum of the largest absolute values)
+	 */
+	private static double magnitudeNorm(Interval[][] a)
+	{
+		double rv = 0;
+
+		for (int i = 0; i < a.length; ++i)
+		{
+			double sum = 0;
+
+			for (int j = 0; j < a[i].length; ++j)
+				sum = Math.nextUp(sum + magnitude(a[i][j]));
+
+			rv = Math.max(rv, sum);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Enclose the matrix exponential e^{h * a}, using a Taylor series with scaling and squaring. The
+	 * series is summed in outward-rounded interval arithmetic, and the truncation error is added to
+	 * every entry.
+	 */
+	private static Interval[][] expm(double[][] a, double h)
+	{
+		int n = a.length;
+		double norm = 0;
+
+		for (int i = 0; i < n; ++i)
+		{
+			double sum = 0;
+
+			for (int j = 0; j < n; ++j)
+				sum = Math.nextUp(sum + Math.nextUp(Math.abs(a[i][j] * h)));
+
+			norm = Math.max(norm, sum);
+		}
+
+		int squarings = norm > 0.5 ? (int) Math.ceil(Math.log(norm / 0.5) / Math.log(2)) : 0;
+		double pow = Math.pow(2, squarings);
+		double scale = h / pow; // exact, unless it underflows
+		double scaledNorm = Math.nextUp(norm / pow);
+
+		Interval[][] rv = new Interval[n][n];
+		Interval[][] term = new Interval[n][n];
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+			{
+				rv[i][j] = new Interval(i == j ? 1 : 0);
+				term[i][j] = rv[i][j];
+			}
+
+		for (int k = 1; k <= EXPM_TERMS; ++k)
+		{
+			Interval factor = outward(scale / k, scale / k);
+			term = scale(mult(term, a), factor);
+			rv = add(rv, term);
+		}
+
+		// the remaining terms are bounded by a geometric series: the infinity norm of
+		// sum_{k > K} (s * a)^k / k! is at most x^(K+1) / (K+1)! / (1 - x / (K+2)), x = ||s * a||
+		double trunc = 1;
+
+		for (int k = 1; k <= EXPM_TERMS + 1; ++k)
+			trunc = Math.nextUp(Math.nextUp(trunc * scaledNorm) / k);
+
+		trunc = Math.nextUp(trunc / (1 - scaledNorm / (EXPM_TERMS + 2)) * 2);
+
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				rv[i][j] = outward(rv[i][j].min - trunc, rv[i][j].max + trunc);
+
+		for (int s = 0; s < squarings; ++s)
+			rv = mult(rv, rv);
+
+		return rv;
+	}
+
+	/**
+	 * Enclose the inverse of a point matrix. An approximate inverse X is computed in floating point,
+	 * and the residual E = I - X * a is bounded in interval arithmetic. If ||E|| < 1, then the exact
+	 * inverse is (I - E)^-1 * X, which differs from X by at most ||E|| * ||X|| / (1 - ||E||).
+	 *
+	 * @return the enclosure, or null if the matrix is (nearly) singular
+	 */
+	private static Interval[][] enclosingInverse(double[][] a)
+	{
+		double[][] inv = invert(a);
+		Interval[][] rv = null;
+
+		if (inv != null)
+		{
+			int n = a.length;
+			Interval[][] pointInv = new Interval[n][n];
+
+			for (int i = 0; i < n; ++i)
+				for (int j = 0; j < n; ++j)
+					pointInv[i][j] = new Interval(inv[i][j]);
+
+			Interval[][] residual = subtract(identityPlusMinus(n, 0), mult(pointInv, a));
+			double e = magnitudeNorm(residual);
+
+			if (e < 0.5)
+			{
+				double invNorm = magnitudeNorm(pointInv);
+				double delta = Math.nextUp(Math.nextUp(e * invNorm) / (1 - e) * (1 + 1e-15));
+				rv = new Interval[n][n];
+
+				for (int i = 0; i < n; ++i)
+					for (int j = 0; j < n; ++j)
+						rv[i][j] = outward(inv[i][j] - delta, inv[i][j] + delta);
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Invert a matrix using Gauss-Jordan elimination with partial pivoting
+	 *
+	 * @return the inverse, or null if the matrix is singular
+	 */
+	private static double[][] invert(double[][] a)
+	{
+		int n = a.length;
+		double[][] work = new double[n][2 * n];
+
+		for (int i = 0; i < n; ++i)
+		{
+			System.arraycopy(a[i], 0, work[i], 0, n);
+			work[i][n + i] = 1;
+		}
+
+		for (int col = 0; col < n; ++col)
+		{
+			int pivot = col;
+
+			for (int row = col + 1; row < n; ++row)
+			{
+				if (Math.abs(work[row][col]) > Math.abs(work[pivot][col]))
+					pivot = row;
+			}
+
+			if (Math.abs(work[pivot][col]) < 1e-300)
+				return null;
+
+			double[] temp = work[col];
+			work[col] = work[pivot];
+			work[pivot] = temp;
+
+			double p = work[col][col];
+
+			for (int j = 0; j < 2 * n; ++j)
+				work[col][j] /= p;
+
+			for (int row = 0; row < n; ++row)
+			{
+				if (row == col || work[row][col] == 0)
+					continue;
+
+				double factor = work[row][col];
+
+				for (int j = 0; j < 2 * n; ++j)
+					work[row][j] -= factor * work[col][j];
+			}
+		}
+
+		double[][] rv = new double[n][n];
+
+		for (int i = 0; i < n; ++i)
+			System.arraycopy(work[i], n, rv[i], 0, n);
+
+		return rv;
+	}
+}
@@ -4,13 +4,23 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.verivital.hyst.geometry.Interval;
 import com.verivital.hyst.grammar.formula.DefaultExpressionPrinter;
@@ -22,12 +32,97 @@ import com.verivital.hyst.main.Hyst;
  * Kodaik is a NASA tool for finding enclosures of solutions for bounded nonlinear equations. It is
  * run as a separate executable, expected to be on the PATH or KODIAK_PATH
  * 
+ * Optimizations are split into chunks which are run as concurrent kodiak processes. Results are
+ * cached by the printed expression and bounds, so repeated optimizations don't run kodiak. The
+ * cache is kept in memory and, if the KODIAK_CACHE environment variable is set to a file path (or
+ * setDiskCache() is called), also on disk across runs.
  */
 
 public class KodiakUtil
 {
 	private static KodiakExpressionPrinter printer = new KodiakExpressionPrinter();
 
+	// split problems into this many optimizations per call to get around kodiak's long-input bug
+	private static final int OPT_PER_CALL = 30;
+
+	// the number of results kept in memory
+	private static final int MAX_CACHED = 100000;
+
+	// results, by the kodiak text of the bounds and expression (see makeKey())
+	private static final Map<String, Interval> cache = Collections
+			.synchronizedMap(new LinkedHashMap<String, Interval>(16, 0.75f, true)
+			{
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Interval> eldest)
+				{
+					return size() > MAX_CACHED;
+				}
+			});
+
+	// file where results are also stored across runs, or null
+	private static File diskCache = null;
+
+	static
+	{
+		String path = System.getenv("KODIAK_CACHE");
+
+		if (path != null && path.length() > 0)
+			setDiskCache(path);
+	}
+
+	/**
+	 * Set the file where results are cached across runs, and load the results in it. By default,
+	 * this is the path in the KODIAK_CACHE environment variable, if set.
+	 * 
+	 * @param path
+	 *            the cache file path, created if it doesn't exist, or null to only cache in memory
+	 */
+	public static synchronized void setDiskCache(String path)
+	{
+		diskCache = (path == null) ? null : new File(path);
+
+		if (diskCache != null && diskCache.exists())
+		{
+			try
+			{
+				BufferedReader br = new BufferedReader(new FileReader(diskCache));
+
+				try
+				{
+					// each line is: min <tab> max <tab> key
+					for (String line = br.readLine(); line != null; line = br.readLine())
+					{
+						String[] parts = line.split("\t", 3);
+
+						if (parts.length == 3)
+							cache.put(parts[2], new Interval(Double.parseDouble(parts[0]),
+									Double.parseDouble(parts[1])));
+					}
+				}
+				finally
+				{
+					br.close();
+				}
+			}
+			catch (IOException e)
+			{
+				throw new AutomatonExportException("Error reading Kodiak cache file: " + e, e);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new AutomatonExportException("Malformed Kodiak cache file: " + diskCache, e);
+			}
+		}
+	}
+
+	/**
+	 * Remove all cached results from memory (the disk cache file is kept)
+	 */
+	public static void clearCache()
+	{
+		cache.clear();
+	}
+
 	/**
 	 * Optimize a list of functions in a hyper-rectangle using kodiak This requires the Kodiac
 	 * executable is on PATH or KODIAK_PATH, or null is returned
@@ -43,77 +138,208 @@ public class KodiakUtil
 	public static List<Interval> kodiakOptimize(List<Expression> exps,
 			List<HashMap<String, Interval>> boundsList)
 	{
-		List<Interval> rv = null;
+		List<Interval> rv = new ArrayList<Interval>();
 
-		// This splits problems into 30 optimizations each to get around
-		// kodiac's long-input bug
-		List<Expression> subExps = new ArrayList<Expression>();
-		List<HashMap<String, Interval>> subBounds = new ArrayList<HashMap<String, Interval>>();
+		// results for this call, by key. The answer is assembled from this rather than the shared
+		// cache, which may evict entries as results are added.
+		Map<String, Interval> results = new HashMap<String, Interval>();
 
-		final int OPT_PER_CALL = 30;
-		int index = 0;
+		// optimizations which are not cached, by key, in order
+		LinkedHashMap<String, Integer> todo = new LinkedHashMap<String, Integer>();
+		List<String> keys = new ArrayList<String>(exps.size());
 
-		while (index < exps.size())
+		for (int i = 0; i < exps.size(); ++i)
 		{
-			subExps.add(exps.get(index));
-			subBounds.add(boundsList.get(index));
-
-			++index;
+			String key = makeKey(printer.print(exps.get(i)), boundsList.get(i));
+			keys.add(key);
 
-			if (index == exps.size() || index % OPT_PER_CALL == 0)
+			if (!todo.containsKey(key) && !results.containsKey(key))
 			{
-				List<Interval> result = kodiakOptimizeSingle(subExps, subBounds);
+				Interval hit = cache.get(key);
 
-				if (result == null) // kodiak executable not found
-					break;
-
-				if (rv == null)
-					rv = result;
+				if (hit != null)
+					results.put(key, hit);
 				else
-					rv.addAll(result);
-
-				// run opt and add to rv
-				subExps.clear();
-				subBounds.clear();
+					todo.put(key, i);
 			}
 		}
 
+		if (!todo.isEmpty())
+		{
+			String loc = findKodiak();
+
+			if (loc == null) // kodiak executable not found
+				return null;
+
+			results.putAll(runChunks(loc, new ArrayList<String>(todo.keySet()), exps, boundsList,
+					new ArrayList<Integer>(todo.values())));
+		}
+
+		for (String key : keys)
+			rv.add(new Interval(results.get(key)));
+
 		return rv;
 	}
 
-	private static List<Interval> kodiakOptimizeSingle(List<Expression> exps,
-			List<HashMap<String, Interval>> boundsList)
+	/**
+	 * Make the cache key of an optimization: the sorted variable bounds and the printed expression,
+	 * as they are written in the kodiak input
+	 */
+	private static String makeKey(String printedExp, Map<String, Interval> bounds)
 	{
-		List<Interval> rv = null;
-		Process p = null;
+		StringBuilder rv = new StringBuilder();
+
+		for (Entry<String, Interval> e : new TreeMap<String, Interval>(bounds).entrySet())
+		{
+			Interval i = e.getValue();
+			rv.append(e.getKey() + " in [" + i.min + ", " + i.max + "]; ");
+		}
+
+		rv.append(printedExp);
+
+		return rv.toString();
+	}
+
+	/**
+	 * Run optimizations in chunks of OPT_PER_CALL, as concurrent kodiak processes (one per core),
+	 * and store the results in the cache
+	 * 
+	 * @return the results, by key
+	 */
+	private static Map<String, Interval> runChunks(final String loc, List<String> keys, List<Expression> exps,
+			List<HashMap<String, Interval>> boundsList, List<Integer> indices)
+	{
+		List<Callable<List<Interval>>> tasks = new ArrayList<Callable<List<Interval>>>();
+
+		for (int start = 0; start < keys.size(); start += OPT_PER_CALL)
+		{
+			final List<Expression> subExps = new ArrayList<Expression>();
+			final List<HashMap<String, Interval>> subBounds = new ArrayList<HashMap<String, Interval>>();
+
+			for (int i = start; i < Math.min(keys.size(), start + OPT_PER_CALL); ++i)
+			{
+				subExps.add(exps.get(indices.get(i)));
+				subBounds.add(boundsList.get(indices.get(i)));
+			}
+
+			tasks.add(new Callable<List<Interval>>()
+			{
+				@Override
+				public List<Interval> call()
+				{
+					return kodiakOptimizeSingle(loc, subExps, subBounds);
+				}
+			});
+		}
+
+		int threads = Math.max(1,
+				Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Map<String, Interval> computed = new LinkedHashMap<String, Interval>();
 
 		try
 		{
-			String inputFilename = makeInputFile(exps, boundsList);
-			p = openProcess(inputFilename);
+			List<Future<List<Interval>>> results = new ArrayList<Future<List<Interval>>>();
+
+			for (Callable<List<Interval>> task : tasks)
+				results.add(pool.submit(task));
+
+			int index = 0;
 
-			if (p != null)
+			for (Future<List<Interval>> f : results)
 			{
-				BufferedReader stdout = new BufferedReader(
-						new InputStreamReader(p.getInputStream()));
+				for (Interval i : f.get())
+					computed.put(keys.get(index++), i);
+			}
+
+			cache.putAll(computed);
+			saveToDisk(computed);
+		}
+		catch (InterruptedException ex)
+		{
+			throw new AutomatonExportException("Interrupted while running Kodiak", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+
+			throw new AutomatonExportException("Error while running Kodiak", ex);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+
+		return computed;
+	}
+
+	/**
+	 * Append results to the disk cache file, if there is one
+	 */
+	private static synchronized void saveToDisk(Map<String, Interval> results)
+	{
+		if (diskCache != null)
+		{
+			try
+			{
+				BufferedWriter bw = new BufferedWriter(new FileWriter(diskCache, true));
 
 				try
 				{
-					rv = parseOutput(stdout);
+					for (Entry<String, Interval> e : results.entrySet())
+					{
+						Interval i = e.getValue();
+						bw.write(i.min + "\t" + i.max + "\t" + e.getKey() + "\n");
+					}
 				}
 				finally
 				{
-					closeProcess(p);
+					bw.close();
 				}
 			}
+			catch (IOException e)
+			{
+				throw new AutomatonExportException("Error writing Kodiak cache file: " + e, e);
+			}
+		}
+	}
+
+	private static List<Interval> kodiakOptimizeSingle(String loc, List<Expression> exps,
+			List<HashMap<String, Interval>> boundsList)
+	{
+		List<Interval> rv = null;
+		Process p = null;
+		String inputFilename = null;
+
+		try
+		{
+			inputFilename = makeInputFile(exps, boundsList);
+			p = openProcess(loc, inputFilename);
+
+			BufferedReader stdout = new BufferedReader(new InputStreamReader(p.getInputStream()));
+
+			try
+			{
+				rv = parseOutput(stdout);
+			}
+			finally
+			{
+				closeProcess(p);
+			}
 		}
 		catch (IOException e)
 		{
 			throw new AutomatonExportException("Error making Kodiak input file: " + e.toString(),
 					e);
 		}
+		finally
+		{
+			if (inputFilename != null)
+				new File(inputFilename).delete();
+		}
 
-		if (rv != null && rv.size() != exps.size())
+		if (rv.size() != exps.size())
 			throw new AutomatonExportException("kodiak output size (" + rv.size()
 					+ ") didn't match input size (" + exps.size() + ")");
 
@@ -182,9 +408,11 @@ public class KodiakUtil
 		return f.getAbsolutePath();
 	}
 
-	private static Process openProcess(String inputFilename)
+	/**
+	 * Get the path of the kodiak executable, or null if it's not found
+	 */
+	private static String findKodiak()
 	{
-		Process process = null;
 		String processNames[] = { "kodiak", "kodiak.exe" };
 		final String ENV_VAR = "KODIAK_PATH";
 		String loc = null;
@@ -203,20 +431,23 @@ public class KodiakUtil
 			}
 		}
 
-		if (loc != null)
-		{
-			ProcessBuilder pb = new ProcessBuilder(loc, inputFilename);
-			pb.directory(new File(System.getProperty("java.io.tmpdir")));
+		return loc;
+	}
 
-			try
-			{
-				process = pb.start();
-			}
-			catch (IOException e)
-			{
-				throw new AutomatonExportException(
-						"Exception while starting kodiak process: " + e.toString(), e);
-			}
+	private static Process openProcess(String loc, String inputFilename)
+	{
+		Process process = null;
+		ProcessBuilder pb = new ProcessBuilder(loc, inputFilename);
+		pb.directory(new File(System.getProperty("java.io.tmpdir")));
+
+		try
+		{
+			process = pb.start();
+		}
+		catch (IOException e)
+		{
+			throw new AutomatonExportException(
+					"Exception while starting kodiak process: " + e.toString(), e);
 		}
 
 		return process;
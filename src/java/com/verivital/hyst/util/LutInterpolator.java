@@ -0,0 +1,300 @@
+package com.verivital.hyst.util;
+
+import java.util.Arrays;
+
+import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.grammar.formula.LutExpression;
+import com.verivital.hyst.ir.AutomatonExportException;
+
+/**
+ * Numeric n-linear interpolation of a lookup table with a numeric table (see
+ * MatrixExpression.isNumeric()). This is the same interpolation ConvertLutFlowsPass uses in each
+ * cell, so inputs outside the breakpoints are linearly extrapolated from the edge cells.
+ *
+ * The cell in each dimension is found with a binary search over the breakpoints. The last cell
+ * found in each dimension is remembered, and checked (along with its neighbors) before searching,
+ * so evaluating along a trajectory usually takes constant time per dimension. The remembered cells
+ * are kept per thread, so an interpolator can be used by parallel callers.
+ *
+ * Use get() to get the interpolator for a lut, which is stored in the lut. Copies of a lut share
+ * their numeric table, so they also share the interpolator.
+ */
+public class LutInterpolator
+{
+	private final double[][] breakpoints;
+	private final double[] values; // table values, in MatrixExpression reshape() order
+	private final int[] strides; // offset in values between adjacent entries in each dimension
+
+	// the last cell found in each dimension, by the current thread
+	private final ThreadLocal<int[]> hints = new ThreadLocal<int[]>()
+	{
+		@Override
+		protected int[] initialValue()
+		{
+			return new int[breakpoints.length];
+		}
+	};
+
+	/**
+	 * Create an interpolator for a lut
+	 *
+	 * @param lut
+	 *            the lookup table, whose table must be numeric
+	 * @throws AutomatonExportException
+	 *             if the table has non-numeric entries
+	 */
+	public LutInterpolator(LutExpression lut)
+	{
+		if (!lut.table.isNumeric())
+			throw new AutomatonExportException(
+					"Lookup table must have numeric entries to be evaluated: "
+							+ lut.toDefaultString());
+
+		int numDims = lut.breakpoints.length;
+		breakpoints = new double[numDims][];
+		values = lut.table.getValues();
+		strides = new int[numDims];
+
+		for (int d = 0, stride = 1; d < numDims; stride *= lut.table.getDimWidth(d), ++d)
+		{
+			breakpoints[d] = Arrays.copyOf(lut.breakpoints[d], lut.breakpoints[d].length);
+			strides[d] = stride;
+		}
+	}
+
+	/**
+	 * Get the interpolator for a lut. The interpolator is stored in the lut (see
+	 * LutExpression.interpolator), and reused as long as the lut has the same table and breakpoints.
+	 *
+	 * @param lut
+	 *            the lookup table, whose table must be numeric
+	 * @return the interpolator
+	 * @throws AutomatonExportException
+	 *             if the table has non-numeric entries
+	 */
+	public static LutInterpolator get(LutExpression lut)
+	{
+		LutInterpolator rv = lut.interpolator;
+
+		if (rv == null || !lut.table.isNumeric() || rv.values != lut.table.getValues()
+				|| !rv.hasBreakpoints(lut.breakpoints))
+		{
+			rv = new LutInterpolator(lut);
+			lut.interpolator = rv;
+		}
+
+		return rv;
+	}
+
+	private boolean hasBreakpoints(double[][] bps)
+	{
+		boolean rv = bps.length == breakpoints.length;
+
+		for (int d = 0; rv && d < bps.length; ++d)
+			rv = Arrays.equals(bps[d], breakpoints[d]);
+
+		return rv;
+	}
+
+	public int getNumDims()
+	{
+		return breakpoints.length;
+	}
+
+	/**
+	 * Find the cell containing a value: the index i such that breakpoints[d][i] <= x <
+	 * breakpoints[d][i + 1]. Values outside the breakpoints are assigned to the first or last cell.
+	 *
+	 * @param d
+	 *            the dimension
+	 * @param x
+	 *            the value
+	 * @return the cell index, between 0 and breakpoints[d].length - 2
+	 */
+	public int findCell(int d, double x)
+	{
+		return findCell(d, x, hints.get());
+	}
+
+	private int findCell(int d, double x, int[] cellHints)
+	{
+		double[] bp = breakpoints[d];
+		int last = bp.length - 2;
+		int hint = cellHints[d];
+		int rv;
+
+		if (inCell(bp, hint, last, x))
+			rv = hint;
+		else if (hint < last && inCell(bp, hint + 1, last, x))
+			rv = hint + 1;
+		else if (hint > 0 && inCell(bp, hint - 1, last, x))
+			rv = hint - 1;
+		else
+		{
+			rv = Arrays.binarySearch(bp, x);
+
+			// when not found, binarySearch returns -(insertion point) - 1, and the cell is the
+			// one before the insertion point
+			if (rv < 0)
+				rv = -rv - 2;
+
+			rv = Math.max(0, Math.min(last, rv));
+		}
+
+		cellHints[d] = rv;
+
+		return rv;
+	}
+
+	private static boolean inCell(double[] bp, int cell, int last, double x)
+	{
+		return (cell == 0 || x >= bp[cell]) && (cell == last || x < bp[cell + 1]);
+	}
+
+	/**
+	 * Evaluate the interpolation at a point
+	 *
+	 * @param inputs
+	 *            the value of each lut input
+	 * @return the interpolated value
+	 */
+	public double evaluate(double... inputs)
+	{
+		checkDims(inputs.length);
+
+		int numDims = inputs.length;
+		int[] cells = new int[numDims];
+		int[] h = hints.get();
+
+		for (int d = 0; d < numDims; ++d)
+			cells[d] = findCell(d, inputs[d], h);
+
+		return evaluateInCell(cells, inputs);
+	}
+
+	/**
+	 * Evaluate the interpolation of a single cell at a point (which may be outside the cell, in
+	 * which case the cell's interpolation is extrapolated)
+	 */
+	private double evaluateInCell(int[] cells, double[] inputs)
+	{
+		int numDims = cells.length;
+		double[] frac = new double[numDims]; // normalized position in the cell
+		int base = 0;
+
+		for (int d = 0; d < numDims; ++d)
+		{
+			double lo = breakpoints[d][cells[d]];
+			double hi = breakpoints[d][cells[d] + 1];
+
+			frac[d] = (inputs[d] - lo) / (hi - lo);
+			base += strides[d] * cells[d];
+		}
+
+		// sum over the corners, bit d of k means the upper corner in dimension d
+		double rv = 0;
+
+		for (int k = 0; k < (1 << numDims); ++k)
+		{
+			double weight = 1;
+			int offset = base;
+
+			for (int d = 0; d < numDims; ++d)
+			{
+				if (((k >> d) & 1) != 0)
+				{
+					weight *= frac[d];
+					offset += strides[d];
+				}
+				else
+					weight *= 1 - frac[d];
+			}
+
+			rv += weight * values[offset];
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the range of the interpolation over a box. Within each cell the interpolation is
+	 * multilinear, so its extremes over the part of the box in the cell are at the corners of that
+	 * part. The result is the exact range, found by checking those corners in every cell the box
+	 * spans.
+	 *
+	 * @param inputs
+	 *            the range of each lut input
+	 * @return the range of the interpolated value
+	 */
+	public Interval evaluate(Interval... inputs)
+	{
+		checkDims(inputs.length);
+
+		int numDims = inputs.length;
+		int[] lo = new int[numDims];
+		int[] hi = new int[numDims];
+		int[] h = hints.get();
+
+		for (int d = 0; d < numDims; ++d)
+		{
+			lo[d] = findCell(d, inputs[d].min, h);
+			hi[d] = findCell(d, inputs[d].max, h);
+		}
+
+		int[] cells = Arrays.copyOf(lo, numDims);
+		double[] corner = new double[numDims];
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+
+		do
+		{
+			for (int k = 0; k < (1 << numDims); ++k)
+			{
+				// corner k of the part of the box inside the cell
+				for (int d = 0; d < numDims; ++d)
+				{
+					int c = cells[d];
+
+					if (((k >> d) & 1) != 0)
+						corner[d] = (c == hi[d]) ? inputs[d].max : breakpoints[d][c + 1];
+					else
+						corner[d] = (c == lo[d]) ? inputs[d].min : breakpoints[d][c];
+				}
+
+				double val = evaluateInCell(cells, corner);
+				min = Math.min(min, val);
+				max = Math.max(max, val);
+			}
+		} while (nextCell(cells, lo, hi));
+
+		return new Interval(min, max);
+	}
+
+	/**
+	 * Advance to the next cell within [lo, hi], with the first dimension changing fastest
+	 *
+	 * @return false if the iteration is done
+	 */
+	private static boolean nextCell(int[] cur, int[] lo, int[] hi)
+	{
+		for (int d = 0; d < cur.length; ++d)
+		{
+			if (cur[d] < hi[d])
+			{
+				++cur[d];
+				return true;
+			}
+
+			cur[d] = lo[d];
+		}
+
+		return false;
+	}
+
+	private void checkDims(int numInputs)
+	{
+		if (numInputs != breakpoints.length)
+			throw new AutomatonExportException("Lookup table expects " + breakpoints.length
+					+ " inputs, got " + numInputs);
+	}
+}
@@ -0,0 +1,202 @@
+package com.verivital.hyst.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.verivital.hyst.ir.AutomatonExportException;
+
+/**
+ * Renders the text of many independent items (such as the modes or transitions of an automaton) on
+ * several threads, and writes it out in the original item order. The output is the same as
+ * rendering every item in order on a single thread.
+ *
+ * Items are grouped into batches, and each batch is rendered on a shared ForkJoinPool (with one
+ * thread per processor) into a StringBuilder that is reused by the worker thread. Batches are
+ * written in order as soon as they are done. Batches are taken from the items' iterator only when
+ * a slot is free, and at most numThreads batches are in flight at once, which limits both the
+ * threads used by one call and the memory, which does not grow with the number of items.
+ *
+ * Renderers must not modify shared state (items are rendered concurrently). Small inputs are
+ * rendered on the calling thread.
+ */
+public class ParallelRenderer
+{
+	public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	// shared by all calls, created when first needed
+	private static ForkJoinPool pool = null;
+
+	// initial size of a worker thread's builder
+	private static final int BUILDER_CAPACITY = 16 * 1024;
+
+	// builders larger than this are not kept after a batch, so one huge batch doesn't pin memory
+	private static final int MAX_POOLED_CAPACITY = 4 * 1024 * 1024;
+
+	private static final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>()
+	{
+		@Override
+		protected StringBuilder initialValue()
+		{
+			return new StringBuilder(BUILDER_CAPACITY);
+		}
+	};
+
+	/**
+	 * Renders the text of a single item
+	 */
+	public interface Renderer<T>
+	{
+		/**
+		 * Append the text for an item
+		 *
+		 * @param item
+		 *            the item to render
+		 * @param out
+		 *            where to append the text
+		 */
+		public void render(T item, StringBuilder out);
+	}
+
+	/**
+	 * Render items, and write their text in order
+	 *
+	 * @param items
+	 *            the items to render
+	 * @param renderer
+	 *            the renderer for each item
+	 * @param out
+	 *            where to write the text, in item order
+	 * @param numThreads
+	 *            the number of threads to use, 1 means render on the calling thread
+	 * @param batchSize
+	 *            the number of items per batch
+	 * @throws AutomatonExportException
+	 *             if writing to out fails, or rendering is interrupted. Runtime exceptions thrown by
+	 *             the renderer are rethrown as is.
+	 */
+	public static <T> void render(Iterable<T> items, final Renderer<T> renderer, Appendable out,
+			int numThreads, int batchSize)
+	{
+		Iterator<T> it = items.iterator();
+		int size = Math.max(1, batchSize);
+		List<T> first = nextBatch(it, size);
+
+		try
+		{
+			if (numThreads <= 1 || !it.hasNext())
+			{
+				for (List<T> batch = first; batch != null; batch = nextBatch(it, size))
+					out.append(renderBatch(batch, renderer));
+			}
+			else
+				renderParallel(first, it, size, renderer, out, numThreads);
+		}
+		catch (IOException e)
+		{
+			throw new AutomatonExportException("Error writing rendered output", e);
+		}
+	}
+
+	/**
+	 * Take the next batch of items from an iterator
+	 *
+	 * @return the batch, or null if there are no items left
+	 */
+	private static <T> List<T> nextBatch(Iterator<T> it, int batchSize)
+	{
+		List<T> rv = null;
+
+		if (it.hasNext())
+		{
+			rv = new ArrayList<T>(batchSize);
+
+			while (rv.size() < batchSize && it.hasNext())
+				rv.add(it.next());
+		}
+
+		return rv;
+	}
+
+	private static <T> void renderParallel(List<T> first, Iterator<T> it, int batchSize,
+			final Renderer<T> renderer, Appendable out, int numThreads) throws IOException
+	{
+		ForkJoinPool pool = getPool();
+		ArrayDeque<Future<String>> inFlight = new ArrayDeque<Future<String>>();
+
+		try
+		{
+			List<T> next = first;
+
+			while (next != null || !inFlight.isEmpty())
+			{
+				while (next != null && inFlight.size() < numThreads)
+				{
+					final List<T> batch = next;
+
+					inFlight.add(pool.submit(new Callable<String>()
+					{
+						@Override
+						public String call()
+						{
+							return renderBatch(batch, renderer);
+						}
+					}));
+
+					next = nextBatch(it, batchSize);
+				}
+
+				out.append(inFlight.poll().get());
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			throw new AutomatonExportException("Interrupted while rendering output", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+
+			throw new AutomatonExportException("Error while rendering output", ex);
+		}
+		finally
+		{
+			// don't leave work from this call running if it failed
+			for (Future<String> f : inFlight)
+				f.cancel(true);
+		}
+	}
+
+	private static synchronized ForkJoinPool getPool()
+	{
+		// the worker threads are daemon threads, so the pool doesn't need to be shut down
+		if (pool == null)
+			pool = new ForkJoinPool(DEFAULT_THREADS);
+
+		return pool;
+	}
+
+	private static <T> String renderBatch(List<T> batch, Renderer<T> renderer)
+	{
+		StringBuilder sb = builders.get();
+		sb.setLength(0);
+
+		for (T item : batch)
+			renderer.render(item, sb);
+
+		String rv = sb.toString();
+
+		if (sb.capacity() > MAX_POOLED_CAPACITY)
+			builders.remove();
+
+		return rv;
+	}
+}
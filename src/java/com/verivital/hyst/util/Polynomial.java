@@ -0,0 +1,447 @@
+package com.verivital.hyst.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.verivital.hyst.grammar.formula.Constant;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.grammar.formula.Operation;
+import com.verivital.hyst.grammar.formula.Operator;
+import com.verivital.hyst.grammar.formula.Variable;
+
+/**
+ * A sparse multivariate polynomial with double coefficients, in canonical form. Each term is a
+ * monomial (an array of exponents, one per variable) mapped to its nonzero coefficient. Polynomials
+ * are immutable, and the degree is computed on construction, so degree and linearity queries take
+ * constant time.
+ *
+ * Use fromExpression() to convert an Expression (this returns null if the expression is not a
+ * polynomial), and AutomatonMode.getFlowPolynomial() to get the cached polynomial form of a flow.
+ */
+public class Polynomial
+{
+	// largest integer power which is expanded when converting from an expression
+	public static final int MAX_POWER = 64;
+
+	private final String[] variables; // variable name for each exponent index
+	private final LinkedHashMap<Monomial, Double> terms;
+	private final int degree; // total degree, 0 for constants (including zero)
+
+	/**
+	 * A product of variables, each raised to a nonnegative power
+	 */
+	private static class Monomial
+	{
+		final int[] exponents;
+		final int degree;
+		final int hash;
+
+		Monomial(int[] exponents)
+		{
+			this.exponents = exponents;
+
+			int d = 0;
+
+			for (int e : exponents)
+				d += e;
+
+			degree = d;
+			hash = Arrays.hashCode(exponents);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof Monomial && hash == ((Monomial) o).hash
+					&& Arrays.equals(exponents, ((Monomial) o).exponents);
+		}
+
+		Monomial multiply(Monomial other)
+		{
+			int[] e = new int[exponents.length];
+
+			for (int i = 0; i < e.length; ++i)
+				e[i] = exponents[i] + other.exponents[i];
+
+			return new Monomial(e);
+		}
+	}
+
+	private Polynomial(String[] variables, LinkedHashMap<Monomial, Double> terms)
+	{
+		this.variables = variables;
+		this.terms = terms;
+
+		int d = 0;
+
+		for (Monomial m : terms.keySet())
+			d = Math.max(d, m.degree);
+
+		degree = d;
+	}
+
+	/**
+	 * Convert an expression to a polynomial. Supported are constants, variables, +, -, *, negation,
+	 * division by a constant and powers with a constant nonnegative integer exponent.
+	 *
+	 * @param e
+	 *            the expression
+	 * @return the polynomial, or null if the expression is not a polynomial
+	 */
+	public static Polynomial fromExpression(Expression e)
+	{
+		LinkedHashSet<String> names = new LinkedHashSet<String>();
+
+		if (!collectVariables(e, names))
+			return null;
+
+		String[] vars = names.toArray(new String[names.size()]);
+
+		return convert(e, vars);
+	}
+
+	/**
+	 * Collect the variable names in an expression
+	 *
+	 * @return false if the expression contains something other than constants, variables and
+	 *         operations (for example, a lookup table)
+	 */
+	private static boolean collectVariables(Expression e, LinkedHashSet<String> names)
+	{
+		boolean rv = true;
+
+		if (e instanceof Variable)
+			names.add(((Variable) e).name);
+		else if (e instanceof Operation)
+		{
+			for (Expression child : e.asOperation().children)
+			{
+				if (!collectVariables(child, names))
+				{
+					rv = false;
+					break;
+				}
+			}
+		}
+		else if (!(e instanceof Constant) || e == Constant.TRUE || e == Constant.FALSE)
+			rv = false;
+
+		return rv;
+	}
+
+	private static Polynomial convert(Expression e, String[] vars)
+	{
+		Polynomial rv = null;
+
+		if (e instanceof Constant)
+			rv = constant(vars, ((Constant) e).getVal());
+		else if (e instanceof Variable)
+		{
+			String name = ((Variable) e).name;
+			int[] exponents = new int[vars.length];
+
+			for (int i = 0; i < vars.length; ++i)
+			{
+				if (vars[i].equals(name))
+					exponents[i] = 1;
+			}
+
+			LinkedHashMap<Monomial, Double> t = new LinkedHashMap<Monomial, Double>();
+			t.put(new Monomial(exponents), 1.0);
+			rv = new Polynomial(vars, t);
+		}
+		else if (e instanceof Operation)
+		{
+			Operation o = e.asOperation();
+			Operator op = o.op;
+
+			if (op == Operator.NEGATIVE)
+			{
+				Polynomial child = convert(o.children.get(0), vars);
+
+				if (child != null)
+					rv = child.scale(-1);
+			}
+			else if (op == Operator.ADD || op == Operator.SUBTRACT || op == Operator.MULTIPLY)
+			{
+				for (Expression c : o.children)
+				{
+					Polynomial p = convert(c, vars);
+
+					if (p == null)
+					{
+						rv = null;
+						break;
+					}
+
+					if (rv == null)
+						rv = p;
+					else if (op == Operator.ADD)
+						rv = rv.add(p);
+					else if (op == Operator.SUBTRACT)
+						rv = rv.add(p.scale(-1));
+					else
+						rv = rv.multiply(p);
+				}
+			}
+			else if (op == Operator.DIVIDE)
+			{
+				Polynomial left = convert(o.getLeft(), vars);
+				Polynomial right = convert(o.getRight(), vars);
+
+				if (left != null && right != null && right.isConstant())
+				{
+					double divisor = right.getConstant();
+
+					if (divisor != 0)
+						rv = left.scale(1.0 / divisor);
+				}
+			}
+			else if (op == Operator.POW)
+			{
+				Polynomial base = convert(o.getLeft(), vars);
+				Polynomial exp = convert(o.getRight(), vars);
+
+				if (base != null && exp != null && exp.isConstant())
+				{
+					double val = exp.getConstant();
+
+					if (val >= 0 && val <= MAX_POWER && val == Math.floor(val))
+						rv = base.pow((int) val);
+				}
+			}
+		}
+
+		return rv;
+	}
+
+	private static Polynomial constant(String[] vars, double val)
+	{
+		LinkedHashMap<Monomial, Double> t = new LinkedHashMap<Monomial, Double>();
+
+		if (val != 0)
+			t.put(new Monomial(new int[vars.length]), val);
+
+		return new Polynomial(vars, t);
+	}
+
+	private static void accumulate(LinkedHashMap<Monomial, Double> t, Monomial m, double val)
+	{
+		Double cur = t.get(m);
+		double sum = (cur == null) ? val : cur + val;
+
+		if (sum == 0)
+			t.remove(m);
+		else
+			t.put(m, sum);
+	}
+
+	private Polynomial add(Polynomial other)
+	{
+		LinkedHashMap<Monomial, Double> t = new LinkedHashMap<Monomial, Double>(terms);
+
+		for (Entry<Monomial, Double> e : other.terms.entrySet())
+			accumulate(t, e.getKey(), e.getValue());
+
+		return new Polynomial(variables, t);
+	}
+
+	private Polynomial scale(double factor)
+	{
+		LinkedHashMap<Monomial, Double> t = new LinkedHashMap<Monomial, Double>();
+
+		if (factor != 0)
+		{
+			for (Entry<Monomial, Double> e : terms.entrySet())
+				t.put(e.getKey(), e.getValue() * factor);
+		}
+
+		return new Polynomial(variables, t);
+	}
+
+	private Polynomial multiply(Polynomial other)
+	{
+		LinkedHashMap<Monomial, Double> t = new LinkedHashMap<Monomial, Double>();
+
+		for (Entry<Monomial, Double> a : terms.entrySet())
+		{
+			for (Entry<Monomial, Double> b : other.terms.entrySet())
+				accumulate(t, a.getKey().multiply(b.getKey()), a.getValue() * b.getValue());
+		}
+
+		return new Polynomial(variables, t);
+	}
+
+	private Polynomial pow(int n)
+	{
+		Polynomial rv = constant(variables, 1);
+		Polynomial square = this;
+
+		// exponentiation by squaring
+		while (n > 0)
+		{
+			if ((n & 1) != 0)
+				rv = rv.multiply(square);
+
+			n >>= 1;
+
+			if (n > 0)
+				square = square.multiply(square);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the total degree of the polynomial. Constants (including zero) have degree 0.
+	 */
+	public int getDegree()
+	{
+		return degree;
+	}
+
+	/**
+	 * Is this polynomial a constant?
+	 */
+	public boolean isConstant()
+	{
+		return degree == 0;
+	}
+
+	/**
+	 * Is this polynomial linear (affine, so constant terms are allowed)?
+	 */
+	public boolean isLinear()
+	{
+		return degree <= 1;
+	}
+
+	/**
+	 * Get the number of (nonzero) terms
+	 */
+	public int getNumTerms()
+	{
+		return terms.size();
+	}
+
+	/**
+	 * Get the variable names, in the order used by exponent arrays
+	 */
+	public List<String> getVariables()
+	{
+		return Arrays.asList(variables);
+	}
+
+	/**
+	 * Get the constant term
+	 */
+	public double getConstant()
+	{
+		return getCoefficient(new int[variables.length]);
+	}
+
+	/**
+	 * Get the coefficient of a single variable (the degree-one term of that variable)
+	 *
+	 * @param var
+	 *            the variable name
+	 * @return the coefficient, or 0 if the variable is not in the polynomial
+	 */
+	public double getLinearCoefficient(String var)
+	{
+		double rv = 0;
+
+		for (int i = 0; i < variables.length; ++i)
+		{
+			if (variables[i].equals(var))
+			{
+				int[] exponents = new int[variables.length];
+				exponents[i] = 1;
+				rv = getCoefficient(exponents);
+				break;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the coefficient of a monomial
+	 *
+	 * @param exponents
+	 *            the exponent of each variable, in the order of getVariables()
+	 * @return the coefficient, or 0 if the monomial is not a term
+	 */
+	public double getCoefficient(int[] exponents)
+	{
+		if (exponents.length != variables.length)
+			throw new IllegalArgumentException("expected " + variables.length + " exponents, got "
+					+ exponents.length);
+
+		Double rv = terms.get(new Monomial(exponents));
+
+		return rv == null ? 0 : rv;
+	}
+
+	/**
+	 * Convert this polynomial back to an expression, as a sum of products
+	 *
+	 * @return the expression
+	 */
+	public Expression toExpression()
+	{
+		Expression rv = null;
+
+		for (Entry<Monomial, Double> e : terms.entrySet())
+		{
+			int[] exponents = e.getKey().exponents;
+			double c = e.getValue();
+			ArrayList<Expression> factors = new ArrayList<Expression>();
+
+			for (int i = 0; i < exponents.length; ++i)
+			{
+				if (exponents[i] == 1)
+					factors.add(new Variable(variables[i]));
+				else if (exponents[i] > 1)
+					factors.add(new Operation(Operator.POW, new Variable(variables[i]),
+							new Constant(exponents[i])));
+			}
+
+			boolean subtract = rv != null && c < 0;
+			double magnitude = subtract ? -c : c;
+			Expression term = null;
+
+			if (magnitude != 1 || factors.isEmpty())
+				term = new Constant(magnitude);
+
+			for (Expression f : factors)
+				term = (term == null) ? f : new Operation(Operator.MULTIPLY, term, f);
+
+			if (rv == null)
+				rv = term;
+			else
+				rv = new Operation(subtract ? Operator.SUBTRACT : Operator.ADD, rv, term);
+		}
+
+		if (rv == null)
+			rv = new Constant(0);
+
+		return rv;
+	}
+
+	@Override
+	public String toString()
+	{
+		return toExpression().toDefaultString();
+	}
+}
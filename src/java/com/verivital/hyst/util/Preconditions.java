@@ -37,6 +37,9 @@ import com.verivital.hyst.python.PythonBridge;
  * (PreconditionsFlag.NEEDS_ONE_VARIABLE.ordinal()).
  * 
  * Upon detecting an error, checks may either convert the model, or raise a PreconditionException.
+ * 
+ * Checks which pass are recorded in Configuration.establishedPreconditions, and are not redone by
+ * later passes and printers until a pass which doesn't preserve them modifies the model.
  */
 public class Preconditions
 {
@@ -87,62 +90,128 @@ public class Preconditions
 	{
 		Hyst.log("Checking preconditions for " + name);
 
-		if (!skip[PreconditionsFlag.CONVERT_NONDETERMINISTIC_RESETS.ordinal()])
-			Preconditions.convertNondeterministicResets(c.root); // may create
-																	// interval
-																	// constants
+		// conversions which modify the model directly (not through a TransformationPass) clear the
+		// established preconditions when they change something
+
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_NONDETERMINISTIC_RESETS))
+		{
+			// may create interval constants
+			if (Preconditions.convertNondeterministicResets(c.root))
+				c.establishedPreconditions.clear();
 
-		if (!skip[PreconditionsFlag.CONVERT_INTERVAL_CONST_TO_VAR.ordinal()])
-			Preconditions.convertIntervalConstants(c);
+			established(c, PreconditionsFlag.CONVERT_NONDETERMINISTIC_RESETS);
+		}
 
-		if (!skip[PreconditionsFlag.CONVERT_CONSTANTS_TO_VALUES.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_INTERVAL_CONST_TO_VAR))
+		{
+			if (Preconditions.convertIntervalConstants(c))
+				c.establishedPreconditions.clear();
+
+			established(c, PreconditionsFlag.CONVERT_INTERVAL_CONST_TO_VAR);
+		}
+
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_CONSTANTS_TO_VALUES))
 		{
 			Preconditions.substituteConstants(c);
+			established(c, PreconditionsFlag.CONVERT_CONSTANTS_TO_VALUES);
 		}
 
-		if (!skip[PreconditionsFlag.SIMPLIFY_EXPRESSIONS.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.SIMPLIFY_EXPRESSIONS))
 		{
 			Preconditions.simplifyExpressions(c);
+			established(c, PreconditionsFlag.SIMPLIFY_EXPRESSIONS);
 		}
 
 		if (!skip[PreconditionsFlag.CONVERT_TO_FLAT_AUTOMATON.ordinal()])
 		{
-			Preconditions.convertToFlat(c);
+			if (!c.establishedPreconditions.contains(PreconditionsFlag.CONVERT_TO_FLAT_AUTOMATON))
+			{
+				if (Preconditions.convertToFlat(c))
+					c.establishedPreconditions.clear();
+
+				established(c, PreconditionsFlag.CONVERT_TO_FLAT_AUTOMATON);
+			}
 
-			if (!skip[PreconditionsFlag.CONVERT_ALL_FLOWS_ASSIGNED.ordinal()])
+			if (shouldCheck(c, PreconditionsFlag.CONVERT_ALL_FLOWS_ASSIGNED))
+			{
 				Preconditions.convertAllFlowAssigned(c);
+				established(c, PreconditionsFlag.CONVERT_ALL_FLOWS_ASSIGNED);
+			}
 		}
 
 		// this should be done AFTER flattening
-		if (!skip[PreconditionsFlag.CONVERT_DISJUNCTIVE_INIT_FORBIDDEN.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_DISJUNCTIVE_INIT_FORBIDDEN))
+		{
 			Preconditions.convertDisjunctiveInitForbidden(c);
+			established(c, PreconditionsFlag.CONVERT_DISJUNCTIVE_INIT_FORBIDDEN);
+		}
 
 		// this should be done AFTER converting init_forbidden
-		if (!skip[PreconditionsFlag.CONVERT_DISJUNCTIVE_GUARDS.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_DISJUNCTIVE_GUARDS))
+		{
 			Preconditions.convertDisjunctiveGuards(c);
+			established(c, PreconditionsFlag.CONVERT_DISJUNCTIVE_GUARDS);
+		}
 
 		// this should be done after disjunctions are converted
-		if (!skip[PreconditionsFlag.CONVERT_BASIC_OPERATORS.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_BASIC_OPERATORS))
+		{
 			Preconditions.convertBasicOperators(c);
+			established(c, PreconditionsFlag.CONVERT_BASIC_OPERATORS);
+		}
 
 		// nondeterministic dynamics check before converting affine terms
-		if (!skip[PreconditionsFlag.NO_NONDETERMINISTIC_DYNAMICS.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.NO_NONDETERMINISTIC_DYNAMICS))
+		{
 			Preconditions.noNondeterministicDynamics(c.root);
+			established(c, PreconditionsFlag.NO_NONDETERMINISTIC_DYNAMICS);
+		}
 
 		// check if we need to do an affine transformation
-		if (!skip[PreconditionsFlag.CONVERT_AFFINE_TERMS.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.CONVERT_AFFINE_TERMS))
+		{
+			// the conversion only adds a variable and rewrites constant flow terms, which doesn't
+			// break any of the properties checked above, so they stay established
 			Preconditions.doAffineTransformation(c);
+			established(c, PreconditionsFlag.CONVERT_AFFINE_TERMS);
+		}
 
 		// conversions should be done before checks
 
-		if (!skip[PreconditionsFlag.NEEDS_ONE_VARIABLE.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.NEEDS_ONE_VARIABLE))
+		{
 			Preconditions.hasAtLeastOneVariable(c);
+			established(c, PreconditionsFlag.NEEDS_ONE_VARIABLE);
+		}
 
-		if (!skip[PreconditionsFlag.NO_URGENT.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.NO_URGENT))
+		{
 			Preconditions.noUrgentDynamics(c.root);
+			established(c, PreconditionsFlag.NO_URGENT);
+		}
 
-		if (!skip[PreconditionsFlag.ALL_CONSTANTS_DEFINED.ordinal()])
+		if (shouldCheck(c, PreconditionsFlag.ALL_CONSTANTS_DEFINED))
+		{
 			Preconditions.allConstantsDefined(c.root);
+			established(c, PreconditionsFlag.ALL_CONSTANTS_DEFINED);
+		}
+	}
+
+	/**
+	 * Should a check be run? This is false if it's skipped, or if the property is already known to
+	 * hold for the configuration (it was established by an earlier check and not invalidated since)
+	 */
+	private boolean shouldCheck(Configuration c, PreconditionsFlag f)
+	{
+		return !skip[f.ordinal()] && !c.establishedPreconditions.contains(f);
+	}
+
+	/**
+	 * Record that a check passed (possibly after converting the model)
+	 */
+	private static void established(Configuration c, PreconditionsFlag f)
+	{
+		c.establishedPreconditions.add(f);
 	}
 
 	private static void doAffineTransformation(Configuration c)
@@ -153,7 +222,7 @@ public class Preconditions
 			{
 				Hyst.log("Automaton has affine terms, converting...");
 
-				new AffineTransformationPass().runVanillaPass(c, "");
+				AffineTransformationPass.run(c, "affine");
 			}
 			else
 				Hyst.log("Automaton doesn't affine terms, skipping affine conversion");
@@ -298,15 +367,21 @@ public class Preconditions
 	 * 
 	 * @param c
 	 *            the configuration to check
+	 * @return true if the automaton was flattened
 	 */
-	private static void convertToFlat(Configuration c)
+	private static boolean convertToFlat(Configuration c)
 	{
+		boolean rv = false;
+
 		if (!(c.root instanceof BaseComponent))
 		{
 			Hyst.log("Preconditions check detected a non-flat (network) automaton.");
 			Hyst.log("Flattening automaton as required by preconditions.");
 			FlattenAutomatonPass.flattenAndOptimize(c);
+			rv = true;
 		}
+
+		return rv;
 	}
 
 	/**
@@ -315,10 +390,13 @@ public class Preconditions
 	 * 
 	 * @param c
 	 *            the configuration to check
+	 * @return true if constants were converted
 	 */
-	private static void convertIntervalConstants(Configuration c)
+	private static boolean convertIntervalConstants(Configuration c)
 	{
-		if (containsIntervalConstants(c.root))
+		boolean rv = containsIntervalConstants(c.root);
+
+		if (rv)
 		{
 			Hyst.log("Preconditions check detected interval-valued constants. ");
 			Hyst.log(
@@ -328,6 +406,8 @@ public class Preconditions
 
 			// printComponentConstants(c.root);
 		}
+
+		return rv;
 	}
 
 	/*
@@ -422,12 +502,15 @@ public class Preconditions
 	}
 
 	/**
-	 * Check that there are no nondeterministic resets
+	 * Check that there are no nondeterministic resets, converting them to use interval constants
 	 * 
 	 * @param c
+	 * @return true if any resets were converted
 	 */
-	public static void convertNondeterministicResets(Component c)
+	public static boolean convertNondeterministicResets(Component c)
 	{
+		boolean rv = false;
+
 		if (c instanceof BaseComponent)
 		{
 			// base case
@@ -455,6 +538,7 @@ public class Preconditions
 						Expression sum = new Operation(Operator.ADD, ei.getExpression(),
 								new Variable(intervalVar));
 						ei.setExpression(sum);
+						rv = true;
 					}
 				}
 			}
@@ -465,8 +549,10 @@ public class Preconditions
 			NetworkComponent nc = (NetworkComponent) c;
 
 			for (ComponentInstance ci : nc.children.values())
-				convertNondeterministicResets(ci.child);
+				rv |= convertNondeterministicResets(ci.child);
 		}
+
+		return rv;
 	}
 
 	/**
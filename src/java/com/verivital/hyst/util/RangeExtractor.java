@@ -143,11 +143,8 @@ public class RangeExtractor
 		{
 			if (o.op == Operator.AND)
 			{
-				Map<String, Double> left = getConstants(o.getLeft());
-				Map<String, Double> right = getConstants(o.getRight());
-
-				safePutAll(rv, left);
-				safePutAll(rv, right);
+				for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+					safePutAll(rv, getConstants(conjunct));
 			}
 			else if (o.op == Operator.EQUAL)
 			{
@@ -325,18 +322,18 @@ public class RangeExtractor
 		Collection<String> rv = new HashSet<String>();
 		Operation o = expression.asOperation();
 
-		if (o != null && o.children.size() == 2)
+		if (o != null && o.op == Operator.AND)
+		{
+			for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+				rv.addAll(getEqualVariables(conjunct, variable));
+		}
+		else if (o != null && o.children.size() == 2)
 		{
 			Expression leftExp = o.children.get(0);
 			Expression rightExp = o.children.get(1);
 			Operator op = o.op;
 
-			if (op.equals(Operator.AND))
-			{
-				rv.addAll(getEqualVariables(leftExp, variable));
-				rv.addAll(getEqualVariables(rightExp, variable));
-			}
-			else if (op.equals(Operator.EQUAL) && leftExp instanceof Variable
+			if (op.equals(Operator.EQUAL) && leftExp instanceof Variable
 					&& rightExp instanceof Variable)
 			{
 				Variable left = (Variable) leftExp;
@@ -383,23 +380,18 @@ public class RangeExtractor
 	{
 		Operation o = expression.asOperation();
 
-		if (o != null && o.children.size() == 2)
+		if (o != null && o.op == Operator.AND)
+		{
+			for (Expression conjunct : Expression.getOperands(o, Operator.AND))
+				getVariableRangesRecursive(conjunct, ranges, vars, extractWeakRanges);
+		}
+		else if (o != null && o.children.size() == 2)
 		{
 			Expression leftExp = o.children.get(0);
 			Expression rightExp = o.children.get(1);
 			Operator op = o.op;
 
-			if (op.equals(Operator.AND))
-			{
-				TreeMap<String, Interval> left = new TreeMap<String, Interval>();
-				TreeMap<String, Interval> right = new TreeMap<String, Interval>();
-
-				getVariableRangesRecursive(leftExp, ranges, vars, extractWeakRanges);
-				getVariableRangesRecursive(rightExp, ranges, vars, extractWeakRanges);
-
-				ranges = mergeTreeRanges(left, right);
-			}
-			else if (expressionContainsVariables(expression, vars))
+			if (expressionContainsVariables(expression, vars))
 			{
 				double val = 0;
 				String varName = null;
@@ -595,47 +587,6 @@ public class RangeExtractor
 		return rv;
 	}
 
-	/**
-	 * Merge the two ranges. For example [-5, 4] and [2, 10] will merge to be [2, 4].
-	 * 
-	 * @param left
-	 *            a range for each variable
-	 * @param right
-	 *            the other range for each variable, may include more or less variables as well
-	 * @return the merged set of constraints
-	 * @throws EmptyRangeException
-	 *             if the ranges don't overlap
-	 */
-	private static TreeMap<String, Interval> mergeTreeRanges(TreeMap<String, Interval> left,
-			TreeMap<String, Interval> right) throws EmptyRangeException
-	{
-		TreeMap<String, Interval> rv = new TreeMap<String, Interval>();
-
-		rv.putAll(left);
-
-		for (Entry<String, Interval> e : right.entrySet())
-		{
-			String key = e.getKey();
-			Interval val = e.getValue();
-
-			Interval i = rv.get(key);
-
-			if (i == null)
-				rv.put(key, val);
-			else
-			{
-				// take the tighter of the two extremes
-				i.min = Math.max(i.min, val.min);
-				i.max = Math.min(i.max, val.max);
-
-				if (i.max < i.min)
-					throw new EmptyRangeException("range for " + key + " is unsatisfiable");
-			}
-		}
-
-		return rv;
-	}
-
 	@SuppressWarnings("serial")
 	public static class EmptyRangeException extends Exception
 	{
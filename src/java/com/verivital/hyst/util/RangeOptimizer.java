@@ -0,0 +1,296 @@
+package com.verivital.hyst.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.verivital.hyst.geometry.Interval;
+import com.verivital.hyst.grammar.formula.Expression;
+import com.verivital.hyst.ir.AutomatonExportException;
+import com.verivital.hyst.main.Hyst;
+
+/**
+ * Bounds the range of an expression over a box, with a guaranteed maximum overapproximation error,
+ * by branch and bound: the box is split until the range enclosure of each part is within the error
+ * of the values actually sampled. This is the Java counterpart of eval_eqs_bounded in
+ * interval_optimize.py, and doesn't need python.
+ *
+ * Enclosures are computed with either interval arithmetic or affine arithmetic (see AffineForm).
+ * Affine arithmetic keeps track of correlations between repeated variables, which is common in the
+ * expressions being bounded (like f(x) - (a * x + b) in hybridization), so the same accuracy needs
+ * far fewer splits.
+ */
+public class RangeOptimizer
+{
+	// stop splitting after this many enclosure evaluations (the result is still sound, but may not
+	// meet the error bound)
+	public static int MAX_EVALUATIONS = 1000000;
+
+	// sample all the corners of the initial box if there are at most this many variables
+	private static final int MAX_CORNER_VARS = 10;
+
+	private final boolean useAffine;
+	private final double maxError;
+	private int evaluations = 0;
+
+	/**
+	 * Create an optimizer
+	 *
+	 * @param useAffine
+	 *            use affine arithmetic (true) or interval arithmetic (false) for enclosures
+	 * @param maxError
+	 *            the maximum overapproximation error, or 0 or negative to only do a single
+	 *            enclosure (no splitting)
+	 */
+	public RangeOptimizer(boolean useAffine, double maxError)
+	{
+		this.useAffine = useAffine;
+		this.maxError = maxError;
+	}
+
+	/**
+	 * Get the number of enclosures computed so far by this optimizer
+	 */
+	public int getNumEvaluations()
+	{
+		return evaluations;
+	}
+
+	/**
+	 * Bound the range of an expression over a box
+	 *
+	 * @param e
+	 *            the expression
+	 * @param bounds
+	 *            the range of each variable in e
+	 * @return an enclosure of the range, which is within maxError of the true range (if maxError
+	 *         is positive)
+	 */
+	public Interval optimize(Expression e, Map<String, Interval> bounds)
+	{
+		Interval rv = null;
+
+		if (maxError <= 0)
+			rv = enclose(e, bounds);
+		else
+		{
+			// only split the variables used in e, in a fixed order
+			ArrayList<String> vars = new ArrayList<String>(
+					new TreeSet<String>(AutomatonUtil.getVariablesInExpression(e)));
+			Interval under = sampleCorners(e, bounds, vars);
+			boolean warned = false;
+
+			ArrayDeque<HashMap<String, Interval>> stack = new ArrayDeque<HashMap<String, Interval>>();
+			stack.push(new HashMap<String, Interval>(bounds));
+
+			while (!stack.isEmpty())
+			{
+				HashMap<String, Interval> box = stack.pop();
+				Interval enc = enclose(e, box);
+
+				under = Interval.union(under, sample(e, box, false, 0, vars));
+
+				String splitVar = null;
+
+				if (enc.min < under.min - maxError || enc.max > under.max + maxError)
+				{
+					splitVar = widestVar(box, bounds, vars);
+
+					if (splitVar != null && evaluations >= MAX_EVALUATIONS)
+					{
+						if (!warned)
+							Hyst.logDebug("RangeOptimizer reached " + MAX_EVALUATIONS
+									+ " evaluations; the error bound may not be met for " + e);
+
+						warned = true;
+						splitVar = null;
+					}
+				}
+
+				if (splitVar == null)
+					rv = (rv == null) ? enc : Interval.union(rv, enc);
+				else
+				{
+					Interval i = box.get(splitVar);
+					double mid = i.min / 2 + i.max / 2;
+
+					HashMap<String, Interval> right = new HashMap<String, Interval>(box);
+					right.put(splitVar, new Interval(mid, i.max));
+					box.put(splitVar, new Interval(i.min, mid));
+
+					stack.push(right);
+					stack.push(box);
+				}
+			}
+		}
+
+		return rv;
+	}
+
+	private Interval enclose(Expression e, Map<String, Interval> box)
+	{
+		++evaluations;
+
+		return useAffine ? Interval.affineEvaluate(e, box) : Interval.intervalEvaluate(e, box);
+	}
+
+	/**
+	 * Get the variable with the largest width, relative to its width in the original bounds, or
+	 * null if no variable can be split further
+	 */
+	private static String widestVar(Map<String, Interval> box, Map<String, Interval> orig,
+			List<String> vars)
+	{
+		String rv = null;
+		double best = 0;
+
+		for (String v : vars)
+		{
+			Interval i = box.get(v);
+			double origWidth = orig.get(v).width();
+			double mid = i.min / 2 + i.max / 2;
+
+			// can't split intervals which are too small to have a midpoint
+			if (origWidth <= 0 || mid <= i.min || mid >= i.max)
+				continue;
+
+			double rel = i.width() / origWidth;
+
+			if (rel > best)
+			{
+				best = rel;
+				rv = v;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Get the range of values of e at the center and corners of a box (just the center if there are
+	 * too many variables)
+	 */
+	private static Interval sampleCorners(Expression e, Map<String, Interval> box,
+			List<String> vars)
+	{
+		Interval rv = sample(e, box, false, 0, vars);
+
+		if (vars.size() <= MAX_CORNER_VARS)
+		{
+			for (int corner = 0; corner < (1 << vars.size()); ++corner)
+				rv = Interval.union(rv, sample(e, box, true, corner, vars));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Evaluate e at a point of a box: the center, or a corner (where bit i of corner selects the
+	 * max of variable i)
+	 */
+	private static Interval sample(Expression e, Map<String, Interval> box, boolean isCorner,
+			int corner, List<String> vars)
+	{
+		HashMap<String, Interval> point = new HashMap<String, Interval>();
+
+		for (Entry<String, Interval> entry : box.entrySet())
+		{
+			Interval i = entry.getValue();
+			point.put(entry.getKey(), new Interval(i.middle()));
+		}
+
+		if (isCorner)
+		{
+			for (int v = 0; v < vars.size(); ++v)
+			{
+				Interval i = box.get(vars.get(v));
+				point.put(vars.get(v), new Interval(((corner >> v) & 1) == 1 ? i.max : i.min));
+			}
+		}
+
+		// point evaluation, the interval is only as wide as the rounding error
+		return new Interval(Interval.intervalEvaluate(e, point).middle());
+	}
+
+	/**
+	 * Bound several expressions, each over its own box, in parallel (one thread per core)
+	 *
+	 * @param exps
+	 *            the expressions
+	 * @param boundsList
+	 *            the variable bounds for each expression
+	 * @param useAffine
+	 *            use affine arithmetic (true) or interval arithmetic (false) for enclosures
+	 * @param maxError
+	 *            the maximum overapproximation error, or 0 or negative to only do a single
+	 *            enclosure of each expression
+	 * @return the range enclosure of each expression
+	 */
+	public static List<Interval> optimizeAll(List<Expression> exps,
+			List<HashMap<String, Interval>> boundsList, final boolean useAffine,
+			final double maxError)
+	{
+		if (exps.size() != boundsList.size())
+			throw new AutomatonExportException("number of expression(" + exps.size()
+					+ ") and number of bounds (" + boundsList.size() + ") must match.");
+
+		List<Interval> rv = new ArrayList<Interval>();
+		List<Callable<Interval>> tasks = new ArrayList<Callable<Interval>>();
+
+		for (int i = 0; i < exps.size(); ++i)
+		{
+			final Expression e = exps.get(i);
+			final HashMap<String, Interval> bounds = boundsList.get(i);
+
+			tasks.add(new Callable<Interval>()
+			{
+				@Override
+				public Interval call()
+				{
+					return new RangeOptimizer(useAffine, maxError).optimize(e, bounds);
+				}
+			});
+		}
+
+		int threads = Math.max(1,
+				Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try
+		{
+			List<Future<Interval>> results = new ArrayList<Future<Interval>>();
+
+			for (Callable<Interval> task : tasks)
+				results.add(pool.submit(task));
+
+			for (Future<Interval> f : results)
+				rv.add(f.get());
+		}
+		catch (InterruptedException ex)
+		{
+			throw new AutomatonExportException("Interrupted during range optimization", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+
+			throw new AutomatonExportException("Error during range optimization", ex);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+
+		return rv;
+	}
+}
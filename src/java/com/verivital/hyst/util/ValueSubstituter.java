@@ -10,16 +10,36 @@ import com.verivital.hyst.grammar.formula.MatrixExpression;
 import com.verivital.hyst.grammar.formula.Operation;
 import com.verivital.hyst.grammar.formula.Operator;
 import com.verivital.hyst.grammar.formula.Variable;
+import com.verivital.hyst.ir.SymbolTable;
 
 public class ValueSubstituter
 {
 	private Map<String, Expression> valMap;
 
+	// alternatively, the values can be given by symbol id
+	private SymbolTable symbols = null;
+	private Expression[] valuesById = null;
+
 	public ValueSubstituter(Map<String, Expression> substitutionMap)
 	{
 		this.valMap = substitutionMap;
 	}
 
+	/**
+	 * Create a substituter where the values are given by symbol id, which avoids looking up each
+	 * variable by name
+	 * 
+	 * @param symbols
+	 *            the symbol table the ids are from
+	 * @param valuesById
+	 *            the value to substitute for each id, or null to leave the variable
+	 */
+	public ValueSubstituter(SymbolTable symbols, Expression[] valuesById)
+	{
+		this.symbols = symbols;
+		this.valuesById = valuesById;
+	}
+
 	/**
 	 * Do the Substitution return the new expression
 	 * 
@@ -44,7 +64,15 @@ public class ValueSubstituter
 		if (e instanceof Variable)
 		{
 			Variable v = (Variable) e;
-			Expression subIn = valMap.get(v.name);
+			Expression subIn;
+
+			if (symbols == null)
+				subIn = valMap.get(v.name);
+			else
+			{
+				int id = symbols.getId(v);
+				subIn = (id >= 0 && id < valuesById.length) ? valuesById[id] : null;
+			}
 
 			if (subIn != null)
 				rv = subIn.copy();
@@ -77,8 +105,9 @@ public class ValueSubstituter
 
 			substitute(lut.table);
 		}
-		else if (e instanceof MatrixExpression)
+		else if (e instanceof MatrixExpression && !((MatrixExpression) e).isNumeric())
 		{
+			// numeric matrices have nothing to substitute
 			MatrixExpression m = (MatrixExpression) e;
 
 			for (Entry<int[], Expression> entry : m)
@@ -726,54 +726,50 @@ public class SpaceExXMLPrinter
 		FormulaType type = FormulaType.DEFAULT;
 
 		@Override
-		public String printOperation(Operation o)
+		protected void layoutOperation(Operation o, Layout layout)
 		{
-			String rv = null;
-
 			if (o.op == Operator.EQUAL)
 			{
-				rv = print(o.getLeft());
+				layout.expression(o.getLeft());
 
 				switch (type)
 				{
 				case ASSIGNMENT:
 					// op = " := ";
-					rv += "' == ";
+					layout.text("' == ");
 					break;
 				case DIFFERENTIAL:
-					rv += "' == ";
+					layout.text("' == ");
 					break;
 				case DEFAULT:
 				default:
-					rv += " == ";
+					layout.text(" == ");
 					break;
 				}
 
-				rv += print(o.getRight());
+				layout.expression(o.getRight());
 			}
 			else if (o.op == Operator.LESSEQUAL || o.op == Operator.GREATEREQUAL
 					|| o.op == Operator.LESS || o.op == Operator.GREATER)
 			{
-				rv = print(o.getLeft());
+				layout.expression(o.getLeft());
 
 				switch (type)
 				{
 				case ASSIGNMENT:
 					// op = " := ";
-					rv += "' ";
+					layout.text("' ");
 					break;
 				default:
-					rv += " ";
+					layout.text(" ");
 					break;
 				}
 
-				rv += this.opNames.get(o.op);
-				rv += " " + print(o.getRight());
+				layout.text(this.opNames.get(o.op));
+				layout.text(" ").expression(o.getRight());
 			}
 			else
-				rv = super.printOperation(o);
-
-			return rv;
+				super.layoutOperation(o, layout);
 		}
 	}
 
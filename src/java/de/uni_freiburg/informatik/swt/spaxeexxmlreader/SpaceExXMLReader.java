@@ -53,6 +53,7 @@ public class SpaceExXMLReader
 	private Document mXMLDocument;
 	private FileReader mCFGFileReader;
 	private SpaceExDocument mTarget;
+	private File mBaseDirectory; // directory of the xml file, for files referenced by formulas
 
 	private boolean mPrintWarnings, mPrintErrors = true;
 
@@ -90,6 +91,8 @@ public class SpaceExXMLReader
 		File xmlFile = new File(xmlFileName);
 		if (xmlFile.isFile() && xmlFile.canRead())
 		{
+			mBaseDirectory = xmlFile.getAbsoluteFile().getParentFile();
+
 			try
 			{
 				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -129,16 +132,26 @@ public class SpaceExXMLReader
 	public SpaceExDocument read()
 	{
 		mTarget = new SpaceExDocument();
-		if (mXMLDocument != null)
+		File prevDirectory = FormulaParser.setBaseDirectory(mBaseDirectory);
+
+		try
 		{
-			mXMLDocument.getDocumentElement().normalize();
-			parseSSpaceEx(mXMLDocument.getDocumentElement());
+			if (mXMLDocument != null)
+			{
+				mXMLDocument.getDocumentElement().normalize();
+				parseSSpaceEx(mXMLDocument.getDocumentElement());
+			}
+			else
+			{
+				printError("No XML source set.");
+			}
+			parseCFG();
 		}
-		else
+		finally
 		{
-			printError("No XML source set.");
+			FormulaParser.setBaseDirectory(prevDirectory);
 		}
-		parseCFG();
+
 		return mTarget;
 	}
 
@@ -6,6 +6,9 @@ from __future__ import division
 from builtins import str
 from builtins import range
 
+import os
+import multiprocessing
+
 from hybridpy.pysim.simulate import simulate_one_time
 from hybridpy.pysim.simulate import simulate_one
 from hybridpy.pysim.simulate import simulate_multi
@@ -107,9 +110,10 @@ def ranges_to_string(ranges):
 
     return ";".join(interval_strings)
 
-def simulate_times(ha, mode_name, point, times, max_jumps=500, solver='vode'):
+def simulate_times(ha, mode_name, point, times, max_jumps=500, solver='vode', with_times=False):
     '''simulates a hybrid automaton from a given mode/point, getting the state at a list of passed-in times
     returns a semi-colon separated string of mode_name, point_dim_0, point_dim_1, ... , point_dim_n
+    (if with_times is True, each state is mode_name, time, point_dim_0, ... , point_dim_n)
     '''
     rv = ""
 
@@ -125,6 +129,9 @@ def simulate_times(ha, mode_name, point, times, max_jumps=500, solver='vode'):
 
         entry = q[0].name
 
+        if with_times:
+            entry += "," + str(time)
+
         for d in q[1]:
             entry += "," + str(d)
 
@@ -135,12 +142,16 @@ def simulate_times(ha, mode_name, point, times, max_jumps=500, solver='vode'):
 
     return rv
 
-def simulate_set_time(ha, mode_names, points, time, max_jumps=500, solver='vode'):
+def simulate_set_time(ha, mode_names, points, time, max_jumps=500, solver='vode', num_procs=1):
     '''simulates a hybrid automaton from a given set of modes/points, getting the state at a fixed final time
     returns a semi-colon separated string of mode_name, point_dim_0, point_dim_1, ... , point_dim_n
+
+    ha can be a HybridAutomaton, or a function which creates one (like define_ha). If num_procs > 1,
+    the points are simulated in that many worker processes (see simulate_multi_trajectory_time).
     '''
 
-    trajectories = simulate_multi_trajectory_time(ha, mode_names, points, time, max_jumps=max_jumps, solver=solver)
+    trajectories = simulate_multi_trajectory_time(ha, mode_names, points, time, max_jumps=max_jumps, solver=solver,
+                                                  num_procs=num_procs)
     last_states = []
 
     for traj in trajectories.split('|'):
@@ -149,15 +160,79 @@ def simulate_set_time(ha, mode_names, points, time, max_jumps=500, solver='vode'
 
     return ';'.join(last_states)
 
-def simulate_multi_trajectory_time(ha, mode_names, points, time, min_steps=100, max_jumps=500, solver='vode'):
+def simulate_multi_trajectory_time(ha, mode_names, points, time, min_steps=100, max_jumps=500, solver='vode',
+                                   num_procs=1, with_times=False):
     '''simulates a hybrid automaton from a list of modes/points to a maximum time, with a minimum number
     of intermediate steps (which determines a max step size).
     returns the trajectories, separated by '|', where each
     trajectory is a semi-colon separated list of mode_name,point_dim_0,point_dim_1, ... , point_dim_m
+    (if with_times is True, each state is mode_name,time,point_dim_0, ... , point_dim_m)
+
+    ha can be a HybridAutomaton, or a function which creates one (like define_ha). If num_procs > 1,
+    the list of points is split across a pool of that many worker processes. Each worker creates
+    the automaton once, and the trajectories are returned in the same order as the points.
     '''
 
     assert len(mode_names) == len(points)
 
+    num_procs = min(num_procs, len(points))
+
+    if num_procs <= 1 or not hasattr(os, 'fork'):
+        # serial (also used where workers can't inherit define_ha, which is only defined in the
+        # interpreter, since there is no fork)
+        if callable(ha):
+            ha = ha()
+
+        rv_list = _trajectory_strings(ha, mode_names, points, time, min_steps, max_jumps, solver, with_times)
+    else:
+        # a few chunks per process, so that slow simulations don't leave the other workers idle
+        num_chunks = min(len(points), num_procs * 4)
+        tasks = []
+
+        for c in range(num_chunks):
+            start = c * len(points) // num_chunks
+            end = (c + 1) * len(points) // num_chunks
+
+            tasks.append((mode_names[start:end], points[start:end], time, min_steps, max_jumps, solver,
+                          with_times))
+
+        # the automaton is passed to the workers when they are forked (it's not pickled)
+        ctx = multiprocessing.get_context('fork') if hasattr(multiprocessing, 'get_context') else multiprocessing
+        pool = ctx.Pool(num_procs, _init_worker, (ha,))
+
+        try:
+            rv_list = []
+
+            for chunk_list in pool.map(_simulate_chunk, tasks):
+                rv_list += chunk_list
+
+            pool.close()
+        finally:
+            pool.terminate()
+            pool.join()
+
+    return '|'.join(rv_list)
+
+# the automaton used by this worker process, set in _init_worker
+_worker_ha = None
+
+def _init_worker(ha):
+    '''initialize a worker process in the simulation pool by creating the automaton'''
+
+    global _worker_ha
+
+    _worker_ha = ha() if callable(ha) else ha
+
+def _simulate_chunk(task):
+    '''simulate one chunk of points in a worker process, returns the list of trajectory strings'''
+
+    mode_names, points, time, min_steps, max_jumps, solver, with_times = task
+
+    return _trajectory_strings(_worker_ha, mode_names, points, time, min_steps, max_jumps, solver, with_times)
+
+def _trajectory_strings(ha, mode_names, points, time, min_steps, max_jumps, solver, with_times=False):
+    '''simulate from each mode/point, returning a list with one trajectory string for each'''
+
     max_step = float(time) / float(min_steps)
     
     q_list = []
@@ -179,12 +254,16 @@ def simulate_multi_trajectory_time(ha, mode_names, points, time, min_steps=100,
             mode = mode_sim.mode_name
             points = mode_sim.points
         
-            for point in points:
+            for index, point in enumerate(points):
                 point_dims = [str(d) for d in point]
+
+                if with_times:
+                    point_dims.insert(0, str(mode_sim.times[index]))
+
                 point_str = ",".join(point_dims)
                 traj.append(mode + "," + point_str)
 
         
         rv_list.append(';'.join(traj))
 
-    return '|'.join(rv_list)
+    return rv_list